@@ -0,0 +1,139 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.domain;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.shadowmvcc.coherence.pof.TransactionIdSerializer;
+import com.shadowmvcc.coherence.pof.VersionedKeySerializer;
+import com.tangosol.io.pof.SimplePofContext;
+import com.tangosol.io.pof.reflect.SimplePofPath;
+import com.tangosol.util.Binary;
+import com.tangosol.util.BinaryEntry;
+import com.tangosol.util.ExternalizableHelper;
+import com.tangosol.util.extractor.AbstractExtractor;
+import com.tangosol.util.extractor.PofExtractor;
+
+/**
+ * Compare extracting the logical key from a version cache key by slicing the binary
+ * format key with {@link LogicalKeyExtractor} against navigating the POF stream, as
+ * the extractor does for keys in the POF format. Binary version keys are configured in
+ * the forked JVM, as they must be for the extractor to slice.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dshadowmvcc.binaryversionkeys=true")
+public class LogicalKeyExtractorBenchmark {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+    private static final VersionedKey<String> KEY =
+            new VersionedKey<String>("a logical key", new TransactionId(BASETIME, 12, 34));
+
+    private final LogicalKeyExtractor logicalKeyExtractor = new LogicalKeyExtractor();
+    private final PofExtractor pofExtractor = new PofExtractor(
+            null, new SimplePofPath(VersionedKey.POF_LOGICALKEY), AbstractExtractor.KEY);
+
+    private BinaryEntry binaryFormatEntry;
+    private BinaryEntry pofFormatEntry;
+
+    /**
+     * Serialise the key in each format.
+     */
+    @Setup
+    public void setUp() {
+        if (!VersionedKeySerializer.isBinaryConfigured()) {
+            throw new IllegalStateException("binary version keys are not configured");
+        }
+        binaryFormatEntry = createEntry(true);
+        pofFormatEntry = createEntry(false);
+    }
+
+    /**
+     * @return the logical key sliced from a binary format key
+     */
+    @Benchmark
+    public Object binaryFormatSliced() {
+        return logicalKeyExtractor.extractFromEntry(binaryFormatEntry);
+    }
+
+    /**
+     * @return the logical key read by navigating a binary format key
+     */
+    @Benchmark
+    public Object binaryFormatNavigated() {
+        return pofExtractor.extractFromEntry(binaryFormatEntry);
+    }
+
+    /**
+     * @return the logical key read from a POF format key, the extractor falling back to navigation
+     */
+    @Benchmark
+    public Object pofFormat() {
+        return logicalKeyExtractor.extractFromEntry(pofFormatEntry);
+    }
+
+    /**
+     * Create an entry holding the key serialised in one of the formats.
+     * @param binary true for the binary transaction id format
+     * @return the entry
+     */
+    private static BinaryEntry createEntry(final boolean binary) {
+        final SimplePofContext context = new SimplePofContext();
+        context.registerUserType(1002, TransactionId.class, new TransactionIdSerializer());
+        context.registerUserType(1003, VersionedKey.class, new VersionedKeySerializer(binary));
+        final Binary binaryKey = ExternalizableHelper.toBinary(KEY, context);
+        return (BinaryEntry) Proxy.newProxyInstance(BinaryEntry.class.getClassLoader(),
+                new Class<?>[] { BinaryEntry.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (method.getName().equals("getBinaryKey")) {
+                            return binaryKey;
+                        }
+                        if (method.getName().equals("getSerializer")) {
+                            return context;
+                        }
+                        if (method.getName().equals("getKey")) {
+                            return ExternalizableHelper.fromBinary(binaryKey, context);
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,166 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.domain;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.invocable.MVCCReadOnlyEntryProcessorWrapper;
+import com.tangosol.io.pof.ConfigurablePofContext;
+import com.tangosol.util.Binary;
+import com.tangosol.util.ExternalizableHelper;
+import com.tangosol.util.extractor.IdentityExtractor;
+import com.tangosol.util.processor.ExtractorProcessor;
+
+/**
+ * Measure the allocation of {@link TransactionId} on the processor path, where ids are
+ * deserialised with each key and entry processor. The index path is measured by
+ * {@code MVCCIndexAllocationBenchmark}.
+ * Run with the GC profiler, {@code -Djmh.args="-prof gc TransactionIdAllocation"}, and
+ * compare {@code gc.alloc.rate.norm}, the bytes allocated per operation.
+ * {@link #legacyTransactionId()} allocates an id as it was before {@link TransactionId}
+ * became a compact value, with its own date format, as the baseline for
+ * {@link #transactionId()}.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+public class TransactionIdAllocationBenchmark {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+    private static final Integer KEY = 1;
+
+    private ConfigurablePofContext pofContext;
+    private Binary transactionIdBinary;
+    private Binary sentinelBinary;
+    private Binary versionedKeyBinary;
+    private Binary processorBinary;
+    private long timestamp = BASETIME;
+
+    /**
+     * Serialise the values to deserialise.
+     */
+    @Setup
+    public void setUp() {
+        pofContext = new ConfigurablePofContext("mvcc-pof-config.xml");
+        TransactionId tid = new TransactionId(BASETIME, 12, 34);
+        transactionIdBinary = ExternalizableHelper.toBinary(tid, pofContext);
+        sentinelBinary = ExternalizableHelper.toBinary(TransactionId.END_OF_TIME, pofContext);
+        versionedKeyBinary = ExternalizableHelper.toBinary(new VersionedKey<Integer>(KEY, tid), pofContext);
+        processorBinary = ExternalizableHelper.toBinary(new MVCCReadOnlyEntryProcessorWrapper<Integer, Object>(
+                tid, new ExtractorProcessor(IdentityExtractor.INSTANCE), IsolationLevel.readCommitted,
+                new CacheName("acachename")), pofContext);
+    }
+
+    /**
+     * @return a deserialised transaction id
+     */
+    @Benchmark
+    public Object deserialiseTransactionId() {
+        return ExternalizableHelper.fromBinary(transactionIdBinary, pofContext);
+    }
+
+    /**
+     * @return a deserialised sentinel transaction id, which should not allocate an id
+     */
+    @Benchmark
+    public Object deserialiseSentinel() {
+        return ExternalizableHelper.fromBinary(sentinelBinary, pofContext);
+    }
+
+    /**
+     * @return a deserialised version cache key
+     */
+    @Benchmark
+    public Object deserialiseVersionedKey() {
+        return ExternalizableHelper.fromBinary(versionedKeyBinary, pofContext);
+    }
+
+    /**
+     * @return a deserialised entry processor wrapper, as received by the key cache
+     */
+    @Benchmark
+    public Object deserialiseProcessor() {
+        return ExternalizableHelper.fromBinary(processorBinary, pofContext);
+    }
+
+    /**
+     * @return a new transaction id
+     */
+    @Benchmark
+    public Object transactionId() {
+        return TransactionId.valueOf(timestamp++, 12, 34);
+    }
+
+    /**
+     * @return a new transaction id in the previous representation
+     */
+    @Benchmark
+    public Object legacyTransactionId() {
+        return new LegacyTransactionId(timestamp++, 12, 34);
+    }
+
+    /**
+     * The fields of a transaction id before it became a compact value.
+     */
+    private static final class LegacyTransactionId {
+
+        private final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        private final long timeStampMillis;
+        private final int contextId;
+        private final int subSequence;
+
+        /**
+         * Constructor.
+         * @param timeStampMillis the timestamp
+         * @param contextId the transaction manager id
+         * @param subSequence the sequence number
+         */
+        LegacyTransactionId(final long timeStampMillis, final int contextId, final int subSequence) {
+            this.timeStampMillis = timeStampMillis;
+            this.contextId = contextId;
+            this.subSequence = subSequence;
+        }
+
+        @Override
+        public String toString() {
+            return dateFormat.format(timeStampMillis) + "(" + contextId + ")(" + subSequence + ")";
+        }
+    }
+}
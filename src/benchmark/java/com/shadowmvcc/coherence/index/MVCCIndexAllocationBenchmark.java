@@ -0,0 +1,132 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.index;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.tangosol.util.Binary;
+import com.tangosol.util.Converter;
+
+/**
+ * Measure the allocation of index lookups, which create a {@link TransactionId} for each
+ * version returned from a packed line. Run with the GC profiler,
+ * {@code -Djmh.args="-prof gc MVCCIndexAllocation"}, and compare {@code gc.alloc.rate.norm},
+ * the bytes allocated per operation, either side of the tree threshold.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+public class MVCCIndexAllocationBenchmark {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+    private static final int KEYS = 16;
+
+    @Param({ "8", "64" })
+    private int versions;
+
+    private MVCCIndex<Integer> index;
+    private TransactionId readTs;
+    private Set<Binary> candidates;
+
+    /**
+     * Populate the index with committed versions of each key, and read between the middle two.
+     */
+    @Setup
+    public void setUp() {
+        index = new MVCCIndex<Integer>(StubBackingMapContext.create(1, new Converter() {
+            @Override
+            public Object convert(final Object binaryKey) {
+                byte[] bytes = ((Binary) binaryKey).toByteArray();
+                return new VersionedKey<Integer>((int) bytes[0], tid(bytes[1]));
+            }
+        }));
+        candidates = new HashSet<Binary>();
+        for (int key = 0; key < KEYS; key++) {
+            for (int v = 0; v < versions; v++) {
+                Binary binaryKey = new Binary(new byte[] { (byte) key, (byte) v });
+                index.addToIndex(key, tid(v), binaryKey, true, false);
+                candidates.add(binaryKey);
+            }
+        }
+        readTs = new TransactionId(BASETIME + versions / 2, 0, 1);
+    }
+
+    /**
+     * @return the version of a key visible to a read
+     */
+    @Benchmark
+    public Object floorEntry() {
+        return index.floorEntry(0, readTs);
+    }
+
+    /**
+     * @return the latest version of a key earlier than a read
+     */
+    @Benchmark
+    public Object lowerEntry() {
+        return index.lowerEntry(0, readTs);
+    }
+
+    /**
+     * @return the first version of a key later than a read
+     */
+    @Benchmark
+    public Object ceilingTid() {
+        return index.ceilingTid(0, readTs);
+    }
+
+    /**
+     * @return the versions of all keys visible to a read, as evaluated by a surface filter
+     */
+    @Benchmark
+    public Object floorSet() {
+        return index.floorSet(candidates, readTs);
+    }
+
+    /**
+     * @param version version number
+     * @return transaction id for the version
+     */
+    private static TransactionId tid(final int version) {
+        return new TransactionId(BASETIME + version, 0, 0);
+    }
+}
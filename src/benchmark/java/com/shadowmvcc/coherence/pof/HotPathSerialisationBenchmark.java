@@ -0,0 +1,92 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.pof;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.tangosol.io.pof.ConfigurablePofContext;
+import com.tangosol.util.Binary;
+import com.tangosol.util.ExternalizableHelper;
+
+/**
+ * Measure the time to serialise and deserialise each of the classes sent with every cache
+ * operation, using the samples in {@link HotPathSamples}. The serialised size of each sample
+ * is checked against a committed baseline by {@code HotPathSerialisationTest}.
+ * Run with {@code -Djmh.args="HotPathSerialisation"}; add {@code -prof gc} for bytes allocated
+ * per operation.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+public class HotPathSerialisationBenchmark {
+
+    @Param({"TransactionId", "VersionedKey", "CacheName", "VersionCacheKey", "ProcessorResultWait",
+        "ProcessorResultChanged", "EventValue", "MVCCEntryProcessorWrapper", "MVCCReadOnlyEntryProcessorWrapper",
+        "ReadMarkingProcessor", "MVCCSurfaceFilter"})
+    private String sample;
+
+    private ConfigurablePofContext pofContext;
+    private Object value;
+    private Binary binary;
+
+    /**
+     * Serialise the sample to deserialise.
+     */
+    @Setup
+    public void setUp() {
+        pofContext = new ConfigurablePofContext("mvcc-pof-config.xml");
+        value = HotPathSamples.getSample(sample);
+        binary = ExternalizableHelper.toBinary(value, pofContext);
+    }
+
+    /**
+     * @return the serialised sample
+     */
+    @Benchmark
+    public Binary serialise() {
+        return ExternalizableHelper.toBinary(value, pofContext);
+    }
+
+    /**
+     * @return the deserialised sample
+     */
+    @Benchmark
+    public Object deserialise() {
+        return ExternalizableHelper.fromBinary(binary, pofContext);
+    }
+}
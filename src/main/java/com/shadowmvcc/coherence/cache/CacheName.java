@@ -24,25 +24,24 @@ package com.shadowmvcc.coherence.cache;
 
 import java.io.Serializable;
 
-import com.tangosol.io.pof.annotation.Portable;
-import com.tangosol.io.pof.annotation.PortableProperty;
+import com.shadowmvcc.coherence.pof.CacheNameSerializer;
 
 /**
  * Class to encapsulate a logical cache name, and the physical version and key cache names. Use
  * the logical name to construct an instance, which can then be used to obtain the names of the
  * physical key and version caches
  * 
+ * Serialised by {@link CacheNameSerializer}.
+ * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
  */
-@Portable
 public class CacheName implements Serializable {
 
     private static final long serialVersionUID = -8922424456494883817L;
     private static final String VERSION_CACHE_SUFFIX = "-version";
     private static final String KEY_CACHE_SUFFIX = "-key";
-    private static final int POF_NAME = 0;
-    @PortableProperty(POF_NAME)
+    public static final int POF_NAME = 0;
     private String logicalName;
     private transient String versionCacheName = null;
     private transient String keyCacheName = null;
@@ -63,6 +62,19 @@ public class CacheName implements Serializable {
         this.logicalName = logicalName;
     }
 
+    /**
+     * Get the cache name for a physical version cache name.
+     * @param versionCacheName the name of a cache
+     * @return the cache name, or null if the name is not that of a version cache
+     */
+    public static CacheName fromVersionCacheName(final String versionCacheName) {
+        if (!versionCacheName.endsWith(VERSION_CACHE_SUFFIX)) {
+            return null;
+        }
+        return new CacheName(versionCacheName.substring(
+                0, versionCacheName.length() - VERSION_CACHE_SUFFIX.length()));
+    }
+    
     /**
      * Get the cache logical name.
      * @return the cache logical name
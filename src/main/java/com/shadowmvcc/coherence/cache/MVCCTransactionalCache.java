@@ -43,6 +43,8 @@ import com.tangosol.util.ValueExtractor;
  * context information given with each request. Isolation level determines whether a read marker
  * is recorded when a value is read, and whether uncommitted values can be read. Operations with isolation
  * level {@code readCommitted} or higher will block on encountering an uncommitted version.
+ * A read throws {@link com.shadowmvcc.coherence.transaction.TransactionException} if the cache
+ * has been vacuumed past its transaction id, unless the id is a declared snapshot.
  * 
  * This is the potential decoupling point for extend clients. Cluster members would call
  * an implementation directly, extend clients a facade implementation to use invocation service.
@@ -210,6 +212,21 @@ public interface MVCCTransactionalCache<K, V> {
      */
     void putAll(TransactionId tid, boolean autoCommit, Map<K, V> m);
 
+    /**
+     * Load committed versions of a set of entries at a single transaction id. The values
+     * are written directly as committed versions, without the transactional checks made by
+     * putAll and without any commit, so a load must only be performed when no other
+     * transaction is reading or changing the keys loaded, for example an initial load or
+     * a reload of a quiesced cache. The load transaction id must be later than any existing
+     * version of the keys.
+     * @param loadId transaction id of the versions loaded
+     * @param m map of key value pairs to load
+     * @throws com.shadowmvcc.coherence.transaction.TransactionException if the load id is too old
+     * or not later than the vacuum watermark or most recent snapshot of the cache, or if any keys
+     * already have a version at or after the load id, which are not loaded
+     */
+    void load(TransactionId loadId, Map<K, V> m);
+
     /**
      * Clear the cache at the given transaction id by creating a new deleted marker for every extant entry.
      * @param tid transaction id transaction id
@@ -227,6 +244,9 @@ public interface MVCCTransactionalCache<K, V> {
     Set<K> keySet(TransactionId tid, IsolationLevel isolationLevel) throws Throwable;
 
     /**
+     * Values are fetched from the cluster a page of partitions at a time as the
+     * collection is iterated, and are fetched again by each iteration. Reading a page
+     * fails if the cache has since been vacuumed past the transaction id.
      * @param tid transaction id transaction id
      * @param isolationLevel isolation level
      * @return all the extant values at the timestamp
@@ -263,6 +283,7 @@ public interface MVCCTransactionalCache<K, V> {
             Comparator<V> comparator);
 
     /**
+     * Entries are fetched as the set is iterated, as for {@link #values(TransactionId, IsolationLevel)}.
      * @param tid transaction id
      * @param isolationLevel isolation level
      * @param filter the filter
@@ -273,16 +294,19 @@ public interface MVCCTransactionalCache<K, V> {
             IsolationLevel isolationLevel, Filter filter) throws Throwable;
 
     /**
+     * Get the matching entries in order of value. If the filter is a
+     * {@link com.tangosol.util.filter.LimitFilter}, only the page of entries it selects is returned.
      * @param tid transaction id
      * @param isolationLevel isolation level
      * @param filter the filter
-     * @param comparator comparator for ordering results
-     * @return extant set of entries at timestamp
+     * @param comparator comparator on the values for ordering results, or null for their natural ordering
+     * @return extant set of entries at timestamp, iterated in order
      */
     Set<Map.Entry<K, V>> entrySet(TransactionId tid, 
             IsolationLevel isolationLevel, Filter filter, Comparator<V> comparator);
 
     /**
+     * Keys are fetched as the set is iterated, as for {@link #values(TransactionId, IsolationLevel)}.
      * @param tid transaction id
      * @param isolationLevel isolation level
      * @param filter the filter
@@ -1,6 +1,7 @@
 package com.shadowmvcc.coherence.cache.internal;
 
 import static com.shadowmvcc.coherence.domain.Constants.LOGICALKEYEXTRACTOR;
+import static com.shadowmvcc.coherence.domain.Constants.TRANSACTIONIDEXTRACTOR;
 
 import java.util.Comparator;
 import java.util.concurrent.ConcurrentHashMap;
@@ -110,6 +111,7 @@ public abstract class AbstractMVCCTransactionalCache<K, V> implements MVCCTransa
         this.keyCache = CacheFactory.getCache(this.cacheName.getKeyCacheName());
         this.versionCache = CacheFactory.getCache(this.cacheName.getVersionCacheName());
         versionCache.addIndex(MVCCExtractor.INSTANCE, false, null);
+        versionCache.addIndex(TRANSACTIONIDEXTRACTOR, false, null);
     }
 
     /**
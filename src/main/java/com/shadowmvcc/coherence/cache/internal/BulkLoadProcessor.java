@@ -0,0 +1,104 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.cache.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.shadowmvcc.coherence.domain.Constants;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.index.MVCCExtractor;
+import com.shadowmvcc.coherence.index.MVCCIndex;
+import com.tangosol.io.pof.annotation.Portable;
+import com.tangosol.io.pof.annotation.PortableProperty;
+import com.tangosol.util.Binary;
+import com.tangosol.util.BinaryEntry;
+import com.tangosol.util.InvocableMap.Entry;
+import com.tangosol.util.processor.AbstractProcessor;
+
+/**
+ * {@code EntryProcessor} implementation to write serialised, already decorated, values
+ * taken from a map directly into version cache entries. Used to load committed versions.
+ * An entry whose logical key already has a version at or after the version being loaded
+ * is not written, and its logical key is returned.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+@Portable
+public class BulkLoadProcessor extends AbstractProcessor {
+
+    private static final long serialVersionUID = 3571120688455410271L;
+
+    public static final int POF_VALUEMAP = 0;
+    @PortableProperty(POF_VALUEMAP)
+    private Map<Object, Binary> valueMap;
+
+    /**
+     * Default constructor for POF use only.
+     */
+    public BulkLoadProcessor() {
+        super();
+    }
+
+    /**
+     * @param valueMap map of version cache key to the binary value to write
+     */
+    public BulkLoadProcessor(final Map<Object, Binary> valueMap) {
+        super();
+        this.valueMap = valueMap;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object process(final Entry entry) {
+        Binary binaryValue = valueMap.get(entry.getKey());
+        if (binaryValue == null) {
+            return null;
+        }
+        BinaryEntry binaryEntry = (BinaryEntry) entry;
+        Object logicalKey = Constants.LOGICALKEYEXTRACTOR.extractFromEntry(binaryEntry);
+        TransactionId loadId = (TransactionId) Constants.TRANSACTIONIDEXTRACTOR.extractFromEntry(binaryEntry);
+        MVCCIndex<Object> index = (MVCCIndex<Object>) binaryEntry.getBackingMapContext()
+                .getIndexMap().get(MVCCExtractor.INSTANCE);
+        if (index.ceilingTid(logicalKey, loadId) != null) {
+            return logicalKey;
+        }
+        binaryEntry.updateBinaryValue(binaryValue);
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public Map processAll(final Set setEntries) {
+        Map result = new HashMap();
+        for (Object entry : setEntries) {
+            Object rejected = process((Entry) entry);
+            if (rejected != null) {
+                result.put(((Entry) entry).getKey(), rejected);
+            }
+        }
+        return result;
+    }
+}
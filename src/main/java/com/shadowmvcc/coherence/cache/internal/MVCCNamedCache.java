@@ -216,6 +216,7 @@ public class MVCCNamedCache implements NamedCache {
         if (context.isExpired()) {
             throw new TransactionException("Transaction " + context.getTransactionId() + " has expired");
         }
+        context.ensureRegistered();
         try {
             mvccCache.clear(context.getTransactionId(), context.isAutoCommit());
             context.addPartitionSetAffected(mvccCache.getMVCCCacheName(), getFullPartitionSet());
@@ -225,6 +226,30 @@ public class MVCCNamedCache implements NamedCache {
         }
     }
     
+    /**
+     * Bind a view that is read lazily to the transaction it was obtained in, so that
+     * it cannot be read after the transaction is complete.
+     * @param view the view
+     * @param context the transaction
+     * @return the bound view, or the original if it is not read lazily
+     * @param <E> element type
+     */
+    private static <E> Collection<E> bindToTransaction(final Collection<E> view, final Transaction context) {
+        return view instanceof PagedResultCollection ? new TransactionBoundCollection<E>(view, context) : view;
+    }
+
+    /**
+     * Bind a set that is read lazily to the transaction it was obtained in, so that
+     * it cannot be read after the transaction is complete.
+     * @param view the set
+     * @param context the transaction
+     * @return the bound set, or the original if it is not read lazily
+     * @param <E> element type
+     */
+    private static <E> Set<E> bindToTransaction(final Set<E> view, final Transaction context) {
+        return view instanceof PagedResultCollection ? new TransactionBoundSet<E>(view, context) : view;
+    }
+
     /**
      * Get a filled partitionset for this cache.
      * @return the partition set
@@ -246,7 +271,7 @@ public class MVCCNamedCache implements NamedCache {
             throw new TransactionException("Transaction " + context.getTransactionId() + " has expired");
         }
         try {
-            return mvccCache.keySet(context.getTransactionId(), context.getIsolationLevel());
+            return bindToTransaction(mvccCache.keySet(context.getTransactionId(), context.getIsolationLevel()), context);
         } catch (Throwable e) {
             throw new RuntimeException(e);
         }
@@ -260,7 +285,7 @@ public class MVCCNamedCache implements NamedCache {
             throw new TransactionException("Transaction " + context.getTransactionId() + " has expired");
         }
         try {
-            return mvccCache.values(context.getTransactionId(), context.getIsolationLevel());
+            return bindToTransaction(mvccCache.values(context.getTransactionId(), context.getIsolationLevel()), context);
         } catch (Throwable e) {
             throw new RuntimeException(e);
         }
@@ -274,7 +299,7 @@ public class MVCCNamedCache implements NamedCache {
             throw new TransactionException("Transaction " + context.getTransactionId() + " has expired");
         }
         try {
-            return mvccCache.entrySet(context.getTransactionId(), context.getIsolationLevel());
+            return bindToTransaction(mvccCache.entrySet(context.getTransactionId(), context.getIsolationLevel()), context);
         } catch (Throwable e) {
             throw new RuntimeException(e);
         }
@@ -320,7 +345,8 @@ public class MVCCNamedCache implements NamedCache {
             throw new TransactionException("Transaction " + context.getTransactionId() + " has expired");
         }
         try {
-            return mvccCache.entrySet(context.getTransactionId(), context.getIsolationLevel(), filter);
+            return bindToTransaction(
+                    mvccCache.entrySet(context.getTransactionId(), context.getIsolationLevel(), filter), context);
         } catch (Throwable e) {
             throw new RuntimeException(e);
         }
@@ -344,7 +370,8 @@ public class MVCCNamedCache implements NamedCache {
             throw new TransactionException("Transaction " + context.getTransactionId() + " has expired");
         }
         try {
-            return mvccCache.keySet(context.getTransactionId(), context.getIsolationLevel(), filter);
+            return bindToTransaction(
+                    mvccCache.keySet(context.getTransactionId(), context.getIsolationLevel(), filter), context);
         } catch (Throwable e) {
             throw new RuntimeException(e);
         }
@@ -468,6 +495,9 @@ public class MVCCNamedCache implements NamedCache {
             potentiallyAffectedCaches = ((MultiCacheProcessor) agent).getReferencedMVCCCacheNames();
             transactionManager.addReferencedCaches(potentiallyAffectedCaches);
         }
+        if (!context.isReadOnly()) {
+            context.ensureRegistered();
+        }
         try {
             
             InvocationFinalResult fr = mvccCache.invokeAll(context.getTransactionId(),
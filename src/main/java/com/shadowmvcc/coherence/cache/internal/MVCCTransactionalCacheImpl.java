@@ -29,46 +29,67 @@ import static com.shadowmvcc.coherence.domain.IsolationLevel.serializable;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import com.shadowmvcc.coherence.cache.CacheName;
 import com.shadowmvcc.coherence.cache.MVCCTransactionalCache;
+import com.shadowmvcc.coherence.config.ConfigurationFactory;
+import com.shadowmvcc.coherence.config.PropertyConfiguration;
 import com.shadowmvcc.coherence.domain.IsolationLevel;
 import com.shadowmvcc.coherence.domain.ProcessorResult;
 import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.Utils;
 import com.shadowmvcc.coherence.domain.VersionCacheKey;
 import com.shadowmvcc.coherence.domain.VersionedKey;
 import com.shadowmvcc.coherence.index.MVCCSurfaceFilter;
 import com.shadowmvcc.coherence.invocable.AggregatorWrapper;
+import com.shadowmvcc.coherence.invocable.BulkLoadInvoker;
 import com.shadowmvcc.coherence.invocable.DecorationExtractorProcessor;
 import com.shadowmvcc.coherence.invocable.EntryProcessorInvoker;
 import com.shadowmvcc.coherence.invocable.EntryProcessorInvokerResult;
 import com.shadowmvcc.coherence.invocable.FilterValidateEntryProcessor;
+import com.shadowmvcc.coherence.invocable.FirstMatchInvoker;
 import com.shadowmvcc.coherence.invocable.InvocationServiceHelper;
 import com.shadowmvcc.coherence.invocable.InvocationServiceHelper.InvocableFactory;
+import com.shadowmvcc.coherence.invocable.KeyProcessorInvoker;
+import com.shadowmvcc.coherence.invocable.KeySetProcessorInvoker;
 import com.shadowmvcc.coherence.invocable.MVCCEntryProcessorWrapper;
 import com.shadowmvcc.coherence.invocable.MVCCReadOnlyEntryProcessorWrapper;
 import com.shadowmvcc.coherence.invocable.ParallelAggregationInvoker;
 import com.shadowmvcc.coherence.invocable.ParallelAggregationInvokerResult;
 import com.shadowmvcc.coherence.invocable.ParallelAwareAggregatorWrapper;
 import com.shadowmvcc.coherence.invocable.ParallelKeyAggregationInvoker;
+import com.shadowmvcc.coherence.transaction.ManagerCache;
+import com.shadowmvcc.coherence.transaction.TransactionException;
 import com.shadowmvcc.coherence.transaction.internal.ExistenceCheckProcessor;
+import com.shadowmvcc.coherence.transaction.internal.ManagerCacheImpl;
 import com.shadowmvcc.coherence.transaction.internal.ReadMarkingProcessor;
+import com.shadowmvcc.coherence.transaction.internal.TimestampValidator;
+import com.shadowmvcc.coherence.transaction.internal.TimestampValidatorImpl;
 import com.shadowmvcc.coherence.transaction.internal.TransactionCache;
 import com.shadowmvcc.coherence.transaction.internal.TransactionCacheImpl;
 import com.shadowmvcc.coherence.transaction.internal.TransactionExpiryListener;
 import com.shadowmvcc.coherence.utils.MapUtils;
+import com.tangosol.io.Serializer;
 import com.tangosol.net.CacheFactory;
 import com.tangosol.net.DistributedCacheService;
 import com.tangosol.net.Invocable;
+import com.tangosol.net.InvocationService;
 import com.tangosol.net.Member;
 import com.tangosol.net.NamedCache;
-import com.tangosol.net.partition.KeyPartitioningStrategy;
 import com.tangosol.net.partition.PartitionSet;
+import com.tangosol.util.Binary;
+import com.tangosol.util.ExternalizableHelper;
 import com.tangosol.util.Filter;
 import com.tangosol.util.InvocableMap.EntryAggregator;
 import com.tangosol.util.InvocableMap.EntryProcessor;
@@ -76,6 +97,7 @@ import com.tangosol.util.InvocableMap.ParallelAwareAggregator;
 import com.tangosol.util.aggregator.Count;
 import com.tangosol.util.extractor.IdentityExtractor;
 import com.tangosol.util.filter.EqualsFilter;
+import com.tangosol.util.filter.LimitFilter;
 import com.tangosol.util.processor.ExtractorProcessor;
 
 /**
@@ -89,8 +111,24 @@ import com.tangosol.util.processor.ExtractorProcessor;
 public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalCache<K, V>
         implements MVCCTransactionalCache<K, V> {
 
+    /**
+     * Accepts an invocation result that contains a match.
+     */
+    private static final Filter FOUNDFILTER = new Filter() {
+        @Override
+        public boolean evaluate(final Object result) {
+            return !((EntryProcessorInvokerResult<?, ?>) result).getResultMap().isEmpty();
+        }
+    };
+
     private final TransactionCache transactionCache;
+    private final ManagerCache managerCache;
+    private final TimestampValidator timestampValidator;
     private final String invocationServiceName;
+    private final String waitServiceName;
+    private final long serverWaitTimeout;
+    private final int putAllBatchSize;
+    private final int iteratorPagePartitions;
 
     /**
      * Constructor.
@@ -99,8 +137,15 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
      */
     public MVCCTransactionalCacheImpl(final String cacheName, final String invocationServiceName) {
         super(cacheName);
-        this.transactionCache = new TransactionCacheImpl(invocationServiceName);
+        this.transactionCache = new TransactionCacheImpl(
+                ConfigurationFactory.getConfiguraration().getCompletionServiceName());
+        this.managerCache = new ManagerCacheImpl();
+        this.timestampValidator = new TimestampValidatorImpl();
         this.invocationServiceName = invocationServiceName;
+        this.waitServiceName = ConfigurationFactory.getConfiguraration().getWaitServiceName();
+        this.serverWaitTimeout = ConfigurationFactory.getConfiguraration().getServerWaitTimeout();
+        this.putAllBatchSize = ConfigurationFactory.getConfiguraration().getPutAllBatchSize();
+        this.iteratorPagePartitions = ConfigurationFactory.getConfiguraration().getIteratorPagePartitions();
     }
 
     @Override
@@ -156,14 +201,15 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
     private <R> InvocationFinalResult<K, R> invokeProcessorUntilCommitted(
             final K key, final TransactionId tid, final EntryProcessor ep) {
         while (true) {
-            @SuppressWarnings("unchecked")
-            ProcessorResult<K, R> epr = (ProcessorResult<K, R>) keyCache.invoke(key, ep);
+            ProcessorResult<K, R> epr = invokeOnKey(key, tid, ep);
             if (epr == null) {
+                checkNotVacuumed(tid);
                 return null;
             }
             if (epr.isUncommitted()) {
                 waitForCommit(epr.getWaitKey(), tid);
             } else {
+                checkNotVacuumed(tid);
                 Map<K, R> resultMap = new HashMap<K, R>();
                 resultMap.put(key, epr.getResult());
                 InvocationFinalResult<K, R> result = new InvocationFinalResult<K, R>(
@@ -184,18 +230,56 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
     private <R> R invokeUntilCommitted(
             final K key, final TransactionId tid, final EntryProcessor ep) {
         while (true) {
-            @SuppressWarnings("unchecked")
-            ProcessorResult<K, R> epr = (ProcessorResult<K, R>) keyCache.invoke(key, ep);
+            ProcessorResult<K, R> epr = invokeOnKey(key, tid, ep);
             if (epr == null) {
+                checkNotVacuumed(tid);
                 return null;
             }
             if (epr.isUncommitted()) {
                 waitForCommit(epr.getWaitKey(), tid);
             } else {
+                checkNotVacuumed(tid);
                 return epr.getResult();
             }
         }
     }
+    
+    /**
+     * Invoke an EntryProcessor on a key. The EntryProcessor is invoked directly on the key cache.
+     * If it finds an uncommitted version and server side waiting is configured, it is sent
+     * through the wait service to the member owning the key, which waits for the version to be
+     * committed or rolled back before invoking it again.
+     * @param key the key
+     * @param tid transaction id
+     * @param ep the entry processor
+     * @return the result of the EntryProcessor, uncommitted if the client must wait
+     * @param <R> the EntryProcessor return type
+     */
+    @SuppressWarnings("unchecked")
+    private <R> ProcessorResult<K, R> invokeOnKey(final K key, final TransactionId tid, final EntryProcessor ep) {
+        ProcessorResult<K, R> epr = (ProcessorResult<K, R>) keyCache.invoke(key, ep);
+        if (serverWaitTimeout > 0 && epr != null && epr.isUncommitted()) {
+            Member owner = ((DistributedCacheService) keyCache.getCacheService()).getKeyOwner(key);
+            if (owner != null) {
+                InvocationService service = (InvocationService) CacheFactory.getService(waitServiceName);
+                Map<Member, Object> results = service.query(
+                        new KeyProcessorInvoker<K, R>(cacheName, key, tid, ep, serverWaitTimeout),
+                        Collections.singleton(owner));
+                if (results.containsKey(owner)) {
+                    Object result = results.get(owner);
+                    if (result instanceof RuntimeException) {
+                        throw (RuntimeException) result;
+                    }
+                    if (result instanceof Throwable) {
+                        throw new RuntimeException((Throwable) result);
+                    }
+                    return (ProcessorResult<K, R>) result;
+                }
+                // owner left before responding, the client waits
+            }
+        }
+        return epr;
+    }
 
     /**
      * Wait for the specified uncommitted version cache entry to be committed or rolled back.
@@ -204,20 +288,26 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
      * @param transactionId id of current transaction
      */
     private void waitForCommit(final VersionCacheKey<K> awaitedKey, final TransactionId transactionId) {
-        NamedCache waitCache = CacheFactory.getCache(awaitedKey.getCacheName().getVersionCacheName());
+        waitForAnyCommit(Collections.singleton(awaitedKey), transactionId);
+    }
+
+    /**
+     * Wait for any of the specified uncommitted version cache entries to be committed or rolled back.
+     * Notification is through the {@link VersionCommitHub} of each cache, so no listener is registered
+     * on the version caches for the wait.
+     * Throws TransactionException if the current transaction expires while waiting
+     * @param awaitedKeys the keys to wait for
+     * @param transactionId id of current transaction
+     * @return the keys of the entries that have been committed or rolled back
+     */
+    private Set<VersionCacheKey<K>> waitForAnyCommit(final Collection<VersionCacheKey<K>> awaitedKeys,
+            final TransactionId transactionId) {
         VersionCommitListener vcl = new VersionCommitListener();
         TransactionExpiryListener txl = new TransactionExpiryListener(vcl);
         try {
-            waitCache.addMapListener(vcl, awaitedKey.getKey(), false);
             transactionCache.registerExpiryListener(transactionId, txl);
-            Boolean committed = (Boolean) versionCache.invoke(
-                    awaitedKey.getKey(), DecorationExtractorProcessor.COMMITTED_INSTANCE);
-            if (committed != null && !committed) {
-                vcl.waitForCommit();
-            }
-            return;
+            return VersionCommitHub.waitForAny(awaitedKeys, vcl);
         } finally {
-            waitCache.removeMapListener(vcl, awaitedKey.getKey());
             transactionCache.unregisterExpiryListener(transactionId, txl);
         }
     }
@@ -240,50 +330,196 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
         return result == null ? false : result;
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * Each member searches its partitions and returns as soon as it finds a committed match.
+     * The first such result ends the search, and the other invocations are abandoned. Only
+     * if no committed match is found anywhere are the uncommitted matches waited for
+     * and checked again.
+     */
     @Override
     public boolean containsValue(
             final TransactionId tid, final IsolationLevel isolationLevel, final V value) throws Throwable {
-        EntryProcessor ep = new MVCCReadOnlyEntryProcessorWrapper<K, Boolean>(
+        boolean result = findValue(tid, isolationLevel, value);
+        checkNotVacuumed(tid);
+        return result;
+    }
+
+    /**
+     * Search for a committed entry with a value, as described for
+     * {@link #containsValue(TransactionId, IsolationLevel, Object)}.
+     * @param tid transaction id
+     * @param isolationLevel isolation level
+     * @param value the value to find
+     * @return true if a matching entry is visible at the transaction id
+     * @throws Throwable if an invocation fails in the cluster
+     */
+    @SuppressWarnings("unchecked")
+    private boolean findValue(
+            final TransactionId tid, final IsolationLevel isolationLevel, final V value) throws Throwable {
+        final EntryProcessor ep = new MVCCReadOnlyEntryProcessorWrapper<K, Boolean>(
                 tid, new ExistenceCheckProcessor(), isolationLevel, cacheName);
-        Filter filter = new EqualsFilter(IdentityExtractor.INSTANCE, value);
-        // TODO optimise - we only need to find a single committed matching entry, even if others are uncommitted
-        InvocationFinalResult<K, Boolean> fr = invokeAllUntilCommitted(filter, tid, ep);
-        Map<K, Boolean> result = fr.getResultMap();
-        for (Boolean exists : result.values()) {
-            if (exists != null && exists) {
+        final Filter filter = new EqualsFilter(IdentityExtractor.INSTANCE, value);
+
+        DistributedCacheService service = (DistributedCacheService) versionCache.getCacheService();
+        PartitionSet remainingPartitions = new PartitionSet(service.getPartitionCount());
+        remainingPartitions.fill();
+
+        InvocationServiceHelper<EntryProcessorInvokerResult<K, Boolean>> invocationHelper =
+                new InvocationServiceHelper<EntryProcessorInvokerResult<K, Boolean>>(invocationServiceName);
+        InvocableFactory<PartitionSet> invocableFactory = new InvocableFactory<PartitionSet>() {
+
+            @Override
+            public Invocable getInvocable(final PartitionSet invocationTargetSet) {
+                return new FirstMatchInvoker<K>(cacheName, filter, tid, ep, invocationTargetSet);
+            }
+            
+        };
+        
+        invocationHelper.invokeActionForPartitionSet(remainingPartitions, cacheName, invocableFactory);
+
+        Map<K, VersionCacheKey<K>> retryMap = new HashMap<K, VersionCacheKey<K>>();
+        for (EntryProcessorInvokerResult<K, Boolean> result
+                : invocationHelper.waitForInvocationsUntil(FOUNDFILTER)) {
+            if (!result.getResultMap().isEmpty()) {
                 return true;
             }
+            retryMap.putAll(result.getRetryMap());
+        }
+
+        while (!retryMap.isEmpty()) {
+            Set<K> retryKeys = getResolvedKeys(retryMap, waitForAnyCommit(retryMap.values(), tid));
+            retryMap.keySet().removeAll(retryKeys);
+            
+            for (Map.Entry<K, ProcessorResult<K, Boolean>> entry
+                    : ((Map<K, ProcessorResult<K, Boolean>>) keyCache.invokeAll(retryKeys, ep)).entrySet()) {
+                ProcessorResult<K, Boolean> epr = entry.getValue();
+                if (epr == null) {
+                    continue;
+                }
+                if (epr.isUncommitted()) {
+                    retryMap.put(entry.getKey(), epr.getWaitKey());
+                } else if (Boolean.TRUE.equals(epr.getResult())) {
+                    return true;
+                }
+            }
         }
+        
         return false;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * {@inheritDoc}
+     * 
+     * The entries are split by owning member and into batches of the configured size, and
+     * all batches are sent concurrently through the invocation service. A batch sent to a member
+     * that leaves is split again by the new owners and resent. Keys left waiting for
+     * uncommitted changes are retried as described for
+     * {@link #retryUntilCommitted(Map, TransactionId, EntryProcessor, Map, Map)}.
+     */
     @Override
     public void putAll(final TransactionId tid, final boolean autoCommit, final Map<K, V> m) {
-        DistributedCacheService service = (DistributedCacheService) versionCache.getCacheService();
-        KeyPartitioningStrategy partitionStrategy = service.getKeyPartitioningStrategy();
-
-        Map<Integer, Map<K, V>> memberValueMap = new HashMap<Integer, Map<K, V>>();
-        for (Map.Entry<K, V> entry : m.entrySet()) {
-            int partition = partitionStrategy.getKeyPartition(entry.getKey());
-            Integer member = service.getPartitionOwner(partition).getId();
-            if (!memberValueMap.containsKey(member)) {
-                memberValueMap.put(member, new HashMap<K, V>());
+
+        InvocationServiceHelper<EntryProcessorInvokerResult<K, Object>> invocationHelper =
+                new InvocationServiceHelper<EntryProcessorInvokerResult<K, Object>>(invocationServiceName);
+        InvocableFactory<Set<K>> invocableFactory = new InvocableFactory<Set<K>>() {
+
+            @Override
+            public Invocable getInvocable(final Set<K> invocationTargetSet) {
+                return new KeySetProcessorInvoker<K, Object>(cacheName, invocationTargetSet, tid,
+                        getPutAllProcessor(tid, autoCommit, m, invocationTargetSet), 0);
             }
-            memberValueMap.get(member).put(entry.getKey(), entry.getValue());
-        }
+            
+        };
+        
+        invocationHelper.invokeActionForKeyset(
+                cacheName, new HashSet<K>(m.keySet()), invocableFactory, putAllBatchSize);
 
-        // TODO run in parallel
-        for (Member member : (Set<Member>) service.getOwnershipEnabledMembers()) {
-            Map<K, V> valueMap = memberValueMap.get(member.getId());
-            if (valueMap != null) {
-                EntryProcessor putProcessor = new PutAllProcessor<K, V>(valueMap);
-                EntryProcessor wrappedProcessor = new MVCCEntryProcessorWrapper<K, Object>(
-                        tid, putProcessor, readProhibited, autoCommit, cacheName);
-                invokeAllUntilCommitted(valueMap.keySet(), tid, wrappedProcessor);
+        Map<K, VersionCacheKey<K>> retryMap = new HashMap<K, VersionCacheKey<K>>();
+        try {
+            for (EntryProcessorInvokerResult<K, Object> result : invocationHelper.waitForAllInvocations()) {
+                retryMap.putAll(result.getRetryMap());
             }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
         }
 
+        if (!retryMap.isEmpty()) {
+            retryUntilCommitted(retryMap, tid, getPutAllProcessor(tid, autoCommit, m, retryMap.keySet()),
+                    new HashMap<K, Object>(), null);
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     * 
+     * The entries are split by owning member and into batches of the putAll batch size.
+     * Each batch is serialised and decorated as committed on the client and sent to its member,
+     * which writes the binary values straight into the version cache. All batches are
+     * sent concurrently. The load id must be new enough to be a valid transaction id, and later
+     * than the vacuum watermark and the most recent snapshot of the cache. Keys that already
+     * have a version at or after the load id are not loaded.
+     */
+    @Override
+    public void load(final TransactionId loadId, final Map<K, V> m) {
+
+        checkLoadId(loadId);
+
+        final Serializer serializer = versionCache.getCacheService().getSerializer();
+        InvocationServiceHelper<Collection<K>> invocationHelper =
+                new InvocationServiceHelper<Collection<K>>(invocationServiceName);
+        InvocableFactory<Set<K>> invocableFactory = new InvocableFactory<Set<K>>() {
+
+            @Override
+            public Invocable getInvocable(final Set<K> invocationTargetSet) {
+                Map<Object, Binary> valueMap = new HashMap<Object, Binary>(invocationTargetSet.size());
+                for (K key : invocationTargetSet) {
+                    valueMap.put(new VersionedKey<K>(key, loadId), Utils.decorateValue(
+                            ExternalizableHelper.toBinary(m.get(key), serializer), true, false));
+                }
+                return new BulkLoadInvoker(cacheName, valueMap);
+            }
+            
+        };
+        
+        invocationHelper.invokeActionForKeyset(
+                cacheName, new HashSet<K>(m.keySet()), invocableFactory, putAllBatchSize);
+
+        Set<K> rejected = new HashSet<K>();
+        try {
+            for (Collection<K> batchRejected : invocationHelper.waitForAllInvocations()) {
+                rejected.addAll(batchRejected);
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+        if (!rejected.isEmpty()) {
+            throw new TransactionException("Keys " + rejected + " of " + cacheName.getLogicalName()
+                    + " not loaded, they have versions at or after " + loadId);
+        }
+    }
+    
+    /**
+     * Get the processor to put the values for a subset of keys.
+     * @param tid transaction id
+     * @param autoCommit true if the changes are to be committed immediately
+     * @param m map of all values to put
+     * @param keys the keys to put
+     * @return the wrapped processor
+     */
+    private EntryProcessor getPutAllProcessor(final TransactionId tid, final boolean autoCommit,
+            final Map<K, V> m, final Set<K> keys) {
+        Map<K, V> valueMap = new HashMap<K, V>();
+        for (K key : keys) {
+            valueMap.put(key, m.get(key));
+        }
+        return new MVCCEntryProcessorWrapper<K, Object>(
+                tid, new PutAllProcessor<K, V>(valueMap), readProhibited, autoCommit, cacheName);
     }
 
     @Override
@@ -307,11 +543,10 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
 
     @Override
     public Collection<V> values(final TransactionId tid, final IsolationLevel isolationLevel) throws Throwable {
-        //TODO find a more efficient implementation that doesn't require the complete map to be returned
         EntryProcessor ep = new MVCCReadOnlyEntryProcessorWrapper<K, V>(
                 tid, new ExtractorProcessor(new IdentityExtractor()), isolationLevel, cacheName, null);
-        InvocationFinalResult<K, V> fr = invokeAllUntilCommitted((Filter) null, tid, ep);
-        return fr.getResultMap().values();
+        return new PagedResultCollection<K, V, V>(
+                new PagedInvocation<V>(null, tid, ep), PagedResultCollection.View.VALUES);
     }
 
     @Override
@@ -333,16 +568,46 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
             final IsolationLevel isolationLevel, final Filter filter) throws Throwable {
         EntryProcessor ep = new MVCCReadOnlyEntryProcessorWrapper<K, V>(
                 tid, new ExtractorProcessor(new IdentityExtractor()), isolationLevel, cacheName, filter);
-        InvocationFinalResult<K, V> fr = invokeAllUntilCommitted(filter, tid, ep);
-        return fr.getResultMap().entrySet();
+        return new PagedResultSet<K, V, Map.Entry<K, V>>(
+                new PagedInvocation<V>(filter, tid, ep), PagedResultCollection.View.ENTRIES);
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * Each member sorts its matching entries and returns only as many as are needed to fill the
+     * requested page, which are then merged. If the filter is a {@link LimitFilter}, the page it
+     * specifies is returned; successive pages read at the same transaction id are consistent.
+     */
     @Override
     public Set<Map.Entry<K, V>> entrySet(final TransactionId tid, final IsolationLevel isolationLevel,
             final Filter filter, final Comparator<V> comparator) {
-        // TODO Auto-generated method stub
-        // TODO is the comparator on the value or the entry?
-        return null;
+
+        Filter queryFilter = filter;
+        int first = 0;
+        int limit = Integer.MAX_VALUE;
+        if (filter instanceof LimitFilter) {
+            LimitFilter limitFilter = (LimitFilter) filter;
+            queryFilter = limitFilter.getFilter();
+            first = limitFilter.getPage() * limitFilter.getPageSize();
+            limit = first + limitFilter.getPageSize();
+        }
+
+        EntryProcessor ep = new MVCCReadOnlyEntryProcessorWrapper<K, V>(
+                tid, new TopNProcessor<K, V>(comparator, limit), isolationLevel, cacheName, queryFilter);
+        InvocationFinalResult<K, V> fr;
+        try {
+            fr = invokeAllUntilCommitted(queryFilter, tid, ep);
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+
+        List<Map.Entry<K, V>> sorted = TopNProcessor.first(fr.getResultMap().entrySet(), comparator, limit);
+        Map<K, V> result = new LinkedHashMap<K, V>();
+        for (Map.Entry<K, V> entry : sorted.subList(Math.min(first, sorted.size()), sorted.size())) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result.entrySet();
     }
 
     @Override
@@ -350,35 +615,41 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
             final IsolationLevel isolationLevel, final Filter filter) throws Throwable {
         EntryProcessor ep = new MVCCReadOnlyEntryProcessorWrapper<K, Object>(
                 tid, null, isolationLevel, cacheName, filter);
-        InvocationFinalResult<K, Object> fr = invokeAllUntilCommitted(filter, tid, ep);
-        return fr.getResultMap().keySet();
+        return new PagedResultSet<K, Object, K>(
+                new PagedInvocation<Object>(filter, tid, ep), PagedResultCollection.View.KEYS);
     }
 
     @Override
     public <R> R aggregate(final TransactionId tid, final IsolationLevel isolationLevel,
             final Collection<K> collKeys, final EntryAggregator agent) throws Throwable {
 
+        R result;
         if (agent instanceof ParallelAwareAggregator) {
             ParallelAwareAggregatorWrapper wrapper
                 = new ParallelAwareAggregatorWrapper((ParallelAwareAggregator) agent);
-            return aggregateParallel(tid, isolationLevel, collKeys, wrapper);
+            result = aggregateParallel(tid, isolationLevel, collKeys, wrapper);
         } else {
             AggregatorWrapper wrapper = new AggregatorWrapper(agent);
-            return aggregateSerial(tid, isolationLevel, collKeys, wrapper);
+            result = aggregateSerial(tid, isolationLevel, collKeys, wrapper);
         }
+        checkNotVacuumed(tid);
+        return result;
     }
 
     @Override
     public <R> R aggregate(final TransactionId tid, final IsolationLevel isolationLevel,
             final Filter filter, final EntryAggregator agent) throws Throwable {
+        R result;
         if (agent instanceof ParallelAwareAggregator) {
             ParallelAwareAggregatorWrapper wrapper
                 = new ParallelAwareAggregatorWrapper((ParallelAwareAggregator) agent);
-            return aggregateParallel(tid, isolationLevel, filter, wrapper);
+            result = aggregateParallel(tid, isolationLevel, filter, wrapper);
         } else {
             AggregatorWrapper wrapper = new AggregatorWrapper(agent);
-            return aggregateSerial(tid, isolationLevel, filter, wrapper);
+            result = aggregateSerial(tid, isolationLevel, filter, wrapper);
         }
+        checkNotVacuumed(tid);
+        return result;
     }
 
     /**
@@ -482,11 +753,8 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
             Set<VersionedKey<K>> remnantKeys = new HashSet<VersionedKey<K>>();
 
             while (retryMap.size() > 0) {
-                for (Map.Entry<K, VersionCacheKey<K>> entry : retryMap.entrySet()) {
-                    waitForCommit(entry.getValue(), tid);
-                }
-                Set<K> retryKeys = new HashSet<K>(retryMap.keySet());
-                retryMap.clear();
+                Set<K> retryKeys = getResolvedKeys(retryMap, waitForAnyCommit(retryMap.values(), tid));
+                retryMap.keySet().removeAll(retryKeys);
 
                 for (Map.Entry<K, ProcessorResult<K, VersionedKey<K>>> entry
                         : ((Map<K, ProcessorResult<K, VersionedKey<K>>>) keyCache.invokeAll(retryKeys,
@@ -559,21 +827,25 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
         if (retryMap.size() > 0) {
             Set<VersionedKey<K>> remnantKeys = new HashSet<VersionedKey<K>>();
 
-            for (Map.Entry<K, VersionCacheKey<K>> entry : retryMap.entrySet()) {
-
-                ProcessorResult<K, VersionedKey<K>> pr = null;
-                ReadMarkingProcessor<K> readMarker =
-                        new ReadMarkingProcessor<K>(tid, isolationLevel, cacheName, true);
-                VersionCacheKey<K> waitKey = entry.getValue();
-                do {
-                    waitForCommit(waitKey, tid);
-                    pr = (ProcessorResult<K, VersionedKey<K>>) keyCache.invoke(entry.getKey(), readMarker);
-                    if (pr != null) {
-                        waitKey = pr.getWaitKey();
+            ReadMarkingProcessor<K> readMarker =
+                    new ReadMarkingProcessor<K>(tid, isolationLevel, cacheName, true);
+
+            while (retryMap.size() > 0) {
+                Set<K> retryKeys = getResolvedKeys(retryMap, waitForAnyCommit(retryMap.values(), tid));
+                retryMap.keySet().removeAll(retryKeys);
+
+                for (Map.Entry<K, ProcessorResult<K, VersionedKey<K>>> entry
+                        : ((Map<K, ProcessorResult<K, VersionedKey<K>>>) keyCache.invokeAll(
+                                retryKeys, readMarker)).entrySet()) {
+                    ProcessorResult<K, VersionedKey<K>> pr = entry.getValue();
+                    if (pr == null) {
+                        continue;
+                    }
+                    if (pr.isUncommitted()) {
+                        retryMap.put(entry.getKey(), pr.getWaitKey());
+                    } else {
+                        remnantKeys.add(pr.getResult());
                     }
-                } while (pr != null && pr.isUncommitted());
-                if (pr != null) {
-                    remnantKeys.add(pr.getResult());
                 }
             }
 
@@ -598,7 +870,6 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
      * @param <R> EntryProcessor result type
      * @throws Throwable if an invocation fails
      */
-    @SuppressWarnings("unchecked")
     private <R> InvocationFinalResult<K, R> invokeAllUntilCommitted(final Filter filter, final TransactionId tid, 
             final EntryProcessor entryProcessor) throws Throwable {
 
@@ -606,10 +877,25 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
         PartitionSet remainingPartitions = new PartitionSet(service.getPartitionCount());
         remainingPartitions.fill();
 
-        Map<K, VersionCacheKey<K>> retryMap = new HashMap<K, VersionCacheKey<K>>();
-        Map<K, R> resultMap = new HashMap<K, R>();
-        Map<CacheName, Set<Object>> changedKeys = new HashMap<CacheName, Set<Object>>();
-        
+        return completeInvocation(
+                invokeForPartitions(filter, tid, entryProcessor, remainingPartitions), tid, entryProcessor);
+    }
+
+    /**
+     * Start the invocation of an EntryProcessor against the entries matching a filter in a set of partitions.
+     * The invocation proceeds asynchronously until completed by
+     * {@link #completeInvocation(InvocationServiceHelper, TransactionId, EntryProcessor)}.
+     * @param filter the filter
+     * @param tid transaction id
+     * @param entryProcessor the entryProcessor
+     * @param partitions the partitions to invoke against
+     * @return the helper managing the outstanding invocations
+     * @param <R> EntryProcessor result type
+     */
+    private <R> InvocationServiceHelper<EntryProcessorInvokerResult<K, R>> invokeForPartitions(
+            final Filter filter, final TransactionId tid, final EntryProcessor entryProcessor,
+            final PartitionSet partitions) {
+
         InvocationServiceHelper<EntryProcessorInvokerResult<K, R>> invocationHelper =
                 new InvocationServiceHelper<EntryProcessorInvokerResult<K, R>>(invocationServiceName);
         InvocableFactory<PartitionSet> invocableFactory = new InvocableFactory<PartitionSet>() {
@@ -622,8 +908,30 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
             
         };
         
-        invocationHelper.invokeActionForPartitionSet(remainingPartitions, cacheName, invocableFactory);
-        
+        invocationHelper.invokeActionForPartitionSet(partitions, cacheName, invocableFactory);
+
+        return invocationHelper;
+    }
+
+    /**
+     * Wait for the invocations started by
+     * {@link #invokeForPartitions(Filter, TransactionId, EntryProcessor, PartitionSet)} to complete,
+     * then retry any entries that were uncommitted until they are committed or rolled back.
+     * @param invocationHelper the helper managing the outstanding invocations
+     * @param tid transaction id
+     * @param entryProcessor the entryProcessor
+     * @return the map of EntryProcessor results and changed keys
+     * @throws Throwable the first exception thrown by any member
+     * @param <R> EntryProcessor result type
+     */
+    private <R> InvocationFinalResult<K, R> completeInvocation(
+            final InvocationServiceHelper<EntryProcessorInvokerResult<K, R>> invocationHelper,
+            final TransactionId tid, final EntryProcessor entryProcessor) throws Throwable {
+
+        Map<K, VersionCacheKey<K>> retryMap = new HashMap<K, VersionCacheKey<K>>();
+        Map<K, R> resultMap = new HashMap<K, R>();
+        Map<CacheName, Set<Object>> changedKeys = new HashMap<CacheName, Set<Object>>();
+
         Collection<EntryProcessorInvokerResult<K, R>> invocationResults = invocationHelper.waitForAllInvocations();
 
         for (EntryProcessorInvokerResult<K, R> result : invocationResults) {
@@ -638,24 +946,152 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
             }
         }
 
-        for (Map.Entry<K, VersionCacheKey<K>> entry : retryMap.entrySet()) {
-            waitForCommit(entry.getValue(), tid);
-            while (true) {
-                ProcessorResult<K, R> epr = (ProcessorResult<K, R>) keyCache.invoke(entry.getKey(), entryProcessor);
-                if (epr == null) {
-                    break;
+        retryUntilCommitted(retryMap, tid, entryProcessor, resultMap, changedKeys);
+
+        return new InvocationFinalResult<K, R>(resultMap, changedKeys);
+    }
+    
+    /**
+     * Divide the partitions of the cache service into pages of consecutive partitions.
+     * @return the pages, in partition order
+     */
+    private List<PartitionSet> getPartitionPages() {
+        int partitionCount = ((DistributedCacheService) versionCache.getCacheService()).getPartitionCount();
+        List<PartitionSet> pages = new ArrayList<PartitionSet>();
+        for (int first = 0; first < partitionCount; first += iteratorPagePartitions) {
+            PartitionSet page = new PartitionSet(partitionCount);
+            for (int partition = first; partition < Math.min(first + iteratorPagePartitions, partitionCount);
+                    partition++) {
+                page.add(partition);
+            }
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    /**
+     * Results of invoking an EntryProcessor against the entries matching a filter, fetched
+     * a page of partitions at a time as they are iterated. Only the page being consumed and
+     * the next page, which is requested before the current page is returned, are held in memory.
+     * All pages are read at the same transaction id, so the iteration is a consistent snapshot.
+     * As each page is read, the transaction id is checked against the vacuum watermark of the
+     * cache, as versions it should see may have been removed since the iteration began.
+     * 
+     * @param <R> EntryProcessor result type
+     */
+    private class PagedInvocation<R> implements Iterable<Map.Entry<K, R>> {
+
+        private final Filter filter;
+        private final TransactionId tid;
+        private final EntryProcessor entryProcessor;
+
+        /**
+         * Constructor.
+         * @param filter the filter, or null for all entries
+         * @param tid transaction id
+         * @param entryProcessor the entryProcessor
+         */
+        PagedInvocation(final Filter filter, final TransactionId tid, final EntryProcessor entryProcessor) {
+            super();
+            this.filter = filter;
+            this.tid = tid;
+            this.entryProcessor = entryProcessor;
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, R>> iterator() {
+            final Iterator<PartitionSet> pages = getPartitionPages().iterator();
+
+            return new Iterator<Map.Entry<K, R>>() {
+
+                private InvocationServiceHelper<EntryProcessorInvokerResult<K, R>> nextPage = requestNextPage();
+                private Iterator<Map.Entry<K, R>> currentPage = Collections.<K, R>emptyMap().entrySet().iterator();
+
+                /**
+                 * @return the invocation of the next page, or null if there are no more pages
+                 */
+                private InvocationServiceHelper<EntryProcessorInvokerResult<K, R>> requestNextPage() {
+                    return pages.hasNext() ? invokeForPartitions(filter, tid, entryProcessor, pages.next()) : null;
                 }
-                if (!epr.isUncommitted()) {
-                    resultMap.put(entry.getKey(), epr.getResult());
-                    break;
+
+                @Override
+                public boolean hasNext() {
+                    while (!currentPage.hasNext()) {
+                        if (nextPage == null) {
+                            return false;
+                        }
+                        InvocationServiceHelper<EntryProcessorInvokerResult<K, R>> page = nextPage;
+                        nextPage = requestNextPage();
+                        try {
+                            currentPage = completeInvocation(page, tid, entryProcessor)
+                                    .getResultMap().entrySet().iterator();
+                        } catch (Throwable t) {
+                            throw new RuntimeException(t);
+                        }
+                    }
+                    return true;
                 }
-                waitForCommit(epr.getWaitKey(), tid);
-            }
+
+                @Override
+                public Map.Entry<K, R> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return currentPage.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
         }
+    }
 
-        return new InvocationFinalResult<K, R>(resultMap, changedKeys);
+    /**
+     * Check that versions may be loaded at a transaction id. It must be new enough to be a valid
+     * transaction id, and must not be earlier than the vacuum watermark or the most recent snapshot.
+     * @param loadId the load transaction id
+     */
+    private void checkLoadId(final TransactionId loadId) {
+        if (!timestampValidator.isTransactionTimestampValid(loadId.getTimeStampMillis())) {
+            throw new TransactionException("Cannot load at " + loadId + ", timestamp too old");
+        }
+        TransactionId vacuumed = managerCache.getVacuumWatermark(cacheName);
+        if (vacuumed != null && vacuumed.compareTo(loadId) >= 0) {
+            throw new TransactionException("Cannot load at " + loadId + ", not later than vacuumed transaction id "
+                    + vacuumed + " of " + cacheName.getLogicalName());
+        }
+        NavigableSet<TransactionId> snapshots = managerCache.getValidSnapshots(cacheName);
+        if (snapshots != null && !snapshots.isEmpty() && snapshots.last().compareTo(loadId) >= 0) {
+            throw new TransactionException("Cannot load at " + loadId + ", not later than snapshot "
+                    + snapshots.last() + " of " + cacheName.getLogicalName());
+        }
     }
-    
+
+    /**
+     * Check that a read at a transaction id has not been overtaken by a vacuum of the cache.
+     * Called after each read completes, as a vacuum raises its watermark before it removes
+     * any versions. Reads at a declared snapshot remain valid. The vacuum never passes the
+     * maximum transaction age plus the safety margin, so a read newer than that is valid
+     * without reading the watermark.
+     * @param tid the transaction id of the read
+     */
+    private void checkNotVacuumed(final TransactionId tid) {
+        if (timestampValidator.isTransactionTimestampValid(
+                tid.getTimeStampMillis() + PropertyConfiguration.SNAPSHOT_SAFETY_MARGIN - 1)) {
+            return;
+        }
+        TransactionId vacuumed = managerCache.getVacuumWatermark(cacheName);
+        if (vacuumed != null && vacuumed.compareTo(tid) > 0) {
+            NavigableSet<TransactionId> snapshots = managerCache.getValidSnapshots(cacheName);
+            if (snapshots == null || !snapshots.contains(tid)) {
+                throw new TransactionException("Read at " + tid + " is older than vacuumed transaction id "
+                        + vacuumed + " of " + cacheName.getLogicalName());
+            }
+        }
+    }
+
     /**
      * Invoke an EntryProcessor against a collection of keys, waiting for any commits to complete
      * and retrying as necessary.
@@ -683,20 +1119,7 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
             }
         }
 
-        for (Map.Entry<K, VersionCacheKey<K>> entry : retryMap.entrySet()) {
-            waitForCommit(entry.getValue(), tid);
-            while (true) {
-                ProcessorResult<K, R> epr = (ProcessorResult<K, R>) keyCache.invoke(entry.getKey(), entryProcessor);
-                if (epr == null) {
-                    break;
-                }
-                if (!epr.isUncommitted()) {
-                    resultMap.put(entry.getKey(), epr.getResult());
-                    break;
-                }
-                waitForCommit(epr.getWaitKey(), tid);
-            }
-        }
+        retryUntilCommitted(retryMap, tid, entryProcessor, resultMap, null);
 
         return resultMap;
     }
@@ -731,23 +1154,123 @@ public class MVCCTransactionalCacheImpl<K, V> extends AbstractMVCCTransactionalC
             }
         }
 
-        for (Map.Entry<K, VersionCacheKey<K>> entry : retryMap.entrySet()) {
-            waitForCommit(entry.getValue(), tid);
-            while (true) {
-                ProcessorResult<K, R> epr = (ProcessorResult<K, R>) keyCache.invoke(entry.getKey(), entryProcessor);
+        retryUntilCommitted(retryMap, tid, entryProcessor, resultMap, changedKeys);
+
+        return new InvocationFinalResult<K, R>(resultMap, changedKeys);
+    }
+    
+    /**
+     * Wait for uncommitted entries to be committed or rolled back and invoke an EntryProcessor
+     * again on the keys that were waiting for them, until no keys are waiting. Waits are batched:
+     * each round waits for any of the outstanding entries, then retries all the keys that are resolved.
+     * If server side waiting is configured, the keys are first sent through the wait service to the
+     * members that own them, to wait and retry there, and only the keys still uncommitted are retried
+     * from the client. Finally check that the results have not been overtaken by a vacuum.
+     * @param retryMap map of key to the uncommitted version cache entry it is waiting for
+     * @param tid transaction id
+     * @param entryProcessor the entry processor
+     * @param resultMap map to add EntryProcessor results to
+     * @param changedKeys map to add changed keys to, or null if not required
+     * @param <R> EntryProcessor result type
+     */
+    @SuppressWarnings("unchecked")
+    private <R> void retryUntilCommitted(final Map<K, VersionCacheKey<K>> retryMap, final TransactionId tid,
+            final EntryProcessor entryProcessor, final Map<K, R> resultMap,
+            final Map<CacheName, Set<Object>> changedKeys) {
+        
+        if (serverWaitTimeout > 0 && !retryMap.isEmpty()) {
+            waitOnServer(retryMap, tid, entryProcessor, resultMap, changedKeys);
+        }
+        
+        while (!retryMap.isEmpty()) {
+            Set<K> retryKeys = getResolvedKeys(retryMap, waitForAnyCommit(retryMap.values(), tid));
+            retryMap.keySet().removeAll(retryKeys);
+            
+            for (Map.Entry<K, ProcessorResult<K, R>> entry
+                    : ((Map<K, ProcessorResult<K, R>>) keyCache.invokeAll(retryKeys, entryProcessor)).entrySet()) {
+                ProcessorResult<K, R> epr = entry.getValue();
                 if (epr == null) {
-                    break;
+                    continue;
                 }
-                if (!epr.isUncommitted()) {
+                if (epr.isUncommitted()) {
+                    retryMap.put(entry.getKey(), epr.getWaitKey());
+                } else {
                     resultMap.put(entry.getKey(), epr.getResult());
-                    MapUtils.mergeSets(changedKeys, epr.getChangedCacheKeys());
-                    break;
+                    if (changedKeys != null) {
+                        MapUtils.mergeSets(changedKeys, epr.getChangedCacheKeys());
+                    }
                 }
-                waitForCommit(epr.getWaitKey(), tid);
             }
         }
+        
+        checkNotVacuumed(tid);
+    }
+    
+    /**
+     * Send the keys waiting for uncommitted entries through the wait service to the members that
+     * own them, which wait up to the server wait timeout for the entries to be committed or rolled
+     * back and invoke the EntryProcessor again. Only keys found uncommitted are sent, so the threads
+     * held by the waits are never needed by requests that do not wait.
+     * @param retryMap map of key to the uncommitted version cache entry it is waiting for,
+     * left holding the keys that are still uncommitted
+     * @param tid transaction id
+     * @param entryProcessor the entry processor
+     * @param resultMap map to add EntryProcessor results to
+     * @param changedKeys map to add changed keys to, or null if not required
+     * @param <R> EntryProcessor result type
+     */
+    private <R> void waitOnServer(final Map<K, VersionCacheKey<K>> retryMap, final TransactionId tid,
+            final EntryProcessor entryProcessor, final Map<K, R> resultMap,
+            final Map<CacheName, Set<Object>> changedKeys) {
+        
+        InvocationServiceHelper<EntryProcessorInvokerResult<K, R>> invocationHelper =
+                new InvocationServiceHelper<EntryProcessorInvokerResult<K, R>>(waitServiceName);
+        InvocableFactory<Set<K>> invocableFactory = new InvocableFactory<Set<K>>() {
 
-        return new InvocationFinalResult<K, R>(resultMap, changedKeys);
+            @Override
+            public Invocable getInvocable(final Set<K> invocationTargetSet) {
+                return new KeySetProcessorInvoker<K, R>(
+                        cacheName, invocationTargetSet, tid, entryProcessor, serverWaitTimeout);
+            }
+            
+        };
+        
+        invocationHelper.invokeActionForKeyset(cacheName, new HashSet<K>(retryMap.keySet()), invocableFactory);
+        
+        Collection<EntryProcessorInvokerResult<K, R>> invocationResults;
+        try {
+            invocationResults = invocationHelper.waitForAllInvocations();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+        
+        retryMap.clear();
+        for (EntryProcessorInvokerResult<K, R> result : invocationResults) {
+            resultMap.putAll(result.getResultMap());
+            retryMap.putAll(result.getRetryMap());
+            if (changedKeys != null) {
+                MapUtils.mergeSets(changedKeys, result.getChangedKeys());
+            }
+        }
+    }
+    
+    /**
+     * Get the keys that were waiting for entries that have been committed or rolled back.
+     * @param retryMap map of key to the uncommitted version cache entry it is waiting for
+     * @param resolved the version cache keys of the entries committed or rolled back
+     * @return the keys to retry
+     */
+    private Set<K> getResolvedKeys(final Map<K, VersionCacheKey<K>> retryMap,
+            final Set<VersionCacheKey<K>> resolved) {
+        Set<K> result = new HashSet<K>();
+        for (Map.Entry<K, VersionCacheKey<K>> entry : retryMap.entrySet()) {
+            if (resolved.contains(entry.getValue())) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
     }
 
     /**
@@ -0,0 +1,123 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.cache.internal;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Read only view of the results of a filter based invocation that are fetched
+ * as the view is iterated, rather than held in memory. Each call to {@link #iterator()}
+ * runs the invocation again, so methods that must visit every element, such as
+ * {@link #contains(Object)} and {@link #size()}, are as expensive as a full iteration.
+ * The view is not a snapshot: each iteration sees the writes the transaction has made since
+ * the last, so nothing is cached between calls.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ * @param <K> key type of the cache
+ * @param <R> result type of the invocation
+ * @param <E> element type of the view
+ */
+public class PagedResultCollection<K, R, E> extends AbstractCollection<E> {
+
+    /**
+     * The part of each result entry presented as an element of the view.
+     */
+    public enum View {
+        /** the cache key. */
+        KEYS,
+        /** the invocation result. */
+        VALUES,
+        /** the key and result entry. */
+        ENTRIES;
+
+        /**
+         * @param entry the result entry
+         * @return the element of this view for the entry
+         */
+        private Object project(final Map.Entry<?, ?> entry) {
+            switch (this) {
+            case KEYS:
+                return entry.getKey();
+            case VALUES:
+                return entry.getValue();
+            default:
+                return entry;
+            }
+        }
+    }
+
+    private final Iterable<Map.Entry<K, R>> results;
+    private final View view;
+
+    /**
+     * Constructor.
+     * @param results source of the result entries
+     * @param view the part of each entry to present
+     */
+    public PagedResultCollection(final Iterable<Map.Entry<K, R>> results, final View view) {
+        super();
+        this.results = results;
+        this.view = view;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        final Iterator<Map.Entry<K, R>> entries = results.iterator();
+        return new Iterator<E>() {
+
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public E next() {
+                return (E) view.project(entries.next());
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        int count = 0;
+        for (Iterator<Map.Entry<K, R>> entries = results.iterator(); entries.hasNext(); entries.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !results.iterator().hasNext();
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.cache.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.shadowmvcc.coherence.processor.Reducer;
+import com.tangosol.io.pof.annotation.Portable;
+import com.tangosol.io.pof.annotation.PortableProperty;
+import com.tangosol.util.InvocableMap.Entry;
+import com.tangosol.util.comparator.SafeComparator;
+import com.tangosol.util.processor.AbstractProcessor;
+
+/**
+ * {@code EntryProcessor} that returns the value of each entry, and reduces the results
+ * on each member to the first entries in the order of a comparator on the values,
+ * so that only those need be sent to the client for merging.
+ * 
+ * Entries with equal values are ordered by key if the keys are {@link Comparable}, so that
+ * successive pages of a sorted query select the same entries.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ * @param <K> key type of the cache
+ * @param <V> value type of the cache
+ */
+@Portable
+public class TopNProcessor<K, V> extends AbstractProcessor implements Reducer {
+
+    private static final long serialVersionUID = -3853264309172045219L;
+    public static final int POF_COMPARATOR = 0;
+    @PortableProperty(POF_COMPARATOR)
+    private Comparator<V> comparator;
+    public static final int POF_LIMIT = 1;
+    @PortableProperty(POF_LIMIT)
+    private int limit;
+
+    /**
+     * Default constructor for POF use only.
+     */
+    public TopNProcessor() {
+        super();
+    }
+
+    /**
+     * @param comparator comparator on the values, or null for their natural ordering
+     * @param limit the number of entries to return from each member
+     */
+    public TopNProcessor(final Comparator<V> comparator, final int limit) {
+        super();
+        this.comparator = comparator;
+        this.limit = limit;
+    }
+
+    @Override
+    public Object process(final Entry entry) {
+        return entry.getValue();
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Override
+    public Map reduce(final Map processorResults) {
+        Map<K, V> result = new LinkedHashMap<K, V>();
+        for (Map.Entry<K, V> entry : first(((Map<K, V>) processorResults).entrySet(), comparator, limit)) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Select the first entries in order of value.
+     * @param entries the entries
+     * @param comparator comparator on the values, or null for their natural ordering
+     * @param limit maximum number of entries to select
+     * @return the selected entries, in order
+     * @param <K> key type
+     * @param <V> value type
+     */
+    public static <K, V> List<Map.Entry<K, V>> first(final Collection<Map.Entry<K, V>> entries,
+            final Comparator<V> comparator, final int limit) {
+
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        Comparator<Map.Entry<K, V>> entryComparator = getEntryComparator(comparator);
+
+        // keep the first entries seen so far, last first, in a bounded heap
+        PriorityQueue<Map.Entry<K, V>> heap = new PriorityQueue<Map.Entry<K, V>>(
+                Math.min(limit, Math.max(entries.size(), 1)), Collections.reverseOrder(entryComparator));
+        for (Map.Entry<K, V> entry : entries) {
+            if (heap.size() < limit) {
+                heap.add(entry);
+            } else if (entryComparator.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        List<Map.Entry<K, V>> result = new ArrayList<Map.Entry<K, V>>(heap);
+        Collections.sort(result, entryComparator);
+        return result;
+    }
+
+    /**
+     * @param comparator comparator on the values, or null for their natural ordering
+     * @return comparator on entries by value, then by key
+     * @param <K> key type
+     * @param <V> value type
+     */
+    private static <K, V> Comparator<Map.Entry<K, V>> getEntryComparator(final Comparator<V> comparator) {
+        final SafeComparator valueComparator = new SafeComparator(comparator);
+        final SafeComparator keyComparator = new SafeComparator();
+        return new Comparator<Map.Entry<K, V>>() {
+            @Override
+            public int compare(final Map.Entry<K, V> entry1, final Map.Entry<K, V> entry2) {
+                int result = valueComparator.compare(entry1.getValue(), entry2.getValue());
+                if (result == 0 && entry1.getKey() instanceof Comparable && entry2.getKey() instanceof Comparable) {
+                    result = keyComparator.compare(entry1.getKey(), entry2.getKey());
+                }
+                return result;
+            }
+        };
+    }
+
+}
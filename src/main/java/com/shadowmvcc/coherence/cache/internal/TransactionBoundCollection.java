@@ -0,0 +1,107 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.cache.internal;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+
+import com.shadowmvcc.coherence.transaction.Transaction;
+import com.shadowmvcc.coherence.transaction.TransactionException;
+
+/**
+ * Read only view of a collection that is read lazily at the id of a transaction, such as a
+ * {@link PagedResultCollection}. Once the transaction has committed, rolled back or expired
+ * its id no longer holds back the vacuum, so the view refuses to be read any further.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ * @param <E> element type of the view
+ */
+public class TransactionBoundCollection<E> extends AbstractCollection<E> {
+
+    private final Collection<E> delegate;
+    private final Transaction transaction;
+
+    /**
+     * Constructor.
+     * @param delegate the lazily read collection
+     * @param transaction the transaction it is read in
+     */
+    public TransactionBoundCollection(final Collection<E> delegate, final Transaction transaction) {
+        super();
+        this.delegate = delegate;
+        this.transaction = transaction;
+    }
+
+    /**
+     * Check that the transaction is still open and has not expired.
+     */
+    protected void checkTransaction() {
+        if (transaction.isExpired()) {
+            throw new TransactionException("Transaction " + transaction.getTransactionId() + " has expired");
+        }
+        if (!transaction.isOpen()) {
+            throw new TransactionException("Transaction " + transaction.getTransactionId() + " is complete");
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        checkTransaction();
+        final Iterator<E> elements = delegate.iterator();
+        return new Iterator<E>() {
+
+            @Override
+            public boolean hasNext() {
+                checkTransaction();
+                return elements.hasNext();
+            }
+
+            @Override
+            public E next() {
+                checkTransaction();
+                return elements.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        checkTransaction();
+        return delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        checkTransaction();
+        return delegate.isEmpty();
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.cache.internal;
+
+import java.util.Iterator;
+import java.util.Set;
+
+import com.shadowmvcc.coherence.transaction.Transaction;
+
+/**
+ * {@link TransactionBoundCollection} of distinct elements.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ * @param <E> element type of the view
+ */
+public class TransactionBoundSet<E> extends TransactionBoundCollection<E> implements Set<E> {
+
+    /**
+     * Constructor.
+     * @param delegate the lazily read set
+     * @param transaction the transaction it is read in
+     */
+    public TransactionBoundSet(final Set<E> delegate, final Transaction transaction) {
+        super(delegate, transaction);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof Set)) {
+            return false;
+        }
+        Set<?> other = (Set<?>) obj;
+        return other.size() == size() && containsAll(other);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (Iterator<E> it = iterator(); it.hasNext();) {
+            E element = it.next();
+            if (element != null) {
+                hash += element.hashCode();
+            }
+        }
+        return hash;
+    }
+
+}
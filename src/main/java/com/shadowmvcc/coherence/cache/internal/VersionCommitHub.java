@@ -0,0 +1,382 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.cache.internal;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.VersionCacheKey;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.shadowmvcc.coherence.invocable.DecorationExtractorProcessor;
+import com.shadowmvcc.coherence.transaction.internal.TransactionCache;
+import com.shadowmvcc.coherence.transaction.internal.TransactionExpiryHub;
+import com.shadowmvcc.coherence.transaction.internal.TransactionExpiryListener;
+import com.tangosol.net.BackingMapManagerContext;
+import com.tangosol.net.CacheFactory;
+import com.tangosol.net.CacheService;
+import com.tangosol.net.NamedCache;
+import com.tangosol.util.AbstractMapListener;
+import com.tangosol.util.Converter;
+import com.tangosol.util.MapEvent;
+
+/**
+ * Per client, per version cache distributor of commit and rollback events. A lite key
+ * listener is registered with the version cache for each entry waited on by any thread
+ * of the client, when the first thread starts waiting on it, and removed when the last
+ * stops waiting, so the client receives events only for the entries it is waiting for.
+ * Update and delete events, i.e. commits and rollbacks, are passed to the
+ * {@link VersionCommitListener} of each thread waiting for that entry.
+ * 
+ * A storage member waiting for entries it owns uses a local hub instead, which listens
+ * to the version cache backing map on the member and so receives only the events for
+ * its own entries. A local hub does not survive a restart of the cache service, so waits
+ * on a local hub should always be bounded.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public final class VersionCommitHub extends AbstractMapListener {
+
+    private static final ConcurrentMap<CacheName, VersionCommitHub> HUBS =
+            new ConcurrentHashMap<CacheName, VersionCommitHub>();
+    private static final ConcurrentMap<CacheName, VersionCommitHub> LOCALHUBS =
+            new ConcurrentHashMap<CacheName, VersionCommitHub>();
+    
+    private static final int REGISTRATION_LOCKS = 64;
+    
+    private final CacheName cacheName;
+    private final boolean local;
+    private final ConcurrentMap<Object, Set<VersionCommitListener>> waiters =
+            new ConcurrentHashMap<Object, Set<VersionCommitListener>>();
+    private final Object[] registrationLocks = new Object[REGISTRATION_LOCKS];
+    private volatile NamedCache versionCache = null;
+    private Converter keyToInternal = null;
+    private Converter keyFromInternal = null;
+
+    /**
+     * Constructor.
+     * @param cacheName the cache name
+     * @param local true to listen to the backing map on this member
+     */
+    private VersionCommitHub(final CacheName cacheName, final boolean local) {
+        super();
+        this.cacheName = cacheName;
+        this.local = local;
+        for (int i = 0; i < REGISTRATION_LOCKS; i++) {
+            registrationLocks[i] = new Object();
+        }
+    }
+    
+    /**
+     * Constructor for a client hub on a given version cache, for unit testing.
+     * @param cacheName the cache name
+     * @param versionCache the version cache
+     */
+    VersionCommitHub(final CacheName cacheName, final NamedCache versionCache) {
+        this(cacheName, false);
+        this.versionCache = versionCache;
+    }
+    
+    /**
+     * Get the hub for a cache, registering its listener if this is the first use.
+     * @param cacheName the cache name
+     * @return the hub
+     */
+    public static VersionCommitHub getHub(final CacheName cacheName) {
+        return getHub(cacheName, false);
+    }
+    
+    /**
+     * Get the hub for a cache, registering its listener if this is the first use.
+     * @param cacheName the cache name
+     * @param local true for the hub on the local backing map
+     * @return the hub
+     */
+    private static VersionCommitHub getHub(final CacheName cacheName, final boolean local) {
+        ConcurrentMap<CacheName, VersionCommitHub> hubs = local ? LOCALHUBS : HUBS;
+        VersionCommitHub hub = hubs.get(cacheName);
+        if (hub == null) {
+            VersionCommitHub newHub = new VersionCommitHub(cacheName, local);
+            hub = hubs.putIfAbsent(cacheName, newHub);
+            if (hub == null) {
+                hub = newHub;
+            }
+        }
+        hub.ensureListener();
+        return hub;
+    }
+    
+    /**
+     * Wait until at least one of a collection of uncommitted version cache entries is committed
+     * or rolled back. Entries that are already committed or no longer exist are returned immediately.
+     * @param awaitedKeys the keys of the entries to wait for
+     * @param waiter the waiter for the calling thread, which should be registered for expiry of
+     * the calling transaction
+     * @return the keys of the entries committed or rolled back
+     * @param <K> the logical key type
+     */
+    public static <K> Set<VersionCacheKey<K>> waitForAny(
+            final Collection<VersionCacheKey<K>> awaitedKeys, final VersionCommitListener waiter) {
+        return waitForAny(awaitedKeys, waiter, false, 0);
+    }
+    
+    /**
+     * Wait on a storage member until at least one of a collection of uncommitted version cache entries
+     * owned by the member is committed or rolled back, or the timeout elapses.
+     * Entries that are already committed or no longer exist are returned immediately.
+     * Throws TransactionException if the waiting transaction expires while waiting.
+     * @param awaitedKeys the keys of the entries to wait for
+     * @param transactionId id of the waiting transaction
+     * @param timeout maximum time to wait in milliseconds
+     * @return the keys of the entries committed or rolled back, empty if the wait timed out
+     * @param <K> the logical key type
+     */
+    public static <K> Set<VersionCacheKey<K>> waitForAnyLocal(final Collection<VersionCacheKey<K>> awaitedKeys,
+            final TransactionId transactionId, final long timeout) {
+        VersionCommitListener waiter = new VersionCommitListener();
+        TransactionExpiryListener expiryListener = new TransactionExpiryListener(waiter);
+        TransactionExpiryHub.getInstance().addListener(
+                CacheFactory.getCache(TransactionCache.CACHENAME), transactionId, expiryListener);
+        try {
+            return waitForAny(awaitedKeys, waiter, true, timeout);
+        } finally {
+            TransactionExpiryHub.getInstance().removeListener(transactionId, expiryListener);
+        }
+    }
+    
+    /**
+     * Wait until at least one of a collection of uncommitted version cache entries is committed
+     * or rolled back.
+     * @param awaitedKeys the keys of the entries to wait for
+     * @param waiter the waiter for the calling thread
+     * @param local true to wait on the local hub
+     * @param timeout maximum time to wait in milliseconds on the local hub
+     * @return the keys of the entries committed or rolled back
+     * @param <K> the logical key type
+     */
+    private static <K> Set<VersionCacheKey<K>> waitForAny(final Collection<VersionCacheKey<K>> awaitedKeys,
+            final VersionCommitListener waiter, final boolean local, final long timeout) {
+        
+        Map<CacheName, Set<VersionedKey<K>>> keysByCache = new HashMap<CacheName, Set<VersionedKey<K>>>();
+        for (VersionCacheKey<K> awaitedKey : awaitedKeys) {
+            Set<VersionedKey<K>> keys = keysByCache.get(awaitedKey.getCacheName());
+            if (keys == null) {
+                keys = new HashSet<VersionedKey<K>>();
+                keysByCache.put(awaitedKey.getCacheName(), keys);
+            }
+            keys.add(awaitedKey.getKey());
+        }
+        
+        try {
+            for (Map.Entry<CacheName, Set<VersionedKey<K>>> entry : keysByCache.entrySet()) {
+                getHub(entry.getKey(), local).addWaiter(entry.getValue(), waiter);
+            }
+            
+            Set<VersionCacheKey<K>> result = new HashSet<VersionCacheKey<K>>();
+            for (Map.Entry<CacheName, Set<VersionedKey<K>>> entry : keysByCache.entrySet()) {
+                NamedCache cache = CacheFactory.getCache(entry.getKey().getVersionCacheName());
+                @SuppressWarnings("unchecked")
+                Map<VersionedKey<K>, Boolean> committed = cache.invokeAll(
+                        entry.getValue(), DecorationExtractorProcessor.COMMITTED_INSTANCE);
+                for (VersionedKey<K> key : entry.getValue()) {
+                    if (!Boolean.FALSE.equals(committed.get(key))) {
+                        result.add(new VersionCacheKey<K>(entry.getKey(), key));
+                    }
+                }
+            }
+            
+            if (result.isEmpty()) {
+                for (VersionCacheKey<?> resolved : local ? waiter.waitForAny(timeout) : waiter.waitForAny()) {
+                    @SuppressWarnings("unchecked")
+                    VersionCacheKey<K> resolvedKey = (VersionCacheKey<K>) resolved;
+                    result.add(resolvedKey);
+                }
+            }
+            
+            return result;
+            
+        } finally {
+            for (Map.Entry<CacheName, Set<VersionedKey<K>>> entry : keysByCache.entrySet()) {
+                getHub(entry.getKey(), local).removeWaiter(entry.getValue(), waiter);
+            }
+        }
+    }
+
+    /**
+     * Get the version cache, and for a local hub register the listener with the backing map,
+     * if not already done.
+     */
+    private void ensureListener() {
+        if (versionCache == null) {
+            synchronized (this) {
+                if (versionCache == null) {
+                    NamedCache cache = CacheFactory.getCache(cacheName.getVersionCacheName());
+                    if (local) {
+                        BackingMapManagerContext context =
+                                ((CacheService) cache.getCacheService()).getBackingMapManager().getContext();
+                        keyToInternal = context.getKeyToInternalConverter();
+                        keyFromInternal = context.getKeyFromInternalConverter();
+                        context.getBackingMapContext(cacheName.getVersionCacheName())
+                                .getBackingMap().addMapListener(this);
+                    }
+                    versionCache = cache;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Register a waiter for a set of keys.
+     * @param keys the version cache keys
+     * @param waiter the waiter
+     */
+    void addWaiter(final Collection<?> keys, final VersionCommitListener waiter) {
+        for (Object key : toWaiterKeys(keys)) {
+            Set<VersionCommitListener> keyWaiters = waiters.get(key);
+            while (true) {
+                if (keyWaiters == null) {
+                    keyWaiters = createWaiters(key);
+                }
+                synchronized (keyWaiters) {
+                    if (waiters.get(key) == keyWaiters) {
+                        keyWaiters.add(waiter);
+                        break;
+                    }
+                }
+                keyWaiters = null;
+            }
+        }
+    }
+    
+    /**
+     * Remove a waiter for a set of keys.
+     * @param keys the version cache keys
+     * @param waiter the waiter
+     */
+    void removeWaiter(final Collection<?> keys, final VersionCommitListener waiter) {
+        for (Object key : toWaiterKeys(keys)) {
+            Set<VersionCommitListener> keyWaiters = waiters.get(key);
+            if (keyWaiters != null) {
+                synchronized (keyWaiters) {
+                    if (keyWaiters.remove(waiter) && keyWaiters.isEmpty()) {
+                        discardWaiters(key, keyWaiters);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the waiters for a key, creating them and registering a key listener with
+     * the version cache if there are none.
+     * @param key the waiter key
+     * @return the waiters for the key
+     */
+    private Set<VersionCommitListener> createWaiters(final Object key) {
+        synchronized (getRegistrationLock(key)) {
+            Set<VersionCommitListener> keyWaiters = waiters.get(key);
+            if (keyWaiters == null) {
+                keyWaiters = new CopyOnWriteArraySet<VersionCommitListener>();
+                if (!local) {
+                    versionCache.addMapListener(this, key, true);
+                }
+                waiters.put(key, keyWaiters);
+            }
+            return keyWaiters;
+        }
+    }
+    
+    /**
+     * Discard the empty waiters for a key, removing its key listener from the version cache.
+     * Creation and discard for a key are serialised, so the key listener is registered
+     * whenever there are waiters for the key.
+     * @param key the waiter key
+     * @param keyWaiters the empty waiters
+     */
+    private void discardWaiters(final Object key, final Set<VersionCommitListener> keyWaiters) {
+        synchronized (getRegistrationLock(key)) {
+            if (waiters.remove(key, keyWaiters) && !local) {
+                versionCache.removeMapListener(this, key);
+            }
+        }
+    }
+    
+    /**
+     * @param key the waiter key
+     * @return the lock serialising creation and discard of the waiters for the key
+     */
+    private Object getRegistrationLock(final Object key) {
+        return registrationLocks[(key.hashCode() & Integer.MAX_VALUE) % REGISTRATION_LOCKS];
+    }
+
+    /**
+     * Get the keys under which waiters are held. A local hub receives events
+     * from the backing map, so its waiters are held by the internal form of the key.
+     * @param keys the version cache keys
+     * @return the waiter keys
+     */
+    private Collection<?> toWaiterKeys(final Collection<?> keys) {
+        if (!local) {
+            return keys;
+        }
+        Set<Object> result = new HashSet<Object>();
+        for (Object key : keys) {
+            result.add(keyToInternal.convert(key));
+        }
+        return result;
+    }
+
+    /**
+     * Notify the waiters for the key of an event.
+     * @param mapevent the event
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void notifyWaiters(final MapEvent mapevent) {
+        Set<VersionCommitListener> keyWaiters = waiters.get(mapevent.getKey());
+        if (keyWaiters != null) {
+            Object key = local ? keyFromInternal.convert(mapevent.getKey()) : mapevent.getKey();
+            VersionCacheKey resolvedKey = new VersionCacheKey(cacheName, (VersionedKey) key);
+            for (VersionCommitListener waiter : keyWaiters) {
+                waiter.keyResolved(resolvedKey);
+            }
+        }
+    }
+
+    @Override
+    public void entryUpdated(final MapEvent mapevent) {
+        notifyWaiters(mapevent);
+    }
+
+    @Override
+    public void entryDeleted(final MapEvent mapevent) {
+        notifyWaiters(mapevent);
+    }
+}
@@ -22,22 +22,27 @@ along with Shadow MVCC for Oracle Coherence.  If not, see
 
 package com.shadowmvcc.coherence.cache.internal;
 
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+import com.shadowmvcc.coherence.domain.VersionCacheKey;
 import com.shadowmvcc.coherence.transaction.TransactionException;
 import com.shadowmvcc.coherence.transaction.internal.TransactionExpiryMonitor;
-import com.tangosol.util.AbstractMapListener;
-import com.tangosol.util.MapEvent;
 
 /**
- * {@code MapListener} implementation used to wait for a cache entry to be committed.
+ * Used by a thread to wait for one or more uncommitted version cache entries to be committed
+ * or rolled back. The waiter is registered with the {@link VersionCommitHub} of each cache,
+ * which notifies it when an awaited entry changes.
  * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
  */
-public class VersionCommitListener extends AbstractMapListener implements TransactionExpiryMonitor {
+public class VersionCommitListener implements TransactionExpiryMonitor {
 
     private final Semaphore completeFlag;
+    private final Set<VersionCacheKey<?>> resolvedKeys = new HashSet<VersionCacheKey<?>>();
     private volatile boolean expired = false;
 
     /**
@@ -48,13 +53,14 @@ public class VersionCommitListener extends AbstractMapListener implements Transa
         this.completeFlag = new Semaphore(0);
     }
 
-    @Override
-    public void entryUpdated(final MapEvent mapevent) {
-        completeFlag.release();
-    }
-
-    @Override
-    public void entryDeleted(final MapEvent mapevent) {
+    /**
+     * Notify that an awaited entry has been committed or rolled back.
+     * @param key the version cache key of the entry
+     */
+    public void keyResolved(final VersionCacheKey<?> key) {
+        synchronized (resolvedKeys) {
+            resolvedKeys.add(key);
+        }
         completeFlag.release();
     }
 
@@ -63,6 +69,15 @@ public class VersionCommitListener extends AbstractMapListener implements Transa
      * committed or rolled back.
      */
     public void waitForCommit() {
+        waitForAny();
+    }
+
+    /**
+     * Block until at least one of the entries being monitored has been
+     * committed or rolled back.
+     * @return the keys of the entries committed or rolled back so far
+     */
+    public Set<VersionCacheKey<?>> waitForAny() {
         try {
             completeFlag.acquire();
         } catch (InterruptedException e) {
@@ -72,6 +87,34 @@ public class VersionCommitListener extends AbstractMapListener implements Transa
         if (expired) {
             throw new TransactionException("Transaction expired while waiting for uncommitted entry");
         }
+        
+        synchronized (resolvedKeys) {
+            return new HashSet<VersionCacheKey<?>>(resolvedKeys);
+        }
+    }
+
+    /**
+     * Block until at least one of the entries being monitored has been
+     * committed or rolled back, or the timeout has elapsed.
+     * @param timeout maximum time to wait in milliseconds
+     * @return the keys of the entries committed or rolled back so far, empty if the wait timed out
+     */
+    public Set<VersionCacheKey<?>> waitForAny(final long timeout) {
+        try {
+            if (!completeFlag.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                return new HashSet<VersionCacheKey<?>>();
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        
+        if (expired) {
+            throw new TransactionException("Transaction expired while waiting for uncommitted entry");
+        }
+        
+        synchronized (resolvedKeys) {
+            return new HashSet<VersionCacheKey<?>>(resolvedKeys);
+        }
     }
 
     @Override
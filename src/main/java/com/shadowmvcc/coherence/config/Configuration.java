@@ -34,6 +34,20 @@ public interface Configuration {
      * @return the service name
      */
     String getInvocationServiceName();
+    /**
+     * Get the name of the invocation service used to complete transactions. This must
+     * not be the invocation service, whose workers may be held waiting for uncommitted
+     * versions while the transactions that would resolve them are completed.
+     * @return the service name
+     */
+    String getCompletionServiceName();
+    /**
+     * Get the name of the invocation service used to wait on storage members for uncommitted
+     * versions. Only keys found uncommitted are sent to it, so requests that do not wait never
+     * queue behind those that do. This must not be the invocation service or the completion service.
+     * @return the service name
+     */
+    String getWaitServiceName();
     /**
      * Get the transaction timeout. Older transactions will be rolled back
      * @return the timeout in milliseconds
@@ -48,9 +62,101 @@ public interface Configuration {
      */
     long getTransactionCompletionTimeout();
     /**
-     * Get the poll interval for transaction monitor thread. This is how often
-     * the monitor checks for timed out open or not completed transactions.
+     * Get the margin allowed for the transaction monitor to act on a timed out transaction.
+     * It is added to the timeouts when validating the minimum snapshot age. The monitor
+     * acts on each transaction at its own deadline, to the resolution given by
+     * {@link #getTransactionExpiryTick()}.
      * @return the poll interval in milliseconds
      */
     long getTransactionPollInterval();
+    /**
+     * Should version cache keys be serialised with a fixed width binary transaction id
+     * that can be read directly from the serialised key. Must be the same for all
+     * members and clients of the cluster, and cannot be changed while the cluster holds data.
+     * @return true if the binary transaction id format is used
+     */
+    boolean isBinaryVersionKeys();
+    /**
+     * Get the maximum number of versions removed in one batch when purging
+     * superseded versions for a snapshot. Each batch is confined to a single partition.
+     * @return the batch size
+     */
+    int getSnapshotPurgeBatchSize();
+    /**
+     * Get the pause between snapshot purge batches, limiting the rate at which
+     * versions are removed.
+     * @return the interval in milliseconds
+     */
+    long getSnapshotPurgeInterval();
+    /**
+     * Get the interval between passes of the version vacuum, which removes versions
+     * superseded at the cluster low watermark on each storage member. Zero
+     * disables the vacuum.
+     * @return the interval in milliseconds
+     */
+    long getVacuumInterval();
+    /**
+     * Get the time for which a temporal cache view is registered. Versions read by a
+     * temporal view are protected from the vacuum only for this time after the view is created.
+     * Reads by the view fail once the cache has been vacuumed past its transaction id.
+     * @return the timeout in milliseconds
+     */
+    long getTemporalViewTimeout();
+    /**
+     * Get the time for which a storage member will wait for an uncommitted version to be
+     * committed or rolled back before returning it to the client to wait for. Zero disables
+     * waiting on the storage member, the client waits for all uncommitted versions.
+     * A waiting request occupies a thread of the wait service, see {@link #getWaitServiceName()},
+     * on the storage member, so its thread count should allow for the expected number of waits.
+     * @return the timeout in milliseconds
+     */
+    long getServerWaitTimeout();
+    /**
+     * Get the number of read timestamps held individually for a key before older reads
+     * are discarded or collapsed into a single high-water mark.
+     * @return the maximum number of read timestamps
+     */
+    int getMaxReadTimestamps();
+    /**
+     * Get the maximum number of transactions whose commit or rollback are completed together
+     * by the client. Zero or one disables group commit, each transaction is completed separately.
+     * @return the maximum group commit batch size
+     */
+    int getGroupCommitBatchSize();
+    /**
+     * Get the maximum time a group commit batch waits for further transactions after
+     * the first is added.
+     * @return the latency in milliseconds
+     */
+    long getGroupCommitLatency();
+    /**
+     * Get the number of client threads that complete asynchronous commits in the background.
+     * @return the number of threads
+     */
+    int getCommitCompleterThreads();
+    /**
+     * Get the number of transaction manager ids each client reserves from the cluster at a time.
+     * @return the number of ids to reserve
+     */
+    int getManagerIdBlockSize();
+    /**
+     * Get the resolution of the timer wheel used by each storage member to act on
+     * transactions that have exceeded their open or completion timeout.
+     * @return the tick interval in milliseconds
+     */
+    long getTransactionExpiryTick();
+    /**
+     * Get the maximum number of entries sent to a member in one request by putAll.
+     * Each member's entries are divided into batches of this size, and all batches
+     * are sent concurrently.
+     * @return the batch size
+     */
+    int getPutAllBatchSize();
+    /**
+     * Get the number of partitions fetched in each page by the iterators of
+     * keySet, values and entrySet. The next page is requested while the current
+     * one is being consumed. Must be at least 1.
+     * @return the number of partitions per page
+     */
+    int getIteratorPagePartitions();
 }
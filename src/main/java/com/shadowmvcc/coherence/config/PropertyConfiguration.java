@@ -20,12 +20,44 @@ public class PropertyConfiguration implements Configuration {
     public static final long DEFAULT_TRANSACTIONCOMPLETIONTIMEOUT = 20000;
     public static final long DEFAULT_TRANSACTIONPOLLINTERVAL = 30000;
     public static final String DEFAULT_INVOCATIONSERVICENAME = "InvocationService";
+    public static final String DEFAULT_COMPLETIONSERVICENAME = "TransactionCompletionService";
+    public static final String DEFAULT_WAITSERVICENAME = "ServerWaitService";
+    public static final boolean DEFAULT_BINARYVERSIONKEYS = false;
+    public static final int DEFAULT_SNAPSHOTPURGEBATCHSIZE = 1000;
+    public static final long DEFAULT_SNAPSHOTPURGEINTERVAL = 0;
+    public static final long DEFAULT_VACUUMINTERVAL = 0;
+    public static final long DEFAULT_TEMPORALVIEWTIMEOUT = 3600000;
+    public static final long DEFAULT_SERVERWAITTIMEOUT = 0;
+    public static final int DEFAULT_MAXREADTIMESTAMPS = 32;
+    public static final int DEFAULT_GROUPCOMMITBATCHSIZE = 0;
+    public static final long DEFAULT_GROUPCOMMITLATENCY = 0;
+    public static final int DEFAULT_COMMITCOMPLETERTHREADS = 2;
+    public static final int DEFAULT_MANAGERIDBLOCKSIZE = 16;
+    public static final long DEFAULT_TRANSACTIONEXPIRYTICK = 100;
+    public static final int DEFAULT_PUTALLBATCHSIZE = 1000;
+    public static final int DEFAULT_ITERATORPAGEPARTITIONS = 16;
     private final long maximumTransactionAge;
     private final long minimumSnapshotAge;
     private final String invocationServiceName;
+    private final String completionServiceName;
+    private final String waitServiceName;
     private final long openTransactionTimeout;
     private final long transactionCompletionTimeout;
     private final long transactionPollInterval;
+    private final boolean binaryVersionKeys;
+    private final int snapshotPurgeBatchSize;
+    private final long snapshotPurgeInterval;
+    private final long vacuumInterval;
+    private final long temporalViewTimeout;
+    private final long serverWaitTimeout;
+    private final int maxReadTimestamps;
+    private final int groupCommitBatchSize;
+    private final long groupCommitLatency;
+    private final int commitCompleterThreads;
+    private final int managerIdBlockSize;
+    private final long transactionExpiryTick;
+    private final int putAllBatchSize;
+    private final int iteratorPagePartitions;
     
     static final String PROPERTYFILENAME = "shadowmvcc.properties";
     static final String PROP_MINSNAPSHOTAGE = "minsnapshotage";
@@ -34,6 +66,22 @@ public class PropertyConfiguration implements Configuration {
     static final String PROP_TRANSACTIONCOMPLETIONTIMEOUT = "transactioncompletiontimeout";
     static final String PROP_TRANSACTIONPOLLINTERVAL = "transactionpollinterval";
     static final String PROP_INVOCATIONSERVICENAME = "invocationservicename";
+    static final String PROP_COMPLETIONSERVICENAME = "completionservicename";
+    static final String PROP_WAITSERVICENAME = "waitservicename";
+    static final String PROP_BINARYVERSIONKEYS = "binaryversionkeys";
+    static final String PROP_SNAPSHOTPURGEBATCHSIZE = "snapshotpurgebatchsize";
+    static final String PROP_SNAPSHOTPURGEINTERVAL = "snapshotpurgeinterval";
+    static final String PROP_VACUUMINTERVAL = "vacuuminterval";
+    static final String PROP_TEMPORALVIEWTIMEOUT = "temporalviewtimeout";
+    static final String PROP_SERVERWAITTIMEOUT = "serverwaittimeout";
+    static final String PROP_MAXREADTIMESTAMPS = "maxreadtimestamps";
+    static final String PROP_GROUPCOMMITBATCHSIZE = "groupcommitbatchsize";
+    static final String PROP_GROUPCOMMITLATENCY = "groupcommitlatency";
+    static final String PROP_COMMITCOMPLETERTHREADS = "commitcompleterthreads";
+    static final String PROP_MANAGERIDBLOCKSIZE = "manageridblocksize";
+    static final String PROP_TRANSACTIONEXPIRYTICK = "transactionexpirytick";
+    static final String PROP_PUTALLBATCHSIZE = "putallbatchsize";
+    static final String PROP_ITERATORPAGEPARTITIONS = "iteratorpagepartitions";
     static final String SYSTEM_PROPERTY_PREFIX = "shadowmvcc.";
     
     /**
@@ -56,6 +104,8 @@ public class PropertyConfiguration implements Configuration {
         }
         
         invocationServiceName = loadProperty(properties, PROP_INVOCATIONSERVICENAME, DEFAULT_INVOCATIONSERVICENAME);
+        completionServiceName = loadProperty(properties, PROP_COMPLETIONSERVICENAME, DEFAULT_COMPLETIONSERVICENAME);
+        waitServiceName = loadProperty(properties, PROP_WAITSERVICENAME, DEFAULT_WAITSERVICENAME);
         maximumTransactionAge = loadLongProperty(properties, PROP_MAXTRANSACTIONAGE, DEFAULT_MAXIMUMTRANSACTIONAGE);
         minimumSnapshotAge = loadLongProperty(properties, PROP_MINSNAPSHOTAGE, DEFAULT_MINIMUMSNAPSHOTAGE);
         openTransactionTimeout = loadLongProperty(
@@ -64,6 +114,29 @@ public class PropertyConfiguration implements Configuration {
                 properties, PROP_TRANSACTIONCOMPLETIONTIMEOUT, DEFAULT_TRANSACTIONCOMPLETIONTIMEOUT);
         transactionPollInterval = loadLongProperty(
                 properties, PROP_TRANSACTIONPOLLINTERVAL, DEFAULT_TRANSACTIONPOLLINTERVAL);
+        binaryVersionKeys = loadBooleanProperty(properties, PROP_BINARYVERSIONKEYS, DEFAULT_BINARYVERSIONKEYS);
+        snapshotPurgeBatchSize = loadLongProperty(
+                properties, PROP_SNAPSHOTPURGEBATCHSIZE, DEFAULT_SNAPSHOTPURGEBATCHSIZE).intValue();
+        snapshotPurgeInterval = loadLongProperty(
+                properties, PROP_SNAPSHOTPURGEINTERVAL, DEFAULT_SNAPSHOTPURGEINTERVAL);
+        vacuumInterval = loadLongProperty(properties, PROP_VACUUMINTERVAL, DEFAULT_VACUUMINTERVAL);
+        temporalViewTimeout = loadLongProperty(properties, PROP_TEMPORALVIEWTIMEOUT, DEFAULT_TEMPORALVIEWTIMEOUT);
+        serverWaitTimeout = loadLongProperty(properties, PROP_SERVERWAITTIMEOUT, DEFAULT_SERVERWAITTIMEOUT);
+        maxReadTimestamps = loadLongProperty(
+                properties, PROP_MAXREADTIMESTAMPS, DEFAULT_MAXREADTIMESTAMPS).intValue();
+        groupCommitBatchSize = loadLongProperty(
+                properties, PROP_GROUPCOMMITBATCHSIZE, DEFAULT_GROUPCOMMITBATCHSIZE).intValue();
+        groupCommitLatency = loadLongProperty(properties, PROP_GROUPCOMMITLATENCY, DEFAULT_GROUPCOMMITLATENCY);
+        commitCompleterThreads = loadLongProperty(
+                properties, PROP_COMMITCOMPLETERTHREADS, DEFAULT_COMMITCOMPLETERTHREADS).intValue();
+        managerIdBlockSize = loadLongProperty(
+                properties, PROP_MANAGERIDBLOCKSIZE, DEFAULT_MANAGERIDBLOCKSIZE).intValue();
+        transactionExpiryTick = loadLongProperty(
+                properties, PROP_TRANSACTIONEXPIRYTICK, DEFAULT_TRANSACTIONEXPIRYTICK);
+        putAllBatchSize = loadLongProperty(
+                properties, PROP_PUTALLBATCHSIZE, DEFAULT_PUTALLBATCHSIZE).intValue();
+        iteratorPagePartitions = loadLongProperty(
+                properties, PROP_ITERATORPAGEPARTITIONS, DEFAULT_ITERATORPAGEPARTITIONS).intValue();
         
         long minminSnapshotAge = maximumTransactionAge + openTransactionTimeout
                 + transactionCompletionTimeout + transactionPollInterval + SNAPSHOT_SAFETY_MARGIN;
@@ -73,6 +146,11 @@ public class PropertyConfiguration implements Configuration {
                     + " is too small, minimum value is " + minminSnapshotAge);
         }
         
+        if (iteratorPagePartitions < 1) {
+            throw new RuntimeException(PROP_ITERATORPAGEPARTITIONS + " " + iteratorPagePartitions
+                    + " is too small, minimum value is 1");
+        }
+        
     }
 
     /**
@@ -103,6 +181,21 @@ public class PropertyConfiguration implements Configuration {
         return stringProperty == null ? defaultValue : Long.parseLong(stringProperty);
     }
     
+    /**
+     * Load a boolean property from properties file, system property or default.
+     * @param properties file properties
+     * @param propertyName property name
+     * @param defaultValue default value
+     * @return the value to use
+     */
+    private boolean loadBooleanProperty(final Properties properties, final String propertyName,
+            final boolean defaultValue) {
+        
+        String stringProperty = getProperty(properties, propertyName);
+        
+        return stringProperty == null ? defaultValue : Boolean.parseBoolean(stringProperty);
+    }
+    
     /**
      * Get a property from the properties file or system property.
      * @param properties file properties
@@ -137,6 +230,16 @@ public class PropertyConfiguration implements Configuration {
         return invocationServiceName;
     }
 
+    @Override
+    public String getCompletionServiceName() {
+        return completionServiceName;
+    }
+
+    @Override
+    public String getWaitServiceName() {
+        return waitServiceName;
+    }
+
     @Override
     public long getOpenTransactionTimeout() {
         return openTransactionTimeout;
@@ -152,4 +255,74 @@ public class PropertyConfiguration implements Configuration {
         return transactionPollInterval;
     }
 
+    @Override
+    public boolean isBinaryVersionKeys() {
+        return binaryVersionKeys;
+    }
+
+    @Override
+    public int getSnapshotPurgeBatchSize() {
+        return snapshotPurgeBatchSize;
+    }
+
+    @Override
+    public long getSnapshotPurgeInterval() {
+        return snapshotPurgeInterval;
+    }
+
+    @Override
+    public long getVacuumInterval() {
+        return vacuumInterval;
+    }
+
+    @Override
+    public long getTemporalViewTimeout() {
+        return temporalViewTimeout;
+    }
+
+    @Override
+    public long getServerWaitTimeout() {
+        return serverWaitTimeout;
+    }
+
+    @Override
+    public int getMaxReadTimestamps() {
+        return maxReadTimestamps;
+    }
+
+    @Override
+    public int getGroupCommitBatchSize() {
+        return groupCommitBatchSize;
+    }
+
+    @Override
+    public long getGroupCommitLatency() {
+        return groupCommitLatency;
+    }
+
+    @Override
+    public int getCommitCompleterThreads() {
+        return commitCompleterThreads;
+    }
+
+    @Override
+    public int getManagerIdBlockSize() {
+        return managerIdBlockSize;
+    }
+
+    @Override
+    public long getTransactionExpiryTick() {
+        return transactionExpiryTick;
+    }
+
+    @Override
+    public int getPutAllBatchSize() {
+        return putAllBatchSize;
+    }
+
+    @Override
+    public int getIteratorPagePartitions() {
+        return iteratorPagePartitions;
+    }
+
 }
@@ -22,10 +22,7 @@ along with Shadow MVCC for Oracle Coherence.  If not, see
 
 package com.shadowmvcc.coherence.domain;
 
-import com.tangosol.io.pof.reflect.SimplePofPath;
 import com.tangosol.util.ExternalizableHelper;
-import com.tangosol.util.extractor.AbstractExtractor;
-import com.tangosol.util.extractor.PofExtractor;
 
 /**
  * Constants for the domain package.
@@ -42,25 +39,43 @@ public final class Constants {
     }
 
     /**
-     * An instance of {@code PofExtractor} that may be used to obtain the logical key
+     * An extractor that may be used to obtain the logical key
      * from the {@link VersionedKey} in the version cache.
      */
-    public static final PofExtractor LOGICALKEYEXTRACTOR = new PofExtractor(
-            null, new SimplePofPath(VersionedKey.POF_LOGICALKEY), AbstractExtractor.KEY);
+    public static final LogicalKeyExtractor LOGICALKEYEXTRACTOR = new LogicalKeyExtractor();
     /**
-     * An instance of {@code PofExtractor} that may be used to obtain the {@code TransactionId}
+     * An extractor that may be used to obtain the {@code TransactionId}
      * from the {@link VersionedKey} in the version cache.
      */
-    public static final PofExtractor TRANSACTIONIDEXTRACTOR = new PofExtractor(
-            null, new SimplePofPath(VersionedKey.POF_TRANSACTIONID), AbstractExtractor.KEY);
+    public static final TransactionIdExtractor TRANSACTIONIDEXTRACTOR = new TransactionIdExtractor();
     /**
-     * The decoration id used to store the commit status of a version cache entry.
+     * The decoration id formerly used to store the commit status of a version cache entry
+     * as a serialized {@code Boolean}. Still read from entries that have no {@link #DECO_FLAGS}
+     * decoration.
      */
     public static final int DECO_COMMIT = ExternalizableHelper.DECO_APP_1;
     
     /**
-     * The decoration id used to store the deleted status of a version cache entry.
+     * The decoration id formerly used to store the deleted status of a version cache entry
+     * as a serialized {@code Boolean}. Still read from entries that have no {@link #DECO_FLAGS}
+     * decoration.
      */
     public static final int DECO_DELETED = ExternalizableHelper.DECO_APP_2;
 
+    /**
+     * The decoration id used to store the status flags of a version cache entry
+     * as a single raw byte.
+     */
+    public static final int DECO_FLAGS = ExternalizableHelper.DECO_APP_3;
+
+    /**
+     * Flag bit set in the {@link #DECO_FLAGS} decoration if the entry is committed.
+     */
+    public static final byte FLAG_COMMITTED = 0x01;
+
+    /**
+     * Flag bit set in the {@link #DECO_FLAGS} decoration if the entry represents a delete.
+     */
+    public static final byte FLAG_DELETED = 0x02;
+
 }
@@ -22,24 +22,28 @@ along with Shadow MVCC for Oracle Coherence.  If not, see
 
 package com.shadowmvcc.coherence.domain;
 
-import com.tangosol.io.pof.annotation.Portable;
-import com.tangosol.io.pof.annotation.PortableProperty;
+import com.shadowmvcc.coherence.pof.EventValueSerializer;
 
 /**
  * Class to encapsulate the cache value, together with its commit and delete decorations. Native Coherence
  * events do not allow access to decorations so we must use a {@code MapEventTransformer} to
  * enrich into one of these events for propagation to the actual {@code MapListener}
  * 
+ * Serialised by {@link EventValueSerializer}.
+ * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
  * @param <V> the cache value type
  */
-@Portable
 public class EventValue<V> {
 
-    @PortableProperty(0) private boolean committed;
-    @PortableProperty(1) private boolean deleted;
-    @PortableProperty(2) private V value;
+    public static final int POF_COMMITTED = 0;
+    public static final int POF_DELETED = 1;
+    public static final int POF_VALUE = 2;
+
+    private boolean committed;
+    private boolean deleted;
+    private V value;
 
     /**
      *  Default constructor for POF use only.
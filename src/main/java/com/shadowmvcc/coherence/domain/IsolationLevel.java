@@ -25,6 +25,8 @@ package com.shadowmvcc.coherence.domain;
 /**
  * Transaction isolation levels, follows ISO convention with extensions.
  * 
+ * The ordinal is the serialised form, so new levels must only be added at the end.
+ * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
  */
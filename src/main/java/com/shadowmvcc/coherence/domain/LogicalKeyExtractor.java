@@ -0,0 +1,90 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.domain;
+
+import java.util.Map.Entry;
+
+import com.shadowmvcc.coherence.pof.VersionedKeySerializer;
+import com.tangosol.io.pof.annotation.Portable;
+import com.tangosol.io.pof.reflect.SimplePofPath;
+import com.tangosol.util.Binary;
+import com.tangosol.util.BinaryEntry;
+import com.tangosol.util.ExternalizableHelper;
+import com.tangosol.util.extractor.AbstractExtractor;
+import com.tangosol.util.extractor.PofExtractor;
+
+/**
+ * Extract the logical key from the key of a version cache entry. If the key is in the binary
+ * format the serialised logical key is sliced from it and deserialised directly, otherwise
+ * the POF stream is navigated.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+@Portable
+public class LogicalKeyExtractor extends AbstractExtractor {
+
+    private static final long serialVersionUID = 6046326925390271954L;
+
+    private static final PofExtractor POFEXTRACTOR = new PofExtractor(
+            null, new SimplePofPath(VersionedKey.POF_LOGICALKEY), AbstractExtractor.KEY);
+
+    /**
+     * Constructor.
+     */
+    public LogicalKeyExtractor() {
+        super();
+        m_nTarget = KEY;
+    }
+
+    @Override
+    public Object extractFromEntry(@SuppressWarnings("rawtypes") final Entry entry) {
+        if (!(entry instanceof BinaryEntry)) {
+            return extract(entry.getKey());
+        }
+        if (VersionedKeySerializer.isBinaryConfigured()) {
+            BinaryEntry binaryEntry = (BinaryEntry) entry;
+            Binary logicalKey = VersionedKeySerializer.getLogicalKeyBinary(binaryEntry.getBinaryKey());
+            if (logicalKey != null) {
+                return ExternalizableHelper.fromBinary(logicalKey, binaryEntry.getSerializer());
+            }
+        }
+        return POFEXTRACTOR.extractFromEntry(entry);
+    }
+
+    @Override
+    public Object extract(final Object oTarget) {
+        return ((VersionedKey<?>) oTarget).getLogicalKey();
+    }
+
+    @Override
+    public int hashCode() {
+        return LogicalKeyExtractor.class.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj != null && getClass() == obj.getClass();
+    }
+
+}
@@ -26,26 +26,32 @@ import java.util.Map;
 import java.util.Set;
 
 import com.shadowmvcc.coherence.cache.CacheName;
-import com.tangosol.io.pof.annotation.Portable;
-import com.tangosol.io.pof.annotation.PortableProperty;
+import com.shadowmvcc.coherence.pof.ProcessorResultSerializer;
 
 /**
  * Encapsulate the result of a single {@code EntryProcessor} invocation. This
  * may be the actual return value of a wrapped {@code EntryProcessor}, or the
  * version cache key of an uncommitted entry that prevented completion.
  * 
+ * Serialised by {@link ProcessorResultSerializer}.
+ * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
  * @param <K> the cache logical key type
  * @param <R> the wrapped {@code EntryProcessor} result type
  */
-@Portable
 public class ProcessorResult<K, R> {
 
-    @PortableProperty(0) private R result;
-    @PortableProperty(1) private VersionCacheKey<K> waitKey;
-    @PortableProperty(2) private boolean returnResult;
-    @PortableProperty(3) private Map<CacheName, Set<Object>> changedCacheKeys;
+    public static final int POF_RESULT = 0;
+    public static final int POF_WAITCACHENAME = 1;
+    public static final int POF_WAITKEY = 2;
+    public static final int POF_RETURNRESULT = 3;
+    public static final int POF_CHANGEDCACHEKEYS = 4;
+
+    private R result;
+    private VersionCacheKey<K> waitKey;
+    private boolean returnResult;
+    private Map<CacheName, Set<Object>> changedCacheKeys;
 
     /**
      *  Default constructor for POF use only.
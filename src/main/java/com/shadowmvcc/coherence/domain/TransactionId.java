@@ -27,8 +27,7 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
-import com.tangosol.io.pof.annotation.Portable;
-import com.tangosol.io.pof.annotation.PortableProperty;
+import com.shadowmvcc.coherence.pof.TransactionIdSerializer;
 
 /**
  * Transaction identifier. All entries associated with a given transaction
@@ -43,42 +42,43 @@ import com.tangosol.io.pof.annotation.PortableProperty;
  * transactions, and a sequence number to distinguish transactions
  * generated at high frequency (more than one in a millisecond interval)
  * 
+ * Instances are immutable. Serialised by {@link TransactionIdSerializer}, which returns
+ * the shared {@link #BIG_BANG} and {@link #END_OF_TIME} instances rather than new copies.
+ * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
  */
-@Portable
-public class TransactionId implements Comparable<TransactionId>, Serializable {
+public final class TransactionId implements Comparable<TransactionId>, Serializable {
 
     private static final long serialVersionUID = 1887978179867482252L;
-    private final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    
+    /**
+     * Formats for {@link #toString()}, which are not thread safe.
+     */
+    private static final ThreadLocal<DateFormat> DATEFORMAT = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        }
+    };
 
     public static final TransactionId END_OF_TIME =
             new TransactionId(Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
 
     public static final int POF_TS = 0;
-    @PortableProperty(POF_TS)
-    private long timeStampMillis;
+    private final long timeStampMillis;
 
     public static final int POF_CONTEXT = 1;
-    @PortableProperty(POF_CONTEXT)
-    private int contextId;
+    private final int contextId;
 
     public static final int POF_SUBSEQ = 2;
-    @PortableProperty(POF_SUBSEQ)
-    private int subSequence;
+    private final int subSequence;
     /**
      * Transaction id representing the dawn of time. Implicitly exists as a
      * snapshot id.
      */
     public static final TransactionId BIG_BANG = new TransactionId(0L, 0, 0);
 
-    /**
-     * Default constructor for POF use only.
-     */
-    public TransactionId() {
-        super();
-    }
-
     /**
      * Constructor.
      * @param timeStampMillis the timestamp for this id
@@ -93,6 +93,26 @@ public class TransactionId implements Comparable<TransactionId>, Serializable {
         this.subSequence = subSequence;
     }
 
+    /**
+     * Obtain a transaction id, returning the shared instance if it is
+     * {@link #BIG_BANG} or {@link #END_OF_TIME}.
+     * @param timeStampMillis the timestamp for this id
+     * @param contextId the unique transaction manager id
+     * @param subSequence sequence number to distinguish transactions with the same manager
+     * and timestamp
+     * @return the transaction id
+     */
+    public static TransactionId valueOf(final long timeStampMillis, final int contextId, final int subSequence) {
+        if (timeStampMillis == 0L && contextId == 0 && subSequence == 0) {
+            return BIG_BANG;
+        }
+        if (timeStampMillis == Long.MAX_VALUE && contextId == Integer.MAX_VALUE
+                && subSequence == Integer.MAX_VALUE) {
+            return END_OF_TIME;
+        }
+        return new TransactionId(timeStampMillis, contextId, subSequence);
+    }
+
     /**
      * @return the timestamp
      */
@@ -116,20 +136,16 @@ public class TransactionId implements Comparable<TransactionId>, Serializable {
 
     @Override
     public int compareTo(final TransactionId o) {
-        if (timeStampMillis < o.getTimeStampMillis()) {
-            return -1;
-        } else if (timeStampMillis == o.getTimeStampMillis()) {
-            if (contextId < o.getContextId()) {
-                return -1;
-            } else if (contextId == o.getContextId()) {
-                if (subSequence < o.getSubSequence()) {
-                    return -1;
-                } else if (subSequence == o.getSubSequence()) {
-                    return 0;
-                }
-            }
+        if (timeStampMillis != o.timeStampMillis) {
+            return timeStampMillis < o.timeStampMillis ? -1 : 1;
+        }
+        if (contextId != o.contextId) {
+            return contextId < o.contextId ? -1 : 1;
+        }
+        if (subSequence != o.subSequence) {
+            return subSequence < o.subSequence ? -1 : 1;
         }
-        return 1;
+        return 0;
     }
 
     @Override
@@ -148,10 +164,7 @@ public class TransactionId implements Comparable<TransactionId>, Serializable {
         if (this == obj) {
             return true;
         }
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
+        if (!(obj instanceof TransactionId)) {
             return false;
         }
         TransactionId other = (TransactionId) obj;
@@ -169,7 +182,7 @@ public class TransactionId implements Comparable<TransactionId>, Serializable {
 
     @Override
     public String toString() {
-        return "TransactionId [" + dateFormat.format(new Date(timeStampMillis))
+        return "TransactionId [" + DATEFORMAT.get().format(new Date(timeStampMillis))
                 + "(" + contextId + ")(" + subSequence
                 + ")]";
     }
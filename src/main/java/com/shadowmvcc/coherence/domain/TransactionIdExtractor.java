@@ -0,0 +1,117 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute
+it and/or modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation, either version 3 of the
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it
+will be useful, but WITHOUT ANY WARRANTY; without even the implied
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See
+the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.domain;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.shadowmvcc.coherence.index.TransactionIdIndex;
+import com.shadowmvcc.coherence.pof.VersionedKeySerializer;
+import com.tangosol.io.pof.annotation.Portable;
+import com.tangosol.io.pof.reflect.SimplePofPath;
+import com.tangosol.net.BackingMapContext;
+import com.tangosol.util.BinaryEntry;
+import com.tangosol.util.MapIndex;
+import com.tangosol.util.extractor.AbstractExtractor;
+import com.tangosol.util.extractor.IndexAwareExtractor;
+import com.tangosol.util.extractor.PofExtractor;
+
+/**
+ * Extract the {@link TransactionId} from the key of a version cache entry. Reads
+ * the transaction id directly from the binary key if binary version keys are configured,
+ * otherwise navigates the POF stream.
+ * 
+ * An index created with this extractor is a {@link TransactionIdIndex}.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+@Portable
+public class TransactionIdExtractor extends AbstractExtractor implements IndexAwareExtractor {
+
+    private static final long serialVersionUID = -2944071306245316154L;
+
+    private static final PofExtractor POFEXTRACTOR = new PofExtractor(
+            null, new SimplePofPath(VersionedKey.POF_TRANSACTIONID), AbstractExtractor.KEY);
+
+    /**
+     * Constructor.
+     */
+    public TransactionIdExtractor() {
+        super();
+        m_nTarget = KEY;
+    }
+
+    @Override
+    public Object extractFromEntry(@SuppressWarnings("rawtypes") final Entry entry) {
+        if (!(entry instanceof BinaryEntry)) {
+            return extract(entry.getKey());
+        }
+        if (VersionedKeySerializer.isBinaryConfigured()) {
+            TransactionId result = VersionedKeySerializer.getTransactionId(((BinaryEntry) entry).getBinaryKey());
+            if (result != null) {
+                return result;
+            }
+        }
+        Object result = POFEXTRACTOR.extractFromEntry(entry);
+        if (result instanceof byte[]) {
+            return VersionedKeySerializer.decode((byte[]) result, 0);
+        }
+        return result;
+    }
+
+    @Override
+    public Object extract(final Object oTarget) {
+        return ((VersionedKey<?>) oTarget).getTransactionId();
+    }
+
+    @Override
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public MapIndex createIndex(final boolean ordered, final Comparator comparator,
+            final Map indexes, final BackingMapContext bmc) {
+        if (indexes.containsKey(this)) {
+            return null;
+        }
+        MapIndex index = new TransactionIdIndex(bmc);
+        indexes.put(this, index);
+        return index;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public MapIndex destroyIndex(final Map indexes) {
+        return (MapIndex) indexes.remove(this);
+    }
+
+    @Override
+    public int hashCode() {
+        return TransactionIdExtractor.class.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj != null && getClass() == obj.getClass();
+    }
+
+}
@@ -22,7 +22,10 @@ along with Shadow MVCC for Oracle Coherence.  If not, see
 
 package com.shadowmvcc.coherence.domain;
 
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
 import java.util.NavigableSet;
+import java.util.TreeSet;
 
 import com.shadowmvcc.coherence.pof.SortedSetCodec;
 import com.tangosol.io.pof.annotation.Portable;
@@ -32,6 +35,15 @@ import com.tangosol.io.pof.annotation.PortableProperty;
  * Wrapper for the set of read timestamps that are the
  * value object of a key cache, and the snapshot cache.
  * 
+ * Reads that can no longer cause a {@code FutureReadException} may be collapsed into
+ * a single high-water mark. A write at or before the high-water mark is treated as
+ * conflicting with a read, so collapsing reads is always safe, though it may reject
+ * a write that the individual reads would have allowed. Reads older than any transaction
+ * that may still write are simply discarded.
+ * 
+ * The reads are serialised as a single packed byte array. The collection form written
+ * by earlier versions is still read.
+ * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
  */
@@ -39,19 +51,200 @@ import com.tangosol.io.pof.annotation.PortableProperty;
 public class TransactionSetWrapper {
     @PortableProperty(value = 0, codec = SortedSetCodec.class)
     private NavigableSet<TransactionId> transactionIdSet;
+    @PortableProperty(1)
+    private byte[] packedReads;
+    
+    private transient NavigableSet<TransactionId> reads;
+    private transient TransactionId highWaterMark;
 
     /**
+     * Get all the read transaction ids retained, including the high-water mark.
      * @return the set of read transaction ids
      */
     public NavigableSet<TransactionId> getTransactionIdSet() {
-        return transactionIdSet;
+        ensureDecoded();
+        NavigableSet<TransactionId> result = new TreeSet<TransactionId>(reads);
+        if (highWaterMark != null) {
+            result.add(highWaterMark);
+        }
+        return result;
     }
 
     /**
      * @param transactionIdSet the set of read transaction ids
      */
     public void setTransactionIdSet(final NavigableSet<TransactionId> transactionIdSet) {
-        this.transactionIdSet = transactionIdSet;
+        this.transactionIdSet = null;
+        this.reads = new TreeSet<TransactionId>(transactionIdSet);
+        this.highWaterMark = null;
+        pack();
+    }
+    
+    /**
+     * @return the high-water mark, or null if no reads have been collapsed
+     */
+    public TransactionId getHighWaterMark() {
+        ensureDecoded();
+        return highWaterMark;
+    }
+    
+    /**
+     * @return the number of reads held individually
+     */
+    public int size() {
+        ensureDecoded();
+        return reads.size();
+    }
+    
+    /**
+     * Get the earliest read at or after a transaction id. If the transaction id
+     * is not after the high-water mark, there may have been a read at that time.
+     * @param transactionId the transaction id
+     * @return the read, or null if there is none
+     */
+    public TransactionId ceiling(final TransactionId transactionId) {
+        ensureDecoded();
+        if (highWaterMark != null && transactionId.compareTo(highWaterMark) <= 0) {
+            return transactionId;
+        }
+        return reads.ceiling(transactionId);
+    }
+    
+    /**
+     * Record a read.
+     * @param transactionId the transaction id of the read
+     * @return false if the read was already recorded, or is covered by the high-water mark
+     */
+    public boolean addRead(final TransactionId transactionId) {
+        ensureDecoded();
+        if (highWaterMark != null && transactionId.compareTo(highWaterMark) <= 0) {
+            return false;
+        }
+        if (!reads.add(transactionId)) {
+            return false;
+        }
+        pack();
+        return true;
+    }
+    
+    /**
+     * Reduce the reads held individually to at most a maximum number. Reads before
+     * the low bound are discarded, then reads before the latest committed write are collapsed
+     * into the high-water mark, then the oldest reads until the maximum is reached.
+     * @param maxReads maximum number of reads to hold individually
+     * @param lowBound transaction id before which no transaction can write
+     * @param latestCommitted transaction id of the latest committed version, may be null
+     */
+    public void prune(final int maxReads, final TransactionId lowBound, final TransactionId latestCommitted) {
+        ensureDecoded();
+        if (highWaterMark != null && highWaterMark.compareTo(lowBound) < 0) {
+            highWaterMark = null;
+        }
+        reads.headSet(lowBound, false).clear();
+        if (latestCommitted != null) {
+            collapse(reads.headSet(latestCommitted, false));
+        }
+        while (reads.size() > maxReads) {
+            collapse(reads.headSet(reads.first(), true));
+        }
+        pack();
+    }
+    
+    /**
+     * Remove reads, raising the high-water mark to the latest of them.
+     * @param collapsed view of the reads to remove
+     */
+    private void collapse(final NavigableSet<TransactionId> collapsed) {
+        if (!collapsed.isEmpty()) {
+            TransactionId last = collapsed.last();
+            if (highWaterMark == null || last.compareTo(highWaterMark) > 0) {
+                highWaterMark = last;
+            }
+            collapsed.clear();
+        }
+    }
+    
+    /**
+     * Decode the serialised reads if not already done.
+     */
+    private void ensureDecoded() {
+        if (reads != null) {
+            return;
+        }
+        reads = new TreeSet<TransactionId>();
+        if (transactionIdSet != null) {
+            reads.addAll(transactionIdSet);
+        }
+        if (packedReads != null) {
+            int[] pos = { 1 };
+            int count = (int) readPacked(packedReads, pos);
+            long timestamp = 0;
+            for (int i = 0; i < count; i++) {
+                timestamp += readPacked(packedReads, pos);
+                TransactionId tid = new TransactionId(timestamp,
+                        (int) readPacked(packedReads, pos), (int) readPacked(packedReads, pos));
+                if (i == 0 && packedReads[0] != 0) {
+                    highWaterMark = tid;
+                } else {
+                    reads.add(tid);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Serialise the reads. The first byte is non-zero if there is a high-water mark, followed by
+     * the count of transaction ids. Each transaction id, starting with the high-water mark, is the
+     * difference from the previous timestamp, the context id and sub-sequence, each as a packed integer.
+     */
+    private void pack() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + reads.size() * 6);
+        out.write(highWaterMark == null ? 0 : 1);
+        writePacked(out, reads.size() + (highWaterMark == null ? 0 : 1));
+        long timestamp = 0;
+        Iterator<TransactionId> it = reads.iterator();
+        TransactionId tid = highWaterMark == null ? (it.hasNext() ? it.next() : null) : highWaterMark;
+        while (tid != null) {
+            writePacked(out, tid.getTimeStampMillis() - timestamp);
+            writePacked(out, tid.getContextId());
+            writePacked(out, tid.getSubSequence());
+            timestamp = tid.getTimeStampMillis();
+            tid = it.hasNext() ? it.next() : null;
+        }
+        packedReads = out.toByteArray();
+        transactionIdSet = null;
+    }
+    
+    /**
+     * Write a zig-zag encoded variable length integer.
+     * @param out the stream
+     * @param value the value
+     */
+    private static void writePacked(final ByteArrayOutputStream out, final long value) {
+        long bits = (value << 1) ^ (value >> 63);
+        while ((bits & ~0x7FL) != 0) {
+            out.write((int) ((bits & 0x7F) | 0x80));
+            bits >>>= 7;
+        }
+        out.write((int) bits);
+    }
+    
+    /**
+     * Read a zig-zag encoded variable length integer.
+     * @param bytes the serialised form
+     * @param pos single element array holding the position to read from, updated on return
+     * @return the value
+     */
+    private static long readPacked(final byte[] bytes, final int[] pos) {
+        long bits = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[pos[0]++];
+            bits |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (bits >>> 1) ^ -(bits & 1);
     }
 
 }
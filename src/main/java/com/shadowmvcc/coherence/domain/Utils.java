@@ -42,27 +42,57 @@ public final class Utils {
     }
 
     /**
-     * Return the value of a decoration as a Binary.
+     * Pre-built flags decorations, indexed by flag value.
+     */
+    private static final Binary[] FLAGS_DECORATIONS = new Binary[(Constants.FLAG_COMMITTED | Constants.FLAG_DELETED) + 1];
+
+    static {
+        for (int i = 0; i < FLAGS_DECORATIONS.length; i++) {
+            FLAGS_DECORATIONS[i] = new Binary(new byte[] { (byte) i });
+        }
+    }
+
+    /**
+     * Get the status flags of a version cache value. Values written before the
+     * flags decoration was introduced carry separate {@code Boolean} decorations,
+     * these are read if the flags decoration is absent.
+     * @param binValue the binary version cache value
+     * @param serializer the serializer, only used to read the old format
+     * @return the flags
+     */
+    public static byte getFlags(final Binary binValue, final Serializer serializer) {
+        if (binValue == null || !ExternalizableHelper.isDecorated(binValue)) {
+            return Constants.FLAG_COMMITTED;
+        }
+        Binary binFlags = ExternalizableHelper.getDecoration(binValue, Constants.DECO_FLAGS);
+        if (binFlags != null && binFlags.length() > 0) {
+            return binFlags.byteAt(0);
+        }
+        byte flags = 0;
+        if (getLegacyBooleanDecoration(binValue, Constants.DECO_COMMIT, true, serializer)) {
+            flags |= Constants.FLAG_COMMITTED;
+        }
+        if (getLegacyBooleanDecoration(binValue, Constants.DECO_DELETED, false, serializer)) {
+            flags |= Constants.FLAG_DELETED;
+        }
+        return flags;
+    }
+
+    /**
+     * Read a decoration in the old serialized {@code Boolean} format.
+     * @param binValue the decorated binary value
      * @param decoId the decoration id
-     * @param binEntry the BinaryEntry
      * @param defaultValue default value to return if the decoration is absent
+     * @param serializer the serializer to use
      * @return the boolean value of the decoration
      */
-    private static boolean getBooleanDecoration(
-            final int decoId, final BinaryEntry binEntry, final boolean defaultValue) {
-        boolean result = defaultValue;
-        Binary binValue = binEntry.getBinaryValue();
-        if (binValue != null) {
-            if (ExternalizableHelper.isDecorated(binValue)) {
-                Binary binDeco = ExternalizableHelper.getDecoration(binValue, decoId);
-                if (binDeco != null) {
-                    result = (Boolean) ExternalizableHelper.fromBinary(binDeco, binEntry.getSerializer());
-                }
-            }
+    private static boolean getLegacyBooleanDecoration(final Binary binValue, 
+            final int decoId, final boolean defaultValue, final Serializer serializer) {
+        Binary binDeco = ExternalizableHelper.getDecoration(binValue, decoId);
+        if (binDeco == null) {
+            return defaultValue;
         }
-
-        return result;
-
+        return (Boolean) ExternalizableHelper.fromBinary(binDeco, serializer);
     }
 
     /**
@@ -70,7 +100,7 @@ public final class Utils {
      * @return true if the entry has been committed
      */
     public static boolean isCommitted(final BinaryEntry binaryEntry) {
-        return getBooleanDecoration(Constants.DECO_COMMIT, binaryEntry, true);
+        return (getFlags(binaryEntry.getBinaryValue(), binaryEntry.getSerializer()) & Constants.FLAG_COMMITTED) != 0;
     }
 
     /**
@@ -78,7 +108,7 @@ public final class Utils {
      * @return true if the entry represents a deleted entry
      */
     public static boolean isDeleted(final BinaryEntry binaryEntry) {
-        return getBooleanDecoration(Constants.DECO_DELETED, binaryEntry, false);
+        return (getFlags(binaryEntry.getBinaryValue(), binaryEntry.getSerializer()) & Constants.FLAG_DELETED) != 0;
     }
 
     /**
@@ -86,42 +116,55 @@ public final class Utils {
      * @param binaryValue the binary version cache value
      * @param committed committed flag
      * @param deleted deleted flag
-     * @param serializer the serializer to use
      * @return the decorated binary value
      */
     public static Binary decorateValue(final Binary binaryValue, final boolean committed, 
-            final boolean deleted, final Serializer serializer) {
-
-        Binary result = addBooleanDecoration(binaryValue, Constants.DECO_COMMIT, committed, serializer);
-        result = addBooleanDecoration(result, Constants.DECO_DELETED, deleted, serializer);
-
-        return result;
-
+            final boolean deleted) {
+        byte flags = 0;
+        if (committed) {
+            flags |= Constants.FLAG_COMMITTED;
+        }
+        if (deleted) {
+            flags |= Constants.FLAG_DELETED;
+        }
+        return setFlags(binaryValue, flags);
     }
 
     /**
-     * Add a boolean value as decoration to a binary value.
+     * Replace the status flags of a binary value, removing any decorations
+     * in the old format.
      * @param binValue the value to decorate
-     * @param decoId the decoration id
-     * @param decoValue boolean value to decorate with
-     * @param serializer the serializer to use
+     * @param flags the new flags
      * @return the decorated binary value
      */
-    private static Binary addBooleanDecoration(final Binary binValue, final int decoId, 
-            final boolean decoValue, final Serializer serializer) {
-        Binary decoBin = ExternalizableHelper.toBinary(decoValue, serializer);
-        return ExternalizableHelper.decorate(binValue, decoId, decoBin);
+    private static Binary setFlags(final Binary binValue, final byte flags) {
+        Binary result = binValue;
+        if (ExternalizableHelper.isDecorated(result, Constants.DECO_COMMIT)) {
+            result = ExternalizableHelper.undecorate(result, Constants.DECO_COMMIT);
+        }
+        if (ExternalizableHelper.isDecorated(result, Constants.DECO_DELETED)) {
+            result = ExternalizableHelper.undecorate(result, Constants.DECO_DELETED);
+        }
+        Binary binFlags = flags >= 0 && flags < FLAGS_DECORATIONS.length
+                ? FLAGS_DECORATIONS[flags] : new Binary(new byte[] { flags });
+        return ExternalizableHelper.decorate(result, Constants.DECO_FLAGS, binFlags);
     }
 
     /**
-     * Set the version cache entry as committed.
+     * Set the version cache entry as committed. An entry in the old format
+     * is converted to the new.
      * @param entry the version cache binary entry
      * @param committed value of committed flag
      */
     public static void setCommitted(final BinaryEntry entry, final boolean committed) {
         Binary binValue = entry.getBinaryValue();
-        binValue = addBooleanDecoration(binValue, Constants.DECO_COMMIT, committed, entry.getSerializer());
-        entry.updateBinaryValue(binValue);
+        byte flags = getFlags(binValue, entry.getSerializer());
+        if (committed) {
+            flags |= Constants.FLAG_COMMITTED;
+        } else {
+            flags &= ~Constants.FLAG_COMMITTED;
+        }
+        entry.updateBinaryValue(setFlags(binValue, flags));
     }
 
 }
@@ -23,21 +23,24 @@ along with Shadow MVCC for Oracle Coherence.  If not, see
 package com.shadowmvcc.coherence.domain;
 
 import com.shadowmvcc.coherence.cache.CacheName;
-import com.tangosol.io.pof.annotation.Portable;
-import com.tangosol.io.pof.annotation.PortableProperty;
+import com.shadowmvcc.coherence.pof.VersionCacheKeySerializer;
 
 /**
  * Identify the cache and key of a version cache entry.
  * 
+ * Serialised by {@link VersionCacheKeySerializer}.
+ * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
  * @param <K> logical key type
  */
-@Portable
 public class VersionCacheKey<K> {
     
-    @PortableProperty(0) private CacheName cacheName;
-    @PortableProperty(1) private VersionedKey<K> key;
+    public static final int POF_CACHENAME = 0;
+    public static final int POF_KEY = 1;
+
+    private CacheName cacheName;
+    private VersionedKey<K> key;
     
     /**
      *  Default constructor for POF use only.
@@ -72,4 +75,42 @@ public class VersionCacheKey<K> {
     public VersionedKey<K> getKey() {
         return key;
     }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((cacheName == null) ? 0 : cacheName.hashCode());
+        result = prime * result + ((key == null) ? 0 : key.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        VersionCacheKey<?> other = (VersionCacheKey<?>) obj;
+        if (cacheName == null) {
+            if (other.cacheName != null) {
+                return false;
+            }
+        } else if (!cacheName.equals(other.cacheName)) {
+            return false;
+        }
+        if (key == null) {
+            if (other.key != null) {
+                return false;
+            }
+        } else if (!key.equals(other.key)) {
+            return false;
+        }
+        return true;
+    }
 }
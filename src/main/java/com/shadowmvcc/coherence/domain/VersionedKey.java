@@ -24,8 +24,7 @@ package com.shadowmvcc.coherence.domain;
 
 import java.io.Serializable;
 
-import com.tangosol.io.pof.annotation.Portable;
-import com.tangosol.io.pof.annotation.PortableProperty;
+import com.shadowmvcc.coherence.pof.VersionedKeySerializer;
 import com.tangosol.net.cache.KeyAssociation;
 
 /**
@@ -35,29 +34,22 @@ import com.tangosol.net.cache.KeyAssociation;
  * Implements key association delegating to the logical key so that version cache and key cache entries
  * are always collocated
  * 
+ * Serialised by {@link VersionedKeySerializer}.
+ * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
  * @param <K> the logical key class
  */
-@Portable
 public class VersionedKey<K> implements KeyAssociation, Serializable {
 
     private static final long serialVersionUID = 8459004703379236862L;
 
     public static final int POF_LOGICALKEY = 0;
-    @PortableProperty(POF_LOGICALKEY)
     private K logicalKey;
 
     public static final int POF_TRANSACTIONID = 1;
-    @PortableProperty(POF_TRANSACTIONID)
     private TransactionId transactionId;
 
-    /**
-     * Default constructor for POF use only.
-     */
-    public VersionedKey() {
-    }
-
     /**
      * Constructor.
      * @param logicalKey the logical key
@@ -42,7 +42,7 @@ public class ExtendCacheInvoker<K, V> implements Invocable {
         size, isEmpty, containsKey, containsValue, remove, putAll,
         clear, keySet, values, entrySet, getAll,
         entrySetFilter, entrySetComparator, keySetFilter,
-        aggregateKeys, aggregateFilter, invokeAllKeys, invokeAllFilter
+        aggregateKeys, aggregateFilter, invokeAllKeys, invokeAllFilter, load
         };
         
     private transient Object result = null;
@@ -210,6 +210,9 @@ public class ExtendCacheInvoker<K, V> implements Invocable {
             case putAll:
                 tcache.putAll(transactionId, autoCommit, keyValueMap);
                 break;
+            case load:
+                tcache.load(transactionId, keyValueMap);
+                break;
             case clear:
                 tcache.clear(transactionId, autoCommit);
                 break;
@@ -183,6 +183,17 @@ public class MVCCExtendTransactionalCache<K, V> extends AbstractMVCCTransactiona
         invoke(invoker);
     }
 
+    @Override
+    public void load(final TransactionId loadId, final Map<K, V> m) {
+
+        ExtendCacheInvoker<K, V> invoker = new ExtendCacheInvoker<K, V>(
+                cacheName, ExtendCacheInvoker.Operation.load, loadId, readProhibited);
+        
+        invoker.setKeyValueMap(m);
+        
+        invoke(invoker);
+    }
+
     @Override
     public void clear(final TransactionId tid, final boolean autoCommit) throws Throwable {
 
@@ -22,21 +22,26 @@ along with Shadow MVCC for Oracle Coherence.  If not, see
 
 package com.shadowmvcc.coherence.index;
 
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.NavigableMap;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.shadowmvcc.coherence.domain.Constants;
 import com.shadowmvcc.coherence.domain.TransactionId;
 import com.shadowmvcc.coherence.domain.Utils;
 import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.shadowmvcc.coherence.pof.VersionedKeySerializer;
 import com.tangosol.net.BackingMapContext;
+import com.tangosol.net.partition.PartitionSet;
 import com.tangosol.util.Binary;
 import com.tangosol.util.BinaryEntry;
 import com.tangosol.util.Converter;
@@ -47,6 +52,18 @@ import com.tangosol.util.ValueExtractor;
  * Custom index for the version cache. Maintains an ordered map of transaction ids for each logical key and provides
  * methods to find the next, previous etc entries relative to a specified starting timestamp.
  * 
+ * The versions of each logical key are held in a compact {@link VersionLine}. Queries
+ * against the index never block; changes to a line are serialised by synchronizing on the line.
+ * 
+ * The index also maintains the surface: the version cache keys that a query at a transaction id
+ * no older than any version in the index would return, that is the newest version of each logical key
+ * and any uncommitted versions back to the most recent committed version, less deleted versions.
+ * Such a query is resolved by intersecting the candidates with the surface. Changes to the surface
+ * are counted so that a query that overlaps a change falls back to walking the version lines.
+ * 
+ * The logical keys that have more than one version are held by partition, so that
+ * purge of superseded versions visits only those keys, one partition at a time.
+ * 
  * @author David Whitmarsh, based on an idea by Alexey Ragozin (alexey.ragozin@gmail.com)
  * 
  * @param <K> the key type
@@ -57,11 +74,12 @@ public class MVCCIndex<K> implements MapIndex {
      * Entry class for the index. Keep the binary key of the entry to link to
      * together with its committed and deleted states for efficient traversal.
      * 
-     * Only the committed status of an entry is mutable.
+     * Instances are a snapshot of the index state at the time they were obtained,
+     * a subsequent commit of the version is not reflected.
      * 
      */
     public static class IndexEntry {
-        private boolean isCommitted;
+        private final boolean isCommitted;
         private final boolean isDeleted;
         private final Binary binaryKey;
         /**
@@ -87,12 +105,6 @@ public class MVCCIndex<K> implements MapIndex {
         public boolean isDeleted() {
             return isDeleted;
         }
-        /**
-         * mark the entry as committed.
-         */
-        public void commit() {
-            this.isCommitted = true;
-        }
         /**
          * @return the version cache key this entry points to
          */
@@ -102,8 +114,18 @@ public class MVCCIndex<K> implements MapIndex {
         
     }
 
-    private ConcurrentMap<K, NavigableMap<TransactionId, IndexEntry>> index
-        = new ConcurrentHashMap<K, NavigableMap<TransactionId, IndexEntry>>();
+    private ConcurrentMap<K, VersionLine> index = new ConcurrentHashMap<K, VersionLine>();
+    
+    private final Set<Binary> surfaceKeys = Collections.newSetFromMap(new ConcurrentHashMap<Binary, Boolean>());
+    
+    private final AtomicLong surfaceChangesStarted = new AtomicLong();
+    
+    private final AtomicLong surfaceChangesFinished = new AtomicLong();
+    
+    private final AtomicReference<TransactionId> latestTid = new AtomicReference<TransactionId>();
+    
+    private final ConcurrentMap<Integer, ConcurrentNavigableMap<Integer, Set<K>>> multiVersionKeys =
+            new ConcurrentHashMap<Integer, ConcurrentNavigableMap<Integer, Set<K>>>();
     
     private BackingMapContext bmc;
     
@@ -119,28 +141,94 @@ public class MVCCIndex<K> implements MapIndex {
      * Get the set of version cache keys representing the current versions of the
      * entries represented in the candidate set. Any uncommitted entries older
      * than the current version and newer than the most recent committed entry are
-     * included
+     * included.
+     * 
+     * Candidates are visited once per logical key. With binary version keys the logical key
+     * is recognised from the serialised key so only one candidate per logical key is deserialised.
      * @param candidateSet set of candidate version cache keys
      * @param ts transaction id
      * @return the set of matching version keys
      */
     public Set<Binary> floorSet(final Set<Binary> candidateSet, final TransactionId ts) {
+        if (isSurface(ts)) {
+            long finished = surfaceChangesFinished.get();
+            long started = surfaceChangesStarted.get();
+            if (started == finished && isSurface(ts)) {
+                Set<Binary> result = surfaceSet(candidateSet);
+                if (surfaceChangesStarted.get() == started) {
+                    return result;
+                }
+            }
+        }
         Set<Binary> result = new HashSet<Binary>();
+        Set<Object> visited = new HashSet<Object>();
+        boolean binaryKeys = VersionedKeySerializer.isBinaryConfigured();
+        Converter converter = bmc.getManagerContext().getKeyFromInternalConverter();
         for (Binary candidate : candidateSet) {
-            Converter converter = bmc.getManagerContext().getKeyFromInternalConverter();
+            if (binaryKeys) {
+                Binary logicalKeyPrefix = VersionedKeySerializer.getLogicalKeyPrefix(candidate);
+                if (logicalKeyPrefix != null && !visited.add(logicalKeyPrefix)) {
+                    continue;
+                }
+            }
             @SuppressWarnings("unchecked")
             VersionedKey<K> vk = (VersionedKey<K>) converter.convert(candidate);
-            Entry<TransactionId, IndexEntry> floorEntry = floorEntry(vk.getLogicalKey(), ts);
-            if (floorEntry != null) {
-                if (!floorEntry.getValue().isDeleted()) {
+            if (!binaryKeys && !visited.add(vk.getLogicalKey())) {
+                continue;
+            }
+            addFloorVersions(vk.getLogicalKey(), ts, result);
+        }
+        return result;
+    }
+    
+    /**
+     * Add the current version of a key at a transaction id to a set, together with
+     * any uncommitted versions older than it and newer than the most recent committed version.
+     * Deleted versions are not added.
+     * @param sKey the logical key
+     * @param ts the transaction id
+     * @param result the set to add version cache keys to
+     */
+    private void addFloorVersions(final K sKey, final TransactionId ts, final Set<Binary> result) {
+        Entry<TransactionId, IndexEntry> floorEntry = floorEntry(sKey, ts);
+        if (floorEntry != null) {
+            if (!floorEntry.getValue().isDeleted()) {
+                result.add(floorEntry.getValue().getBinaryKey());
+            }
+            while (floorEntry != null && !floorEntry.getValue().isCommitted()) {
+                floorEntry = lowerEntry(sKey, floorEntry.getKey());
+                if (floorEntry != null && !floorEntry.getValue().isDeleted()) {
                     result.add(floorEntry.getValue().getBinaryKey());
                 }
-                while (floorEntry != null && !floorEntry.getValue().isCommitted()) {
-                    floorEntry = lowerEntry(vk.getLogicalKey(), floorEntry.getKey());
-                    if (floorEntry != null && !floorEntry.getValue().isDeleted()) {
-                        result.add(floorEntry.getValue().getBinaryKey());
-                    }
-                }
+            }
+        }
+    }
+    
+    /**
+     * Is the transaction id at or after every version in the index, so that the current
+     * version of each key is its newest version.
+     * @param ts the transaction id
+     * @return true if a query at the transaction id may be resolved from the surface
+     */
+    private boolean isSurface(final TransactionId ts) {
+        if (ts == null) {
+            return false;
+        }
+        TransactionId latest = latestTid.get();
+        return latest == null || ts.compareTo(latest) >= 0;
+    }
+    
+    /**
+     * Resolve {@link #floorSet(Set, TransactionId)} from the surface. Only the candidates are
+     * visited. The result is only valid if no surface change started while it was obtained.
+     * @param candidateSet set of candidate version cache keys
+     * @return the candidates that are in the surface
+     */
+    private Set<Binary> surfaceSet(final Set<Binary> candidateSet) {
+        Set<Binary> result = new HashSet<Binary>();
+        for (Binary candidate : candidateSet) {
+            if (surfaceKeys.contains(candidate)) {
+                result.add(candidate);
             }
         }
         return result;
@@ -156,13 +244,64 @@ public class MVCCIndex<K> implements MapIndex {
      * to create the snapshot.
      */
     public Set<Binary> snapshotPurgeSet(final TransactionId rangeStart, final TransactionId rangeEnd) {
+        return snapshotPurgeSet(rangeStart, rangeEnd, null, 0, null);
+    }
+    
+    /**
+     * Get cache keys that fall within the transaction id range
+     * except for the most recent for each logical key, limited to a set of partitions
+     * and to approximately a maximum number of keys. Only logical keys with more than one
+     * version are visited. As the keys returned are purged, repeated calls return
+     * the remaining keys until none are left.
+     * @param rangeStart the exclusive start transaction id of the range
+     * @param rangeEnd the inclusive start transaction id of the range
+     * @param partitions the partitions to purge, or null for all partitions
+     * @param maxKeys stop after the logical key that reaches this many cache keys, zero for no limit
+     * @return the set of binary cache keys that should be removed
+     * to create the snapshot.
+     */
+    public Set<Binary> snapshotPurgeSet(final TransactionId rangeStart, final TransactionId rangeEnd,
+            final PartitionSet partitions, final int maxKeys) {
+        return snapshotPurgeSet(rangeStart, rangeEnd, partitions, maxKeys, null);
+    }
+    
+    /**
+     * Get cache keys that fall within the transaction id range
+     * except for the most recent for each logical key, limited to a set of partitions
+     * and to approximately a maximum number of keys, resuming after a given logical key hash.
+     * Within a partition logical keys are visited in order of hash code, and a batch only
+     * ends after all the keys with the same hash code, so the largest logical key hash
+     * of a batch may be passed as {@code resumeAfter} to continue with the next batch
+     * without revisiting keys. The continuation is only meaningful for a single partition.
+     * @param rangeStart the exclusive start transaction id of the range
+     * @param rangeEnd the inclusive start transaction id of the range
+     * @param partitions the partitions to purge, or null for all partitions
+     * @param maxKeys stop after the logical key hash that reaches this many cache keys, zero for no limit
+     * @param resumeAfter visit only logical keys with a greater hash code, or null to start from the first
+     * @return the set of binary cache keys that should be removed
+     * to create the snapshot.
+     */
+    public Set<Binary> snapshotPurgeSet(final TransactionId rangeStart, final TransactionId rangeEnd,
+            final PartitionSet partitions, final int maxKeys, final Integer resumeAfter) {
         Set<Binary> result = new HashSet<Binary>();
-        for (NavigableMap<TransactionId, IndexEntry> entryMap : index.values()) {
-            TransactionId current = entryMap.floorKey(rangeEnd);
-            while (current != null && current.compareTo(rangeStart) > 0) {
-                current = entryMap.lowerKey(current);
-                if (current != null && current.compareTo(rangeStart) > 0) {
-                    result.add(entryMap.get(current).getBinaryKey());
+        for (Map.Entry<Integer, ConcurrentNavigableMap<Integer, Set<K>>> partitionKeys
+                : multiVersionKeys.entrySet()) {
+            if (partitions != null && !partitions.contains(partitionKeys.getKey())) {
+                continue;
+            }
+            ConcurrentNavigableMap<Integer, Set<K>> buckets = partitionKeys.getValue();
+            if (resumeAfter != null) {
+                buckets = buckets.tailMap(resumeAfter, false);
+            }
+            for (Set<K> bucket : buckets.values()) {
+                for (K sKey : bucket) {
+                    VersionLine line = index.get(sKey);
+                    if (line != null) {
+                        line.collectSnapshotPurge(rangeStart, rangeEnd, result);
+                    }
+                }
+                if (maxKeys > 0 && result.size() >= maxKeys) {
+                    return result;
                 }
             }
         }
@@ -200,14 +339,12 @@ public class MVCCIndex<K> implements MapIndex {
      * @return the index map entry
      */
     public Entry<TransactionId, IndexEntry> floorEntry(final K sKey, final TransactionId ts) {
-        NavigableMap<TransactionId, IndexEntry> line = getLine(sKey);
+        VersionLine line = index.get(sKey);
         if (line != null) {
-            synchronized (line) {
-                if (ts == null) {
-                    return line.firstEntry();
-                } else {
-                    return line.floorEntry(ts);
-                }
+            if (ts == null) {
+                return line.firstEntry();
+            } else {
+                return line.floorEntry(ts);
             }
         } else {
             return null;
@@ -221,14 +358,12 @@ public class MVCCIndex<K> implements MapIndex {
      * @return the next older map entry
      */
     public Entry<TransactionId, IndexEntry> lowerEntry(final K sKey, final TransactionId ts) {
-        NavigableMap<TransactionId, IndexEntry> line = getLine(sKey);
+        VersionLine line = index.get(sKey);
         if (line != null) {
-            synchronized (line) {
-                if (ts == null) {
-                    return line.lastEntry();
-                } else {
-                    return line.lowerEntry(ts);
-                }
+            if (ts == null) {
+                return line.lastEntry();
+            } else {
+                return line.lowerEntry(ts);
             }
         } else {
             return null;
@@ -242,14 +377,12 @@ public class MVCCIndex<K> implements MapIndex {
      * @return the next later map entry
      */
     public Entry<TransactionId, IndexEntry> higherEntry(final K sKey, final TransactionId ts) {
-        NavigableMap<TransactionId, IndexEntry> line = getLine(sKey);
+        VersionLine line = index.get(sKey);
         if (line != null) {
-            synchronized (line) {
-                if (ts == null) {
-                    return line.firstEntry();
-                } else {
-                    return line.higherEntry(ts);
-                }
+            if (ts == null) {
+                return line.firstEntry();
+            } else {
+                return line.higherEntry(ts);
             }
         } else {
             return null;
@@ -263,16 +396,12 @@ public class MVCCIndex<K> implements MapIndex {
      * @return the next transaction id
      */
     public TransactionId ceilingTid(final K sKey, final TransactionId ts) {
-        NavigableMap<TransactionId, IndexEntry> line = getLine(sKey);
+        VersionLine line = index.get(sKey);
         if (line != null) {
-            synchronized (line) {
-                if (ts == null) {
-                    Entry<TransactionId, IndexEntry> tsl = line.lastEntry();
-                    return tsl == null ? null : tsl.getKey();
-                } else {
-                    Entry<TransactionId, IndexEntry> tsl = line.ceilingEntry(ts);
-                    return tsl == null ? null : tsl.getKey();
-                }
+            if (ts == null) {
+                return line.lastKey();
+            } else {
+                return line.ceilingKey(ts);
             }
         } else {
             return null;
@@ -319,12 +448,17 @@ public class MVCCIndex<K> implements MapIndex {
      * @param committed committed flag
      * @param deleted deleted flag
      */
-    private void addToIndex(final K sKey, final TransactionId ts,
+    void addToIndex(final K sKey, final TransactionId ts,
             final Binary binaryKey, final boolean committed, final boolean deleted) {
         while (true) {
-            NavigableMap<TransactionId, IndexEntry> line = getLine(sKey);
+            VersionLine line = getLine(sKey);
             synchronized (line) {
-                line.put(ts, new IndexEntry(committed, deleted, binaryKey));
+                Entry<TransactionId, IndexEntry> before = line.lastEntry();
+                Set<Binary> surfaceBefore = surfaceVersions(line);
+                line.put(ts, committed, deleted, binaryKey);
+                Entry<TransactionId, IndexEntry> after = line.lastEntry();
+                updateSurface(surfaceBefore, surfaceVersions(line), after);
+                updateMultiVersion(sKey, line, before, after);
                 if (line == getLine(sKey)) {
                     return;
                 }
@@ -340,11 +474,16 @@ public class MVCCIndex<K> implements MapIndex {
      * @param ts transaction id
      * @param committed the committed value (redundant - always true)
      */
-    private void updateIndex(final K sKey, final TransactionId ts, final boolean committed) {
-        NavigableMap<TransactionId, IndexEntry> line = getLine(sKey);
+    void updateIndex(final K sKey, final TransactionId ts, final boolean committed) {
+        VersionLine line = getLine(sKey);
         synchronized (line) {
             if (committed) {
-                line.get(ts).commit();
+                Entry<TransactionId, IndexEntry> before = line.lastEntry();
+                Set<Binary> surfaceBefore = surfaceVersions(line);
+                line.commit(ts);
+                Entry<TransactionId, IndexEntry> after = line.lastEntry();
+                updateSurface(surfaceBefore, surfaceVersions(line), after);
+                updateMultiVersion(sKey, line, before, after);
             }
         }                    
     }
@@ -354,11 +493,16 @@ public class MVCCIndex<K> implements MapIndex {
      * @param sKey logical key
      * @param ts transaction id
      */
-    private void removeFromIndex(final K sKey, final TransactionId ts) {
+    void removeFromIndex(final K sKey, final TransactionId ts) {
         while (true) {
-            NavigableMap<TransactionId, IndexEntry> line = getLine(sKey);
+            VersionLine line = getLine(sKey);
             synchronized (line) {
+                Entry<TransactionId, IndexEntry> before = line.lastEntry();
+                Set<Binary> surfaceBefore = surfaceVersions(line);
                 line.remove(ts);
+                Entry<TransactionId, IndexEntry> after = line.lastEntry();
+                updateSurface(surfaceBefore, surfaceVersions(line), after);
+                updateMultiVersion(sKey, line, before, after);
                 if (line.isEmpty()) {
                     if (index.remove(sKey, line)) {
                         return;
@@ -371,15 +515,155 @@ public class MVCCIndex<K> implements MapIndex {
     }
 
     /**
-     * Get the map for a specified logical key.
+     * Update the surface after a change to the version line of a key. Must be called
+     * holding the lock on the line. A change is counted as started before any of it is
+     * published and as finished after, so that a query overlapping it does not use the surface.
+     * @param before the surface versions of the key before the change
+     * @param after the surface versions of the key after the change
+     * @param newest the newest version after the change, or null
+     */
+    private void updateSurface(final Set<Binary> before, final Set<Binary> after,
+            final Entry<TransactionId, IndexEntry> newest) {
+        TransactionId latest = latestTid.get();
+        boolean later = newest != null && (latest == null || newest.getKey().compareTo(latest) > 0);
+        if (!later && before.equals(after)) {
+            return;
+        }
+        surfaceChangesStarted.incrementAndGet();
+        try {
+            if (newest != null) {
+                advanceLatestTid(newest.getKey());
+            }
+            for (Binary version : after) {
+                if (!before.contains(version)) {
+                    surfaceKeys.add(version);
+                }
+            }
+            for (Binary version : before) {
+                if (!after.contains(version)) {
+                    surfaceKeys.remove(version);
+                }
+            }
+        } finally {
+            surfaceChangesFinished.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Update the record of logical keys with more than one version after a change
+     * to the version line of a key. Must be called holding the lock on the line.
+     * @param sKey the logical key
+     * @param line the version line
+     * @param before the newest version before the change, or null
+     * @param after the newest version after the change, or null
+     */
+    private void updateMultiVersion(final K sKey, final VersionLine line,
+            final Entry<TransactionId, IndexEntry> before, final Entry<TransactionId, IndexEntry> after) {
+        Entry<TransactionId, IndexEntry> anyVersion = after == null ? before : after;
+        if (anyVersion == null) {
+            return;
+        }
+        Integer partition = getPartition(anyVersion.getValue().getBinaryKey());
+        Integer hash = sKey.hashCode();
+        if (line.hasMultipleVersions()) {
+            ConcurrentNavigableMap<Integer, Set<K>> buckets = multiVersionKeys.get(partition);
+            if (buckets == null) {
+                buckets = new ConcurrentSkipListMap<Integer, Set<K>>();
+                ConcurrentNavigableMap<Integer, Set<K>> existing = multiVersionKeys.putIfAbsent(partition, buckets);
+                if (existing != null) {
+                    buckets = existing;
+                }
+            }
+            // an emptied bucket may be discarded by another key with the same hash, so retry
+            // until the key is added to a bucket that is still mapped
+            while (true) {
+                Set<K> bucket = buckets.get(hash);
+                if (bucket == null) {
+                    bucket = Collections.newSetFromMap(new ConcurrentHashMap<K, Boolean>());
+                    Set<K> existing = buckets.putIfAbsent(hash, bucket);
+                    if (existing != null) {
+                        bucket = existing;
+                    }
+                }
+                synchronized (bucket) {
+                    if (buckets.get(hash) == bucket) {
+                        bucket.add(sKey);
+                        return;
+                    }
+                }
+            }
+        } else {
+            ConcurrentNavigableMap<Integer, Set<K>> buckets = multiVersionKeys.get(partition);
+            if (buckets != null) {
+                Set<K> bucket = buckets.get(hash);
+                if (bucket != null) {
+                    synchronized (bucket) {
+                        if (bucket.remove(sKey) && bucket.isEmpty()) {
+                            buckets.remove(hash, bucket);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * @param binaryKey a version cache key
+     * @return the partition the key belongs to
+     */
+    private int getPartition(final Binary binaryKey) {
+        return bmc.getManagerContext().getKeyPartition(binaryKey);
+    }
+    
+    /**
+     * Get the surface versions of a key: the newest version and any uncommitted versions
+     * back to the most recent committed version, less deleted versions. Must be called
+     * holding the lock on the line.
+     * @param line the version line of the key
+     * @return the version cache keys
+     */
+    private static Set<Binary> surfaceVersions(final VersionLine line) {
+        Set<Binary> result = new HashSet<Binary>();
+        Entry<TransactionId, IndexEntry> entry = line.lastEntry();
+        while (entry != null) {
+            if (!entry.getValue().isDeleted()) {
+                result.add(entry.getValue().getBinaryKey());
+            }
+            if (entry.getValue().isCommitted()) {
+                break;
+            }
+            entry = line.lowerEntry(entry.getKey());
+        }
+        return result;
+    }
+    
+    /**
+     * Record a transaction id in the index, if it is later than any previously seen.
+     * The latest transaction id is not reduced when versions are removed.
+     * @param ts the transaction id
+     */
+    private void advanceLatestTid(final TransactionId ts) {
+        while (true) {
+            TransactionId latest = latestTid.get();
+            if (latest != null && latest.compareTo(ts) >= 0) {
+                return;
+            }
+            if (latestTid.compareAndSet(latest, ts)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the version line for a specified logical key.
      * @param sKey the key
-     * @return the map
+     * @return the version line
      */
-    private NavigableMap<TransactionId, IndexEntry> getLine(final K sKey) {
+    private VersionLine getLine(final K sKey) {
         while (true) {
-            NavigableMap<TransactionId, IndexEntry> line = index.get(sKey);
+            VersionLine line = index.get(sKey);
             if (line == null) {
-                line = new TreeMap<TransactionId, IndexEntry>();
+                line = new VersionLine();
                 index.putIfAbsent(sKey, line);
             } else {
                 return line;
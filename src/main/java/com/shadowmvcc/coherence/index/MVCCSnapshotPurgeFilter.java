@@ -30,6 +30,7 @@ import java.util.Set;
 import com.shadowmvcc.coherence.domain.TransactionId;
 import com.tangosol.io.pof.annotation.Portable;
 import com.tangosol.io.pof.annotation.PortableProperty;
+import com.tangosol.net.partition.PartitionSet;
 import com.tangosol.util.Filter;
 import com.tangosol.util.filter.IndexAwareFilter;
 
@@ -40,6 +41,12 @@ import com.tangosol.util.filter.IndexAwareFilter;
  * exclusive at the start and inclusive end. i.e. an entry with the timestamp
  * at the range end time is included.
  * 
+ * The filter may be limited to a set of partitions and a maximum number of
+ * keys, so that a purge can be performed in bounded batches. It should then be
+ * wrapped in a {@link com.tangosol.util.filter.PartitionedFilter} for the same partitions.
+ * When limited to a single partition, a batch may resume after the largest logical key
+ * hash code of the previous batch rather than starting again from the first key.
+ * 
  * @author David Whitmarsh
  * 
  * @param <K> the logical cache key type
@@ -51,6 +58,9 @@ public class MVCCSnapshotPurgeFilter<K> implements IndexAwareFilter, Serializabl
 
     @PortableProperty(0) private TransactionId rangeStart;
     @PortableProperty(1) private TransactionId rangeEnd;
+    @PortableProperty(2) private PartitionSet partitions;
+    @PortableProperty(3) private int maxKeys;
+    @PortableProperty(4) private Integer resumeAfter;
     
     /**
      *  Default constructor for POF use only.
@@ -68,6 +78,34 @@ public class MVCCSnapshotPurgeFilter<K> implements IndexAwareFilter, Serializabl
         this.rangeStart = rangeStart;
         this.rangeEnd = rangeEnd;
     }
+    
+    /**
+     * @param rangeStart transaction id of start of range (exclusive)
+     * @param rangeEnd transaction id of end of range (inclusive)
+     * @param partitions the partitions to purge
+     * @param maxKeys approximate maximum number of keys to match, zero for no limit
+     */
+    public MVCCSnapshotPurgeFilter(final TransactionId rangeStart, final TransactionId rangeEnd,
+            final PartitionSet partitions, final int maxKeys) {
+        super();
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.partitions = partitions;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * @param rangeStart transaction id of start of range (exclusive)
+     * @param rangeEnd transaction id of end of range (inclusive)
+     * @param partitions the partitions to purge, should be a single partition
+     * @param maxKeys approximate maximum number of keys to match, zero for no limit
+     * @param resumeAfter match only logical keys with a greater hash code, or null to start from the first
+     */
+    public MVCCSnapshotPurgeFilter(final TransactionId rangeStart, final TransactionId rangeEnd,
+            final PartitionSet partitions, final int maxKeys, final Integer resumeAfter) {
+        this(rangeStart, rangeEnd, partitions, maxKeys);
+        this.resumeAfter = resumeAfter;
+    }
 
     @Override
     @SuppressWarnings("rawtypes")
@@ -91,7 +129,7 @@ public class MVCCSnapshotPurgeFilter<K> implements IndexAwareFilter, Serializabl
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public Filter applyIndex(final Map indexes, final Set candidates) {
         MVCCIndex<K> index = getIndex(indexes);
-        candidates.retainAll(index.snapshotPurgeSet(rangeStart, rangeEnd));
+        candidates.retainAll(index.snapshotPurgeSet(rangeStart, rangeEnd, partitions, maxKeys, resumeAfter));
 
         // no further filtering required
         return null;
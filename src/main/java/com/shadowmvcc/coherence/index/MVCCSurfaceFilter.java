@@ -31,8 +31,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import com.shadowmvcc.coherence.domain.TransactionId;
-import com.tangosol.io.pof.annotation.Portable;
-import com.tangosol.io.pof.annotation.PortableProperty;
+import com.shadowmvcc.coherence.pof.MVCCSurfaceFilterSerializer;
 import com.tangosol.util.Binary;
 import com.tangosol.util.Filter;
 import com.tangosol.util.filter.IndexAwareFilter;
@@ -41,23 +40,21 @@ import com.tangosol.util.filter.IndexAwareFilter;
  * Filter to find the current versions from a cache. May be refined with either a set of keys
  * or a child filter.
  * 
+ * Serialised by {@link MVCCSurfaceFilterSerializer}.
+ * 
  * @author David Whitmarsh from an idea by Alexey Ragozin (alexey.ragozin@gmail.com)
  * 
  * @param <K> the logical cache key
  */
-@Portable
 public class MVCCSurfaceFilter<K> implements IndexAwareFilter, Serializable {
 
     private static final long serialVersionUID = 5267677476884085089L;
 
     public static final int POF_TXID = 0;
-    @PortableProperty(POF_TXID)
     private TransactionId transactionId;
     public static final int POF_KEYSET = 1;
-    @PortableProperty(POF_KEYSET)
     private Collection<K> keySet;
     public static final int POF_FILTER = 2;
-    @PortableProperty(POF_FILTER)
     private Filter filter = null;
     
     /**
@@ -161,6 +158,27 @@ public class MVCCSurfaceFilter<K> implements IndexAwareFilter, Serializable {
         return result;
     }
 
+    /**
+     * @return the transaction id
+     */
+    public TransactionId getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * @return the logical keys the filter is restricted to, or null
+     */
+    public Collection<K> getKeySet() {
+        return keySet;
+    }
+
+    /**
+     * @return the child filter, or null
+     */
+    public Filter getFilter() {
+        return filter;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
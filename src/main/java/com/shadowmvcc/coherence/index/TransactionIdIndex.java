@@ -0,0 +1,190 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.index;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.shadowmvcc.coherence.domain.Constants;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.shadowmvcc.coherence.pof.VersionedKeySerializer;
+import com.tangosol.net.BackingMapContext;
+import com.tangosol.util.Binary;
+import com.tangosol.util.BinaryEntry;
+import com.tangosol.util.MapIndex;
+import com.tangosol.util.ValueExtractor;
+
+/**
+ * Index of the version cache by transaction id. Maps each transaction id to the binary keys
+ * of the versions written by that transaction, so that an {@code EqualsFilter} or {@code InFilter}
+ * on {@link Constants#TRANSACTIONIDEXTRACTOR}, as used to commit, roll back or recover a transaction,
+ * is resolved in proportion to the writes of the transaction rather than by scanning the cache.
+ * 
+ * There is no forward map, the transaction id of an entry is read from its key.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class TransactionIdIndex implements MapIndex {
+
+    private final ConcurrentMap<TransactionId, Set<Binary>> keysByTransaction =
+            new ConcurrentHashMap<TransactionId, Set<Binary>>();
+
+    private final BackingMapContext bmc;
+
+    /**
+     * Constructor.
+     * @param bmc backing map context of the version cache
+     */
+    public TransactionIdIndex(final BackingMapContext bmc) {
+        super();
+        this.bmc = bmc;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void insert(final Entry entry) {
+        if (!(entry instanceof BinaryEntry)) {
+            throw new UnsupportedOperationException("only binary entry supported");
+        }
+        addToIndex((TransactionId) Constants.TRANSACTIONIDEXTRACTOR.extractFromEntry(entry),
+                ((BinaryEntry) entry).getBinaryKey());
+    }
+
+    /**
+     * The transaction id is part of the key, so cannot change on update.
+     * @param entry the updated entry
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void update(final Entry entry) {
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void delete(final Entry entry) {
+        if (!(entry instanceof BinaryEntry)) {
+            throw new UnsupportedOperationException("only binary entry supported");
+        }
+        removeFromIndex((TransactionId) Constants.TRANSACTIONIDEXTRACTOR.extractFromEntry(entry),
+                ((BinaryEntry) entry).getBinaryKey());
+    }
+
+    /**
+     * Add a version to the index.
+     * @param transactionId the transaction id of the version
+     * @param binaryKey the version cache binary key
+     */
+    void addToIndex(final TransactionId transactionId, final Binary binaryKey) {
+        while (true) {
+            Set<Binary> keys = keysByTransaction.get(transactionId);
+            if (keys == null) {
+                keys = Collections.newSetFromMap(new ConcurrentHashMap<Binary, Boolean>());
+                Set<Binary> existing = keysByTransaction.putIfAbsent(transactionId, keys);
+                if (existing != null) {
+                    keys = existing;
+                }
+            }
+            synchronized (keys) {
+                if (keysByTransaction.get(transactionId) == keys) {
+                    keys.add(binaryKey);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a version from the index, discarding the key set of the transaction
+     * when it becomes empty.
+     * @param transactionId the transaction id of the version
+     * @param binaryKey the version cache binary key
+     */
+    void removeFromIndex(final TransactionId transactionId, final Binary binaryKey) {
+        Set<Binary> keys = keysByTransaction.get(transactionId);
+        if (keys == null) {
+            return;
+        }
+        synchronized (keys) {
+            keys.remove(binaryKey);
+            if (keys.isEmpty()) {
+                keysByTransaction.remove(transactionId, keys);
+            }
+        }
+    }
+
+    /**
+     * Get the transaction id of a version cache entry.
+     * @param oKey the binary key
+     * @return the transaction id
+     */
+    @Override
+    public Object get(final Object oKey) {
+        Binary binaryKey = (Binary) oKey;
+        TransactionId result = null;
+        if (VersionedKeySerializer.isBinaryConfigured()) {
+            result = VersionedKeySerializer.getTransactionId(binaryKey);
+        }
+        if (result == null) {
+            result = ((VersionedKey<?>) bmc.getManagerContext().getKeyFromInternalConverter().convert(binaryKey))
+                    .getTransactionId();
+        }
+        return result;
+    }
+
+    /**
+     * @return map of transaction id to the set of binary keys of versions written by it
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Map getIndexContents() {
+        return Collections.unmodifiableMap(keysByTransaction);
+    }
+
+    @Override
+    public ValueExtractor getValueExtractor() {
+        return Constants.TRANSACTIONIDEXTRACTOR;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Comparator getComparator() {
+        return null;
+    }
+
+    @Override
+    public boolean isOrdered() {
+        return false;
+    }
+
+    @Override
+    public boolean isPartial() {
+        return false;
+    }
+}
@@ -0,0 +1,576 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute
+it and/or modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation, either version 3 of the
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it
+will be useful, but WITHOUT ANY WARRANTY; without even the implied
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See
+the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.index;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.index.MVCCIndex.IndexEntry;
+import com.tangosol.util.Binary;
+
+/**
+ * The ordered set of versions of a single logical key held by {@link MVCCIndex}.
+ *
+ * Most logical keys have only a handful of versions, so the line starts out
+ * packed: the components of each transaction id are held in sorted parallel
+ * primitive arrays alongside the version cache keys, and the committed and
+ * deleted flags are held as bits of a {@code long}. No {@link TransactionId}
+ * or {@link IndexEntry} objects are retained; they are created on demand for the
+ * entries returned to callers.
+ *
+ * Once a line exceeds {@link #TREE_THRESHOLD} versions it is converted to a
+ * {@link ConcurrentSkipListMap} so that inserts into long chains do not require array copies.
+ * It is packed again when purge reduces it to {@link #PACK_THRESHOLD} versions.
+ *
+ * Reads never block. The packed form is immutable and is replaced in its entirety by
+ * each change, the tree form is itself safe for concurrent access. Changes must be
+ * made while synchronized on the line.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+final class VersionLine {
+
+    /**
+     * Maximum number of versions held in packed form. Must not exceed
+     * the number of bits in a {@code long}.
+     */
+    static final int TREE_THRESHOLD = 32;
+
+    /**
+     * Number of versions at or below which a line in tree form is converted back to packed
+     * form. Lower than {@link #TREE_THRESHOLD} so that a line whose length oscillates around
+     * the threshold is not converted on every change.
+     */
+    static final int PACK_THRESHOLD = TREE_THRESHOLD / 2;
+
+    /**
+     * The versions, either {@link Packed} or {@link Tree}. Read once by each query
+     * so that it sees a single form.
+     */
+    private volatile Object versions = Packed.EMPTY;
+
+    /**
+     * @return true if there are no versions in the line
+     */
+    boolean isEmpty() {
+        Object v = versions;
+        return v instanceof Packed ? ((Packed) v).size() == 0 : ((Tree) v).map.isEmpty();
+    }
+
+    /**
+     * @return true if there is more than one version in the line
+     */
+    boolean hasMultipleVersions() {
+        Object v = versions;
+        return v instanceof Packed ? ((Packed) v).size() > 1 : ((Tree) v).size > 1;
+    }
+
+    /**
+     * @return true if the line is held in tree form
+     */
+    boolean isTree() {
+        return versions instanceof Tree;
+    }
+
+    /**
+     * Add a version to the line, replacing any existing version with the same transaction id.
+     * @param ts transaction id
+     * @param committed committed flag
+     * @param deleted deleted flag
+     * @param binaryKey version cache key
+     */
+    void put(final TransactionId ts, final boolean committed, final boolean deleted, final Binary binaryKey) {
+        Object v = versions;
+        if (v instanceof Tree) {
+            Tree tree = (Tree) v;
+            if (tree.map.put(ts, new IndexEntry(committed, deleted, binaryKey)) == null) {
+                tree.size++;
+            }
+            return;
+        }
+        Packed p = (Packed) v;
+        int pos = p.search(ts);
+        if (pos >= 0) {
+            versions = p.replace(pos, committed, deleted, binaryKey);
+        } else if (p.size() == TREE_THRESHOLD) {
+            Tree tree = p.toTree();
+            tree.map.put(ts, new IndexEntry(committed, deleted, binaryKey));
+            tree.size++;
+            versions = tree;
+        } else {
+            versions = p.insert(-(pos + 1), ts, committed, deleted, binaryKey);
+        }
+    }
+
+    /**
+     * Mark a version as committed. Does nothing if the version is not present.
+     * @param ts transaction id
+     */
+    void commit(final TransactionId ts) {
+        Object v = versions;
+        if (v instanceof Tree) {
+            ConcurrentNavigableMap<TransactionId, IndexEntry> map = ((Tree) v).map;
+            IndexEntry current = map.get(ts);
+            if (current != null && !current.isCommitted()) {
+                map.put(ts, new IndexEntry(true, current.isDeleted(), current.getBinaryKey()));
+            }
+            return;
+        }
+        Packed p = (Packed) v;
+        int pos = p.search(ts);
+        if (pos >= 0 && !p.isCommitted(pos)) {
+            versions = p.replace(pos, true, p.isDeleted(pos), p.binaryKeys[pos]);
+        }
+    }
+
+    /**
+     * Remove a version from the line. Does nothing if the version is not present.
+     * A line in tree form that falls to {@link #PACK_THRESHOLD} versions is packed again.
+     * @param ts transaction id
+     */
+    void remove(final TransactionId ts) {
+        Object v = versions;
+        if (v instanceof Tree) {
+            Tree tree = (Tree) v;
+            if (tree.map.remove(ts) != null && --tree.size <= PACK_THRESHOLD) {
+                versions = Packed.fromTree(tree.map);
+            }
+            return;
+        }
+        Packed p = (Packed) v;
+        int pos = p.search(ts);
+        if (pos >= 0) {
+            versions = p.remove(pos);
+        }
+    }
+
+    /**
+     * @return the entry with the lowest transaction id, or null if empty
+     */
+    Entry<TransactionId, IndexEntry> firstEntry() {
+        Object v = versions;
+        return v instanceof Packed ? ((Packed) v).entryAt(0) : ((Tree) v).map.firstEntry();
+    }
+
+    /**
+     * @return the entry with the highest transaction id, or null if empty
+     */
+    Entry<TransactionId, IndexEntry> lastEntry() {
+        Object v = versions;
+        if (v instanceof Packed) {
+            Packed p = (Packed) v;
+            return p.entryAt(p.size() - 1);
+        }
+        return ((Tree) v).map.lastEntry();
+    }
+
+    /**
+     * @param ts transaction id
+     * @return the entry with the greatest transaction id less than or equal to ts, or null
+     */
+    Entry<TransactionId, IndexEntry> floorEntry(final TransactionId ts) {
+        Object v = versions;
+        if (v instanceof Tree) {
+            return ((Tree) v).map.floorEntry(ts);
+        }
+        Packed p = (Packed) v;
+        int pos = p.search(ts);
+        return p.entryAt(pos >= 0 ? pos : -(pos + 1) - 1);
+    }
+
+    /**
+     * @param ts transaction id
+     * @return the entry with the greatest transaction id strictly less than ts, or null
+     */
+    Entry<TransactionId, IndexEntry> lowerEntry(final TransactionId ts) {
+        Object v = versions;
+        if (v instanceof Tree) {
+            return ((Tree) v).map.lowerEntry(ts);
+        }
+        Packed p = (Packed) v;
+        int pos = p.search(ts);
+        return p.entryAt(pos >= 0 ? pos - 1 : -(pos + 1) - 1);
+    }
+
+    /**
+     * @param ts transaction id
+     * @return the entry with the least transaction id strictly greater than ts, or null
+     */
+    Entry<TransactionId, IndexEntry> higherEntry(final TransactionId ts) {
+        Object v = versions;
+        if (v instanceof Tree) {
+            return ((Tree) v).map.higherEntry(ts);
+        }
+        Packed p = (Packed) v;
+        int pos = p.search(ts);
+        return p.entryAt(pos >= 0 ? pos + 1 : -(pos + 1));
+    }
+
+    /**
+     * @param ts transaction id
+     * @return the least transaction id greater than or equal to ts, or null
+     */
+    TransactionId ceilingKey(final TransactionId ts) {
+        Object v = versions;
+        if (v instanceof Tree) {
+            return ((Tree) v).map.ceilingKey(ts);
+        }
+        Packed p = (Packed) v;
+        int pos = p.search(ts);
+        if (pos < 0) {
+            pos = -(pos + 1);
+        }
+        return pos < p.size() ? p.tidAt(pos) : null;
+    }
+
+    /**
+     * @return the highest transaction id in the line, or null if empty
+     */
+    TransactionId lastKey() {
+        Entry<TransactionId, IndexEntry> last = lastEntry();
+        return last == null ? null : last.getKey();
+    }
+
+    /**
+     * Add to the result set the keys of all versions within the range,
+     * excluding the most recent version within the range.
+     * @param rangeStart exclusive start of the range
+     * @param rangeEnd inclusive end of the range
+     * @param result set to add the version cache keys to
+     */
+    void collectSnapshotPurge(final TransactionId rangeStart, final TransactionId rangeEnd,
+            final Set<Binary> result) {
+        Object v = versions;
+        if (v instanceof Tree) {
+            ConcurrentNavigableMap<TransactionId, IndexEntry> map = ((Tree) v).map;
+            Entry<TransactionId, IndexEntry> current = map.floorEntry(rangeEnd);
+            while (current != null && current.getKey().compareTo(rangeStart) > 0) {
+                current = map.lowerEntry(current.getKey());
+                if (current != null && current.getKey().compareTo(rangeStart) > 0) {
+                    result.add(current.getValue().getBinaryKey());
+                }
+            }
+            return;
+        }
+        Packed p = (Packed) v;
+        int pos = p.search(rangeEnd);
+        int top = pos >= 0 ? pos : -(pos + 1) - 1;
+        for (int i = top - 1; i >= 0 && p.compareAt(i, rangeStart) > 0; i--) {
+            result.add(p.binaryKeys[i]);
+        }
+    }
+
+    /**
+     * Versions in tree form, with a count of the versions maintained under the line lock
+     * as the size of a {@link ConcurrentSkipListMap} is not a constant time operation.
+     */
+    private static final class Tree {
+
+        private final ConcurrentNavigableMap<TransactionId, IndexEntry> map =
+                new ConcurrentSkipListMap<TransactionId, IndexEntry>();
+        private int size;
+    }
+
+    /**
+     * Immutable packed representation of the versions in a line. The arrays are
+     * sized exactly to the number of versions.
+     */
+    private static final class Packed {
+
+        static final Packed EMPTY = new Packed(new long[0], new int[0], new int[0], new Binary[0], 0L, 0L);
+
+        private final long[] timestamps;
+        private final int[] contextIds;
+        private final int[] subSequences;
+        private final Binary[] binaryKeys;
+        private final long committedBits;
+        private final long deletedBits;
+
+        /**
+         * @param timestamps transaction id timestamps
+         * @param contextIds transaction id context ids
+         * @param subSequences transaction id sub-sequences
+         * @param binaryKeys version cache keys
+         * @param committedBits committed flags
+         * @param deletedBits deleted flags
+         */
+        Packed(final long[] timestamps, final int[] contextIds, final int[] subSequences,
+                final Binary[] binaryKeys, final long committedBits, final long deletedBits) {
+            this.timestamps = timestamps;
+            this.contextIds = contextIds;
+            this.subSequences = subSequences;
+            this.binaryKeys = binaryKeys;
+            this.committedBits = committedBits;
+            this.deletedBits = deletedBits;
+        }
+
+        /**
+         * @return the number of versions
+         */
+        int size() {
+            return timestamps.length;
+        }
+
+        /**
+         * @param pos position
+         * @return the committed flag at the position
+         */
+        boolean isCommitted(final int pos) {
+            return getBit(committedBits, pos);
+        }
+
+        /**
+         * @param pos position
+         * @return the deleted flag at the position
+         */
+        boolean isDeleted(final int pos) {
+            return getBit(deletedBits, pos);
+        }
+
+        /**
+         * Binary search for a transaction id.
+         * @param ts the transaction id
+         * @return the index if found, otherwise (-(insertion point) - 1)
+         */
+        int search(final TransactionId ts) {
+            int low = 0;
+            int high = timestamps.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compareAt(mid, ts);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        /**
+         * Compare the transaction id at a position with the one given, consistent
+         * with {@link TransactionId#compareTo(TransactionId)}.
+         * @param pos position
+         * @param ts transaction id to compare with
+         * @return negative, zero or positive
+         */
+        int compareAt(final int pos, final TransactionId ts) {
+            long ts1 = timestamps[pos];
+            long ts2 = ts.getTimeStampMillis();
+            if (ts1 != ts2) {
+                return ts1 < ts2 ? -1 : 1;
+            }
+            int c1 = contextIds[pos];
+            int c2 = ts.getContextId();
+            if (c1 != c2) {
+                return c1 < c2 ? -1 : 1;
+            }
+            int s1 = subSequences[pos];
+            int s2 = ts.getSubSequence();
+            if (s1 != s2) {
+                return s1 < s2 ? -1 : 1;
+            }
+            return 0;
+        }
+
+        /**
+         * @param pos position
+         * @return a new transaction id for the position
+         */
+        TransactionId tidAt(final int pos) {
+            return new TransactionId(timestamps[pos], contextIds[pos], subSequences[pos]);
+        }
+
+        /**
+         * @param pos position
+         * @return a new entry for the position, or null if the position is out of range
+         */
+        Entry<TransactionId, IndexEntry> entryAt(final int pos) {
+            if (pos < 0 || pos >= timestamps.length) {
+                return null;
+            }
+            return new SimpleImmutableEntry<TransactionId, IndexEntry>(tidAt(pos),
+                    new IndexEntry(isCommitted(pos), isDeleted(pos), binaryKeys[pos]));
+        }
+
+        /**
+         * @param pos position of the version to replace
+         * @param committed committed flag
+         * @param deleted deleted flag
+         * @param binaryKey version cache key
+         * @return a copy with the version at the position replaced
+         */
+        Packed replace(final int pos, final boolean committed, final boolean deleted, final Binary binaryKey) {
+            Binary[] newBinaryKeys = binaryKeys;
+            if (binaryKey != binaryKeys[pos]) {
+                newBinaryKeys = binaryKeys.clone();
+                newBinaryKeys[pos] = binaryKey;
+            }
+            return new Packed(timestamps, contextIds, subSequences, newBinaryKeys,
+                    setBit(committedBits, pos, committed), setBit(deletedBits, pos, deleted));
+        }
+
+        /**
+         * @param pos insertion point
+         * @param ts transaction id
+         * @param committed committed flag
+         * @param deleted deleted flag
+         * @param binaryKey version cache key
+         * @return a copy with the version inserted
+         */
+        Packed insert(final int pos, final TransactionId ts,
+                final boolean committed, final boolean deleted, final Binary binaryKey) {
+            int size = timestamps.length;
+            long[] newTimestamps = new long[size + 1];
+            int[] newContextIds = new int[size + 1];
+            int[] newSubSequences = new int[size + 1];
+            Binary[] newBinaryKeys = new Binary[size + 1];
+            System.arraycopy(timestamps, 0, newTimestamps, 0, pos);
+            System.arraycopy(contextIds, 0, newContextIds, 0, pos);
+            System.arraycopy(subSequences, 0, newSubSequences, 0, pos);
+            System.arraycopy(binaryKeys, 0, newBinaryKeys, 0, pos);
+            System.arraycopy(timestamps, pos, newTimestamps, pos + 1, size - pos);
+            System.arraycopy(contextIds, pos, newContextIds, pos + 1, size - pos);
+            System.arraycopy(subSequences, pos, newSubSequences, pos + 1, size - pos);
+            System.arraycopy(binaryKeys, pos, newBinaryKeys, pos + 1, size - pos);
+            newTimestamps[pos] = ts.getTimeStampMillis();
+            newContextIds[pos] = ts.getContextId();
+            newSubSequences[pos] = ts.getSubSequence();
+            newBinaryKeys[pos] = binaryKey;
+            return new Packed(newTimestamps, newContextIds, newSubSequences, newBinaryKeys,
+                    insertBit(committedBits, pos, committed), insertBit(deletedBits, pos, deleted));
+        }
+
+        /**
+         * @param pos position of the version to remove
+         * @return a copy with the version removed
+         */
+        Packed remove(final int pos) {
+            int size = timestamps.length - 1;
+            if (size == 0) {
+                return EMPTY;
+            }
+            long[] newTimestamps = new long[size];
+            int[] newContextIds = new int[size];
+            int[] newSubSequences = new int[size];
+            Binary[] newBinaryKeys = new Binary[size];
+            System.arraycopy(timestamps, 0, newTimestamps, 0, pos);
+            System.arraycopy(contextIds, 0, newContextIds, 0, pos);
+            System.arraycopy(subSequences, 0, newSubSequences, 0, pos);
+            System.arraycopy(binaryKeys, 0, newBinaryKeys, 0, pos);
+            System.arraycopy(timestamps, pos + 1, newTimestamps, pos, size - pos);
+            System.arraycopy(contextIds, pos + 1, newContextIds, pos, size - pos);
+            System.arraycopy(subSequences, pos + 1, newSubSequences, pos, size - pos);
+            System.arraycopy(binaryKeys, pos + 1, newBinaryKeys, pos, size - pos);
+            return new Packed(newTimestamps, newContextIds, newSubSequences, newBinaryKeys,
+                    removeBit(committedBits, pos), removeBit(deletedBits, pos));
+        }
+
+        /**
+         * @return a new tree containing the versions
+         */
+        Tree toTree() {
+            Tree result = new Tree();
+            for (int i = 0; i < timestamps.length; i++) {
+                result.map.put(tidAt(i), new IndexEntry(isCommitted(i), isDeleted(i), binaryKeys[i]));
+            }
+            result.size = timestamps.length;
+            return result;
+        }
+
+        /**
+         * @param map versions in tree form, no more than {@link VersionLine#TREE_THRESHOLD}
+         * @return the versions in packed form
+         */
+        static Packed fromTree(final ConcurrentNavigableMap<TransactionId, IndexEntry> map) {
+            int size = map.size();
+            long[] timestamps = new long[size];
+            int[] contextIds = new int[size];
+            int[] subSequences = new int[size];
+            Binary[] binaryKeys = new Binary[size];
+            long committedBits = 0L;
+            long deletedBits = 0L;
+            int pos = 0;
+            for (Entry<TransactionId, IndexEntry> entry : map.entrySet()) {
+                timestamps[pos] = entry.getKey().getTimeStampMillis();
+                contextIds[pos] = entry.getKey().getContextId();
+                subSequences[pos] = entry.getKey().getSubSequence();
+                binaryKeys[pos] = entry.getValue().getBinaryKey();
+                committedBits = setBit(committedBits, pos, entry.getValue().isCommitted());
+                deletedBits = setBit(deletedBits, pos, entry.getValue().isDeleted());
+                pos++;
+            }
+            return new Packed(timestamps, contextIds, subSequences, binaryKeys, committedBits, deletedBits);
+        }
+    }
+
+    /**
+     * @param bits the bitset
+     * @param pos bit position
+     * @return the value of the bit
+     */
+    private static boolean getBit(final long bits, final int pos) {
+        return (bits & (1L << pos)) != 0;
+    }
+
+    /**
+     * @param bits the bitset
+     * @param pos bit position
+     * @param value new value of the bit
+     * @return the updated bitset
+     */
+    private static long setBit(final long bits, final int pos, final boolean value) {
+        return value ? bits | (1L << pos) : bits & ~(1L << pos);
+    }
+
+    /**
+     * Insert a bit, shifting higher bits up one position.
+     * @param bits the bitset
+     * @param pos bit position
+     * @param value value of the inserted bit
+     * @return the updated bitset
+     */
+    private static long insertBit(final long bits, final int pos, final boolean value) {
+        long lowMask = (1L << pos) - 1;
+        long result = (bits & lowMask) | ((bits & ~lowMask) << 1);
+        return setBit(result, pos, value);
+    }
+
+    /**
+     * Remove a bit, shifting higher bits down one position.
+     * @param bits the bitset
+     * @param pos bit position
+     * @return the updated bitset
+     */
+    private static long removeBit(final long bits, final int pos) {
+        long lowMask = (1L << pos) - 1;
+        return (bits & lowMask) | ((bits >>> 1) & ~lowMask);
+    }
+}
@@ -24,17 +24,18 @@ package com.shadowmvcc.coherence.invocable;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.NavigableSet;
 import java.util.Set;
-import java.util.TreeSet;
 
 import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.config.ClusterTimeProviderFactory;
+import com.shadowmvcc.coherence.config.ConfigurationFactory;
 import com.shadowmvcc.coherence.domain.IsolationLevel;
 import com.shadowmvcc.coherence.domain.ProcessorResult;
 import com.shadowmvcc.coherence.domain.TransactionId;
 import com.shadowmvcc.coherence.domain.TransactionSetWrapper;
 import com.shadowmvcc.coherence.index.MVCCExtractor;
 import com.shadowmvcc.coherence.index.MVCCIndex;
+import com.shadowmvcc.coherence.index.MVCCIndex.IndexEntry;
 import com.tangosol.io.pof.annotation.Portable;
 import com.tangosol.io.pof.annotation.PortableProperty;
 import com.tangosol.net.BackingMapContext;
@@ -59,10 +60,18 @@ public abstract class AbstractMVCCProcessor<K, R> extends AbstractProcessor {
 
     private static final long serialVersionUID = -8977457529050193716L;
 
-    @PortableProperty(0) protected TransactionId transactionId;
-    @PortableProperty(1) protected IsolationLevel isolationLevel;
-    @PortableProperty(2) protected CacheName cacheName;
-    @PortableProperty(3) protected Filter validationFilter = null;
+    private static final int MAX_READ_TIMESTAMPS =
+            ConfigurationFactory.getConfiguraration().getMaxReadTimestamps();
+
+    public static final int POF_TRANSACTIONID = 0;
+    public static final int POF_ISOLATIONLEVEL = 1;
+    public static final int POF_CACHENAME = 2;
+    public static final int POF_VALIDATIONFILTER = 3;
+
+    @PortableProperty(POF_TRANSACTIONID) protected TransactionId transactionId;
+    @PortableProperty(POF_ISOLATIONLEVEL) protected IsolationLevel isolationLevel;
+    @PortableProperty(POF_CACHENAME) protected CacheName cacheName;
+    @PortableProperty(POF_VALIDATIONFILTER) protected Filter validationFilter = null;
     /**
      * Constructor.
      * @param transactionId the transaction Id
@@ -105,24 +114,40 @@ public abstract class AbstractMVCCProcessor<K, R> extends AbstractProcessor {
     public abstract ProcessorResult<K, R> process(Entry entryarg);
 
     /**
-     * Get the set of read markers from the key cache entry.
-     * @param entry the key cache entry
-     * @return set of transactions.
+     * @return the transaction id
+     */
+    public TransactionId getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * @return the isolation level
      */
-    protected NavigableSet<TransactionId> getReadTransactions(final Entry entry) {
-        TransactionSetWrapper tsw = (TransactionSetWrapper) entry.getValue();
-        return tsw == null ? null : tsw.getTransactionIdSet();
+    public IsolationLevel getIsolationLevel() {
+        return isolationLevel;
     }
 
     /**
-     * Replace the read marker set.
+     * @return the cache name
+     */
+    public CacheName getCacheName() {
+        return cacheName;
+    }
+
+    /**
+     * @return the validation filter, or null if there is none
+     */
+    public Filter getValidationFilter() {
+        return validationFilter;
+    }
+
+    /**
+     * Get the read markers from the key cache entry.
      * @param entry the key cache entry
-     * @param readTimestamps the set of read timestamps
+     * @return the read markers, or null if there are none
      */
-    protected void setReadTransactions(final Entry entry, final NavigableSet<TransactionId> readTimestamps) {
-        TransactionSetWrapper tsw = new TransactionSetWrapper();
-        tsw.setTransactionIdSet(readTimestamps);
-        entry.setValue(tsw);
+    protected TransactionSetWrapper getReadTransactions(final Entry entry) {
+        return (TransactionSetWrapper) entry.getValue();
     }
 
     /**
@@ -142,7 +167,7 @@ public abstract class AbstractMVCCProcessor<K, R> extends AbstractProcessor {
      * @return the transaction id or null if none found.
      */
     protected TransactionId getNextRead(final Entry entry) {
-        NavigableSet<TransactionId> readTimestamps = getReadTransactions(entry);
+        TransactionSetWrapper readTimestamps = getReadTransactions(entry);
         if (readTimestamps == null) {
             return null;
         }
@@ -174,16 +199,44 @@ public abstract class AbstractMVCCProcessor<K, R> extends AbstractProcessor {
     }
     
     /**
-     * Set a read timestamp.
+     * Set a read timestamp. The key cache entry is not updated if the read is already covered.
+     * If the number of reads held exceeds the configured maximum, those that can no longer
+     * affect a write are discarded or collapsed into the high-water mark.
      * @param entry the key cache entry
      */
     protected void setReadTimestamp(final BinaryEntry entry) {
-        NavigableSet<TransactionId> readTimestamps = getReadTransactions(entry);
+        TransactionSetWrapper readTimestamps = getReadTransactions(entry);
         if (readTimestamps == null) {
-            readTimestamps = new TreeSet<TransactionId>();
+            readTimestamps = new TransactionSetWrapper();
+        }
+        if (!readTimestamps.addRead(transactionId)) {
+            return;
+        }
+        if (readTimestamps.size() > MAX_READ_TIMESTAMPS) {
+            long lowBoundTime = ClusterTimeProviderFactory.getInstance().getClusterTime()
+                    - ConfigurationFactory.getConfiguraration().getMinimumSnapshotAge();
+            readTimestamps.prune(MAX_READ_TIMESTAMPS,
+                    new TransactionId(lowBoundTime, Integer.MIN_VALUE, Integer.MIN_VALUE),
+                    getLatestCommitted(entry));
+        }
+        entry.setValue(readTimestamps);
+    }
+    
+    /**
+     * Get the transaction id of the latest committed version of the key.
+     * @param entry the key cache entry
+     * @return the transaction id, or null if there is no committed version
+     */
+    @SuppressWarnings("unchecked")
+    private TransactionId getLatestCommitted(final BinaryEntry entry) {
+        MVCCIndex<K> index = (MVCCIndex<K>) getVersionCacheBackingMapContext(entry)
+                .getIndexMap().get(MVCCExtractor.INSTANCE);
+        K key = (K) entry.getKey();
+        Map.Entry<TransactionId, IndexEntry> version = index.floorEntry(key, TransactionId.END_OF_TIME);
+        while (version != null && !version.getValue().isCommitted()) {
+            version = index.lowerEntry(key, version.getKey());
         }
-        readTimestamps.add(transactionId);
-        setReadTransactions(entry, readTimestamps);
+        return version == null ? null : version.getKey();
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
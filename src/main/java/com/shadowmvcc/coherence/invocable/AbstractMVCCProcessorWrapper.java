@@ -28,8 +28,6 @@ import com.shadowmvcc.coherence.cache.CacheName;
 import com.shadowmvcc.coherence.domain.IsolationLevel;
 import com.shadowmvcc.coherence.domain.TransactionId;
 import com.shadowmvcc.coherence.processor.Reducer;
-import com.tangosol.io.pof.annotation.Portable;
-import com.tangosol.io.pof.annotation.PortableProperty;
 import com.tangosol.util.Filter;
 import com.tangosol.util.InvocableMap.EntryProcessor;
 
@@ -43,12 +41,12 @@ import com.tangosol.util.InvocableMap.EntryProcessor;
  * @param <K> key type
  * @param <R> processor result type
  */
-@Portable
 public abstract class AbstractMVCCProcessorWrapper<K, R> extends AbstractMVCCProcessor<K, R> implements Reducer {
 
     private static final long serialVersionUID = 8572836706068655491L;
     
-    @PortableProperty(10) protected EntryProcessor delegate;
+    public static final int POF_DELEGATE = 10;
+    protected EntryProcessor delegate;
 
     /**
      *  Default constructor for POF use only.
@@ -86,6 +84,13 @@ public abstract class AbstractMVCCProcessorWrapper<K, R> extends AbstractMVCCPro
         this.delegate = delegate;
     }
 
+    /**
+     * @return the wrapped {@code EntryProcessor}
+     */
+    public EntryProcessor getDelegate() {
+        return delegate;
+    }
+
     @SuppressWarnings("rawtypes")
     @Override
     public Map reduce(final Map processorResults) {
@@ -0,0 +1,93 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.invocable;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.cache.internal.BulkLoadProcessor;
+import com.tangosol.io.pof.annotation.Portable;
+import com.tangosol.io.pof.annotation.PortableProperty;
+import com.tangosol.net.CacheFactory;
+import com.tangosol.net.Invocable;
+import com.tangosol.net.InvocationService;
+import com.tangosol.net.NamedCache;
+import com.tangosol.util.Binary;
+
+/**
+ * {@code Invocable} to write a batch of committed versions into the version cache on the
+ * member that owns them, using a {@link BulkLoadProcessor}. The values are serialised and
+ * decorated by the client, so the member does no more than store them. The result is the
+ * set of logical keys not loaded because they already have a version at or after the load.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+@Portable
+public class BulkLoadInvoker implements Invocable {
+
+    private static final long serialVersionUID = -1482275398841320815L;
+
+    @PortableProperty(0) private CacheName cacheName;
+    @PortableProperty(1) private Map<Object, Binary> valueMap;
+
+    private transient Set<Object> rejected;
+
+    /**
+     * Default constructor for POF use only.
+     */
+    public BulkLoadInvoker() {
+        super();
+    }
+
+    /**
+     * Constructor.
+     * @param cacheName cache name
+     * @param valueMap map of version cache key to the binary value to write
+     */
+    public BulkLoadInvoker(final CacheName cacheName, final Map<Object, Binary> valueMap) {
+        super();
+        this.cacheName = cacheName;
+        this.valueMap = valueMap;
+    }
+
+    @Override
+    public void init(final InvocationService invocationservice) {
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void run() {
+        NamedCache versionCache = CacheFactory.getCache(cacheName.getVersionCacheName());
+        rejected = new HashSet<Object>(
+                versionCache.invokeAll(valueMap.keySet(), new BulkLoadProcessor(valueMap)).values());
+    }
+
+    @Override
+    public Object getResult() {
+        return rejected;
+    }
+
+}
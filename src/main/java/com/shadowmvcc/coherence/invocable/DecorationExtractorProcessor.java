@@ -23,6 +23,7 @@ along with Shadow MVCC for Oracle Coherence.  If not, see
 package com.shadowmvcc.coherence.invocable;
 
 import com.shadowmvcc.coherence.domain.Constants;
+import com.shadowmvcc.coherence.domain.Utils;
 import com.tangosol.io.pof.annotation.Portable;
 import com.tangosol.io.pof.annotation.PortableProperty;
 import com.tangosol.util.Binary;
@@ -32,7 +33,8 @@ import com.tangosol.util.InvocableMap.Entry;
 import com.tangosol.util.processor.AbstractProcessor;
 
 /**
- * Extract and return a decoration value from a cache entry.
+ * Extract and return a decoration value from a cache entry. The commit and deleted
+ * status are read from the version cache entry flags whichever format they are stored in.
  * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
@@ -75,6 +77,15 @@ public class DecorationExtractorProcessor extends AbstractProcessor {
     public Object process(final Entry entry) {
         BinaryEntry binEntry = (BinaryEntry) entry;
         Binary binValue = binEntry.getBinaryValue();
+        if (binValue == null) {
+            return null;
+        }
+        if (decoId == Constants.DECO_COMMIT) {
+            return Utils.isCommitted(binEntry);
+        }
+        if (decoId == Constants.DECO_DELETED) {
+            return Utils.isDeleted(binEntry);
+        }
         if (ExternalizableHelper.isDecorated(binValue)) {
             Binary binDeco = ExternalizableHelper.getDecoration(binValue, decoId);
             if (binDeco != null) {
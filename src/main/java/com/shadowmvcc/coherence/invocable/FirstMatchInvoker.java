@@ -0,0 +1,153 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.invocable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.domain.ProcessorResult;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.VersionCacheKey;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.shadowmvcc.coherence.index.MVCCSurfaceFilter;
+import com.tangosol.io.pof.annotation.Portable;
+import com.tangosol.io.pof.annotation.PortableProperty;
+import com.tangosol.net.CacheFactory;
+import com.tangosol.net.Invocable;
+import com.tangosol.net.InvocationService;
+import com.tangosol.net.NamedCache;
+import com.tangosol.net.partition.PartitionSet;
+import com.tangosol.util.Filter;
+import com.tangosol.util.InvocableMap.EntryProcessor;
+import com.tangosol.util.filter.PartitionedFilter;
+
+/**
+ * {@code Invocable} to search for an entry matching a filter on a specific member, executing
+ * a Boolean valued EntryProcessor against the matching keys in bounded chunks, and stopping after
+ * the first chunk containing a committed match for which it returns true.
+ * The result map contains that key if one is found.
+ * Otherwise the retry map contains the keys whose matching versions were uncommitted, which
+ * have not been checked.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ * @param <K> Key type of the cache
+ */
+@Portable
+public class FirstMatchInvoker<K> implements Invocable {
+
+    private static final long serialVersionUID = -6087253169617427113L;
+
+    private static final int CHUNK_SIZE = 64;
+
+    @PortableProperty(0) private CacheName cacheName;
+    @PortableProperty(1) private Filter filter;
+    @PortableProperty(2) private TransactionId tid;
+    @PortableProperty(3) private EntryProcessor entryProcessor;
+    @PortableProperty(4) private PartitionSet partitions;
+
+    private transient Map<K, Boolean> resultMap;
+    private transient Map<K, VersionCacheKey<K>> retryMap;
+
+    /**
+     * Default constructor for POF use only.
+     */
+    public FirstMatchInvoker() {
+        super();
+    }
+
+    /**
+     * Constructor.
+     * @param cacheName cache name
+     * @param filter the filter
+     * @param tid current transaction id
+     * @param entryProcessor the Boolean valued EntryProcessor to invoke
+     * @param partitions the set of partitions to search
+     */
+    public FirstMatchInvoker(final CacheName cacheName, final Filter filter,
+            final TransactionId tid, final EntryProcessor entryProcessor,
+            final PartitionSet partitions) {
+        super();
+        this.cacheName = cacheName;
+        this.filter = filter;
+        this.tid = tid;
+        this.entryProcessor = entryProcessor;
+        this.partitions = partitions;
+    }
+
+    @Override
+    public void init(final InvocationService invocationservice) {
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void run() {
+
+        NamedCache versionCache = CacheFactory.getCache(cacheName.getVersionCacheName());
+        NamedCache keyCache = CacheFactory.getCache(cacheName.getKeyCacheName());
+
+        Filter filterPart = new PartitionedFilter(new MVCCSurfaceFilter<K>(tid, filter), partitions);
+
+        Set<K> keys = new HashSet<K>();
+        for (VersionedKey<K> vk : (Set<VersionedKey<K>>) versionCache.keySet(filterPart)) {
+            keys.add(vk.getLogicalKey());
+        }
+
+        resultMap = new HashMap<K, Boolean>();
+        retryMap = new HashMap<K, VersionCacheKey<K>>();
+
+        Iterator<K> keyIterator = keys.iterator();
+        while (keyIterator.hasNext()) {
+            Set<K> chunk = new HashSet<K>();
+            while (keyIterator.hasNext() && chunk.size() < CHUNK_SIZE) {
+                chunk.add(keyIterator.next());
+            }
+            Map<K, ProcessorResult<K, Boolean>> chunkResults =
+                    (Map<K, ProcessorResult<K, Boolean>>) keyCache.invokeAll(chunk, entryProcessor);
+            for (Map.Entry<K, ProcessorResult<K, Boolean>> entry : chunkResults.entrySet()) {
+                ProcessorResult<K, Boolean> result = entry.getValue();
+                if (result == null) {
+                    continue;
+                }
+                if (result.isUncommitted()) {
+                    retryMap.put(entry.getKey(), result.getWaitKey());
+                } else if (Boolean.TRUE.equals(result.getResult())) {
+                    resultMap.put(entry.getKey(), Boolean.TRUE);
+                    retryMap.clear();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public EntryProcessorInvokerResult<K, Boolean> getResult() {
+        return new EntryProcessorInvokerResult<K, Boolean>(
+                resultMap, retryMap, new HashMap<CacheName, Set<Object>>());
+    }
+
+}
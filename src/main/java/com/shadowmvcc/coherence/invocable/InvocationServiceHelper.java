@@ -22,6 +22,7 @@ import com.tangosol.net.NamedCache;
 import com.tangosol.net.PartitionedService;
 import com.tangosol.net.Service;
 import com.tangosol.net.partition.PartitionSet;
+import com.tangosol.util.Filter;
 
 /**
  * 
@@ -104,6 +105,21 @@ public class InvocationServiceHelper<R> {
      */
     public <K> void invokeActionForKeyset(final CacheName cacheName,
             final Set<K> keyset, final InvocableFactory<Set<K>> invocableFactory) {
+        invokeActionForKeyset(cacheName, keyset, invocableFactory, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Invoke the action for a set of keys on a cache. The keys are split by owning member
+     * and into batches of at most the given size, and a separate invocable sent for each batch.
+     * All invocables are sent before any result is awaited.
+     * @param cacheName cache name
+     * @param keyset set of keys to invoke on
+     * @param invocableFactory factory for creating invocable instances
+     * @param batchSize maximum number of keys in one invocable
+     * @param <K> type of key
+     */
+    public <K> void invokeActionForKeyset(final CacheName cacheName,
+            final Set<K> keyset, final InvocableFactory<Set<K>> invocableFactory, final int batchSize) {
         
         InvocationService invocationService = (InvocationService) getService(invocationServiceName);
 
@@ -121,12 +137,37 @@ public class InvocationServiceHelper<R> {
         }
         
         for (Map.Entry<Member, Set<K>> memberKeyEntry : memberKeyMap.entrySet()) {
-            Invocable invocable = invocableFactory.getInvocable(memberKeyEntry.getValue());
-            KeyInvocationObserver<K, R> observer = new KeyInvocationObserver<K, R>(
-                    memberKeyEntry.getValue(), cacheName, observerResultQueue, invocableFactory);
-            outstanding.add(observer);
-            invocationService.execute(invocable, Collections.singleton(memberKeyEntry.getKey()), observer);
+            for (Set<K> batch : split(memberKeyEntry.getValue(), batchSize)) {
+                Invocable invocable = invocableFactory.getInvocable(batch);
+                KeyInvocationObserver<K, R> observer = new KeyInvocationObserver<K, R>(
+                        batch, cacheName, observerResultQueue, invocableFactory);
+                outstanding.add(observer);
+                invocationService.execute(invocable, Collections.singleton(memberKeyEntry.getKey()), observer);
+            }
+        }
+    }
+
+    /**
+     * Split a set of keys into batches.
+     * @param keys the keys
+     * @param batchSize maximum number of keys in a batch
+     * @return the batches
+     * @param <K> type of key
+     */
+    private static <K> List<Set<K>> split(final Set<K> keys, final int batchSize) {
+        if (batchSize <= 0 || keys.size() <= batchSize) {
+            return Collections.singletonList(keys);
         }
+        List<Set<K>> result = new ArrayList<Set<K>>();
+        Set<K> batch = null;
+        for (K key : keys) {
+            if (batch == null || batch.size() == batchSize) {
+                batch = new HashSet<K>();
+                result.add(batch);
+            }
+            batch.add(key);
+        }
+        return result;
     }
 
     /**
@@ -179,8 +220,20 @@ public class InvocationServiceHelper<R> {
      * @return collection of result objects from the invocations
      * @throws Throwable if an invocation throws an exception
      */
-    @SuppressWarnings("unchecked")
     public Collection<R> waitForAllInvocations() throws Throwable {
+        return waitForInvocationsUntil(null);
+    }
+    
+    /**
+     * Wait for invocations to complete until one returns a result accepted by a filter. Retry
+     * any that failed because of member departure. Invocations still outstanding when a result
+     * is accepted are abandoned and their results discarded.
+     * @param filter filter to evaluate each result against, or null to wait for all invocations
+     * @return collection of result objects received, the last of which is the accepted result if any
+     * @throws Throwable if an invocation throws an exception
+     */
+    @SuppressWarnings("unchecked")
+    public Collection<R> waitForInvocationsUntil(final Filter filter) throws Throwable {
         
         List<R> result = new ArrayList<R>(outstanding.size());
         
@@ -208,6 +261,9 @@ public class InvocationServiceHelper<R> {
                 }
             } else {
                 result.add(observer.getResult());
+                if (filter != null && filter.evaluate(observer.getResult())) {
+                    outstanding.clear();
+                }
             }
         }
         
@@ -0,0 +1,119 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.invocable;
+
+import java.util.Collections;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.cache.internal.VersionCommitHub;
+import com.shadowmvcc.coherence.domain.ProcessorResult;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.tangosol.io.pof.annotation.Portable;
+import com.tangosol.io.pof.annotation.PortableProperty;
+import com.tangosol.net.CacheFactory;
+import com.tangosol.net.Invocable;
+import com.tangosol.net.InvocationService;
+import com.tangosol.net.NamedCache;
+import com.tangosol.util.InvocableMap.EntryProcessor;
+
+/**
+ * {@code Invocable} to execute an EntryProcessor against a single key on the member that owns it.
+ * If the key has an uncommitted version, the member waits for it to be committed or rolled back
+ * and executes the EntryProcessor again, so that a contended key costs the client one further request.
+ * It is sent through the wait service, as it holds a thread of that service while it waits.
+ * The result is the {@link ProcessorResult} of the last execution, which is still uncommitted
+ * if the version was not resolved within the timeout. The wait ends with a TransactionException
+ * if the calling transaction expires.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ * @param <K> Key type of the cache
+ * @param <R> Result type of the EntryProcessor
+ */
+@Portable
+public class KeyProcessorInvoker<K, R> implements Invocable {
+
+    private static final long serialVersionUID = -4620938251871352309L;
+
+    @PortableProperty(0) private CacheName cacheName;
+    @PortableProperty(1) private K key;
+    @PortableProperty(2) private TransactionId tid;
+    @PortableProperty(3) private EntryProcessor entryProcessor;
+    @PortableProperty(4) private long timeout;
+
+    private transient ProcessorResult<K, R> result;
+
+    /**
+     * Default constructor for POF use only.
+     */
+    public KeyProcessorInvoker() {
+        super();
+    }
+
+    /**
+     * Constructor.
+     * @param cacheName cache name
+     * @param key the key
+     * @param tid current transaction id
+     * @param entryProcessor the EntryProcessor to invoke
+     * @param timeout maximum time in milliseconds to wait for uncommitted versions
+     */
+    public KeyProcessorInvoker(final CacheName cacheName, final K key, final TransactionId tid,
+            final EntryProcessor entryProcessor, final long timeout) {
+        super();
+        this.cacheName = cacheName;
+        this.key = key;
+        this.tid = tid;
+        this.entryProcessor = entryProcessor;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void init(final InvocationService invocationservice) {
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void run() {
+
+        NamedCache keyCache = CacheFactory.getCache(cacheName.getKeyCacheName());
+        long deadline = System.currentTimeMillis() + timeout;
+
+        result = (ProcessorResult<K, R>) keyCache.invoke(key, entryProcessor);
+
+        while (result != null && result.isUncommitted()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || VersionCommitHub.waitForAnyLocal(
+                    Collections.singleton(result.getWaitKey()), tid, remaining).isEmpty()) {
+                break;
+            }
+            result = (ProcessorResult<K, R>) keyCache.invoke(key, entryProcessor);
+        }
+    }
+
+    @Override
+    public ProcessorResult<K, R> getResult() {
+        return result;
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.invocable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.cache.internal.VersionCommitHub;
+import com.shadowmvcc.coherence.domain.ProcessorResult;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.VersionCacheKey;
+import com.shadowmvcc.coherence.utils.MapUtils;
+import com.tangosol.io.pof.annotation.Portable;
+import com.tangosol.io.pof.annotation.PortableProperty;
+import com.tangosol.net.CacheFactory;
+import com.tangosol.net.Invocable;
+import com.tangosol.net.InvocationService;
+import com.tangosol.net.NamedCache;
+import com.tangosol.util.InvocableMap.EntryProcessor;
+
+/**
+ * {@code Invocable} to execute an EntryProcessor against a set of keys on the member that owns them.
+ * The result contains the map of {@link EntryProcessor} results, a map of entries for which invocation
+ * could not be performed because of uncommitted changes, and the changed keys.
+ * 
+ * If a wait timeout is given, the member waits up to that time for uncommitted changes to be committed
+ * or rolled back, and invokes the EntryProcessor again on the affected entries, before returning
+ * those still uncommitted. The wait ends with a TransactionException if the calling transaction expires.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ * @param <K> Key type of the cache
+ * @param <R> Result type of the EntryProcessor
+ */
+@Portable
+public class KeySetProcessorInvoker<K, R> implements Invocable {
+
+    private static final long serialVersionUID = 2817453370286102461L;
+
+    @PortableProperty(0) private CacheName cacheName;
+    @PortableProperty(1) private Set<K> keys;
+    @PortableProperty(2) private TransactionId tid;
+    @PortableProperty(3) private EntryProcessor entryProcessor;
+    @PortableProperty(4) private long timeout = 0;
+
+    private transient Map<K, R> resultMap;
+    private transient Map<K, VersionCacheKey<K>> retryMap;
+    private transient Map<CacheName, Set<Object>> changedKeys;
+
+    /**
+     * Default constructor for POF use only.
+     */
+    public KeySetProcessorInvoker() {
+        super();
+    }
+
+    /**
+     * Constructor.
+     * @param cacheName cache name
+     * @param keys the keys to invoke on
+     * @param tid current transaction id
+     * @param entryProcessor the EntryProcessor to invoke
+     * @param timeout maximum time in milliseconds to wait for uncommitted changes
+     */
+    public KeySetProcessorInvoker(final CacheName cacheName, final Set<K> keys, final TransactionId tid,
+            final EntryProcessor entryProcessor, final long timeout) {
+        super();
+        this.cacheName = cacheName;
+        this.keys = keys;
+        this.tid = tid;
+        this.entryProcessor = entryProcessor;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void init(final InvocationService invocationservice) {
+    }
+
+    @Override
+    public void run() {
+
+        NamedCache keyCache = CacheFactory.getCache(cacheName.getKeyCacheName());
+
+        retryMap = new HashMap<K, VersionCacheKey<K>>();
+        resultMap = new HashMap<K, R>();
+        changedKeys = new HashMap<CacheName, Set<Object>>();
+
+        invokeAll(keyCache, keys);
+        
+        long deadline = System.currentTimeMillis() + timeout;
+        while (!retryMap.isEmpty()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            Set<VersionCacheKey<K>> resolved = VersionCommitHub.waitForAnyLocal(
+                    retryMap.values(), tid, remaining);
+            if (resolved.isEmpty()) {
+                break;
+            }
+            Set<K> retryKeys = new HashSet<K>();
+            for (Map.Entry<K, VersionCacheKey<K>> entry : retryMap.entrySet()) {
+                if (resolved.contains(entry.getValue())) {
+                    retryKeys.add(entry.getKey());
+                }
+            }
+            retryMap.keySet().removeAll(retryKeys);
+            invokeAll(keyCache, retryKeys);
+        }
+    }
+    
+    /**
+     * Invoke the EntryProcessor on a set of keys, adding the results to the result map,
+     * or to the retry map for keys with uncommitted changes.
+     * @param keyCache the key cache
+     * @param invokeKeys the keys
+     */
+    @SuppressWarnings("unchecked")
+    private void invokeAll(final NamedCache keyCache, final Set<K> invokeKeys) {
+        for (Map.Entry<K, ProcessorResult<K, R>> entry
+                : ((Map<K, ProcessorResult<K, R>>) keyCache.invokeAll(invokeKeys, entryProcessor)).entrySet()) {
+            ProcessorResult<K, R> result = entry.getValue();
+            if (result == null) {
+                continue;
+            }
+            if (result.isUncommitted()) {
+                retryMap.put(entry.getKey(), result.getWaitKey());
+            } else {
+                if (result.isReturnResult()) {
+                    resultMap.put(entry.getKey(), result.getResult());
+                }
+                MapUtils.mergeSets(changedKeys, result.getChangedCacheKeys());
+            }
+        }
+    }
+    
+    @Override
+    public EntryProcessorInvokerResult<K, R> getResult() {
+        return new EntryProcessorInvokerResult<K, R>(resultMap, retryMap, changedKeys);
+    }
+
+}
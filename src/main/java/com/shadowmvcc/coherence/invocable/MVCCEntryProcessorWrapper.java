@@ -35,10 +35,9 @@ import com.shadowmvcc.coherence.domain.TransactionId;
 import com.shadowmvcc.coherence.domain.Utils;
 import com.shadowmvcc.coherence.domain.VersionedKey;
 import com.shadowmvcc.coherence.exception.FutureReadException;
+import com.shadowmvcc.coherence.pof.MVCCEntryProcessorWrapperSerializer;
 import com.shadowmvcc.coherence.invocable.MVCCBackingMapManagerContext.MVCCBackingMapContext;
 import com.shadowmvcc.coherence.processor.NoResult;
-import com.tangosol.io.pof.annotation.Portable;
-import com.tangosol.io.pof.annotation.PortableProperty;
 import com.tangosol.net.BackingMapManagerContext;
 import com.tangosol.util.Binary;
 import com.tangosol.util.BinaryEntry;
@@ -50,17 +49,19 @@ import com.tangosol.util.InvocableMap.EntryProcessor;
  * Wrapper class to execute an {@code EntryProcessor} written from the logical cache
  * perspective, against the key cache.
  * 
+ * Serialised by {@link MVCCEntryProcessorWrapperSerializer}.
+ * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
  * @param <K> Key type
  * @param <R> Return value type
  */
-@Portable
 public class MVCCEntryProcessorWrapper<K, R> extends AbstractMVCCProcessorWrapper<K, R> {
 
     private static final long serialVersionUID = -7158130705920331999L;
 
-    @PortableProperty(11) private boolean autoCommit = false;
+    public static final int POF_AUTOCOMMIT = 11;
+    private boolean autoCommit = false;
 
     /**
      * Default constructor for POF use only.
@@ -99,6 +100,13 @@ public class MVCCEntryProcessorWrapper<K, R> extends AbstractMVCCProcessorWrappe
         this.autoCommit = autoCommit;
     }
 
+    /**
+     * @return true if the change is implicitly committed
+     */
+    public boolean isAutoCommit() {
+        return autoCommit;
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public ProcessorResult<K, R> process(final Entry entryarg) {
@@ -204,8 +212,7 @@ public class MVCCEntryProcessorWrapper<K, R> extends AbstractMVCCProcessorWrappe
                 binaryValue = childEntry.getNewBinaryValue();
             }
 
-            binaryValue = Utils.decorateValue(
-                    binaryValue, autoCommit, childEntry.isRemove(), childEntry.getSerializer());
+            binaryValue = Utils.decorateValue(binaryValue, autoCommit, childEntry.isRemove());
 
             newEntry.updateBinaryValue(binaryValue);
             
@@ -28,8 +28,8 @@ import com.shadowmvcc.coherence.domain.ProcessorResult;
 import com.shadowmvcc.coherence.domain.TransactionId;
 import com.shadowmvcc.coherence.domain.Utils;
 import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.shadowmvcc.coherence.pof.MVCCReadOnlyEntryProcessorWrapperSerializer;
 import com.shadowmvcc.coherence.processor.NoResult;
-import com.tangosol.io.pof.annotation.Portable;
 import com.tangosol.util.Binary;
 import com.tangosol.util.BinaryEntry;
 import com.tangosol.util.Filter;
@@ -45,12 +45,13 @@ import com.tangosol.util.InvocableMap.EntryProcessor;
  * May optionally be provided with a filter. The {@code process}
  * method will return null if the filter does not match.
  * 
+ * Serialised by {@link MVCCReadOnlyEntryProcessorWrapperSerializer}.
+ * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
  * @param <K> cache key type
  * @param <R> EntryProcessor return type
  */
-@Portable
 public class MVCCReadOnlyEntryProcessorWrapper<K, R> extends AbstractMVCCProcessorWrapper<K, R> {
 
     private static final long serialVersionUID = -7158130705920331999L;
@@ -0,0 +1,84 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.invocable;
+
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import com.tangosol.io.pof.annotation.Portable;
+import com.tangosol.io.pof.annotation.PortableProperty;
+import com.tangosol.util.InvocableMap.Entry;
+import com.tangosol.util.processor.AbstractProcessor;
+
+/**
+ * Remove a single value from a sorted set. Return true if the value was
+ * removed, false if it was not present.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ * @param <T> type of the value and of the set
+ */
+@Portable
+public class SortedSetRemove<T extends Comparable<T>> extends AbstractProcessor {
+
+    private static final long serialVersionUID = -2687452378761590127L;
+
+    @PortableProperty (0) private T value;
+    
+    /**
+     *  Default constructor for POF use only.
+     */
+    public SortedSetRemove() {
+        super();
+    }
+
+    /**
+     * Constructor.
+     * @param value the value to remove
+     */
+    public SortedSetRemove(final T value) {
+        super();
+        this.value = value;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object process(final Entry entry) {
+        
+        if (!entry.isPresent()) {
+            return Boolean.FALSE;
+        }
+        NavigableSet<T> theSet = new TreeSet<T>((Collection<T>) entry.getValue());
+        
+        if (!theSet.remove(value)) {
+            return Boolean.FALSE;
+        }
+        
+        entry.setValue(theSet);
+        
+        return Boolean.TRUE;
+    }
+
+}
@@ -26,7 +26,8 @@ import com.tangosol.net.DefaultCacheFactoryBuilder;
 
 /**
  * Cache factory builder that starts a transaction monitor thread
- * to ensure transactions are cleaned up if a member dies.
+ * to ensure transactions are cleaned up if a member dies, and a version
+ * vacuum thread to remove versions that can no longer be read.
  * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
@@ -35,15 +36,19 @@ public class CacheFactoryBuilder extends DefaultCacheFactoryBuilder {
     
     private final MemberTransactionMonitor monitor;
     private final Thread monitorThread;
+    private final VersionVacuum vacuum;
+    private final Thread vacuumThread;
     
     /**
-     * Constructor. Starts the monitor thread.
+     * Constructor. Starts the monitor and vacuum threads.
      */
     public CacheFactoryBuilder() {
         super();
         
         monitor = new MemberTransactionMonitor();
         monitorThread = startMonitorThread(monitor);
+        vacuum = new VersionVacuum();
+        vacuumThread = startVacuumThread(vacuum);
         
     }
     
@@ -66,12 +71,31 @@ public class CacheFactoryBuilder extends DefaultCacheFactoryBuilder {
     }
     
     /**
-     * Stop the monitor thread.
+     * Start the vacuum thread.
+     * @param vacuum the vacuum object
+     * @return the vacuum thread
+     */
+    protected Thread startVacuumThread(final Runnable vacuum) {
+        
+        Thread versionVacuumThread = new Thread(vacuum, "VersionVacuum");
+        
+        versionVacuumThread.setDaemon(true);
+        
+        versionVacuumThread.start();
+        
+        return versionVacuumThread;
+        
+    }
+    
+    /**
+     * Stop the monitor and vacuum threads.
      */
     public void stopMonitorThread() {
         monitor.stop();
+        vacuum.stop();
         try {
             monitorThread.join();
+            vacuumThread.join();
         } catch (InterruptedException e) {
         }
     }
@@ -24,15 +24,14 @@ package com.shadowmvcc.coherence.monitor;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
 
 import com.shadowmvcc.coherence.cache.CacheName;
 import com.shadowmvcc.coherence.config.Configuration;
 import com.shadowmvcc.coherence.config.ConfigurationFactory;
 import com.shadowmvcc.coherence.domain.Constants;
-import com.shadowmvcc.coherence.domain.TransactionCacheValue;
 import com.shadowmvcc.coherence.domain.TransactionId;
 import com.shadowmvcc.coherence.domain.TransactionProcStatus;
 import com.shadowmvcc.coherence.transaction.ManagerCache;
@@ -43,29 +42,27 @@ import com.shadowmvcc.coherence.transaction.internal.TransactionStateUpdater;
 import com.tangosol.net.CacheFactory;
 import com.tangosol.net.Cluster;
 import com.tangosol.net.DistributedCacheService;
-import com.tangosol.net.Member;
 import com.tangosol.net.NamedCache;
-import com.tangosol.net.partition.PartitionSet;
 import com.tangosol.util.Disposable;
 import com.tangosol.util.Filter;
 import com.tangosol.util.InvocableMap.EntryProcessor;
 import com.tangosol.util.ServiceEvent;
 import com.tangosol.util.ServiceListener;
-import com.tangosol.util.extractor.PofExtractor;
 import com.tangosol.util.filter.AlwaysFilter;
-import com.tangosol.util.filter.AndFilter;
-import com.tangosol.util.filter.EqualsFilter;
 import com.tangosol.util.filter.InFilter;
-import com.tangosol.util.filter.LessFilter;
-import com.tangosol.util.filter.PartitionedFilter;
 import com.tangosol.util.processor.ConditionalRemove;
 
 /**
- * Monitor the ages of transaction entries in the local member. If any remain open
+ * Act on transactions in the local member that have exceeded their timeouts. If any remain open
  * beyond the open transaction timeout value, force a rollback. If any remain in
  * committing or rolling back status longer than the completion timeout, then invoke
  * the commit/rollback completion process.
  * 
+ * Transactions are not found by scanning the transaction cache. A {@link TransactionExpiryIndex}
+ * on the transaction cache schedules each transaction owned by this member on a timer wheel
+ * at its deadline, and this monitor waits on the wheel and acts on transactions as they expire.
+ * While no transactions are owned by the member the monitor does nothing.
+ * 
  * This thread should never normally terminate, so must be run as a daemon thread.
  * 
  * Any activity undertaken by this class may be interrupted when partially completed by a member
@@ -80,17 +77,11 @@ import com.tangosol.util.processor.ConditionalRemove;
  */
 public class MemberTransactionMonitor implements Runnable, ServiceListener, Disposable {
 
-    private final long openTransactionTimeoutMillis;
     private final long transactionCompletionTimeoutMillis;
-    private final long pollInterval;
     private final Semaphore shutdownFlag = new Semaphore(0);
     private final Semaphore shutdownCompleteFlag = new Semaphore(0);
+    private final TimerWheel<TransactionId, TransactionProcStatus> wheel = TransactionExpiryIndex.getExpiryWheel();
 
-    private static final PofExtractor TIMEEXTRACTOR = new PofExtractor(null, TransactionCacheValue.POF_REALTIME);
-    private static final PofExtractor STATUSEXTRACTOR = new PofExtractor(null, TransactionCacheValue.POF_STATUS);
-    private static final Filter OPENFILTER = new EqualsFilter(STATUSEXTRACTOR, TransactionProcStatus.open);
-    private static final Filter ROLLBACKFILTER = new EqualsFilter(STATUSEXTRACTOR, TransactionProcStatus.rollingback);
-    private static final Filter COMMITFILTER = new EqualsFilter(STATUSEXTRACTOR, TransactionProcStatus.committing);
     private static final EntryProcessor REMOVEPROCESSOR = new ConditionalRemove(AlwaysFilter.INSTANCE, false);
     
   
@@ -100,9 +91,7 @@ public class MemberTransactionMonitor implements Runnable, ServiceListener, Disp
     public MemberTransactionMonitor() {
         super();
         Configuration config = ConfigurationFactory.getConfiguraration();
-        this.openTransactionTimeoutMillis = config.getOpenTransactionTimeout();
         this.transactionCompletionTimeoutMillis = config.getTransactionCompletionTimeout();
-        this.pollInterval = config.getTransactionPollInterval();
     }
 
     @Override
@@ -116,15 +105,17 @@ public class MemberTransactionMonitor implements Runnable, ServiceListener, Disp
         
         do {
             try {
-                if (shutdownFlag.tryAcquire(pollInterval, TimeUnit.MILLISECONDS)) {
-                    shutdownCompleteFlag.release();
-                    return;
-                }
+                wheel.await();
             } catch (InterruptedException e) {
             }
             
+            if (shutdownFlag.tryAcquire()) {
+                shutdownCompleteFlag.release();
+                return;
+            }
+            
             //TODO consider error conditions - die, carry on regardless?
-            if (checkTransactions()) {
+            if (checkTransactions(wheel.expire(System.currentTimeMillis()))) {
                 shutdownCompleteFlag.release();
                 return;
             }
@@ -135,7 +126,7 @@ public class MemberTransactionMonitor implements Runnable, ServiceListener, Disp
     
     /**
      * Register to catch service stopping and dispose events so as to shut down gracefully
-     * before the member stops.
+     * before the member stops, and create the index that schedules transactions on the wheel.
      */
     private void registerListener() {
         
@@ -148,6 +139,8 @@ public class MemberTransactionMonitor implements Runnable, ServiceListener, Disp
         
         cacheService.addServiceListener(this);
         
+        transactionCache.addIndex(TransactionExpiryExtractor.INSTANCE, false, null);
+        
     }
     
     /**
@@ -165,63 +158,56 @@ public class MemberTransactionMonitor implements Runnable, ServiceListener, Disp
     }
 
     /**
-     * Check all of the transactions in partitions of the transaction cache owned by this member.
-     * Any that have been rolling back for too long have rollback completed, Transactions that have
-     * been in committing state too long have the transaction commits completed. All completed
-     * transactions are then deleted. Transactions that have been open too long are set to rollback,
-     * these should then be picked up on the next poll to have rollback completed. The intervening
-     * poll period allows any in-flight processing to be completed and client notified to prevent races
-     * conditions. Between potentially time-consuming operations check the shutdown flag
+     * Act on transactions that have expired. Transactions that have been rolling back for too long
+     * have rollback completed, transactions that have been in committing state too long have the transaction
+     * commits completed. All completed transactions are then deleted. Transactions that have been open
+     * too long are set to rollback; the change of state schedules them again so that rollback is completed
+     * after the completion timeout. The intervening period allows any in-flight processing to be completed
+     * and client notified to prevent races conditions. If the work fails the transactions are scheduled
+     * again after the completion timeout. Between potentially time-consuming operations check the shutdown flag
+     * @param expired map of expired transaction id to the state it was scheduled in
      * @return true if a thread shutdown is required
      */
-    private boolean checkTransactions() {
-
-        try {
-            NamedCache transactionCache = CacheFactory.getCache(TransactionCache.CACHENAME);
-
-            DistributedCacheService cacheService = (DistributedCacheService) transactionCache.getCacheService();
-            Member thisMember = CacheFactory.getCluster().getLocalMember();
-
-            long now = System.currentTimeMillis();
-
-            // set expired open transactions to rollback status, remembering the transaction ids
-            PartitionSet memberParts = cacheService.getOwnedPartitions(thisMember);
-            Filter openTimeout = new LessFilter(TIMEEXTRACTOR, now - openTransactionTimeoutMillis);
-            Filter expiredOpenFilter = new AndFilter(OPENFILTER, openTimeout);
-            Filter expiredOpenPartitionFilter = new PartitionedFilter(expiredOpenFilter, memberParts);
+    private boolean checkTransactions(final Map<TransactionId, TransactionProcStatus> expired) {
 
-            transactionCache.invokeAll(
-                    expiredOpenPartitionFilter, TransactionStateUpdater.ROLLBACK).keySet();
+        if (expired.isEmpty()) {
+            return false;
+        }
 
-            if (shutdownFlag.tryAcquire()) {
-                return true;
+        Set<TransactionId> expiredOpen = new HashSet<TransactionId>();
+        Set<TransactionId> expiredRollBacks = new HashSet<TransactionId>();
+        Set<TransactionId> expiredCommits = new HashSet<TransactionId>();
+        for (Map.Entry<TransactionId, TransactionProcStatus> entry : expired.entrySet()) {
+            switch (entry.getValue()) {
+            case open:
+                expiredOpen.add(entry.getKey());
+                break;
+            case rollingback:
+                expiredRollBacks.add(entry.getKey());
+                break;
+            case committing:
+                expiredCommits.add(entry.getKey());
+                break;
+            default:
+                break;
             }
+        }
 
-            Filter completeTimeout = new LessFilter(TIMEEXTRACTOR, now - transactionCompletionTimeoutMillis);
-
-            Filter expiredRollbackFilter = new AndFilter(ROLLBACKFILTER, completeTimeout);
-            Filter rollbackPartionFilter = new PartitionedFilter(expiredRollbackFilter, memberParts);
-
-            @SuppressWarnings("unchecked")
-            Set<TransactionId> expiredRollBacks = transactionCache.keySet(rollbackPartionFilter);
+        try {
+            NamedCache transactionCache = CacheFactory.getCache(TransactionCache.CACHENAME);
 
-            if (shutdownFlag.tryAcquire()) {
-                return true;
+            // set expired open transactions to rollback status
+            if (!expiredOpen.isEmpty()) {
+                transactionCache.invokeAll(expiredOpen, TransactionStateUpdater.ROLLBACK_BATCH);
             }
 
-            Filter expiredCommitFilter = new AndFilter(COMMITFILTER, completeTimeout);
-            Filter commitPartionFilter = new PartitionedFilter(expiredCommitFilter, memberParts);
-
-            @SuppressWarnings("unchecked")
-            Set<TransactionId> expiredCommits = transactionCache.keySet(commitPartionFilter);
-
             if (shutdownFlag.tryAcquire()) {
                 return true;
             }
 
             if (!expiredCommits.isEmpty()) {
                 for (String cacheName : getCachesForTransactions(expiredCommits)) {
-                    NamedCache cache = CacheFactory.getCache(cacheName);
+                    NamedCache cache = CacheFactory.getCache(new CacheName(cacheName).getVersionCacheName());
                     Filter inTransactionsFilter = new InFilter(Constants.TRANSACTIONIDEXTRACTOR, expiredCommits);
                     cache.invokeAll(inTransactionsFilter, EntryCommitProcessor.INSTANCE);
 
@@ -252,6 +238,10 @@ public class MemberTransactionMonitor implements Runnable, ServiceListener, Disp
             if (shutdownFlag.tryAcquire()) {
                 return true;
             }
+            long retry = System.currentTimeMillis() + transactionCompletionTimeoutMillis;
+            for (Map.Entry<TransactionId, TransactionProcStatus> entry : expired.entrySet()) {
+                wheel.schedule(entry.getKey(), entry.getValue(), retry);
+            }
         }
         
         return false;
@@ -296,6 +286,7 @@ public class MemberTransactionMonitor implements Runnable, ServiceListener, Disp
     @Override
     public void serviceStopping(final ServiceEvent serviceevent) {
         shutdownFlag.release();
+        wheel.wakeUp();
         try {
             shutdownCompleteFlag.acquire();
         } catch (InterruptedException e) {
@@ -307,6 +298,7 @@ public class MemberTransactionMonitor implements Runnable, ServiceListener, Disp
      */
     public void stop() {
         shutdownFlag.release();
+        wheel.wakeUp();
     }
 
     @Override
@@ -316,6 +308,7 @@ public class MemberTransactionMonitor implements Runnable, ServiceListener, Disp
     @Override
     public void dispose() {
         shutdownFlag.release();
+        wheel.wakeUp();
     }
 
 }
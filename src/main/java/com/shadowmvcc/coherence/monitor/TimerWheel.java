@@ -0,0 +1,188 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.monitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashed timer wheel. Each key is scheduled with a value and a deadline, and is returned
+ * by {@link #expire(long)} once the deadline has passed. Scheduling, rescheduling and cancelling
+ * are constant time, and expiry visits only the slots for the ticks that have elapsed. Deadlines
+ * more than one revolution ahead remain in their slot until the revolution in which they fall due.
+ * 
+ * A key scheduled with a deadline that has already passed expires at the next tick.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class TimerWheel<K, V> {
+
+    /**
+     * A scheduled key.
+     * @param <V> value type
+     */
+    private static class Timeout<V> {
+        private final V value;
+        private final long deadline;
+        private final int slot;
+
+        /**
+         * @param value the value
+         * @param deadline the deadline
+         * @param slot the slot holding the key
+         */
+        Timeout(final V value, final long deadline, final int slot) {
+            this.value = value;
+            this.deadline = deadline;
+            this.slot = slot;
+        }
+    }
+
+    private final long tickMillis;
+    private final List<Map<K, Timeout<V>>> slots;
+    private final Map<K, Timeout<V>> scheduled = new HashMap<K, Timeout<V>>();
+    private long lastTick;
+    private boolean woken = false;
+
+    /**
+     * Constructor.
+     * @param tickMillis the resolution of the wheel in milliseconds
+     * @param slotCount number of slots in one revolution
+     * @param now the current time in milliseconds
+     */
+    public TimerWheel(final long tickMillis, final int slotCount, final long now) {
+        super();
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<Map<K, Timeout<V>>>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new HashMap<K, Timeout<V>>());
+        }
+        this.lastTick = now / tickMillis;
+    }
+
+    /**
+     * Schedule a key, replacing any existing schedule for the key.
+     * @param key the key
+     * @param value the value to return with the key on expiry
+     * @param deadline time in milliseconds after which the key expires
+     */
+    public synchronized void schedule(final K key, final V value, final long deadline) {
+        cancel(key);
+        long tick = Math.max((deadline + tickMillis - 1) / tickMillis, lastTick + 1);
+        int slot = (int) (tick % slots.size());
+        Timeout<V> timeout = new Timeout<V>(value, deadline, slot);
+        slots.get(slot).put(key, timeout);
+        scheduled.put(key, timeout);
+        if (scheduled.size() == 1) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Cancel the schedule of a key.
+     * @param key the key
+     */
+    public synchronized void cancel(final K key) {
+        Timeout<V> timeout = scheduled.remove(key);
+        if (timeout != null) {
+            slots.get(timeout.slot).remove(key);
+        }
+    }
+
+    /**
+     * Remove and return all of the keys whose deadline has passed.
+     * @param now the current time in milliseconds
+     * @return map of expired key to the value it was scheduled with
+     */
+    public synchronized Map<K, V> expire(final long now) {
+        Map<K, V> result = new HashMap<K, V>();
+        long nowTick = now / tickMillis;
+        long ticks = Math.min(nowTick - lastTick, slots.size());
+        for (long tick = nowTick - ticks + 1; tick <= nowTick; tick++) {
+            Iterator<Map.Entry<K, Timeout<V>>> iterator = slots.get((int) (tick % slots.size())).entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<K, Timeout<V>> entry = iterator.next();
+                if (entry.getValue().deadline <= now) {
+                    iterator.remove();
+                    scheduled.remove(entry.getKey());
+                    result.put(entry.getKey(), entry.getValue().value);
+                }
+            }
+        }
+        lastTick = Math.max(lastTick, nowTick);
+        return result;
+    }
+
+    /**
+     * Wait until the next tick if any keys are scheduled, otherwise until a key is
+     * scheduled, or until woken.
+     * @throws InterruptedException if interrupted
+     */
+    public synchronized void await() throws InterruptedException {
+        if (woken) {
+            woken = false;
+            return;
+        }
+        if (scheduled.isEmpty()) {
+            wait();
+        } else {
+            long wait = (lastTick + 1) * tickMillis - System.currentTimeMillis();
+            if (wait > 0) {
+                wait(wait);
+            }
+        }
+        woken = false;
+    }
+
+    /**
+     * Wake any thread waiting in {@link #await()}. If no thread is waiting
+     * the next call returns immediately.
+     */
+    public synchronized void wakeUp() {
+        woken = true;
+        notifyAll();
+    }
+
+    /**
+     * Remove all scheduled keys.
+     */
+    public synchronized void clear() {
+        for (Map<K, Timeout<V>> slot : slots) {
+            slot.clear();
+        }
+        scheduled.clear();
+    }
+
+    /**
+     * @return the number of keys scheduled
+     */
+    public synchronized int size() {
+        return scheduled.size();
+    }
+}
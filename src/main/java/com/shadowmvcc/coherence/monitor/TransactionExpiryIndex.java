@@ -0,0 +1,164 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.monitor;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.shadowmvcc.coherence.config.Configuration;
+import com.shadowmvcc.coherence.config.ConfigurationFactory;
+import com.shadowmvcc.coherence.domain.TransactionCacheValue;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.TransactionProcStatus;
+import com.tangosol.util.MapIndex;
+import com.tangosol.util.ValueExtractor;
+import com.tangosol.util.extractor.PofExtractor;
+
+/**
+ * Index on the transaction cache that schedules each transaction held in the partitions
+ * owned by this member on a {@link TimerWheel}. An open transaction is scheduled to
+ * expire when its open transaction timeout passes, a committing or rolling back transaction
+ * when its completion timeout passes. Changes of state reschedule the transaction, and removal
+ * cancels it.
+ * 
+ * Coherence maintains the index as entries are added, changed and removed, and as partitions
+ * are transferred to and from this member, so the wheel always holds exactly the transactions
+ * this member is responsible for. The {@link MemberTransactionMonitor} takes expired
+ * transactions from the wheel rather than scanning the cache.
+ * 
+ * There is one wheel per member, shared by any instance of the index.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class TransactionExpiryIndex implements MapIndex {
+
+    private static final int SLOTS = 512;
+
+    private static final PofExtractor TIMEEXTRACTOR = new PofExtractor(null, TransactionCacheValue.POF_REALTIME);
+    private static final PofExtractor STATUSEXTRACTOR = new PofExtractor(null, TransactionCacheValue.POF_STATUS);
+
+    private static final TimerWheel<TransactionId, TransactionProcStatus> WHEEL =
+            new TimerWheel<TransactionId, TransactionProcStatus>(
+                    ConfigurationFactory.getConfiguraration().getTransactionExpiryTick(),
+                    SLOTS, System.currentTimeMillis());
+
+    private final TimerWheel<TransactionId, TransactionProcStatus> wheel;
+    private final long openTransactionTimeoutMillis;
+    private final long transactionCompletionTimeoutMillis;
+
+    /**
+     * Constructor.
+     * @param wheel the wheel to schedule transactions on
+     */
+    public TransactionExpiryIndex(final TimerWheel<TransactionId, TransactionProcStatus> wheel) {
+        super();
+        this.wheel = wheel;
+        Configuration config = ConfigurationFactory.getConfiguraration();
+        this.openTransactionTimeoutMillis = config.getOpenTransactionTimeout();
+        this.transactionCompletionTimeoutMillis = config.getTransactionCompletionTimeout();
+    }
+
+    /**
+     * @return the wheel of transactions in partitions owned by this member
+     */
+    public static TimerWheel<TransactionId, TransactionProcStatus> getExpiryWheel() {
+        return WHEEL;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void insert(final Entry entry) {
+        schedule((TransactionId) entry.getKey(),
+                (TransactionProcStatus) STATUSEXTRACTOR.extractFromEntry(entry),
+                (Long) TIMEEXTRACTOR.extractFromEntry(entry));
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void update(final Entry entry) {
+        insert(entry);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void delete(final Entry entry) {
+        wheel.cancel((TransactionId) entry.getKey());
+    }
+
+    /**
+     * Schedule a transaction according to its state.
+     * @param transactionId the transaction id
+     * @param status the transaction state
+     * @param realTimestamp time the transaction entered the state
+     */
+    void schedule(final TransactionId transactionId, final TransactionProcStatus status,
+            final long realTimestamp) {
+        long timeout = status == TransactionProcStatus.open
+                ? openTransactionTimeoutMillis : transactionCompletionTimeoutMillis;
+        wheel.schedule(transactionId, status, realTimestamp + timeout);
+    }
+
+    /**
+     * The index holds no extracted values.
+     * @param oKey the key
+     * @return null
+     */
+    @Override
+    public Object get(final Object oKey) {
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Comparator getComparator() {
+        return null;
+    }
+
+    /**
+     * The index holds no extracted values.
+     * @return an empty map
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Map getIndexContents() {
+        return Collections.EMPTY_MAP;
+    }
+
+    @Override
+    public ValueExtractor getValueExtractor() {
+        return TransactionExpiryExtractor.INSTANCE;
+    }
+
+    @Override
+    public boolean isOrdered() {
+        return false;
+    }
+
+    @Override
+    public boolean isPartial() {
+        return false;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.monitor;
+
+import java.util.Enumeration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.config.ConfigurationFactory;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.transaction.ManagerCache;
+import com.shadowmvcc.coherence.transaction.internal.ManagerCacheImpl;
+import com.tangosol.net.CacheFactory;
+import com.tangosol.net.Cluster;
+import com.tangosol.net.DistributedCacheService;
+import com.tangosol.net.Member;
+import com.tangosol.net.Service;
+import com.tangosol.net.partition.PartitionSet;
+import com.tangosol.util.Disposable;
+
+/**
+ * Continuously remove versions that no reader can see from the version caches
+ * in partitions owned by the local member. Each pass obtains the cluster low watermark
+ * from the open transactions, registered temporal views and maximum transaction age,
+ * then for each version cache removes all but the latest version of each key
+ * between the most recent snapshot and the low watermark.
+ * 
+ * Once a cache has been vacuumed, snapshots may not be created earlier than the
+ * low watermark. Temporal views must be created before their timestamp passes the
+ * low watermark to see a consistent view.
+ * 
+ * This thread should never normally terminate, so must be run as a daemon thread.
+ * Passes are idempotent, so one interrupted by a member failure is completed by later passes.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class VersionVacuum implements Runnable, Disposable {
+
+    private final long vacuumInterval;
+    private final Semaphore shutdownFlag = new Semaphore(0);
+    
+    /**
+     * Default constructor using the configured interval.
+     */
+    public VersionVacuum() {
+        super();
+        this.vacuumInterval = ConfigurationFactory.getConfiguraration().getVacuumInterval();
+    }
+
+    @Override
+    public void run() {
+        
+        if (vacuumInterval <= 0) {
+            return;
+        }
+        
+        do {
+            try {
+                if (shutdownFlag.tryAcquire(vacuumInterval, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+            }
+            
+            if (vacuum()) {
+                return;
+            }
+            
+        } while (true);
+        
+    }
+    
+    /**
+     * Perform one vacuum pass over the partitions owned by this member of all the
+     * version caches of storage enabled services.
+     * @return true if a thread shutdown is required
+     */
+    private boolean vacuum() {
+        
+        try {
+            ManagerCache managerCache = getManagerCache();
+            TransactionId lowWatermark = null;
+            
+            Cluster cluster = CacheFactory.getCluster();
+            Member thisMember = cluster.getLocalMember();
+            
+            for (Enumeration<?> services = cluster.getServiceNames(); services.hasMoreElements();) {
+                Service service = cluster.getService((String) services.nextElement());
+                if (!(service instanceof DistributedCacheService)
+                        || !((DistributedCacheService) service).isLocalStorageEnabled()) {
+                    continue;
+                }
+                DistributedCacheService cacheService = (DistributedCacheService) service;
+                
+                for (Enumeration<?> caches = cacheService.getCacheNames(); caches.hasMoreElements();) {
+                    CacheName cacheName = CacheName.fromVersionCacheName((String) caches.nextElement());
+                    if (cacheName == null) {
+                        continue;
+                    }
+                    if (lowWatermark == null) {
+                        lowWatermark = managerCache.getLowWatermark();
+                    }
+                    PartitionSet memberParts = cacheService.getOwnedPartitions(thisMember);
+                    managerCache.vacuum(cacheName, lowWatermark, memberParts);
+                    
+                    if (shutdownFlag.tryAcquire()) {
+                        return true;
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            if (shutdownFlag.tryAcquire()) {
+                return true;
+            }
+            CacheFactory.log("version vacuum pass failed: " + t, CacheFactory.LOG_WARN);
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Protected method for obtaining the {@link ManagerCache} instance.
+     * @return the ManagerCache
+     */
+    protected ManagerCache getManagerCache() {
+        return new ManagerCacheImpl();
+    }
+    
+    /**
+     * explicitly stop the vacuum.
+     */
+    public void stop() {
+        shutdownFlag.release();
+    }
+
+    @Override
+    public void dispose() {
+        shutdownFlag.release();
+    }
+
+}
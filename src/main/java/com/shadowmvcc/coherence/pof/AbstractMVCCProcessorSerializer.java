@@ -0,0 +1,83 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.pof;
+
+import java.io.IOException;
+
+import com.shadowmvcc.coherence.domain.IsolationLevel;
+import com.shadowmvcc.coherence.invocable.AbstractMVCCProcessor;
+import com.tangosol.io.pof.PofReader;
+import com.tangosol.io.pof.PofSerializer;
+import com.tangosol.io.pof.PofWriter;
+
+/**
+ * Base class for serializers of {@link AbstractMVCCProcessor} subclasses. Writes the common
+ * properties; the cache name as its logical name and the isolation level as its ordinal
+ * rather than as nested user types.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public abstract class AbstractMVCCProcessorSerializer implements PofSerializer {
+
+    private static final IsolationLevel[] ISOLATIONLEVELS = IsolationLevel.values();
+
+    /**
+     * Write the properties common to all processors.
+     * @param pofWriter the writer
+     * @param processor the processor
+     * @throws IOException if the write fails
+     */
+    protected static void writeProcessor(final PofWriter pofWriter,
+            final AbstractMVCCProcessor<?, ?> processor) throws IOException {
+        pofWriter.writeObject(AbstractMVCCProcessor.POF_TRANSACTIONID, processor.getTransactionId());
+        writeIsolationLevel(pofWriter, AbstractMVCCProcessor.POF_ISOLATIONLEVEL, processor.getIsolationLevel());
+        CacheNameSerializer.writeCacheName(pofWriter, AbstractMVCCProcessor.POF_CACHENAME, processor.getCacheName());
+        pofWriter.writeObject(AbstractMVCCProcessor.POF_VALIDATIONFILTER, processor.getValidationFilter());
+    }
+
+    /**
+     * Write an isolation level as its ordinal, offset by one so that zero represents null.
+     * @param pofWriter the writer
+     * @param index property index
+     * @param isolationLevel the isolation level, may be null
+     * @throws IOException if the write fails
+     */
+    protected static void writeIsolationLevel(final PofWriter pofWriter, final int index,
+            final IsolationLevel isolationLevel) throws IOException {
+        pofWriter.writeInt(index, isolationLevel == null ? 0 : isolationLevel.ordinal() + 1);
+    }
+
+    /**
+     * Read an isolation level written by {@link #writeIsolationLevel(PofWriter, int, IsolationLevel)}.
+     * @param pofReader the reader
+     * @param index property index
+     * @return the isolation level or null
+     * @throws IOException if the read fails
+     */
+    protected static IsolationLevel readIsolationLevel(final PofReader pofReader, final int index)
+            throws IOException {
+        int ordinal = pofReader.readInt(index);
+        return ordinal == 0 ? null : ISOLATIONLEVELS[ordinal - 1];
+    }
+}
@@ -0,0 +1,102 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.pof;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.tangosol.io.pof.PofReader;
+import com.tangosol.io.pof.PofSerializer;
+import com.tangosol.io.pof.PofWriter;
+
+/**
+ * Serializer for {@link CacheName}. There are few distinct cache names, so
+ * deserialised instances are shared rather than created for every message.
+ * 
+ * Other serializers embed cache names directly as the logical name string
+ * using {@link #writeCacheName(PofWriter, int, CacheName)} and
+ * {@link #readCacheName(PofReader, int)}.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class CacheNameSerializer implements PofSerializer {
+
+    private static final int MAX_SHARED_NAMES = 1024;
+
+    private static final ConcurrentMap<String, CacheName> NAMES = new ConcurrentHashMap<String, CacheName>();
+
+    @Override
+    public void serialize(final PofWriter pofWriter, final Object obj) throws IOException {
+        writeCacheName(pofWriter, CacheName.POF_NAME, (CacheName) obj);
+        pofWriter.writeRemainder(null);
+    }
+
+    @Override
+    public Object deserialize(final PofReader pofReader) throws IOException {
+        CacheName result = readCacheName(pofReader, CacheName.POF_NAME);
+        pofReader.readRemainder();
+        return result;
+    }
+
+    /**
+     * Write a cache name as its logical name.
+     * @param pofWriter the writer
+     * @param index property index
+     * @param cacheName the cache name, may be null
+     * @throws IOException if the write fails
+     */
+    public static void writeCacheName(final PofWriter pofWriter, final int index, final CacheName cacheName)
+            throws IOException {
+        if (cacheName != null) {
+            pofWriter.writeString(index, cacheName.getLogicalName());
+        }
+    }
+
+    /**
+     * Read a cache name written by {@link #writeCacheName(PofWriter, int, CacheName)}.
+     * @param pofReader the reader
+     * @param index property index
+     * @return the cache name, or null if none was written
+     * @throws IOException if the read fails
+     */
+    public static CacheName readCacheName(final PofReader pofReader, final int index) throws IOException {
+        String logicalName = pofReader.readString(index);
+        if (logicalName == null) {
+            return null;
+        }
+        CacheName result = NAMES.get(logicalName);
+        if (result == null) {
+            result = new CacheName(logicalName);
+            if (NAMES.size() < MAX_SHARED_NAMES) {
+                CacheName previous = NAMES.putIfAbsent(logicalName, result);
+                if (previous != null) {
+                    result = previous;
+                }
+            }
+        }
+        return result;
+    }
+}
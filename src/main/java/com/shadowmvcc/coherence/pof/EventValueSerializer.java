@@ -0,0 +1,58 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.pof;
+
+import java.io.IOException;
+
+import com.shadowmvcc.coherence.domain.EventValue;
+import com.tangosol.io.pof.PofReader;
+import com.tangosol.io.pof.PofSerializer;
+import com.tangosol.io.pof.PofWriter;
+
+/**
+ * Serializer for {@link EventValue}.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class EventValueSerializer implements PofSerializer {
+
+    @Override
+    public void serialize(final PofWriter pofWriter, final Object obj) throws IOException {
+        EventValue<?> eventValue = (EventValue<?>) obj;
+        pofWriter.writeBoolean(EventValue.POF_COMMITTED, eventValue.isCommitted());
+        pofWriter.writeBoolean(EventValue.POF_DELETED, eventValue.isDeleted());
+        pofWriter.writeObject(EventValue.POF_VALUE, eventValue.getValue());
+        pofWriter.writeRemainder(null);
+    }
+
+    @Override
+    public Object deserialize(final PofReader pofReader) throws IOException {
+        boolean committed = pofReader.readBoolean(EventValue.POF_COMMITTED);
+        boolean deleted = pofReader.readBoolean(EventValue.POF_DELETED);
+        Object value = pofReader.readObject(EventValue.POF_VALUE);
+        pofReader.readRemainder();
+        return new EventValue<Object>(committed, deleted, value);
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.pof;
+
+import java.io.IOException;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.domain.IsolationLevel;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.invocable.AbstractMVCCProcessor;
+import com.shadowmvcc.coherence.invocable.AbstractMVCCProcessorWrapper;
+import com.shadowmvcc.coherence.invocable.MVCCReadOnlyEntryProcessorWrapper;
+import com.tangosol.io.pof.PofReader;
+import com.tangosol.io.pof.PofWriter;
+import com.tangosol.util.Filter;
+import com.tangosol.util.InvocableMap.EntryProcessor;
+
+/**
+ * Serializer for {@link MVCCReadOnlyEntryProcessorWrapper}.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class MVCCReadOnlyEntryProcessorWrapperSerializer extends AbstractMVCCProcessorSerializer {
+
+    @Override
+    public void serialize(final PofWriter pofWriter, final Object obj) throws IOException {
+        MVCCReadOnlyEntryProcessorWrapper<?, ?> wrapper = (MVCCReadOnlyEntryProcessorWrapper<?, ?>) obj;
+        writeProcessor(pofWriter, wrapper);
+        pofWriter.writeObject(AbstractMVCCProcessorWrapper.POF_DELEGATE, wrapper.getDelegate());
+        pofWriter.writeRemainder(null);
+    }
+
+    @Override
+    public Object deserialize(final PofReader pofReader) throws IOException {
+        TransactionId transactionId = (TransactionId) pofReader.readObject(AbstractMVCCProcessor.POF_TRANSACTIONID);
+        IsolationLevel isolationLevel = readIsolationLevel(pofReader, AbstractMVCCProcessor.POF_ISOLATIONLEVEL);
+        CacheName cacheName = CacheNameSerializer.readCacheName(pofReader, AbstractMVCCProcessor.POF_CACHENAME);
+        Filter validationFilter = (Filter) pofReader.readObject(AbstractMVCCProcessor.POF_VALIDATIONFILTER);
+        EntryProcessor delegate = (EntryProcessor) pofReader.readObject(AbstractMVCCProcessorWrapper.POF_DELEGATE);
+        pofReader.readRemainder();
+        return new MVCCReadOnlyEntryProcessorWrapper<Object, Object>(
+                transactionId, delegate, isolationLevel, cacheName, validationFilter);
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.pof;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.index.MVCCSurfaceFilter;
+import com.tangosol.io.pof.PofReader;
+import com.tangosol.io.pof.PofSerializer;
+import com.tangosol.io.pof.PofWriter;
+import com.tangosol.util.Filter;
+
+/**
+ * Serializer for {@link MVCCSurfaceFilter}.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class MVCCSurfaceFilterSerializer implements PofSerializer {
+
+    @Override
+    public void serialize(final PofWriter pofWriter, final Object obj) throws IOException {
+        MVCCSurfaceFilter<?> filter = (MVCCSurfaceFilter<?>) obj;
+        pofWriter.writeObject(MVCCSurfaceFilter.POF_TXID, filter.getTransactionId());
+        pofWriter.writeCollection(MVCCSurfaceFilter.POF_KEYSET, filter.getKeySet());
+        pofWriter.writeObject(MVCCSurfaceFilter.POF_FILTER, filter.getFilter());
+        pofWriter.writeRemainder(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object deserialize(final PofReader pofReader) throws IOException {
+        TransactionId transactionId = (TransactionId) pofReader.readObject(MVCCSurfaceFilter.POF_TXID);
+        Collection<Object> keySet = (Collection<Object>) pofReader.readCollection(MVCCSurfaceFilter.POF_KEYSET, null);
+        Filter filter = (Filter) pofReader.readObject(MVCCSurfaceFilter.POF_FILTER);
+        pofReader.readRemainder();
+        if (keySet != null) {
+            return new MVCCSurfaceFilter<Object>(transactionId, keySet);
+        }
+        if (filter != null) {
+            return new MVCCSurfaceFilter<Object>(transactionId, filter);
+        }
+        return new MVCCSurfaceFilter<Object>(transactionId);
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.pof;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.domain.ProcessorResult;
+import com.shadowmvcc.coherence.domain.VersionCacheKey;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.tangosol.io.pof.PofReader;
+import com.tangosol.io.pof.PofSerializer;
+import com.tangosol.io.pof.PofWriter;
+
+/**
+ * Serializer for {@link ProcessorResult}. The cache name and key of the
+ * uncommitted entry are written as properties of the result rather
+ * than as a nested {@link VersionCacheKey}.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class ProcessorResultSerializer implements PofSerializer {
+
+    @Override
+    public void serialize(final PofWriter pofWriter, final Object obj) throws IOException {
+        ProcessorResult<?, ?> processorResult = (ProcessorResult<?, ?>) obj;
+        pofWriter.writeObject(ProcessorResult.POF_RESULT, processorResult.getResult());
+        VersionCacheKey<?> waitKey = processorResult.getWaitKey();
+        if (waitKey != null) {
+            CacheNameSerializer.writeCacheName(pofWriter, ProcessorResult.POF_WAITCACHENAME, waitKey.getCacheName());
+            pofWriter.writeObject(ProcessorResult.POF_WAITKEY, waitKey.getKey());
+        }
+        pofWriter.writeBoolean(ProcessorResult.POF_RETURNRESULT, processorResult.isReturnResult());
+        pofWriter.writeObject(ProcessorResult.POF_CHANGEDCACHEKEYS, processorResult.getChangedCacheKeys());
+        pofWriter.writeRemainder(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object deserialize(final PofReader pofReader) throws IOException {
+        Object result = pofReader.readObject(ProcessorResult.POF_RESULT);
+        CacheName waitCacheName = CacheNameSerializer.readCacheName(pofReader, ProcessorResult.POF_WAITCACHENAME);
+        VersionedKey<Object> waitKey = (VersionedKey<Object>) pofReader.readObject(ProcessorResult.POF_WAITKEY);
+        boolean returnResult = pofReader.readBoolean(ProcessorResult.POF_RETURNRESULT);
+        Map<CacheName, Set<Object>> changedCacheKeys =
+                (Map<CacheName, Set<Object>>) pofReader.readObject(ProcessorResult.POF_CHANGEDCACHEKEYS);
+        pofReader.readRemainder();
+        if (waitKey != null) {
+            return new ProcessorResult<Object, Object>(waitCacheName, waitKey);
+        }
+        return new ProcessorResult<Object, Object>(result, changedCacheKeys, returnResult);
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.pof;
+
+import java.io.IOException;
+
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.tangosol.io.pof.PofReader;
+import com.tangosol.io.pof.PofSerializer;
+import com.tangosol.io.pof.PofWriter;
+
+/**
+ * Serializer for {@link TransactionId}. Writes the same properties as the annotation
+ * based serialisation previously used, without reflection, and returns the shared instances
+ * of the sentinel transaction ids.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class TransactionIdSerializer implements PofSerializer {
+
+    @Override
+    public void serialize(final PofWriter pofWriter, final Object obj) throws IOException {
+        TransactionId transactionId = (TransactionId) obj;
+        pofWriter.writeLong(TransactionId.POF_TS, transactionId.getTimeStampMillis());
+        pofWriter.writeInt(TransactionId.POF_CONTEXT, transactionId.getContextId());
+        pofWriter.writeInt(TransactionId.POF_SUBSEQ, transactionId.getSubSequence());
+        pofWriter.writeRemainder(null);
+    }
+
+    @Override
+    public Object deserialize(final PofReader pofReader) throws IOException {
+        long timeStampMillis = pofReader.readLong(TransactionId.POF_TS);
+        int contextId = pofReader.readInt(TransactionId.POF_CONTEXT);
+        int subSequence = pofReader.readInt(TransactionId.POF_SUBSEQ);
+        pofReader.readRemainder();
+        return TransactionId.valueOf(timeStampMillis, contextId, subSequence);
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.pof;
+
+import java.io.IOException;
+
+import com.shadowmvcc.coherence.domain.VersionCacheKey;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.tangosol.io.pof.PofReader;
+import com.tangosol.io.pof.PofSerializer;
+import com.tangosol.io.pof.PofWriter;
+
+/**
+ * Serializer for {@link VersionCacheKey}.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class VersionCacheKeySerializer implements PofSerializer {
+
+    @Override
+    public void serialize(final PofWriter pofWriter, final Object obj) throws IOException {
+        VersionCacheKey<?> key = (VersionCacheKey<?>) obj;
+        CacheNameSerializer.writeCacheName(pofWriter, VersionCacheKey.POF_CACHENAME, key.getCacheName());
+        pofWriter.writeObject(VersionCacheKey.POF_KEY, key.getKey());
+        pofWriter.writeRemainder(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object deserialize(final PofReader pofReader) throws IOException {
+        VersionCacheKey<Object> result = new VersionCacheKey<Object>(
+                CacheNameSerializer.readCacheName(pofReader, VersionCacheKey.POF_CACHENAME),
+                (VersionedKey<Object>) pofReader.readObject(VersionCacheKey.POF_KEY));
+        pofReader.readRemainder();
+        return result;
+    }
+
+}
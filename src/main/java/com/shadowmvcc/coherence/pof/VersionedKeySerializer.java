@@ -0,0 +1,272 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute
+it and/or modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation, either version 3 of the
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it
+will be useful, but WITHOUT ANY WARRANTY; without even the implied
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See
+the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.pof;
+
+import java.io.IOException;
+
+import com.shadowmvcc.coherence.config.ConfigurationFactory;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.tangosol.io.pof.PofReader;
+import com.tangosol.io.pof.PofSerializer;
+import com.tangosol.io.pof.PofWriter;
+import com.tangosol.util.Binary;
+import com.tangosol.util.ExternalizableHelper;
+
+/**
+ * Serializer for {@link VersionedKey}.
+ *
+ * By default the transaction id is written as a nested {@link TransactionId}
+ * user type. If binary version keys are configured it is instead written as a fixed
+ * width, order preserving, big-endian byte array as the last property of the key. The transaction
+ * id can then be read directly from the end of the serialised key, and the bytes preceding it
+ * are the same for all versions of a logical key, without deserialising anything. The serialised
+ * logical key may be sliced out of the key and deserialised without navigating the POF stream.
+ *
+ * Either format is read regardless of configuration.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class VersionedKeySerializer implements PofSerializer {
+
+    /**
+     * Length of the binary transaction id.
+     */
+    public static final int TRANSACTIONID_LENGTH = 16;
+
+    /**
+     * Number of bytes at the end of a serialised key in binary format
+     * that hold the transaction id property: property index, packed octet string
+     * type id (-13), length, transaction id, and packed end of user type marker (-1).
+     */
+    private static final int SUFFIX_LENGTH = TRANSACTIONID_LENGTH + 4;
+    private static final byte SUFFIX_PROPERTY = (byte) VersionedKey.POF_TRANSACTIONID;
+    private static final byte SUFFIX_OCTETSTRING = (byte) 0x4C;
+    private static final byte SUFFIX_LENGTHBYTE = (byte) TRANSACTIONID_LENGTH;
+    private static final byte SUFFIX_END = (byte) 0x40;
+
+    private static final boolean BINARY_CONFIGURED =
+            ConfigurationFactory.getConfiguraration().isBinaryVersionKeys();
+
+    private final boolean binaryTransactionId;
+
+    /**
+     * Constructor, the format is determined by the configuration.
+     */
+    public VersionedKeySerializer() {
+        this(BINARY_CONFIGURED);
+    }
+
+    /**
+     * Constructor.
+     * @param binaryTransactionId true to write the transaction id in binary format
+     */
+    public VersionedKeySerializer(final boolean binaryTransactionId) {
+        super();
+        this.binaryTransactionId = binaryTransactionId;
+    }
+
+    @Override
+    public void serialize(final PofWriter pofWriter, final Object obj) throws IOException {
+        @SuppressWarnings("rawtypes")
+        VersionedKey key = (VersionedKey) obj;
+        pofWriter.writeObject(VersionedKey.POF_LOGICALKEY, key.getLogicalKey());
+        if (binaryTransactionId) {
+            pofWriter.writeByteArray(VersionedKey.POF_TRANSACTIONID, encode(key.getTransactionId()));
+        } else {
+            pofWriter.writeObject(VersionedKey.POF_TRANSACTIONID, key.getTransactionId());
+        }
+        pofWriter.writeRemainder(null);
+    }
+
+    @Override
+    public Object deserialize(final PofReader pofReader) throws IOException {
+        Object logicalKey = pofReader.readObject(VersionedKey.POF_LOGICALKEY);
+        Object transactionId = pofReader.readObject(VersionedKey.POF_TRANSACTIONID);
+        pofReader.readRemainder();
+        if (transactionId instanceof byte[]) {
+            transactionId = decode((byte[]) transactionId, 0);
+        }
+        return new VersionedKey<Object>(logicalKey, (TransactionId) transactionId);
+    }
+
+    /**
+     * @return true if binary version keys are configured for this member
+     */
+    public static boolean isBinaryConfigured() {
+        return BINARY_CONFIGURED;
+    }
+
+    /**
+     * Read the transaction id directly from a serialised version cache key.
+     * @param binaryKey the serialised key
+     * @return the transaction id, or null if the key is not in the binary format
+     */
+    public static TransactionId getTransactionId(final Binary binaryKey) {
+        if (!hasBinaryTransactionId(binaryKey)) {
+            return null;
+        }
+        int offset = binaryKey.length() - TRANSACTIONID_LENGTH - 1;
+        long timestamp = 0;
+        for (int i = 0; i < 8; i++) {
+            timestamp = (timestamp << 8) | (binaryKey.byteAt(offset + i) & 0xFFL);
+        }
+        int contextId = 0;
+        for (int i = 8; i < 12; i++) {
+            contextId = (contextId << 8) | (binaryKey.byteAt(offset + i) & 0xFF);
+        }
+        int subSequence = 0;
+        for (int i = 12; i < TRANSACTIONID_LENGTH; i++) {
+            subSequence = (subSequence << 8) | (binaryKey.byteAt(offset + i) & 0xFF);
+        }
+        return new TransactionId(timestamp ^ Long.MIN_VALUE,
+                contextId ^ Integer.MIN_VALUE, subSequence ^ Integer.MIN_VALUE);
+    }
+
+    /**
+     * Get the part of a serialised version cache key that is common to all
+     * versions of the logical key.
+     * @param binaryKey the serialised key
+     * @return the logical key part, or null if the key is not in the binary format
+     */
+    public static Binary getLogicalKeyPrefix(final Binary binaryKey) {
+        if (!hasBinaryTransactionId(binaryKey)) {
+            return null;
+        }
+        return binaryKey.toBinary(0, binaryKey.length() - SUFFIX_LENGTH);
+    }
+
+    /**
+     * Get the serialised logical key from a serialised version cache key in binary format,
+     * without deserialising or navigating the key. The result is in the same serialisation
+     * format as the version cache key and may be deserialised with the cache service serializer.
+     * @param binaryKey the serialised key, which may carry an int decoration
+     * @return the serialised logical key, or null if the key is not in the binary format
+     */
+    public static Binary getLogicalKeyBinary(final Binary binaryKey) {
+        if (!hasBinaryTransactionId(binaryKey)) {
+            return null;
+        }
+        int pos = 0;
+        if (binaryKey.byteAt(pos) == ExternalizableHelper.FMT_IDO) {
+            pos = skipPackedInt(binaryKey, pos + 1);
+        }
+        if (binaryKey.byteAt(pos) != ExternalizableHelper.FMT_EXT) {
+            return null;
+        }
+        // user type id, version id, then the logical key property index
+        pos = skipPackedInt(binaryKey, pos + 1);
+        pos = skipPackedInt(binaryKey, pos);
+        if (binaryKey.byteAt(pos) != (byte) VersionedKey.POF_LOGICALKEY) {
+            return null;
+        }
+        pos++;
+        int end = binaryKey.length() - SUFFIX_LENGTH;
+        byte[] result = new byte[end - pos + 1];
+        result[0] = ExternalizableHelper.FMT_EXT;
+        binaryKey.copyBytes(pos, end, result, 1);
+        return new Binary(result);
+    }
+
+    /**
+     * @param binary a serialised value
+     * @param offset offset of a packed int in the value
+     * @return offset of the byte following the packed int
+     */
+    private static int skipPackedInt(final Binary binary, final int offset) {
+        int pos = offset;
+        while ((binary.byteAt(pos++) & 0x80) != 0) {
+            continue;
+        }
+        return pos;
+    }
+
+    /**
+     * @param binaryKey a serialised version cache key
+     * @return true if the key has the binary transaction id suffix
+     */
+    private static boolean hasBinaryTransactionId(final Binary binaryKey) {
+        int length = binaryKey.length();
+        return length > SUFFIX_LENGTH
+                && binaryKey.byteAt(length - 1) == SUFFIX_END
+                && binaryKey.byteAt(length - SUFFIX_LENGTH + 2) == SUFFIX_LENGTHBYTE
+                && binaryKey.byteAt(length - SUFFIX_LENGTH + 1) == SUFFIX_OCTETSTRING
+                && binaryKey.byteAt(length - SUFFIX_LENGTH) == SUFFIX_PROPERTY;
+    }
+
+    /**
+     * Encode a transaction id so that unsigned byte-wise comparison is
+     * consistent with {@link TransactionId#compareTo(TransactionId)}.
+     * @param transactionId the transaction id
+     * @return the encoded bytes
+     */
+    public static byte[] encode(final TransactionId transactionId) {
+        byte[] result = new byte[TRANSACTIONID_LENGTH];
+        long timestamp = transactionId.getTimeStampMillis() ^ Long.MIN_VALUE;
+        for (int i = 0; i < 8; i++) {
+            result[i] = (byte) (timestamp >>> (56 - 8 * i));
+        }
+        writeInt(result, 8, transactionId.getContextId() ^ Integer.MIN_VALUE);
+        writeInt(result, 12, transactionId.getSubSequence() ^ Integer.MIN_VALUE);
+        return result;
+    }
+
+    /**
+     * Decode a transaction id.
+     * @param bytes the encoded bytes
+     * @param offset offset of the transaction id in the array
+     * @return the transaction id
+     */
+    public static TransactionId decode(final byte[] bytes, final int offset) {
+        long timestamp = 0;
+        for (int i = 0; i < 8; i++) {
+            timestamp = (timestamp << 8) | (bytes[offset + i] & 0xFFL);
+        }
+        return new TransactionId(timestamp ^ Long.MIN_VALUE,
+                readInt(bytes, offset + 8) ^ Integer.MIN_VALUE,
+                readInt(bytes, offset + 12) ^ Integer.MIN_VALUE);
+    }
+
+    /**
+     * @param bytes destination array
+     * @param offset offset in the array
+     * @param value big-endian int to write
+     */
+    private static void writeInt(final byte[] bytes, final int offset, final int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    /**
+     * @param bytes source array
+     * @param offset offset in the array
+     * @return big-endian int read
+     */
+    private static int readInt(final byte[] bytes, final int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+}
@@ -26,6 +26,7 @@ import java.util.NavigableSet;
 
 import com.shadowmvcc.coherence.cache.CacheName;
 import com.shadowmvcc.coherence.domain.TransactionId;
+import com.tangosol.net.partition.PartitionSet;
 
 
 /**
@@ -40,6 +41,10 @@ public interface ManagerCache {
 
     String MGRCACHENAME = "mvcc-transaction-manager";
     
+    String TEMPORALVIEWCACHENAME = "mvcc-temporal-view";
+    
+    String VACUUMCACHENAME = "mvcc-vacuum";
+    
     /**
      * @return a new, unique transaction manager id
      */
@@ -84,4 +89,38 @@ public interface ManagerCache {
      * @return and ordered set of snapshot transaction ids
      */
     NavigableSet<TransactionId> getValidSnapshots(CacheName cacheName);
+    
+    /**
+     * Register a temporal cache view so that the versions it reads are not vacuumed.
+     * The registration lapses after the timeout. A view older than the vacuum
+     * watermark of any cache is rejected.
+     * @param viewId unique id of the view, with the timestamp of the view
+     * @param timeout registration timeout in milliseconds
+     */
+    void registerTemporalView(TransactionId viewId, long timeout);
+    
+    /**
+     * Get the cluster low watermark. No reader other than a declared snapshot can read at
+     * a transaction id earlier than this: it is older than any open transaction,
+     * any registered temporal view, and the maximum transaction age.
+     * @return the low watermark
+     */
+    TransactionId getLowWatermark();
+    
+    /**
+     * Get the low watermark at which a cache was last vacuumed, or its most recent snapshot if later.
+     * Reads at earlier transaction ids other than declared snapshots may miss versions removed.
+     * @param cacheName the cache
+     * @return the vacuum watermark, or null if the cache has not been vacuumed
+     */
+    TransactionId getVacuumWatermark(CacheName cacheName);
+    
+    /**
+     * Remove versions of a cache that are superseded at the low watermark and newer than
+     * the most recent snapshot. Once vacuumed, snapshots may not be created earlier than the watermark.
+     * @param cacheName the cache to vacuum
+     * @param lowWatermark the low watermark
+     * @param partitions the partitions to vacuum, or null for all partitions
+     */
+    void vacuum(CacheName cacheName, TransactionId lowWatermark, PartitionSet partitions);
 }
@@ -27,6 +27,8 @@ import static com.shadowmvcc.coherence.domain.IsolationLevel.readCommitted;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.shadowmvcc.coherence.cache.CacheName;
 import com.shadowmvcc.coherence.cache.internal.MVCCNamedCache;
@@ -41,6 +43,7 @@ import com.shadowmvcc.coherence.transaction.internal.TimestampValidatorImpl;
 import com.shadowmvcc.coherence.transaction.internal.TimestampValidator;
 import com.shadowmvcc.coherence.transaction.internal.TransactionCache;
 import com.shadowmvcc.coherence.transaction.internal.TransactionCacheImpl;
+import com.shadowmvcc.coherence.transaction.internal.TransactionIdGenerator;
 import com.shadowmvcc.coherence.transaction.internal.TransactionImpl;
 
 /**
@@ -59,7 +62,7 @@ import com.shadowmvcc.coherence.transaction.internal.TransactionImpl;
 public class SessionTransactionManager implements TransactionManager, 
         TransactionNotificationListener {
 
-    private final TimestampSource timestampSource;
+    private final TransactionIdGenerator idGenerator;
     private final TimestampValidator timestampValidator;
     private final int managerId;
     private final TransactionCache transactionCache;
@@ -67,20 +70,19 @@ public class SessionTransactionManager implements TransactionManager,
     private volatile boolean readOnly = false;
     private volatile boolean autoCommit = false;
     private volatile IsolationLevel isolationLevel = readCommitted;
-    private int offset = 0;
-    private long lastTimestamp = 0L;
 
-    private volatile Transaction currentTransaction = null;
+    private final AtomicReference<Transaction> currentTransaction = new AtomicReference<Transaction>();
     private final Set<String> referencedCacheNames = new HashSet<String>(); 
+    private final AtomicInteger temporalViewSequence = new AtomicInteger();
 
     /**
      * @param timestampSource source of timestamps
      */
     public SessionTransactionManager(final TimestampSource timestampSource) {
         super();
-        this.timestampSource = timestampSource;
         this.managerCache = getManagerCache();
         this.managerId = managerCache.getManagerId();
+        this.idGenerator = new TransactionIdGenerator(timestampSource, managerId);
         this.transactionCache = getTransactionCache();
         this.timestampValidator = getTimestampValidator();
     }
@@ -103,9 +105,9 @@ public class SessionTransactionManager implements TransactionManager,
             final boolean readOnly, 
             final boolean autoCommit, final IsolationLevel isolationLevel) {
         super();
-        this.timestampSource = timestampSource;
         this.managerCache = getManagerCache();
         this.managerId = managerCache.getManagerId();
+        this.idGenerator = new TransactionIdGenerator(timestampSource, managerId);
         this.transactionCache = getTransactionCache();
         this.readOnly = readOnly;
         this.autoCommit = autoCommit;
@@ -130,21 +132,29 @@ public class SessionTransactionManager implements TransactionManager,
         return ConfigurationFactory.getConfiguraration().getInvocationServiceName();
     }
     
+    /**
+     * Get the name of the invocation service used to complete transactions.
+     * Override to provide an alternate
+     * @return the completion service name.
+     */
+    protected String getCompletionServiceName() {
+        return ConfigurationFactory.getConfiguraration().getCompletionServiceName();
+    }
+    
     /**
      * Construct the transaction cache object. Override for unit test
      * or for alternate implementations
      * @return the transaction cache
      */
     protected TransactionCache getTransactionCache() {
-        return new TransactionCacheImpl(getInvocationServiceName());
+        return new TransactionCacheImpl(getCompletionServiceName());
     }
 
     @Override
     public void transactionComplete(final Transaction transaction) {
-        if (transaction != currentTransaction) {
+        if (!currentTransaction.compareAndSet(transaction, null)) {
             throw new TransactionException("notifying unknown transaction complete " + transaction);
         }
-        currentTransaction = null;
     }
     
     /**
@@ -173,6 +183,9 @@ public class SessionTransactionManager implements TransactionManager,
                 throw new UnsupportedOperationException("Snapshot transaction");
             }
         };
+        managerCache.registerTemporalView(
+                new TransactionId(timestamp, managerId, temporalViewSequence.incrementAndGet()),
+                ConfigurationFactory.getConfiguraration().getTemporalViewTimeout());
         final Transaction viewTransaction = new ReadOnlyTransaction(
                 new TransactionId(timestamp, Integer.MAX_VALUE, Integer.MAX_VALUE), isolationLevel, tnl);
         
@@ -199,42 +212,48 @@ public class SessionTransactionManager implements TransactionManager,
         }, new MVCCTransactionalCacheImpl(cacheName, getInvocationServiceName()));
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * Lock-free. Creating a transaction has no side effects, so if threads race to create
+     * the current transaction, the losers discard theirs and use the winner's.
+     */
     @Override
-    public synchronized Transaction getTransaction() {
-        if (currentTransaction == null) {
-
-            TransactionId id = getNextId();
-            if (autoCommit) {
-                if (!timestampValidator.isTransactionTimestampValid(id.getTimeStampMillis())) {
-                    throw new TransactionException("Cannot create transaction, timestamp too old");
-                }
-                currentTransaction = new AutoCommitTransaction(id, isolationLevel, this);
-            } else if (readOnly) {
-                // Not a problem if read-only transactions are old.
-                currentTransaction = new ReadOnlyTransaction(id, isolationLevel, this);
-            } else {
-                if (!timestampValidator.isTransactionTimestampValid(id.getTimeStampMillis())) {
-                    throw new TransactionException("Cannot create transaction, timestamp too old");
-                }
-                currentTransaction = new TransactionImpl(id, isolationLevel, this, transactionCache);
+    public Transaction getTransaction() {
+        while (true) {
+            Transaction transaction = currentTransaction.get();
+            if (transaction != null) {
+                return transaction;
+            }
+            transaction = createTransaction();
+            if (currentTransaction.compareAndSet(null, transaction)) {
+                return transaction;
             }
         }
-        return currentTransaction;
     }
-
+    
     /**
-     * @return a new, unique transaction id
+     * Create a new transaction of the configured type.
+     * @return the transaction
      */
-    private TransactionId getNextId() {
-        long timestamp = timestampSource.getTimestamp();
-        if (timestamp == lastTimestamp) {
-            offset++;
+    private Transaction createTransaction() {
+
+        TransactionId id = idGenerator.nextId();
+        if (autoCommit) {
+            if (!timestampValidator.isTransactionTimestampValid(id.getTimeStampMillis())) {
+                throw new TransactionException("Cannot create transaction, timestamp too old");
+            }
+            return new AutoCommitTransaction(id, isolationLevel, this);
+        } else if (readOnly) {
+            // A read-only transaction is not registered, so does not hold back the vacuum.
+            // Its reads fail once the cache has been vacuumed past its transaction id.
+            return new ReadOnlyTransaction(id, isolationLevel, this);
         } else {
-            offset = 0;
+            if (!timestampValidator.isTransactionTimestampValid(id.getTimeStampMillis())) {
+                throw new TransactionException("Cannot create transaction, timestamp too old");
+            }
+            return new TransactionImpl(id, isolationLevel, this, transactionCache, timestampValidator);
         }
-        lastTimestamp = timestamp;
-
-        return new TransactionId(timestamp, managerId, offset);
     }
 
     @Override
@@ -23,6 +23,7 @@ along with Shadow MVCC for Oracle Coherence.  If not, see
 package com.shadowmvcc.coherence.transaction;
 
 import java.util.Collection;
+import java.util.concurrent.Future;
 
 import com.shadowmvcc.coherence.cache.CacheName;
 import com.shadowmvcc.coherence.domain.IsolationLevel;
@@ -80,6 +81,13 @@ public interface Transaction {
      */
     void addPartitionSetAffected(CacheName cacheName, PartitionSet partitionSet);
 
+    /**
+     * Ensure that the transaction is registered in the grid. Must be called before
+     * any change is made in the transaction. Transactions that make no changes need
+     * never be registered. Adding affected keys or partitions registers the transaction.
+     */
+    void ensureRegistered();
+
     /**
      * Set the transaction in a rollback-only mode. An attempt to commit
      * will throw an exception.
@@ -91,6 +99,14 @@ public interface Transaction {
      */
     void commit();
 
+    /**
+     * Commit the transaction, returning once the commit can no longer fail. Updates made in the
+     * transaction are visible to other transactions when the returned future completes, the
+     * remaining commit processing is performed in the background.
+     * @return a future that completes when all changes have been committed
+     */
+    Future<Void> commitAsync();
+
     /**
      * Roll back the transaction.
      */
@@ -102,4 +118,10 @@ public interface Transaction {
      */
     boolean isExpired();
     
+    /**
+     * Is the transaction still open, that is neither committed nor rolled back?
+     * @return true if the transaction is open
+     */
+    boolean isOpen();
+    
 }
@@ -23,6 +23,7 @@ along with Shadow MVCC for Oracle Coherence.  If not, see
 package com.shadowmvcc.coherence.transaction.internal;
 
 import java.util.Collection;
+import java.util.concurrent.Future;
 
 import com.shadowmvcc.coherence.cache.CacheName;
 import com.shadowmvcc.coherence.domain.IsolationLevel;
@@ -85,6 +86,10 @@ public class AutoCommitTransaction implements Transaction {
     public void addKeySetAffected(final CacheName cacheName, final Collection<Object> keys) {
     }
 
+    @Override
+    public void ensureRegistered() {
+    }
+
     @Override
     public void setRollbackOnly() {
     }
@@ -93,6 +98,12 @@ public class AutoCommitTransaction implements Transaction {
     public void commit() {
     }
 
+    @Override
+    public Future<Void> commitAsync() {
+        commit();
+        return CompletedFuture.INSTANCE;
+    }
+
     @Override
     public void rollback() {
     }
@@ -112,4 +123,9 @@ public class AutoCommitTransaction implements Transaction {
         return false;
     }
 
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
 }
@@ -23,12 +23,14 @@ along with Shadow MVCC for Oracle Coherence.  If not, see
 package com.shadowmvcc.coherence.transaction.internal;
 
 import com.tangosol.io.pof.annotation.Portable;
+import com.tangosol.io.pof.annotation.PortableProperty;
 import com.tangosol.util.InvocableMap.Entry;
 import com.tangosol.util.processor.AbstractProcessor;
 
 /**
  * Get a value from a counter. Simply increments and returns a counter
- * starting from zero if the entry does not exist
+ * starting from zero if the entry does not exist. The counter may be incremented
+ * by more than one to reserve a block of values, the value returned is the last in the block.
  * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
@@ -39,6 +41,23 @@ public class CounterProcessor extends AbstractProcessor {
     private static final long serialVersionUID = 44873576034046440L;
     public static final CounterProcessor INSTANCE = new CounterProcessor();
     
+    @PortableProperty(0) private int increment = 1;
+
+    /**
+     * Constructor, increments by one.
+     */
+    public CounterProcessor() {
+        super();
+    }
+
+    /**
+     * @param increment amount to increment the counter by
+     */
+    public CounterProcessor(final int increment) {
+        super();
+        this.increment = increment;
+    }
+    
     @Override
     public Object process(final Entry entry) {
         Integer managerId;
@@ -48,7 +67,7 @@ public class CounterProcessor extends AbstractProcessor {
         } else {
             managerId = (Integer) entry.getValue();
         }
-        managerId++;
+        managerId += increment;
         entry.setValue(managerId);
         
         return managerId;
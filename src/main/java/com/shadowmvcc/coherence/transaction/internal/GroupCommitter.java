@@ -0,0 +1,395 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.transaction.internal;
+
+import static com.shadowmvcc.coherence.domain.TransactionProcStatus.committing;
+import static com.shadowmvcc.coherence.domain.TransactionProcStatus.rollingback;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.config.Configuration;
+import com.shadowmvcc.coherence.config.ConfigurationFactory;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.TransactionProcStatus;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.shadowmvcc.coherence.invocable.InvocationServiceHelper;
+import com.shadowmvcc.coherence.invocable.InvocationServiceHelper.InvocableFactory;
+import com.shadowmvcc.coherence.transaction.TransactionException;
+import com.tangosol.net.CacheFactory;
+import com.tangosol.net.Invocable;
+import com.tangosol.net.NamedCache;
+import com.tangosol.net.partition.PartitionSet;
+import com.tangosol.util.filter.AlwaysFilter;
+import com.tangosol.util.processor.ConditionalRemove;
+
+/**
+ * Client side pipeline that completes the commits and rollbacks of concurrent transactions
+ * together. Each batch updates the state of all its transactions with one {@code invokeAll} on the
+ * transaction cache, commits or rolls back their entries with one invocable per cache and member,
+ * and removes them from the transaction cache with one {@code invokeAll}.
+ * 
+ * A batch is started as soon as a request arrives, and is closed when it reaches the maximum batch
+ * size or the maximum latency has elapsed. Requests arriving while a batch is being processed are
+ * queued for the next batch.
+ * 
+ * A failure processing a batch fails every transaction in it that has not already completed, and
+ * the committer carries on with the next batch. A caller waits no longer than the transaction
+ * completion timeout, after which the transaction monitor will complete the transaction.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class GroupCommitter implements Runnable {
+    
+    private static final ConcurrentMap<String, GroupCommitter> COMMITTERS =
+            new ConcurrentHashMap<String, GroupCommitter>();
+    
+    private static final ConditionalRemove REMOVE = new ConditionalRemove(AlwaysFilter.INSTANCE);
+    
+    /**
+     * A transaction waiting to be completed.
+     */
+    static final class PendingCompletion {
+        private final TransactionId transactionId;
+        private final Map<CacheName, Set<Object>> cacheKeyMap;
+        private final Map<CacheName, PartitionSet> cachePartitionMap;
+        private final TransactionProcStatus transactionStatus;
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile TransactionException failure = null;
+
+        /**
+         * Constructor.
+         * @param transactionId the transaction id
+         * @param cacheKeyMap map of affected caches to sets of keys
+         * @param cachePartitionMap map of affected caches to sets of partitions
+         * @param transactionStatus commit or rollback
+         */
+        private PendingCompletion(final TransactionId transactionId,
+                final Map<CacheName, Set<Object>> cacheKeyMap,
+                final Map<CacheName, PartitionSet> cachePartitionMap,
+                final TransactionProcStatus transactionStatus) {
+            this.transactionId = transactionId;
+            this.cacheKeyMap = cacheKeyMap;
+            this.cachePartitionMap = cachePartitionMap;
+            this.transactionStatus = transactionStatus;
+        }
+        
+        /**
+         * Complete with a failure, unless already completed. Only called on the committer thread.
+         * @param exception the failure
+         */
+        private void fail(final TransactionException exception) {
+            if (completed.getCount() > 0) {
+                failure = exception;
+                completed.countDown();
+            }
+        }
+    }
+
+    private final String invocationServiceName;
+    private final int batchSize;
+    private final long latency;
+    private final long completionTimeout;
+    private final BlockingQueue<PendingCompletion> queue = new LinkedBlockingQueue<PendingCompletion>();
+
+    /**
+     * Constructor. The committer does nothing until {@link #start()} is called.
+     * @param invocationServiceName name of the invocation service to use
+     * @param batchSize maximum number of transactions in a batch
+     * @param latency maximum time in milliseconds to wait for further transactions to add to a batch
+     * @param completionTimeout maximum time in milliseconds a caller waits for its transaction to complete
+     */
+    public GroupCommitter(final String invocationServiceName, final int batchSize, final long latency,
+            final long completionTimeout) {
+        super();
+        this.invocationServiceName = invocationServiceName;
+        this.batchSize = batchSize;
+        this.latency = latency;
+        this.completionTimeout = completionTimeout;
+    }
+    
+    /**
+     * Get the shared committer for an invocation service, configured from the group commit
+     * batch size and latency and the transaction completion timeout, starting it if this is the first use.
+     * @param invocationServiceName name of the invocation service
+     * @return the committer
+     */
+    public static GroupCommitter getInstance(final String invocationServiceName) {
+        GroupCommitter committer = COMMITTERS.get(invocationServiceName);
+        if (committer == null) {
+            Configuration config = ConfigurationFactory.getConfiguraration();
+            GroupCommitter newCommitter = new GroupCommitter(
+                    invocationServiceName, config.getGroupCommitBatchSize(), config.getGroupCommitLatency(),
+                    config.getTransactionCompletionTimeout());
+            committer = COMMITTERS.putIfAbsent(invocationServiceName, newCommitter);
+            if (committer == null) {
+                committer = newCommitter;
+                committer.start();
+            }
+        }
+        return committer;
+    }
+    
+    /**
+     * Start the daemon thread processing batches.
+     */
+    public void start() {
+        Thread thread = new Thread(this, "GroupCommitter:" + invocationServiceName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Commit or roll back a transaction as part of a batch, waiting until it is complete
+     * or the completion timeout has elapsed.
+     * @param transactionId the transaction id
+     * @param cacheKeyMap map of affected caches to sets of keys
+     * @param cachePartitionMap map of affected caches to sets of partitions
+     * @param transactionStatus commit or rollback
+     */
+    public void complete(final TransactionId transactionId, 
+            final Map<CacheName, Set<Object>> cacheKeyMap, 
+            final Map<CacheName, PartitionSet> cachePartitionMap,
+            final TransactionProcStatus transactionStatus) {
+        
+        PendingCompletion pending = new PendingCompletion(
+                transactionId, cacheKeyMap, cachePartitionMap, transactionStatus);
+        queue.add(pending);
+        try {
+            if (!pending.completed.await(completionTimeout, TimeUnit.MILLISECONDS)) {
+                throw new TransactionException("Timed out waiting for group completion of " + transactionId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionException(e);
+        }
+        if (pending.failure != null) {
+            throw pending.failure;
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            List<PendingCompletion> batch = new ArrayList<PendingCompletion>();
+            try {
+                batch.add(queue.take());
+                long deadline = System.currentTimeMillis() + latency;
+                while (batch.size() < batchSize) {
+                    PendingCompletion next = queue.poll(
+                            Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                for (PendingCompletion pending : batch) {
+                    pending.fail(new TransactionException(e));
+                }
+                return;
+            }
+            try {
+                processBatch(batch);
+            } catch (Throwable t) {
+                CacheFactory.log("group completion of " + batch.size() + " transactions failed: " + t,
+                        CacheFactory.LOG_WARN);
+                TransactionException exception = t instanceof TransactionException
+                        ? (TransactionException) t : new TransactionException(t);
+                for (PendingCompletion pending : batch) {
+                    pending.fail(exception);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Commit or roll back a batch of transactions. If this throws, the transactions
+     * in the batch that are not yet complete are failed.
+     * @param batch the transactions
+     */
+    void processBatch(final List<PendingCompletion> batch) {
+        
+        NamedCache transactionCache = CacheFactory.getCache(TransactionCache.CACHENAME);
+        
+        List<PendingCompletion> accepted = new ArrayList<PendingCompletion>(batch.size());
+        updateStates(transactionCache, batch, committing, TransactionStateUpdater.COMMIT_BATCH, accepted);
+        updateStates(transactionCache, batch, rollingback, TransactionStateUpdater.ROLLBACK_BATCH, accepted);
+        
+        if (accepted.isEmpty()) {
+            return;
+        }
+        
+        try {
+            actionTransactions(accepted);
+            
+            Set<TransactionId> transactionIds = new HashSet<TransactionId>();
+            for (PendingCompletion pending : accepted) {
+                transactionIds.add(pending.transactionId);
+            }
+            transactionCache.invokeAll(transactionIds, REMOVE);
+            
+        } catch (Throwable t) {
+            TransactionException exception = t instanceof TransactionException
+                    ? (TransactionException) t : new TransactionException(t);
+            for (PendingCompletion pending : accepted) {
+                pending.fail(exception);
+            }
+            return;
+        }
+        
+        for (PendingCompletion pending : accepted) {
+            pending.completed.countDown();
+        }
+    }
+    
+    /**
+     * Update the state of the transactions in a batch that are to be completed with the given status.
+     * Transactions whose state cannot be updated are failed.
+     * @param transactionCache the transaction cache
+     * @param batch the batch
+     * @param transactionStatus the status of transactions to update
+     * @param updater the state updater
+     * @param accepted list to add the transactions that were updated to
+     */
+    @SuppressWarnings("unchecked")
+    private void updateStates(final NamedCache transactionCache, final List<PendingCompletion> batch,
+            final TransactionProcStatus transactionStatus, final TransactionStateUpdater updater,
+            final List<PendingCompletion> accepted) {
+        
+        Map<TransactionId, PendingCompletion> pendingMap = new HashMap<TransactionId, PendingCompletion>();
+        for (PendingCompletion pending : batch) {
+            if (pending.transactionStatus == transactionStatus) {
+                pendingMap.put(pending.transactionId, pending);
+            }
+        }
+        
+        if (pendingMap.isEmpty()) {
+            return;
+        }
+        
+        Map<TransactionId, TransactionException> failures;
+        try {
+            failures = transactionCache.invokeAll(pendingMap.keySet(), updater);
+        } catch (RuntimeException e) {
+            for (PendingCompletion pending : pendingMap.values()) {
+                pending.fail(new TransactionException(e));
+            }
+            return;
+        }
+        
+        for (PendingCompletion pending : pendingMap.values()) {
+            TransactionException failure = failures.get(pending.transactionId);
+            if (failure == null) {
+                accepted.add(pending);
+            } else {
+                pending.fail(failure);
+            }
+        }
+    }
+
+    /**
+     * Perform the update or remove operations to effect the commit or rollback
+     * on all the cache entries belonging to a batch of transactions.
+     * @param accepted the transactions
+     * @throws Throwable if any invocation fails
+     */
+    private void actionTransactions(final List<PendingCompletion> accepted) throws Throwable {
+
+        InvocationServiceHelper<Object> invocationHelper = new InvocationServiceHelper<Object>(invocationServiceName);
+        
+        for (final TransactionProcStatus transactionStatus : new TransactionProcStatus[] { committing, rollingback }) {
+            
+            Map<CacheName, Set<VersionedKey<Object>>> cacheKeyMap =
+                    new HashMap<CacheName, Set<VersionedKey<Object>>>();
+            Map<CacheName, Set<TransactionId>> cacheTransactionMap = new HashMap<CacheName, Set<TransactionId>>();
+            Map<CacheName, PartitionSet> cachePartitionMap = new HashMap<CacheName, PartitionSet>();
+            
+            for (PendingCompletion pending : accepted) {
+                if (pending.transactionStatus != transactionStatus) {
+                    continue;
+                }
+                for (Map.Entry<CacheName, Set<Object>> cacheKeyEntry : pending.cacheKeyMap.entrySet()) {
+                    Set<VersionedKey<Object>> versionKeys = cacheKeyMap.get(cacheKeyEntry.getKey());
+                    if (versionKeys == null) {
+                        versionKeys = new HashSet<VersionedKey<Object>>();
+                        cacheKeyMap.put(cacheKeyEntry.getKey(), versionKeys);
+                    }
+                    for (Object key : cacheKeyEntry.getValue()) {
+                        versionKeys.add(new VersionedKey<Object>(key, pending.transactionId));
+                    }
+                }
+                for (Map.Entry<CacheName, PartitionSet> cachePartitionEntry : pending.cachePartitionMap.entrySet()) {
+                    CacheName cacheName = cachePartitionEntry.getKey();
+                    if (!cachePartitionMap.containsKey(cacheName)) {
+                        cachePartitionMap.put(cacheName, new PartitionSet(cachePartitionEntry.getValue()));
+                        cacheTransactionMap.put(cacheName, new HashSet<TransactionId>());
+                    } else {
+                        cachePartitionMap.get(cacheName).add(cachePartitionEntry.getValue());
+                    }
+                    cacheTransactionMap.get(cacheName).add(pending.transactionId);
+                }
+            }
+            
+            for (Map.Entry<CacheName, Set<VersionedKey<Object>>> cacheKeyEntry : cacheKeyMap.entrySet()) {
+                final CacheName cacheName = cacheKeyEntry.getKey();
+                InvocableFactory<Set<VersionedKey<Object>>> keyInvocableFactory =
+                        new InvocableFactory<Set<VersionedKey<Object>>>() {
+                    @Override
+                    public Invocable getInvocable(final Set<VersionedKey<Object>> invocationTargetSet) {
+                        return new GroupTransactionInvocable(cacheName, invocationTargetSet, transactionStatus);
+                    }
+                };
+                invocationHelper.invokeActionForKeyset(cacheName, cacheKeyEntry.getValue(), keyInvocableFactory);
+            }
+            
+            for (Map.Entry<CacheName, PartitionSet> cachePartitionEntry : cachePartitionMap.entrySet()) {
+                final CacheName cacheName = cachePartitionEntry.getKey();
+                final Set<TransactionId> transactionIds = cacheTransactionMap.get(cacheName);
+                InvocableFactory<PartitionSet> partitionInvocableFactory = new InvocableFactory<PartitionSet>() {
+                    @Override
+                    public Invocable getInvocable(final PartitionSet invocationTargetSet) {
+                        return new GroupTransactionInvocable(
+                                cacheName, transactionIds, invocationTargetSet, transactionStatus);
+                    }
+                };
+                invocationHelper.invokeActionForPartitionSet(
+                        cachePartitionEntry.getValue(), cacheName, partitionInvocableFactory);
+            }
+        }
+        
+        invocationHelper.waitForAllInvocations();
+    }
+}
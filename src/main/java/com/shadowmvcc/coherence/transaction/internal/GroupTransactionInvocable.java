@@ -0,0 +1,188 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.transaction.internal;
+
+import java.util.Set;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.domain.Constants;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.TransactionProcStatus;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.shadowmvcc.coherence.pof.SetCodec;
+import com.tangosol.io.pof.annotation.Portable;
+import com.tangosol.io.pof.annotation.PortableProperty;
+import com.tangosol.net.CacheFactory;
+import com.tangosol.net.Invocable;
+import com.tangosol.net.InvocationService;
+import com.tangosol.net.NamedCache;
+import com.tangosol.net.partition.PartitionSet;
+import com.tangosol.util.InvocableMap.EntryProcessor;
+import com.tangosol.util.filter.InFilter;
+import com.tangosol.util.filter.PartitionedFilter;
+
+/**
+ * Commit or rollback the entries of many transactions in a single cache and member. Either
+ * a set of version cache keys, each of which identifies its transaction, or a set of transactions
+ * and the partitions they may have entries in, is given.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+@Portable
+public class GroupTransactionInvocable implements Invocable {
+
+    private static final long serialVersionUID = 3406985710386712409L;
+    
+    @PortableProperty(0) private CacheName cacheName;
+    @PortableProperty(1) private TransactionProcStatus transactionStatus;
+    @PortableProperty(value = 2, codec = SetCodec.class) private Set<VersionedKey<Object>> versionKeys;
+    @PortableProperty(value = 3, codec = SetCodec.class) private Set<TransactionId> transactionIds;
+    @PortableProperty(4) private PartitionSet partitionSet;
+
+    /**
+     *  Default constructor for POF use only.
+     */
+    public GroupTransactionInvocable() {
+        super();
+    }
+
+    /**
+     * Constructor for a set of version cache keys.
+     * @param cacheName name of the cache
+     * @param versionKeys set of version cache keys
+     * @param transactionStatus commit or rollback
+     */
+    public GroupTransactionInvocable(final CacheName cacheName, final Set<VersionedKey<Object>> versionKeys,
+            final TransactionProcStatus transactionStatus) {
+        super();
+        this.cacheName = cacheName;
+        this.versionKeys = versionKeys;
+        this.transactionStatus = transactionStatus;
+    }
+
+    /**
+     * Constructor for a set of transactions in a set of partitions.
+     * @param cacheName name of the cache
+     * @param transactionIds the transaction ids
+     * @param partitionSet partitions
+     * @param transactionStatus commit or rollback
+     */
+    public GroupTransactionInvocable(final CacheName cacheName, final Set<TransactionId> transactionIds,
+            final PartitionSet partitionSet, final TransactionProcStatus transactionStatus) {
+        super();
+        this.cacheName = cacheName;
+        this.transactionIds = transactionIds;
+        this.partitionSet = partitionSet;
+        this.transactionStatus = transactionStatus;
+    }
+
+    @Override
+    public void init(final InvocationService invocationservice) {
+    }
+
+    @Override
+    public void run() {
+        
+        EntryProcessor agent;
+        switch (transactionStatus) {
+        case committing:
+            agent = EntryCommitProcessor.INSTANCE;
+            break;
+        case rollingback:
+            agent = EntryRollbackProcessor.INSTANCE;
+            break;
+        default:
+            throw new IllegalArgumentException("invalid transaction status " + transactionStatus);    
+        }
+        
+        NamedCache vcache = CacheFactory.getCache(cacheName.getVersionCacheName());
+        if (versionKeys != null) {
+            vcache.invokeAll(versionKeys, agent);
+        } else {
+            vcache.invokeAll(new PartitionedFilter(
+                    new InFilter(Constants.TRANSACTIONIDEXTRACTOR, transactionIds), partitionSet), agent);
+        }
+    }
+
+    @Override
+    public Object getResult() {
+        return null;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((cacheName == null) ? 0 : cacheName.hashCode());
+        result = prime * result + ((partitionSet == null) ? 0 : partitionSet.hashCode());
+        result = prime * result + ((transactionIds == null) ? 0 : transactionIds.hashCode());
+        result = prime * result + ((transactionStatus == null) ? 0 : transactionStatus.hashCode());
+        result = prime * result + ((versionKeys == null) ? 0 : versionKeys.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        GroupTransactionInvocable other = (GroupTransactionInvocable) obj;
+        if (cacheName == null) {
+            if (other.cacheName != null) {
+                return false;
+            }
+        } else if (!cacheName.equals(other.cacheName)) {
+            return false;
+        }
+        if (partitionSet == null) {
+            if (other.partitionSet != null) {
+                return false;
+            }
+        } else if (!partitionSet.equals(other.partitionSet)) {
+            return false;
+        }
+        if (transactionIds == null) {
+            if (other.transactionIds != null) {
+                return false;
+            }
+        } else if (!transactionIds.equals(other.transactionIds)) {
+            return false;
+        }
+        if (versionKeys == null) {
+            if (other.versionKeys != null) {
+                return false;
+            }
+        } else if (!versionKeys.equals(other.versionKeys)) {
+            return false;
+        }
+        return transactionStatus == other.transactionStatus;
+    }
+
+}
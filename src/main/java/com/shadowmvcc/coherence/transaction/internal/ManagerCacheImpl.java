@@ -27,17 +27,28 @@ import java.util.NavigableSet;
 import java.util.TreeSet;
 
 import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.config.ClusterTimeProviderFactory;
+import com.shadowmvcc.coherence.config.ConfigurationFactory;
+import com.shadowmvcc.coherence.config.PropertyConfiguration;
 import com.shadowmvcc.coherence.domain.TransactionId;
 import com.shadowmvcc.coherence.exception.SnapshotCreationException;
-import com.shadowmvcc.coherence.index.MVCCSnapshotPurgeFilter;
 import com.shadowmvcc.coherence.invocable.SnapShotCreateProcessor;
+import com.shadowmvcc.coherence.invocable.SortedSetRemove;
 import com.shadowmvcc.coherence.invocable.SortedSetRemoveRange;
 import com.shadowmvcc.coherence.transaction.ManagerCache;
+import com.shadowmvcc.coherence.transaction.TransactionException;
 import com.tangosol.net.CacheFactory;
 import com.tangosol.net.NamedCache;
-import com.tangosol.util.Filter;
+import com.tangosol.net.partition.PartitionSet;
+import com.tangosol.util.aggregator.ComparableMax;
+import com.tangosol.util.aggregator.ComparableMin;
+import com.tangosol.util.extractor.IdentityExtractor;
+import com.tangosol.util.extractor.KeyExtractor;
 import com.tangosol.util.filter.AlwaysFilter;
-import com.tangosol.util.processor.ConditionalRemove;
+import com.tangosol.util.filter.GreaterEqualsFilter;
+import com.tangosol.util.filter.GreaterFilter;
+import com.tangosol.util.filter.NotFilter;
+import com.tangosol.util.processor.ConditionalPut;
 
 /**
  * Implementation of {@link ManagerCache} that obtains ids from
@@ -51,13 +62,33 @@ public class ManagerCacheImpl implements ManagerCache {
     private static final String IDCACHENAME = "mvcc-transaction-manager-id";
     private static final String SNAPSHOTCACHENAME = "mvcc-snapshot";
     private static final int KEY = 0;
+    private static final ComparableMin MINKEYAGGREGATOR =
+            new ComparableMin(new KeyExtractor(IdentityExtractor.INSTANCE));
+    private static final ComparableMax MAXVALUEAGGREGATOR = new ComparableMax(IdentityExtractor.INSTANCE);
+    
+    private static final int IDBLOCKSIZE = Math.max(1,
+            ConfigurationFactory.getConfiguraration().getManagerIdBlockSize());
+    private static final CounterProcessor IDBLOCKPROCESSOR = new CounterProcessor(IDBLOCKSIZE);
+    private static int nextManagerId = 0;
+    private static int lastReservedManagerId = 0;
 
+    /**
+     * {@inheritDoc}
+     * 
+     * Ids are reserved from the cluster in blocks shared by all managers in this JVM,
+     * so only one in every block of managers created requires a cluster request.
+     */
     @Override
     public int getManagerId() {
-
-        NamedCache managerIdCache = CacheFactory.getCache(IDCACHENAME);
         
-        return (Integer) managerIdCache.invoke(KEY, CounterProcessor.INSTANCE);
+        synchronized (ManagerCacheImpl.class) {
+            if (nextManagerId == 0 || nextManagerId > lastReservedManagerId) {
+                NamedCache managerIdCache = CacheFactory.getCache(IDCACHENAME);
+                lastReservedManagerId = (Integer) managerIdCache.invoke(KEY, IDBLOCKPROCESSOR);
+                nextManagerId = lastReservedManagerId - IDBLOCKSIZE + 1;
+            }
+            return nextManagerId++;
+        }
 
     }
 
@@ -69,10 +100,23 @@ public class ManagerCacheImpl implements ManagerCache {
         
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * The snapshot is added before the vacuum watermark is conditionally raised to it, and a vacuum
+     * raises the watermark before reading the snapshots, so either the vacuum sees the snapshot
+     * and purges only after it, or the snapshot sees the vacuum and is removed again.
+     */
     @Override
     public TransactionId createSnapshot(final CacheName cacheName, final TransactionId snapshotId) {
         NamedCache snapshotCache = CacheFactory.getCache(SNAPSHOTCACHENAME);
         
+        TransactionId vacuumed = getVacuumWatermark(cacheName);
+        if (vacuumed != null && vacuumed.compareTo(snapshotId) > 0) {
+            throw new SnapshotCreationException("Requested snapshot " + snapshotId
+                    + " older than vacuumed transaction id " + vacuumed);
+        }
+        
         TransactionId rangeStart;
         try {
             rangeStart = (TransactionId) snapshotCache.invoke(cacheName.getLogicalName(),
@@ -85,12 +129,16 @@ public class ManagerCacheImpl implements ManagerCache {
             }
         }
         
+        vacuumed = (TransactionId) CacheFactory.getCache(VACUUMCACHENAME).invoke(cacheName.getLogicalName(),
+                new ConditionalPut(new NotFilter(new GreaterFilter(IdentityExtractor.INSTANCE, snapshotId)),
+                        snapshotId, true));
+        if (vacuumed != null) {
+            snapshotCache.invoke(cacheName.getLogicalName(), new SortedSetRemove<TransactionId>(snapshotId));
+            throw new SnapshotCreationException("Requested snapshot " + snapshotId
+                    + " older than vacuumed transaction id " + vacuumed);
+        }
         
-        NamedCache versionCache = CacheFactory.getCache(cacheName.getVersionCacheName());
-        
-        Filter purgeFilter = new MVCCSnapshotPurgeFilter<Object>(rangeStart, snapshotId);
-        
-        versionCache.invokeAll(purgeFilter, new ConditionalRemove(AlwaysFilter.INSTANCE));
+        new VersionPurger().purge(cacheName, rangeStart, snapshotId);
         
         return rangeStart;
         
@@ -114,15 +162,11 @@ public class ManagerCacheImpl implements ManagerCache {
         
         if (changed) {
             
-            NamedCache versionCache = CacheFactory.getCache(cacheName.getVersionCacheName());
-
-            Filter purgeFilter = new MVCCSnapshotPurgeFilter<Object>(rangeStart, snapshotId);
-
-            versionCache.invokeAll(purgeFilter, new ConditionalRemove(AlwaysFilter.INSTANCE));
+            new VersionPurger().purge(cacheName, rangeStart, snapshotId);
             
         }
     }
-
+    
     @Override
     public NavigableSet<TransactionId> getValidSnapshots(final CacheName cacheName) {
         
@@ -135,4 +179,78 @@ public class ManagerCacheImpl implements ManagerCache {
         return collection == null ? null : new TreeSet<TransactionId>(collection);
         
     }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The view is registered before the vacuum watermarks are read, and a vacuum confirms
+     * the low watermark after raising its vacuum watermark, so either the vacuum sees the view
+     * or the view sees the vacuum and is rejected.
+     */
+    @Override
+    public void registerTemporalView(final TransactionId viewId, final long timeout) {
+        
+        NamedCache temporalViewCache = CacheFactory.getCache(TEMPORALVIEWCACHENAME);
+        
+        temporalViewCache.put(viewId, viewId, timeout);
+        
+        TransactionId vacuumed = (TransactionId) CacheFactory.getCache(VACUUMCACHENAME).aggregate(
+                AlwaysFilter.INSTANCE, MAXVALUEAGGREGATOR);
+        if (vacuumed != null && vacuumed.getTimeStampMillis() > viewId.getTimeStampMillis()) {
+            temporalViewCache.remove(viewId);
+            throw new TransactionException("Temporal view at " + viewId.getTimeStampMillis()
+                    + " older than vacuumed transaction id " + vacuumed);
+        }
+    }
+
+    @Override
+    public TransactionId getLowWatermark() {
+        
+        long oldestTransactionTime = ClusterTimeProviderFactory.getInstance().getClusterTime()
+                - ConfigurationFactory.getConfiguraration().getMaximumTransactionAge()
+                - PropertyConfiguration.SNAPSHOT_SAFETY_MARGIN;
+        TransactionId result = new TransactionId(oldestTransactionTime, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        
+        TransactionId oldestView = (TransactionId) CacheFactory.getCache(TEMPORALVIEWCACHENAME).aggregate(
+                AlwaysFilter.INSTANCE, MINKEYAGGREGATOR);
+        if (oldestView != null && oldestView.getTimeStampMillis() < result.getTimeStampMillis()) {
+            result = new TransactionId(oldestView.getTimeStampMillis(), Integer.MAX_VALUE, Integer.MAX_VALUE);
+        }
+        
+        TransactionId oldestTransaction = (TransactionId) CacheFactory.getCache(TransactionCache.CACHENAME).aggregate(
+                AlwaysFilter.INSTANCE, MINKEYAGGREGATOR);
+        if (oldestTransaction != null && oldestTransaction.getTimeStampMillis() <= result.getTimeStampMillis()) {
+            // strictly before the open transaction, which may yet roll back
+            result = new TransactionId(oldestTransaction.getTimeStampMillis() - 1,
+                    Integer.MAX_VALUE, Integer.MAX_VALUE);
+        }
+        
+        return result;
+    }
+
+    @Override
+    public TransactionId getVacuumWatermark(final CacheName cacheName) {
+        return (TransactionId) CacheFactory.getCache(VACUUMCACHENAME).get(cacheName.getLogicalName());
+    }
+
+    @Override
+    public void vacuum(final CacheName cacheName, final TransactionId lowWatermark, final PartitionSet partitions) {
+        
+        NamedCache vacuumCache = CacheFactory.getCache(VACUUMCACHENAME);
+        vacuumCache.invoke(cacheName.getLogicalName(), new ConditionalPut(
+                new NotFilter(new GreaterEqualsFilter(IdentityExtractor.INSTANCE, lowWatermark)), lowWatermark));
+        
+        TransactionId rangeEnd = lowWatermark;
+        TransactionId confirmed = getLowWatermark();
+        if (confirmed.compareTo(rangeEnd) < 0) {
+            rangeEnd = confirmed;
+        }
+        
+        NavigableSet<TransactionId> snapshots = getValidSnapshots(cacheName);
+        TransactionId rangeStart = snapshots == null ? TransactionId.BIG_BANG : snapshots.last();
+        
+        if (rangeStart.compareTo(rangeEnd) < 0) {
+            new VersionPurger().purge(cacheName, rangeStart, rangeEnd, partitions);
+        }
+    }
 }
@@ -0,0 +1,191 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.transaction.internal;
+
+import static com.shadowmvcc.coherence.domain.TransactionProcStatus.committing;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.TransactionProcStatus;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.tangosol.io.pof.annotation.Portable;
+import com.tangosol.io.pof.annotation.PortableProperty;
+import com.tangosol.net.CacheFactory;
+import com.tangosol.net.Invocable;
+import com.tangosol.net.InvocationService;
+import com.tangosol.net.NamedCache;
+import com.tangosol.util.InvocableMap.EntryProcessor;
+import com.tangosol.util.filter.AlwaysFilter;
+import com.tangosol.util.processor.ConditionalRemove;
+
+/**
+ * Complete the commit or rollback of a transaction whose changed keys are all
+ * owned by the member this is executed on. The transaction state is updated,
+ * the version cache entries committed or rolled back locally, and the transaction
+ * removed. The client makes only the one request, but this member makes two
+ * to the transaction cache, to update the state and to remove the transaction.
+ * The transaction entry is keyed by transaction id alone, so is not co-located with
+ * the changed keys and those two requests will usually go to another member.
+ * The saving is in the version cache requests, which are local here rather than
+ * one from the client for each changed cache.
+ * 
+ * The result is {@code Boolean.TRUE} if the transaction was completed, the {@link TransactionException}
+ * if the transaction state could not be updated, or null if processing failed after the
+ * transaction state was updated, in which case the client must complete the transaction.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+@Portable
+public class OnePhaseTransactionInvocable implements Invocable {
+
+    private static final long serialVersionUID = -3725149611394757385L;
+    
+    private static final EntryProcessor REMOVE = new ConditionalRemove(AlwaysFilter.INSTANCE);
+    
+    @PortableProperty(0) private TransactionId transactionId;
+    @PortableProperty(1) private Map<CacheName, Set<Object>> cacheKeyMap;
+    @PortableProperty(2) private TransactionProcStatus transactionStatus;
+    
+    private transient Object result = null;
+
+    /**
+     *  Default constructor for POF use only.
+     */
+    public OnePhaseTransactionInvocable() {
+        super();
+    }
+
+    /**
+     * @param transactionId transaction id
+     * @param cacheKeyMap map of cache names to the keys changed in each cache
+     * @param transactionStatus commit or rollback
+     */
+    public OnePhaseTransactionInvocable(final TransactionId transactionId,
+            final Map<CacheName, Set<Object>> cacheKeyMap,
+            final TransactionProcStatus transactionStatus) {
+        super();
+        this.transactionId = transactionId;
+        this.cacheKeyMap = cacheKeyMap;
+        this.transactionStatus = transactionStatus;
+    }
+
+    @Override
+    public void init(final InvocationService invocationservice) {
+    }
+
+    @Override
+    public void run() {
+        
+        EntryProcessor agent;
+        TransactionStateUpdater updater;
+        switch (transactionStatus) {
+        case committing:
+            agent = EntryCommitProcessor.INSTANCE;
+            updater = TransactionStateUpdater.COMMIT_BATCH;
+            break;
+        case rollingback:
+            agent = EntryRollbackProcessor.INSTANCE;
+            updater = TransactionStateUpdater.ROLLBACK_BATCH;
+            break;
+        default:
+            throw new IllegalArgumentException("invalid transaction status " + transactionStatus);    
+        }
+        
+        NamedCache transactionCache = CacheFactory.getCache(TransactionCache.CACHENAME);
+        
+        Object failure = transactionCache.invoke(transactionId, updater);
+        if (failure != null) {
+            result = failure;
+            return;
+        }
+        
+        try {
+            for (Map.Entry<CacheName, Set<Object>> cacheKeyEntry : cacheKeyMap.entrySet()) {
+                NamedCache vcache = CacheFactory.getCache(cacheKeyEntry.getKey().getVersionCacheName());
+                Set<VersionedKey<Object>> vkeys = new HashSet<VersionedKey<Object>>();
+                for (Object key : cacheKeyEntry.getValue()) {
+                    vkeys.add(new VersionedKey<Object>(key, transactionId));
+                }
+                vcache.invokeAll(vkeys, agent);
+            }
+            transactionCache.invoke(transactionId, REMOVE);
+            result = Boolean.TRUE;
+        } catch (RuntimeException e) {
+            CacheFactory.log("failed to complete " + (transactionStatus == committing ? "commit" : "rollback")
+                    + " of " + transactionId + ": " + e, CacheFactory.LOG_WARN);
+        }
+    }
+
+    @Override
+    public Object getResult() {
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int hash = 1;
+        hash = prime * hash + ((cacheKeyMap == null) ? 0 : cacheKeyMap.hashCode());
+        hash = prime * hash + ((transactionId == null) ? 0 : transactionId.hashCode());
+        hash = prime * hash + ((transactionStatus == null) ? 0 : transactionStatus.hashCode());
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        OnePhaseTransactionInvocable other = (OnePhaseTransactionInvocable) obj;
+        if (cacheKeyMap == null) {
+            if (other.cacheKeyMap != null) {
+                return false;
+            }
+        } else if (!cacheKeyMap.equals(other.cacheKeyMap)) {
+            return false;
+        }
+        if (transactionId == null) {
+            if (other.transactionId != null) {
+                return false;
+            }
+        } else if (!transactionId.equals(other.transactionId)) {
+            return false;
+        }
+        if (transactionStatus != other.transactionStatus) {
+            return false;
+        }
+        return true;
+    }
+
+}
@@ -32,12 +32,10 @@ import com.shadowmvcc.coherence.domain.TransactionId;
 import com.shadowmvcc.coherence.domain.Utils;
 import com.shadowmvcc.coherence.domain.VersionedKey;
 import com.shadowmvcc.coherence.invocable.AbstractMVCCProcessor;
-import com.tangosol.io.pof.annotation.Portable;
-import com.tangosol.io.pof.annotation.PortableProperty;
+import com.shadowmvcc.coherence.pof.ReadMarkingProcessorSerializer;
 import com.tangosol.util.Binary;
 import com.tangosol.util.BinaryEntry;
 import com.tangosol.util.InvocableMap.Entry;
-import com.tangosol.util.InvocableMap.EntryProcessor;
 
 /**
  * Entry processor to create a read marker in the key cache at a given timestamp.
@@ -45,22 +43,19 @@ import com.tangosol.util.InvocableMap.EntryProcessor;
  * an uncommitted change. May optionally return a {@code ProcessorResult} indicating the key
  * updated
  * 
+ * Serialised by {@link ReadMarkingProcessorSerializer}.
+ * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
  * @param <K> the logical key type
  */
-@Portable
 public class ReadMarkingProcessor<K> extends AbstractMVCCProcessor<K, VersionedKey<K>> {
 
     private static final long serialVersionUID = -6559372127281694088L;
 
-    public static final int POF_RETURNKEYS = 0;
-    @PortableProperty(POF_RETURNKEYS)
+    public static final int POF_RETURNKEYS = 4;
     private boolean returnMatchingKeys = false;
 
-    @PortableProperty(4)
-    protected EntryProcessor delegate;
-    
     /**
      * Default constructor for POF use only.
      */
@@ -93,6 +88,13 @@ public class ReadMarkingProcessor<K> extends AbstractMVCCProcessor<K, VersionedK
         this.returnMatchingKeys = returnMatchingKeys;
     }
 
+    /**
+     * @return true if a {@code ProcessorResult} is always returned
+     */
+    public boolean isReturnMatchingKeys() {
+        return returnMatchingKeys;
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public ProcessorResult<K, VersionedKey<K>> process(final Entry arg) {
@@ -23,6 +23,7 @@ along with Shadow MVCC for Oracle Coherence.  If not, see
 package com.shadowmvcc.coherence.transaction.internal;
 
 import java.util.Collection;
+import java.util.concurrent.Future;
 
 import com.shadowmvcc.coherence.cache.CacheName;
 import com.shadowmvcc.coherence.domain.IsolationLevel;
@@ -42,6 +43,7 @@ public class ReadOnlyTransaction implements Transaction {
     private final TransactionId transactionId;
     private final IsolationLevel isolationLevel;
     private final TransactionNotificationListener notificationListener;
+    private volatile boolean open = true;
 
 
     /**
@@ -83,6 +85,10 @@ public class ReadOnlyTransaction implements Transaction {
         throw new UnsupportedOperationException("read only transaction");
     }
 
+    @Override
+    public void ensureRegistered() {
+    }
+
     @Override
     public void setRollbackOnly() {
         throw new UnsupportedOperationException("read only transaction");
@@ -91,6 +97,13 @@ public class ReadOnlyTransaction implements Transaction {
     @Override
     public void commit() {
         notificationListener.transactionComplete(this);
+        open = false;
+    }
+
+    @Override
+    public Future<Void> commitAsync() {
+        commit();
+        return CompletedFuture.INSTANCE;
     }
 
     @Override
@@ -113,4 +126,9 @@ public class ReadOnlyTransaction implements Transaction {
         return false;
     }
 
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
 }
@@ -24,6 +24,7 @@ package com.shadowmvcc.coherence.transaction.internal;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import com.shadowmvcc.coherence.cache.CacheName;
 import com.shadowmvcc.coherence.domain.IsolationLevel;
@@ -58,6 +59,18 @@ public interface TransactionCache {
     void commitTransaction(TransactionId transactionId, 
             Map<CacheName, Set<Object>> cacheKeyMap, Map<CacheName, PartitionSet> cachePartitionMap);
 
+    /**
+     * Commit an open transaction, returning as soon as the transaction is marked as committing.
+     * Once so marked the commit cannot fail, it will be completed by the member transaction monitor
+     * if the client does not complete it.
+     * @param transactionId the transaction Id
+     * @param cacheKeyMap map of cache names, and keys in the caches that have been modified
+     * @param cachePartitionMap map of cache names, and partitions on the caches that contain many modified entries
+     * @return a future that completes when all modified entries are committed
+     */
+    Future<Void> commitTransactionAsync(TransactionId transactionId, 
+            Map<CacheName, Set<Object>> cacheKeyMap, Map<CacheName, PartitionSet> cachePartitionMap);
+
     /**
      * Rollback an open transaction.
      * @param transactionId the transaction Id
@@ -26,11 +26,17 @@ import static com.shadowmvcc.coherence.domain.TransactionProcStatus.committing;
 import static com.shadowmvcc.coherence.domain.TransactionProcStatus.open;
 import static com.shadowmvcc.coherence.domain.TransactionProcStatus.rollingback;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 import com.shadowmvcc.coherence.cache.CacheName;
-import com.shadowmvcc.coherence.config.ClusterTimeProviderFactory;
+import com.shadowmvcc.coherence.config.ConfigurationFactory;
 import com.shadowmvcc.coherence.domain.IsolationLevel;
 import com.shadowmvcc.coherence.domain.TransactionCacheValue;
 import com.shadowmvcc.coherence.domain.TransactionId;
@@ -41,7 +47,10 @@ import com.shadowmvcc.coherence.transaction.TransactionException;
 import com.tangosol.net.CacheFactory;
 import com.tangosol.net.Cluster;
 import com.tangosol.net.Invocable;
+import com.tangosol.net.InvocationService;
+import com.tangosol.net.Member;
 import com.tangosol.net.NamedCache;
+import com.tangosol.net.PartitionedService;
 import com.tangosol.net.Service;
 import com.tangosol.net.partition.PartitionSet;
 import com.tangosol.util.Filter;
@@ -62,14 +71,43 @@ import com.tangosol.util.processor.ConditionalPut;
 public class TransactionCacheImpl implements TransactionCache {
 
     private final String invocationServiceName;
+    private final GroupCommitter groupCommitter;
     private static final Filter NOTPRESENT = new NotFilter(PresentFilter.INSTANCE);
     
+    /**
+     * Threads completing asynchronous commits.
+     */
+    private static final ExecutorService COMPLETER = Executors.newFixedThreadPool(
+            ConfigurationFactory.getConfiguraration().getCommitCompleterThreads(), new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(runnable, "CommitCompleter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    
    /**
+     * Constructor. Commits and rollbacks are completed in groups if a group commit
+     * batch size greater than one is configured.
      * @param invocationServiceName name of the invocation service to use
      */
     public TransactionCacheImpl(final String invocationServiceName) {
+        this(invocationServiceName,
+                ConfigurationFactory.getConfiguraration().getGroupCommitBatchSize() > 1
+                ? GroupCommitter.getInstance(invocationServiceName) : null);
+    }
+    
+    /**
+     * Constructor.
+     * @param invocationServiceName name of the invocation service to use
+     * @param groupCommitter committer to complete commits and rollbacks in groups, or null
+     * to complete each transaction separately
+     */
+    public TransactionCacheImpl(final String invocationServiceName, final GroupCommitter groupCommitter) {
         super();
         this.invocationServiceName = invocationServiceName;
+        this.groupCommitter = groupCommitter;
     }
     
     /**
@@ -103,11 +141,9 @@ public class TransactionCacheImpl implements TransactionCache {
             final IsolationLevel isolationLevel, final TransactionExpiryListener expiryListener) {
         
         NamedCache transactionCache = getCache(CACHENAME);
-        transactionCache.addMapListener(expiryListener, transactionId, false);
+        TransactionExpiryHub.getInstance().addListener(transactionCache, transactionId, expiryListener);
 
-        long now = ClusterTimeProviderFactory.getInstance().getClusterTime();
-        
-        TransactionCacheValue openTransaction = new TransactionCacheValue(open, now);
+        TransactionCacheValue openTransaction = new TransactionCacheValue(open, transactionId.getTimeStampMillis());
         
         if (transactionCache.invoke(transactionId, new ConditionalPut(NOTPRESENT, openTransaction, true)) != null) {
             throw new TransactionException("Transaction already exists: " + transactionId);
@@ -120,31 +156,184 @@ public class TransactionCacheImpl implements TransactionCache {
             final Map<CacheName, Set<Object>> cacheKeyMap, 
             final Map<CacheName, PartitionSet> cachePartitionMap) {
         
+        if (completeOnePhase(transactionId, cacheKeyMap, cachePartitionMap, committing)) {
+            return;
+        }
+        
+        if (groupCommitter != null) {
+            groupCommitter.complete(transactionId, cacheKeyMap, cachePartitionMap, committing);
+            return;
+        }
+        
         NamedCache transactionCache = getCache(CACHENAME);
 
-        try {
-            transactionCache.invoke(transactionId, TransactionStateUpdater.COMMIT);
-        } catch (RuntimeException e) {
-            if (e.getCause() instanceof TransactionException) {
-                throw (TransactionException) e.getCause();
-            } else {
-                throw e;
-            }
-        }
+        updateTransactionState(transactionCache, transactionId, TransactionStateUpdater.COMMIT);
 
         actionTransaction(transactionId, cacheKeyMap, cachePartitionMap, committing);
 
         transactionCache.remove(transactionId);
     }
 
+    @Override
+    public Future<Void> commitTransactionAsync(final TransactionId transactionId,
+            final Map<CacheName, Set<Object>> cacheKeyMap,
+            final Map<CacheName, PartitionSet> cachePartitionMap) {
+        
+        final NamedCache transactionCache = getCache(CACHENAME);
+
+        updateTransactionState(transactionCache, transactionId, TransactionStateUpdater.COMMIT);
+        
+        FutureTask<Void> completion = new FutureTask<Void>(new Runnable() {
+            @Override
+            public void run() {
+                actionTransaction(transactionId, cacheKeyMap, cachePartitionMap, committing);
+                transactionCache.remove(transactionId);
+            }
+        }, null);
+        
+        COMPLETER.execute(completion);
+        
+        return completion;
+    }
+
     @Override
     public void rollbackTransaction(final TransactionId transactionId, 
             final Map<CacheName, Set<Object>> cacheKeyMap, 
             final Map<CacheName, PartitionSet> cachePartitionMap) {
+        
+        if (completeOnePhase(transactionId, cacheKeyMap, cachePartitionMap, rollingback)) {
+            return;
+        }
+        
+        if (groupCommitter != null) {
+            groupCommitter.complete(transactionId, cacheKeyMap, cachePartitionMap, rollingback);
+            return;
+        }
+        
         NamedCache transactionCache = getCache(CACHENAME);
         
+        updateTransactionState(transactionCache, transactionId, TransactionStateUpdater.ROLLBACK);
+
+        actionTransaction(transactionId, cacheKeyMap, cachePartitionMap, rollingback);
+
+        transactionCache.remove(transactionId);
+    }
+    
+    /**
+     * If all the keys changed by a transaction are owned by one member, complete the transaction
+     * with a request to that member, which itself makes two requests to the transaction cache
+     * and commits or rolls back the version cache entries locally. If the member fails after
+     * updating the transaction state, the completion is finished from here. When group commit
+     * is configured the transaction is left to the group committer, which shares its transaction
+     * cache and version cache requests with the other transactions of its batch.
+     * @param transactionId the transaction id
+     * @param cacheKeyMap map of affected caches to sets of keys
+     * @param cachePartitionMap map of affected caches to sets of partitions
+     * @param transactionStatus commit or rollback
+     * @return true if the transaction was completed, false if it does not belong to a single member
+     */
+    private boolean completeOnePhase(final TransactionId transactionId, 
+            final Map<CacheName, Set<Object>> cacheKeyMap, 
+            final Map<CacheName, PartitionSet> cachePartitionMap, 
+            final TransactionProcStatus transactionStatus) {
+        
+        if (groupCommitter != null) {
+            return false;
+        }
+        
+        Member owner = getSingleOwner(cacheKeyMap, cachePartitionMap);
+        if (owner == null) {
+            return false;
+        }
+        
+        InvocationService invocationService = (InvocationService) getService(invocationServiceName);
+        Object result = invocationService.query(
+                new OnePhaseTransactionInvocable(transactionId, cacheKeyMap, transactionStatus),
+                Collections.singleton(owner)).get(owner);
+        
+        if (result instanceof TransactionException) {
+            throw (TransactionException) result;
+        }
+        
+        if (!Boolean.TRUE.equals(result)) {
+            recoverOnePhase(transactionId, cacheKeyMap, cachePartitionMap, transactionStatus);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Find the single member that owns all the keys changed in a transaction.
+     * @param cacheKeyMap map of affected caches to sets of keys
+     * @param cachePartitionMap map of affected caches to sets of partitions
+     * @return the owning member, or null if there is none, more than one, or partitions are affected
+     */
+    private Member getSingleOwner(final Map<CacheName, Set<Object>> cacheKeyMap, 
+            final Map<CacheName, PartitionSet> cachePartitionMap) {
+        
+        if (!cachePartitionMap.isEmpty()) {
+            return null;
+        }
+        
+        Member owner = null;
+        for (Map.Entry<CacheName, Set<Object>> cacheKeyEntry : cacheKeyMap.entrySet()) {
+            PartitionedService cacheService = (PartitionedService) getCache(
+                    cacheKeyEntry.getKey().getVersionCacheName()).getCacheService();
+            for (Object key : cacheKeyEntry.getValue()) {
+                Member keyOwner = cacheService.getKeyOwner(key);
+                if (keyOwner == null || (owner != null && !owner.equals(keyOwner))) {
+                    return null;
+                }
+                owner = keyOwner;
+            }
+        }
+        
+        return owner;
+    }
+    
+    /**
+     * Finish a one phase completion that did not report success. If the transaction is still
+     * open, the owning member failed before updating it, so complete it normally. If it is in the
+     * requested state, finish the completion.
+     * @param transactionId the transaction id
+     * @param cacheKeyMap map of affected caches to sets of keys
+     * @param cachePartitionMap map of affected caches to sets of partitions
+     * @param transactionStatus commit or rollback
+     */
+    private void recoverOnePhase(final TransactionId transactionId, 
+            final Map<CacheName, Set<Object>> cacheKeyMap, 
+            final Map<CacheName, PartitionSet> cachePartitionMap, 
+            final TransactionProcStatus transactionStatus) {
+        
+        NamedCache transactionCache = getCache(CACHENAME);
+        TransactionCacheValue value = (TransactionCacheValue) transactionCache.get(transactionId);
+        
+        if (value == null) {
+            throw new TransactionException("Outcome of transaction " + transactionId + " unknown");
+        }
+        
+        if (value.getProcStatus() == open) {
+            updateTransactionState(transactionCache, transactionId, transactionStatus == committing
+                    ? TransactionStateUpdater.COMMIT : TransactionStateUpdater.ROLLBACK);
+        } else if (value.getProcStatus() != transactionStatus) {
+            throw new TransactionException("Transaction " + transactionId + " is " + value.getProcStatus());
+        }
+        
+        actionTransaction(transactionId, cacheKeyMap, cachePartitionMap, transactionStatus);
+
+        transactionCache.remove(transactionId);
+    }
+    
+    /**
+     * Move an open transaction to committing or rolling back state.
+     * @param transactionCache the transaction cache
+     * @param transactionId the transaction id
+     * @param updater the state updater
+     */
+    private void updateTransactionState(final NamedCache transactionCache, final TransactionId transactionId,
+            final TransactionStateUpdater updater) {
         try {
-            transactionCache.invoke(transactionId, TransactionStateUpdater.ROLLBACK);
+            transactionCache.invoke(transactionId, updater);
         } catch (RuntimeException e) {
             if (e.getCause() instanceof TransactionException) {
                 throw (TransactionException) e.getCause();
@@ -152,10 +341,6 @@ public class TransactionCacheImpl implements TransactionCache {
                 throw e;
             }
         }
-
-        actionTransaction(transactionId, cacheKeyMap, cachePartitionMap, rollingback);
-
-        transactionCache.remove(transactionId);
     }
     
     /**
@@ -219,15 +404,13 @@ public class TransactionCacheImpl implements TransactionCache {
     @Override
     public void unregisterExpiryListener(final TransactionId transactionId,
             final TransactionExpiryListener expiryListener) {
-        NamedCache transactionCache = getCache(CACHENAME);
-        transactionCache.removeMapListener(expiryListener, transactionId);
+        TransactionExpiryHub.getInstance().removeListener(transactionId, expiryListener);
     }
 
     @Override
     public void registerExpiryListener(final TransactionId transactionId,
             final TransactionExpiryListener expiryListener) {
-        NamedCache transactionCache = getCache(CACHENAME);
-        transactionCache.addMapListener(expiryListener, transactionId, false);
+        TransactionExpiryHub.getInstance().addListener(getCache(CACHENAME), transactionId, expiryListener);
     }
     
 }
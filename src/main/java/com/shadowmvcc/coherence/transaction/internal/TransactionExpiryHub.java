@@ -0,0 +1,240 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.transaction.internal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import com.shadowmvcc.coherence.domain.TransactionCacheValue;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.TransactionProcStatus;
+import com.tangosol.io.pof.reflect.SimplePofPath;
+import com.tangosol.net.NamedCache;
+import com.tangosol.util.AbstractMapListener;
+import com.tangosol.util.Filter;
+import com.tangosol.util.MapEvent;
+import com.tangosol.util.ValueExtractor;
+import com.tangosol.util.extractor.AbstractExtractor;
+import com.tangosol.util.extractor.PofExtractor;
+import com.tangosol.util.filter.AndFilter;
+import com.tangosol.util.filter.EqualsFilter;
+import com.tangosol.util.filter.InFilter;
+import com.tangosol.util.filter.MapEventFilter;
+
+/**
+ * Per client distributor of transaction expiry events. Rather than a key listener on the
+ * transaction cache for each open transaction and each wait, a single lite listener is
+ * registered, filtered in the grid to transactions of the manager ids in use in this
+ * client that are set to rolling back. Each event is passed to the {@link TransactionExpiryListener}s
+ * registered for that transaction id.
+ * 
+ * When a manager id is first used the listener is registered again with a filter that includes
+ * it before the previous registration is removed, so no event is lost, though one may be
+ * delivered twice. The number of transactions with listeners is counted for each manager id.
+ * Ids with none left, e.g. those of other clients whose transactions were waited on, stay in
+ * the subscription until there are more than {@link #MAX_IDLE_MANAGERS} of them, when the
+ * listener is registered again for only the ids still in use.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public final class TransactionExpiryHub extends AbstractMapListener {
+
+    private static final TransactionExpiryHub INSTANCE = new TransactionExpiryHub();
+
+    /**
+     * Maximum number of subscribed manager ids with no transactions listened for.
+     */
+    static final int MAX_IDLE_MANAGERS = 16;
+
+    private static final ValueExtractor CONTEXTEXTRACTOR = new PofExtractor(
+            Integer.class, new SimplePofPath(TransactionId.POF_CONTEXT), AbstractExtractor.KEY);
+    private static final Filter ROLLINGBACKFILTER = new EqualsFilter(
+            new PofExtractor(null, TransactionCacheValue.POF_STATUS), TransactionProcStatus.rollingback);
+
+    private final ConcurrentMap<TransactionId, Set<TransactionExpiryListener>> listeners =
+            new ConcurrentHashMap<TransactionId, Set<TransactionExpiryListener>>();
+    private final Map<Integer, Integer> managerTransactions = new HashMap<Integer, Integer>();
+    private volatile Set<Integer> subscribedIds = Collections.emptySet();
+    private volatile NamedCache transactionCache = null;
+    private Filter subscription = null;
+
+    /**
+     * Constructor. Package scope for unit testing, otherwise use {@link #getInstance()}.
+     */
+    TransactionExpiryHub() {
+        super();
+    }
+
+    /**
+     * @return the hub for this client
+     */
+    public static TransactionExpiryHub getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Register a listener for expiry of a transaction, subscribing to events for the
+     * manager id of the transaction if this is the first use.
+     * @param cache the transaction cache
+     * @param transactionId the transaction id
+     * @param expiryListener the listener
+     */
+    public void addListener(final NamedCache cache, final TransactionId transactionId,
+            final TransactionExpiryListener expiryListener) {
+        Set<TransactionExpiryListener> transactionListeners = listeners.get(transactionId);
+        while (true) {
+            if (transactionListeners == null) {
+                transactionListeners = new CopyOnWriteArraySet<TransactionExpiryListener>();
+                Set<TransactionExpiryListener> existing = listeners.putIfAbsent(transactionId, transactionListeners);
+                if (existing == null) {
+                    transactionAdded(transactionId.getContextId());
+                } else {
+                    transactionListeners = existing;
+                }
+            }
+            synchronized (transactionListeners) {
+                if (listeners.get(transactionId) == transactionListeners) {
+                    transactionListeners.add(expiryListener);
+                    break;
+                }
+            }
+            transactionListeners = null;
+        }
+        ensureSubscribed(cache, transactionId.getContextId());
+    }
+
+    /**
+     * Remove a listener for expiry of a transaction.
+     * @param transactionId the transaction id
+     * @param expiryListener the listener
+     */
+    public void removeListener(final TransactionId transactionId, final TransactionExpiryListener expiryListener) {
+        Set<TransactionExpiryListener> transactionListeners = listeners.get(transactionId);
+        if (transactionListeners != null) {
+            synchronized (transactionListeners) {
+                transactionListeners.remove(expiryListener);
+                if (transactionListeners.isEmpty() && listeners.remove(transactionId, transactionListeners)) {
+                    transactionRemoved(transactionId.getContextId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Count a transaction with listeners for a manager id.
+     * @param managerId the manager id
+     */
+    private synchronized void transactionAdded(final int managerId) {
+        Integer count = managerTransactions.get(managerId);
+        managerTransactions.put(managerId, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Count the end of listening for a transaction of a manager id, subscribing again
+     * without the ids no longer in use if there are too many.
+     * @param managerId the manager id
+     */
+    private synchronized void transactionRemoved(final int managerId) {
+        Integer count = managerTransactions.get(managerId);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            managerTransactions.put(managerId, count - 1);
+            return;
+        }
+        managerTransactions.remove(managerId);
+        if (transactionCache != null && transactionCache.isActive()
+                && subscribedIds.size() > managerTransactions.size() + MAX_IDLE_MANAGERS) {
+            subscribe(transactionCache);
+        }
+    }
+
+    /**
+     * Ensure that the subscription includes a manager id. If the transaction cache has been
+     * released or restarted since the last subscription, subscribe again. Nothing is locked
+     * if the manager id is already subscribed.
+     * @param cache the transaction cache
+     * @param managerId the manager id
+     */
+    private void ensureSubscribed(final NamedCache cache, final int managerId) {
+        if (cache == transactionCache && subscribedIds.contains(managerId) && cache.isActive()) {
+            return;
+        }
+        synchronized (this) {
+            if (cache != transactionCache || !cache.isActive()) {
+                transactionCache = cache;
+                subscription = null;
+                subscribedIds = Collections.emptySet();
+            }
+            if (!subscribedIds.contains(managerId)) {
+                subscribe(cache);
+            }
+        }
+    }
+
+    /**
+     * Register the listener for the manager ids with transactions listened for,
+     * then remove the previous registration. Must be called holding the lock on the hub.
+     * @param cache the transaction cache
+     */
+    private void subscribe(final NamedCache cache) {
+        Set<Integer> managerIds = new HashSet<Integer>(managerTransactions.keySet());
+        Filter previous = subscription;
+        if (managerIds.isEmpty()) {
+            subscription = null;
+        } else {
+            subscription = new MapEventFilter(MapEventFilter.E_UPDATED,
+                    new AndFilter(ROLLINGBACKFILTER, new InFilter(CONTEXTEXTRACTOR, managerIds)));
+            cache.addMapListener(this, subscription, true);
+        }
+        if (previous != null) {
+            cache.removeMapListener(this, previous);
+        }
+        subscribedIds = Collections.unmodifiableSet(managerIds);
+    }
+
+    /**
+     * @return the manager ids currently subscribed to
+     */
+    Set<Integer> getSubscribedManagerIds() {
+        return subscribedIds;
+    }
+
+    @Override
+    public void entryUpdated(final MapEvent mapevent) {
+        Set<TransactionExpiryListener> transactionListeners = listeners.get(mapevent.getKey());
+        if (transactionListeners != null) {
+            for (TransactionExpiryListener expiryListener : transactionListeners) {
+                expiryListener.transactionExpired();
+            }
+        }
+    }
+}
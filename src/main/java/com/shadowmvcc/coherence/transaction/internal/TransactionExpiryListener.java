@@ -1,17 +1,12 @@
 package com.shadowmvcc.coherence.transaction.internal;
 
-import com.shadowmvcc.coherence.domain.TransactionCacheValue;
-import com.shadowmvcc.coherence.domain.TransactionProcStatus;
-import com.tangosol.util.AbstractMapListener;
-import com.tangosol.util.MapEvent;
-
 /**
- * Mediate between MapListener and interest in expired transaction.
+ * Mediate between the {@link TransactionExpiryHub} and interest in expired transaction.
  * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
  */
-public class TransactionExpiryListener extends AbstractMapListener {
+public class TransactionExpiryListener {
 
     private final TransactionExpiryMonitor expiryMonitor;
     
@@ -24,12 +19,11 @@ public class TransactionExpiryListener extends AbstractMapListener {
         this.expiryMonitor = expiryMonitor;
     }
 
-    @Override
-    public void entryUpdated(final MapEvent mapevent) {
-        TransactionCacheValue transactionStatus = (TransactionCacheValue) mapevent.getNewValue();
-        if (transactionStatus.getProcStatus() == TransactionProcStatus.rollingback) {
-            expiryMonitor.setTransactionExpired();
-        }
+    /**
+     * Notify that the transaction has been set to rolling back.
+     */
+    public void transactionExpired() {
+        expiryMonitor.setTransactionExpired();
     }
 
 }
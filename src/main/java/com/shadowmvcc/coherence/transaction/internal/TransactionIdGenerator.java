@@ -0,0 +1,81 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.transaction.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.transaction.TimestampSource;
+
+/**
+ * Lock-free source of unique, increasing transaction ids for one transaction manager,
+ * using a hybrid logical clock over a {@link TimestampSource}. The timestamp of each id is
+ * the later of the source timestamp and the timestamp of the previous id, and the
+ * sub-sequence counts the ids issued with that timestamp. If the sub-sequence
+ * overflows, the timestamp is advanced by one millisecond. Ids never go backwards,
+ * even if the source does.
+ * 
+ * The clock state is held in a single {@code long} updated by compare and set, so
+ * any number of threads may obtain ids without blocking.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class TransactionIdGenerator {
+    
+    /**
+     * Number of bits of the clock state holding the sub-sequence. The remaining bits hold
+     * the timestamp, which must lie within +/- 2^43 milliseconds of the epoch.
+     */
+    static final int LOGICAL_BITS = 20;
+    private static final long LOGICAL_MASK = (1L << LOGICAL_BITS) - 1;
+    
+    private final TimestampSource timestampSource;
+    private final int contextId;
+    private final AtomicLong clock = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Constructor.
+     * @param timestampSource source of physical timestamps
+     * @param contextId transaction manager id to use in generated ids
+     */
+    public TransactionIdGenerator(final TimestampSource timestampSource, final int contextId) {
+        super();
+        this.timestampSource = timestampSource;
+        this.contextId = contextId;
+    }
+    
+    /**
+     * @return a new transaction id, greater than any previously returned
+     */
+    public TransactionId nextId() {
+        long physical = timestampSource.getTimestamp();
+        while (true) {
+            long last = clock.get();
+            long next = physical > (last >> LOGICAL_BITS) ? physical << LOGICAL_BITS : last + 1;
+            if (clock.compareAndSet(last, next)) {
+                return new TransactionId(next >> LOGICAL_BITS, contextId, (int) (next & LOGICAL_MASK));
+            }
+        }
+    }
+}
@@ -31,6 +31,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import com.shadowmvcc.coherence.cache.CacheName;
 import com.shadowmvcc.coherence.domain.IsolationLevel;
@@ -45,6 +46,13 @@ import com.tangosol.net.partition.PartitionSet;
  * Implementation of {@link Transaction}. Stores all open state
  * including collections of keys and filters affected by the transaction.
  * 
+ * The transaction is registered in the transaction cache only when it is about to
+ * make its first change, so a transaction that only reads makes no calls to the
+ * transaction cache. It is registered as opened at its transaction id, and is refused
+ * if that is already older than the maximum transaction age. As the transaction monitor
+ * does not know of a transaction until it is registered, an unregistered transaction
+ * expires once its transaction id is older than the maximum transaction age.
+ * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
  */
@@ -54,10 +62,12 @@ public class TransactionImpl implements Transaction, TransactionExpiryMonitor {
     private final IsolationLevel isolationLevel;
     private final TransactionNotificationListener notificationListener;
     private final TransactionCache transactionCache;
+    private final TimestampValidator timestampValidator;
     private volatile boolean rollbackOnly = false;
     private volatile TransactionStatus transactionStatus = open;
     private volatile Boolean expired = false;
     private final TransactionExpiryListener expiryListener;
+    private volatile boolean registered = false;
 
     private Map<CacheName, Set<Object>> cacheKeyMap = new HashMap<CacheName, Set<Object>>();
     private Map<CacheName, PartitionSet> cachePartitionMap = new HashMap<CacheName, PartitionSet>();
@@ -68,16 +78,33 @@ public class TransactionImpl implements Transaction, TransactionExpiryMonitor {
      * @param isolationLevel isolation level
      * @param notificationListener listener to notify on commit or rollback
      * @param transactionCache transaction cache DAO
+     * @param timestampValidator validator for the transaction timestamp at registration
      */
     public TransactionImpl(final TransactionId transactionId, final IsolationLevel isolationLevel, 
-            final TransactionNotificationListener notificationListener, final TransactionCache transactionCache) {
+            final TransactionNotificationListener notificationListener, final TransactionCache transactionCache,
+            final TimestampValidator timestampValidator) {
         super();
         this.notificationListener = notificationListener;
         this.transactionCache = transactionCache;
+        this.timestampValidator = timestampValidator;
         this.transactionId = transactionId;
         this.isolationLevel = getIsolationLevel();
         this.expiryListener = new TransactionExpiryListener(this);
-        transactionCache.beginTransaction(transactionId, isolationLevel, expiryListener);
+    }
+
+    @Override
+    public void ensureRegistered() {
+        if (!registered) {
+            synchronized (this) {
+                if (!registered) {
+                    if (!timestampValidator.isTransactionTimestampValid(transactionId.getTimeStampMillis())) {
+                        throw new TransactionException("Cannot register transaction, timestamp too old");
+                    }
+                    transactionCache.beginTransaction(transactionId, isolationLevel, expiryListener);
+                    registered = true;
+                }
+            }
+        }
     }
 
     @Override
@@ -101,6 +128,7 @@ public class TransactionImpl implements Transaction, TransactionExpiryMonitor {
      * @param key the logical key
      */
     private void addCacheKey(final CacheName cacheName, final Object key) {
+        ensureRegistered();
         synchronized (cacheKeyMap) {
             if (!cacheKeyMap.containsKey(cacheName)) {
                 cacheKeyMap.put(cacheName, new HashSet<Object>());
@@ -115,6 +143,7 @@ public class TransactionImpl implements Transaction, TransactionExpiryMonitor {
      * @param keys the logical keys
      */
     private void addCacheKeys(final CacheName cacheName, final Collection<Object> keys) {
+        ensureRegistered();
         synchronized (cacheKeyMap) {
             if (!cacheKeyMap.containsKey(cacheName)) {
                 cacheKeyMap.put(cacheName, new HashSet<Object>());
@@ -136,6 +165,7 @@ public class TransactionImpl implements Transaction, TransactionExpiryMonitor {
     @Override
     public void addPartitionSetAffected(final CacheName cacheName,
             final PartitionSet addSet) {
+        ensureRegistered();
         synchronized (cachePartitionMap) {
             if (!cachePartitionMap.containsKey(cacheName)) {
                 cachePartitionMap.put(cacheName, new PartitionSet(addSet));
@@ -152,17 +182,38 @@ public class TransactionImpl implements Transaction, TransactionExpiryMonitor {
 
     @Override
     public void commit() {
+        if (prepareCommit()) {
+            transactionCache.commitTransaction(transactionId, cacheKeyMap, cachePartitionMap);
+        }
+        transactionStatus = committed;
+    }
+
+    @Override
+    public Future<Void> commitAsync() {
+        Future<Void> completion = prepareCommit()
+                ? transactionCache.commitTransactionAsync(transactionId, cacheKeyMap, cachePartitionMap)
+                : CompletedFuture.INSTANCE;
+        transactionStatus = committed;
+        return completion;
+    }
+    
+    /**
+     * Check that the transaction may be committed and detach it from the manager
+     * and expiry notification.
+     * @return true if the transaction is registered and must be committed in the grid
+     */
+    private boolean prepareCommit() {
         if (rollbackOnly) {
             throw new TransactionException("Transaction is in rollback only mode");
-        } else {
-            if (transactionStatus != open) {
-                throw new TransactionException("Cannot commit, transaction status is " + transactionStatus);
-            }
-            notificationListener.transactionComplete(this);
+        }
+        if (transactionStatus != open) {
+            throw new TransactionException("Cannot commit, transaction status is " + transactionStatus);
+        }
+        notificationListener.transactionComplete(this);
+        if (registered) {
             transactionCache.unregisterExpiryListener(transactionId, expiryListener);
-            transactionCache.commitTransaction(transactionId, cacheKeyMap, cachePartitionMap);
         }
-        transactionStatus = committed;
+        return registered;
     }
 
     @Override
@@ -172,8 +223,10 @@ public class TransactionImpl implements Transaction, TransactionExpiryMonitor {
                 throw new TransactionException("Cannot rollback, transaction status is " + transactionStatus);
             }
             notificationListener.transactionComplete(this);
-            transactionCache.unregisterExpiryListener(transactionId, expiryListener);
-            transactionCache.rollbackTransaction(transactionId, cacheKeyMap, cachePartitionMap);
+            if (registered) {
+                transactionCache.unregisterExpiryListener(transactionId, expiryListener);
+                transactionCache.rollbackTransaction(transactionId, cacheKeyMap, cachePartitionMap);
+            }
         }
         transactionStatus = rolledback;
     }
@@ -185,9 +238,18 @@ public class TransactionImpl implements Transaction, TransactionExpiryMonitor {
 
     @Override
     public boolean isExpired() {
+        if (!expired && !registered
+                && !timestampValidator.isTransactionTimestampValid(transactionId.getTimeStampMillis())) {
+            expired = true;
+        }
         return expired;
     }
 
+    @Override
+    public boolean isOpen() {
+        return transactionStatus == open;
+    }
+
     @Override
     public void setTransactionExpired() {
         expired = true;
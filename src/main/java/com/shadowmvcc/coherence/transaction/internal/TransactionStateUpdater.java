@@ -36,7 +36,9 @@ import com.tangosol.util.processor.AbstractProcessor;
 
 /**
  * Update the state of a transaction cache entry to committing or rollingback.
- * Throws an exception if the transaction does not exist or is not in open state.
+ * Throws an exception if the transaction does not exist or is not in open state, or
+ * returns the exception if constructed to do so, so that the state of many transactions
+ * can be updated with one {@code invokeAll} without one failure affecting the others.
  * 
  * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
  *
@@ -50,8 +52,11 @@ public class TransactionStateUpdater extends AbstractProcessor {
     
     public static final TransactionStateUpdater COMMIT = new TransactionStateUpdater(committing);
     public static final TransactionStateUpdater ROLLBACK = new TransactionStateUpdater(rollingback);
+    public static final TransactionStateUpdater COMMIT_BATCH = new TransactionStateUpdater(committing, true);
+    public static final TransactionStateUpdater ROLLBACK_BATCH = new TransactionStateUpdater(rollingback, true);
 
     @PortableProperty(0) private TransactionProcStatus newStatus;
+    @PortableProperty(1) private boolean returnFailure = false;
 
     /**
      *  Default constructor for POF use only.
@@ -68,16 +73,35 @@ public class TransactionStateUpdater extends AbstractProcessor {
         this.newStatus = newStatus;
     }
 
+    /**
+     * @param newStatus status to set the transaction to.
+     * @param returnFailure true to return rather than throw the exception if the update fails
+     */
+    public TransactionStateUpdater(final TransactionProcStatus newStatus, final boolean returnFailure) {
+        super();
+        this.newStatus = newStatus;
+        this.returnFailure = returnFailure;
+    }
+
     @Override
     public Object process(final Entry entry) {
 
+        TransactionException failure = null;
+        
         if (!entry.isPresent()) {
-            throw new TransactionException("Transaction " + entry.getKey() + " does not exist");
+            failure = new TransactionException("Transaction " + entry.getKey() + " does not exist");
+        } else {
+            TransactionProcStatus currentStatus = (TransactionProcStatus) STATUS_X.extractFromEntry(entry);
+            if (currentStatus != TransactionProcStatus.open) {
+                failure = new TransactionException("Transaction " + entry.getKey() + " is " + currentStatus);
+            }
         }
         
-        TransactionProcStatus currentStatus = (TransactionProcStatus) STATUS_X.extractFromEntry(entry);
-        if (currentStatus != TransactionProcStatus.open) {
-            throw new TransactionException("Transaction " + entry.getKey() + " is " + currentStatus);
+        if (failure != null) {
+            if (returnFailure) {
+                return failure;
+            }
+            throw failure;
         }
         
         entry.setValue(new TransactionCacheValue(newStatus, System.currentTimeMillis()));
@@ -0,0 +1,57 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.transaction.internal;
+
+import com.shadowmvcc.coherence.domain.Constants;
+import com.tangosol.io.pof.annotation.Portable;
+import com.tangosol.util.InvocableMap.Entry;
+import com.tangosol.util.processor.AbstractProcessor;
+
+/**
+ * Remove a superseded version cache entry, returning the hash code of its logical key
+ * so that a batched purge can resume after the keys it has already visited.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+@Portable
+public class VersionPurgeProcessor extends AbstractProcessor {
+
+    private static final long serialVersionUID = -2405518214613750236L;
+
+    /**
+     * An instance of {@code VersionPurgeProcessor}.
+     */
+    public static final VersionPurgeProcessor INSTANCE = new VersionPurgeProcessor();
+
+    @Override
+    public Object process(final Entry entry) {
+        if (!entry.isPresent()) {
+            return null;
+        }
+        Object logicalKey = Constants.LOGICALKEYEXTRACTOR.extractFromEntry(entry);
+        entry.remove(false);
+        return logicalKey.hashCode();
+    }
+}
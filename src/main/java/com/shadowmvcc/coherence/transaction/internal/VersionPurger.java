@@ -0,0 +1,163 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.transaction.internal;
+
+import java.util.Map;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.config.Configuration;
+import com.shadowmvcc.coherence.config.ConfigurationFactory;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.index.MVCCSnapshotPurgeFilter;
+import com.tangosol.net.CacheFactory;
+import com.tangosol.net.NamedCache;
+import com.tangosol.net.PartitionedService;
+import com.tangosol.net.partition.PartitionSet;
+import com.tangosol.util.filter.PartitionedFilter;
+
+/**
+ * Remove the versions of a cache that are superseded within a range of transaction ids.
+ * The purge is performed one partition at a time in batches of the configured size, pausing
+ * for the configured interval between batches. Each batch is a single filtered invocation that
+ * removes the versions and returns the hash codes of their logical keys, and the next batch resumes
+ * after the largest of these. Each batch is idempotent, so a batch that fails,
+ * e.g. because the partition is moving to another member, is retried.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class VersionPurger {
+    
+    private static final int MAX_PURGE_ATTEMPTS = 3;
+    
+    private final int batchSize;
+    private final long interval;
+    
+    /**
+     * Constructor using the configured batch size and interval.
+     */
+    public VersionPurger() {
+        super();
+        Configuration configuration = ConfigurationFactory.getConfiguraration();
+        this.batchSize = configuration.getSnapshotPurgeBatchSize();
+        this.interval = configuration.getSnapshotPurgeInterval();
+    }
+
+    /**
+     * Purge all partitions of a cache.
+     * @param cacheName the cache name
+     * @param rangeStart start of the range (exclusive)
+     * @param rangeEnd end of the range (inclusive)
+     */
+    public void purge(final CacheName cacheName,
+            final TransactionId rangeStart, final TransactionId rangeEnd) {
+        purge(cacheName, rangeStart, rangeEnd, null);
+    }
+    
+    /**
+     * Purge a set of partitions of a cache.
+     * @param cacheName the cache name
+     * @param rangeStart start of the range (exclusive)
+     * @param rangeEnd end of the range (inclusive)
+     * @param partitions the partitions to purge, or null for all partitions
+     */
+    public void purge(final CacheName cacheName,
+            final TransactionId rangeStart, final TransactionId rangeEnd, final PartitionSet partitions) {
+        
+        NamedCache versionCache = CacheFactory.getCache(cacheName.getVersionCacheName());
+        int partitionCount = ((PartitionedService) versionCache.getCacheService()).getPartitionCount();
+        
+        for (int partition = 0; partition < partitionCount; partition++) {
+            if (partitions == null || partitions.contains(partition)) {
+                purgePartition(versionCache, rangeStart, rangeEnd, partition, partitionCount);
+            }
+        }
+    }
+    
+    /**
+     * Purge a single partition.
+     * @param versionCache the version cache
+     * @param rangeStart start of the range (exclusive)
+     * @param rangeEnd end of the range (inclusive)
+     * @param partition the partition
+     * @param partitionCount number of partitions of the cache service
+     */
+    private void purgePartition(final NamedCache versionCache, final TransactionId rangeStart,
+            final TransactionId rangeEnd, final int partition, final int partitionCount) {
+        PartitionSet partitions = new PartitionSet(partitionCount);
+        partitions.add(partition);
+        Integer resumeAfter = null;
+        int attempt = 0;
+        while (true) {
+            Map<?, ?> purged;
+            try {
+                purged = versionCache.invokeAll(new PartitionedFilter(
+                        new MVCCSnapshotPurgeFilter<Object>(rangeStart, rangeEnd, partitions, batchSize, resumeAfter),
+                        partitions), VersionPurgeProcessor.INSTANCE);
+                attempt = 0;
+            } catch (RuntimeException ex) {
+                if (++attempt >= MAX_PURGE_ATTEMPTS) {
+                    throw ex;
+                }
+                purged = null;
+            }
+            if (purged != null) {
+                if (batchSize <= 0 || purged.size() < batchSize) {
+                    return;
+                }
+                resumeAfter = maxHash(purged, resumeAfter);
+            }
+            pause();
+        }
+    }
+    
+    /**
+     * Find the point from which the next batch should resume.
+     * @param purged the logical key hash codes returned by the batch
+     * @param resumeAfter the point the batch resumed from
+     * @return the largest logical key hash code purged
+     */
+    private static Integer maxHash(final Map<?, ?> purged, final Integer resumeAfter) {
+        Integer result = resumeAfter;
+        for (Object hash : purged.values()) {
+            if (hash != null && (result == null || (Integer) hash > result)) {
+                result = (Integer) hash;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Pause between purge batches.
+     */
+    private void pause() {
+        if (interval > 0) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -317,5 +317,60 @@ public class MVCCTransactionalCacheKeyTest extends AbstractMVCCTransactionalCach
         assertFalse(cache.containsValue(ts2, repeatableRead, noValue));
     }
 
+    /**
+     * containsValue returns as soon as a committed match is found, without waiting
+     * for an uncommitted match to be committed.
+     * @throws Throwable 
+     */
+    @Test(timeout = 10000)
+    public void testContainsValueIgnoresUncommittedWhenCommittedMatch() throws Throwable {
+    
+        System.out.println("******ContainsValueIgnoresUncommittedWhenCommittedMatch");
+    
+        SampleDomainObject theValue = new SampleDomainObject(88, "eighty-eight");
+    
+        assertNull(cache.put(ts1, readCommitted, true, 98, theValue));
+        assertNull(cache.put(ts2, readCommitted, false, 99, theValue));
+    
+        assertTrue(cache.containsValue(ts3, readCommitted, theValue));
+    }
+
+    /**
+     * containsValue waits for an uncommitted match if there is no committed match.
+     * @throws Throwable 
+     */
+    @Test(timeout = 10000)
+    public void testContainsValueWaitsForUncommitted() throws Throwable {
+    
+        System.out.println("******ContainsValueWaitsForUncommitted");
+    
+        SampleDomainObject theValue = new SampleDomainObject(88, "eighty-eight");
+    
+        assertNull(cache.put(ts1, readCommitted, false, 99, theValue));
+        asynchCommit(ts1, 99);
+    
+        assertTrue(cache.containsValue(ts2, readCommitted, theValue));
+    }
+
+    /**
+     * Waiting for any of several uncommitted matches returns when one of them is committed,
+     * while the others remain uncommitted.
+     * @throws Throwable 
+     */
+    @Test(timeout = 10000)
+    public void testContainsValueWaitsForAnyUncommitted() throws Throwable {
+    
+        System.out.println("******ContainsValueWaitsForAnyUncommitted");
+    
+        SampleDomainObject theValue = new SampleDomainObject(88, "eighty-eight");
+    
+        assertNull(cache.put(ts1, readCommitted, false, 97, theValue));
+        assertNull(cache.put(ts2, readCommitted, false, 98, theValue));
+        assertNull(cache.put(ts3, readCommitted, false, 99, theValue));
+        asynchCommit(ts2, 98);
+    
+        assertTrue(cache.containsValue(ts4, readCommitted, theValue));
+    }
+
 
 }
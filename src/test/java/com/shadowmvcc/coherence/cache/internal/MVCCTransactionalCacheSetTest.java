@@ -27,23 +27,34 @@ import static com.shadowmvcc.coherence.domain.IsolationLevel.readUncommitted;
 import static com.shadowmvcc.coherence.domain.IsolationLevel.repeatableRead;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.junit.Test;
 
+import com.shadowmvcc.coherence.config.ConfigurationFactory;
 import com.shadowmvcc.coherence.domain.SampleDomainObject;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.transaction.TransactionException;
 import com.tangosol.util.Filter;
 import com.tangosol.util.InvocableMap.EntryProcessor;
 import com.tangosol.util.aggregator.Count;
 import com.tangosol.util.aggregator.LongSum;
+import com.tangosol.util.comparator.ExtractorComparator;
+import com.tangosol.util.comparator.InverseComparator;
 import com.tangosol.util.extractor.PofExtractor;
 import com.tangosol.util.extractor.PofUpdater;
+import com.tangosol.util.extractor.ReflectionExtractor;
 import com.tangosol.util.filter.EqualsFilter;
+import com.tangosol.util.filter.LimitFilter;
 import com.tangosol.util.processor.UpdaterProcessor;
 
 /**
@@ -420,6 +431,162 @@ public class MVCCTransactionalCacheSetTest extends AbstractMVCCTransactionalCach
 
     }
 
+    /**
+     * Test putAll of more entries than are sent to a member in one batch.
+     * @throws Throwable 
+     */
+    @Test
+    public void testPutAllBatched() throws Throwable {
+
+        System.out.println("******PutAllBatched");
+
+        int count = ConfigurationFactory.getConfiguraration().getPutAllBatchSize() * 2 + 1;
+        Map<Integer, SampleDomainObject> valueMap = new HashMap<Integer, SampleDomainObject>();
+        for (Integer theKey = 0; theKey < count; theKey++) {
+            valueMap.put(theKey, new SampleDomainObject(theKey, "batched"));
+        }
+
+        cache.putAll(ts1, true, valueMap);
+
+        assertEquals(count, cache.size(ts2, readCommitted));
+
+        assertTrue(cache.entrySet(ts2, readCommitted).containsAll(valueMap.entrySet()));
+
+    }
+
+    /**
+     * Test load. Loaded versions are committed, visible from the load transaction id and
+     * not before, and can be updated transactionally. The load id must be a valid
+     * transaction id, and keys with a version at or after it are not loaded again.
+     * @throws Throwable 
+     */
+    @Test
+    public void testLoad() throws Throwable {
+
+        System.out.println("******Load");
+
+        long now = System.currentTimeMillis();
+        TransactionId before = new TransactionId(now, 0, 0);
+        TransactionId loadId = new TransactionId(now + 1, 0, 0);
+        TransactionId loaded = new TransactionId(now + 2, 0, 0);
+        TransactionId update = new TransactionId(now + 3, 0, 0);
+        TransactionId after = new TransactionId(now + 4, 0, 0);
+
+        int count = ConfigurationFactory.getConfiguraration().getPutAllBatchSize() + 1;
+        Map<Integer, SampleDomainObject> valueMap = new HashMap<Integer, SampleDomainObject>();
+        for (Integer theKey = 0; theKey < count; theKey++) {
+            valueMap.put(theKey, new SampleDomainObject(theKey, "loaded"));
+        }
+
+        try {
+            cache.load(ts2, valueMap);
+            fail("expected TransactionException");
+        } catch (TransactionException e) {
+            // load id too old
+        }
+
+        cache.load(loadId, valueMap);
+
+        assertEquals(0, cache.size(before, readCommitted));
+        assertEquals(count, cache.size(loaded, readCommitted));
+        assertTrue(cache.entrySet(loaded, readCommitted).containsAll(valueMap.entrySet()));
+
+        SampleDomainObject updated = new SampleDomainObject(0, "updated");
+        assertEquals(valueMap.get(0), cache.put(update, readCommitted, true, 0, updated));
+        assertEquals(updated, cache.get(after, readCommitted, 0));
+        assertEquals(valueMap.get(0), cache.get(loaded, readCommitted, 0));
+
+        try {
+            cache.load(loaded, valueMap);
+            fail("expected TransactionException");
+        } catch (TransactionException e) {
+            // key 0 has a version at update
+        }
+        assertEquals(updated, cache.get(after, readCommitted, 0));
+        assertEquals(valueMap.get(1), cache.get(after, readCommitted, 1));
+
+    }
+
+    /**
+     * Test iteration of values and keys over many pages of partitions. The views
+     * read at their own transaction id regardless of later changes.
+     * @throws Throwable 
+     */
+    @Test
+    public void testPagedIteration() throws Throwable {
+
+        System.out.println("******PagedIteration");
+
+        Map<Integer, SampleDomainObject> valueMap = new HashMap<Integer, SampleDomainObject>();
+        for (Integer theKey = 0; theKey < 500; theKey++) {
+            valueMap.put(theKey, new SampleDomainObject(theKey, "paged"));
+        }
+        cache.putAll(ts1, true, valueMap);
+
+        Collection<SampleDomainObject> values = cache.values(ts2, readCommitted);
+        Set<Integer> keySet = cache.keySet(ts2, readCommitted);
+
+        cache.remove(ts3, readCommitted, true, 0);
+
+        Set<SampleDomainObject> iterated = new HashSet<SampleDomainObject>();
+        for (SampleDomainObject value : values) {
+            assertTrue(iterated.add(value));
+        }
+        assertEquals(new HashSet<SampleDomainObject>(valueMap.values()), iterated);
+        assertEquals(valueMap.keySet(), keySet);
+        assertEquals(valueMap.size() - 1, cache.keySet(ts4, readCommitted).size());
+
+    }
+
+    /**
+     * Test entrySet with a comparator returns entries in order, and that
+     * a {@link LimitFilter} pages through them at the same timestamp.
+     * @throws Throwable 
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testEntrySetSorted() throws Throwable {
+
+        System.out.println("******EntrySetSorted");
+
+        Map<Integer, SampleDomainObject> valueMap = new HashMap<Integer, SampleDomainObject>();
+        for (Integer theKey = 0; theKey < 50; theKey++) {
+            valueMap.put(theKey, new SampleDomainObject(theKey % 10, "sorted"));
+        }
+        cache.putAll(ts1, true, valueMap);
+        cache.put(ts3, readCommitted, true, 0, new SampleDomainObject(99, "later"));
+
+        Comparator<SampleDomainObject> descending = new InverseComparator(
+                new ExtractorComparator(new ReflectionExtractor("getIntValue")));
+        Filter filter = new EqualsFilter(new PofExtractor(null, SampleDomainObject.POF_STRV), "sorted");
+
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int intValue = 9; intValue >= 0; intValue--) {
+            for (int theKey = intValue; theKey < 50; theKey += 10) {
+                expected.add(theKey);
+            }
+        }
+
+        List<Integer> keys = new ArrayList<Integer>();
+        for (Map.Entry<Integer, SampleDomainObject> entry : cache.entrySet(ts2, readCommitted, filter, descending)) {
+            keys.add(entry.getKey());
+        }
+        assertEquals(expected, keys);
+
+        LimitFilter limitFilter = new LimitFilter(filter, 7);
+        List<Integer> paged = new ArrayList<Integer>();
+        Set<Map.Entry<Integer, SampleDomainObject>> page;
+        do {
+            page = cache.entrySet(ts2, readCommitted, limitFilter, descending);
+            for (Map.Entry<Integer, SampleDomainObject> entry : page) {
+                paged.add(entry.getKey());
+            }
+            limitFilter.nextPage();
+        } while (page.size() == 7);
+        assertEquals(expected, paged);
+
+    }
+
     /**
      * Test that clear() works correctly. Creates deleted events for all extant entries
      * @throws Throwable 
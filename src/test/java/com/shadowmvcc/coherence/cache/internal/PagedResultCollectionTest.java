@@ -0,0 +1,108 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.cache.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.domain.IsolationLevel;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.transaction.Transaction;
+import com.shadowmvcc.coherence.transaction.TransactionException;
+import com.shadowmvcc.coherence.transaction.TransactionNotificationListener;
+import com.shadowmvcc.coherence.transaction.internal.ReadOnlyTransaction;
+
+/**
+ * Test the lazily read views independently of the invocation that supplies them.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class PagedResultCollectionTest {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+
+    private final Map<Integer, String> results = new TreeMap<Integer, String>();
+    private final AtomicInteger iterations = new AtomicInteger();
+    private final Iterable<Map.Entry<Integer, String>> source = new Iterable<Map.Entry<Integer, String>>() {
+        @Override
+        public Iterator<Map.Entry<Integer, String>> iterator() {
+            iterations.incrementAndGet();
+            return results.entrySet().iterator();
+        }
+    };
+
+    /**
+     * The size is counted again on each call, so it agrees with an iteration after
+     * later writes by the transaction.
+     */
+    @Test
+    public void testSizeSeesLaterResults() {
+        results.put(1, "one");
+        results.put(2, "two");
+        Collection<String> values = new PagedResultCollection<Integer, String, String>(
+                source, PagedResultCollection.View.VALUES);
+        assertEquals(2, values.size());
+        results.put(3, "three");
+        assertEquals(3, values.size());
+        results.clear();
+        assertEquals(true, values.isEmpty());
+        assertEquals(3, iterations.get());
+    }
+
+    /**
+     * A view bound to a transaction cannot be read once the transaction has completed.
+     */
+    @Test
+    public void testBoundViewRejectsCompletedTransaction() {
+        results.put(1, "one");
+        results.put(2, "two");
+        Transaction transaction = new ReadOnlyTransaction(new TransactionId(BASETIME, 0, 0),
+                IsolationLevel.readCommitted, new TransactionNotificationListener() {
+                    @Override
+                    public void transactionComplete(final Transaction transaction) {
+                    }
+                });
+        Collection<String> values = new TransactionBoundCollection<String>(
+                new PagedResultCollection<Integer, String, String>(source, PagedResultCollection.View.VALUES),
+                transaction);
+        Iterator<String> it = values.iterator();
+        assertEquals("one", it.next());
+        transaction.commit();
+        try {
+            it.hasNext();
+            fail("expected TransactionException");
+        } catch (TransactionException e) {
+            assertEquals(1, iterations.get());
+        }
+    }
+}
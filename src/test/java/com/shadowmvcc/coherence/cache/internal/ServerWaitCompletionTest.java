@@ -0,0 +1,200 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.cache.internal;
+
+import static com.shadowmvcc.coherence.domain.IsolationLevel.readCommitted;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.config.ConfigurationFactory;
+import com.shadowmvcc.coherence.domain.ProcessorResult;
+import com.shadowmvcc.coherence.domain.SampleDomainObject;
+import com.shadowmvcc.coherence.invocable.KeyProcessorInvoker;
+import com.shadowmvcc.coherence.invocable.MVCCReadOnlyEntryProcessorWrapper;
+import com.shadowmvcc.coherence.transaction.internal.TransactionCache;
+import com.shadowmvcc.coherence.transaction.internal.TransactionCacheImpl;
+import com.shadowmvcc.coherence.transaction.internal.TransactionExpiryListener;
+import com.tangosol.net.CacheFactory;
+import com.tangosol.net.DistributedCacheService;
+import com.tangosol.net.InvocationService;
+import com.tangosol.net.Member;
+import com.tangosol.net.NamedCache;
+import com.tangosol.util.InvocableMap.EntryProcessor;
+import com.tangosol.util.extractor.IdentityExtractor;
+import com.tangosol.util.processor.ExtractorProcessor;
+
+/**
+ * Test that reads parked on a storage member waiting for uncommitted versions
+ * do not prevent the transaction that wrote them from completing on the same member,
+ * nor requests that do not wait from running there.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class ServerWaitCompletionTest extends AbstractMVCCTransactionalCacheTest {
+
+    private static final int KEYS = 10;
+    private static final long WAIT = 20000;
+
+    /**
+     * Park more reads than there are wait service workers on each member, then write other
+     * keys with putAll, which uses the invocation service. The putAll must not wait for the
+     * parked reads to time out.
+     * @throws InterruptedException if interrupted
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testPutAllWithParkedReads() throws InterruptedException {
+
+        System.out.println("******PutAllWithParkedReads");
+
+        SampleDomainObject theValue = new SampleDomainObject(88, "eighty-eight");
+        TransactionCache transactionCache = new TransactionCacheImpl(
+                ConfigurationFactory.getConfiguraration().getCompletionServiceName());
+        transactionCache.beginTransaction(ts1, readCommitted,
+                new TransactionExpiryListener(new VersionCommitListener()));
+
+        Set<Object> txkeys = new HashSet<Object>();
+        for (int i = 0; i < KEYS; i++) {
+            assertNull(cache.put(ts1, readCommitted, false, i, theValue));
+            txkeys.add(i);
+        }
+
+        final ConcurrentMap<Integer, Object> results = new ConcurrentHashMap<Integer, Object>();
+        final CountDownLatch readsComplete = new CountDownLatch(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            parkRead(i, results, readsComplete);
+        }
+        Thread.sleep(500);
+        assertTrue(results.isEmpty());
+
+        SampleDomainObject otherValue = new SampleDomainObject(99, "ninety-nine");
+        Map<Integer, SampleDomainObject> otherEntries = new HashMap<Integer, SampleDomainObject>();
+        for (int i = KEYS; i < 2 * KEYS; i++) {
+            otherEntries.put(i, otherValue);
+        }
+        long start = System.currentTimeMillis();
+        cache.putAll(ts3, false, otherEntries);
+        assertTrue(System.currentTimeMillis() - start < WAIT / 2);
+        assertTrue(results.isEmpty());
+
+        Map<CacheName, Set<Object>> cacheKeyMap = new HashMap<CacheName, Set<Object>>();
+        cacheKeyMap.put(cache.getMVCCCacheName(), txkeys);
+        transactionCache.rollbackTransaction(ts1, cacheKeyMap, Collections.EMPTY_MAP);
+        assertTrue(readsComplete.await(WAIT, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Park more reads than there are wait service workers on each member, then commit
+     * the transaction they are waiting for. The commit must not wait for the reads to time out,
+     * and the reads must return the committed values.
+     * @throws InterruptedException if interrupted
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCommitWithParkedReads() throws InterruptedException {
+
+        System.out.println("******CommitWithParkedReads");
+
+        SampleDomainObject theValue = new SampleDomainObject(88, "eighty-eight");
+        TransactionCache transactionCache = new TransactionCacheImpl(
+                ConfigurationFactory.getConfiguraration().getCompletionServiceName());
+        transactionCache.beginTransaction(ts1, readCommitted,
+                new TransactionExpiryListener(new VersionCommitListener()));
+
+        Set<Object> txkeys = new HashSet<Object>();
+        for (int i = 0; i < KEYS; i++) {
+            assertNull(cache.put(ts1, readCommitted, false, i, theValue));
+            txkeys.add(i);
+        }
+
+        final ConcurrentMap<Integer, Object> results = new ConcurrentHashMap<Integer, Object>();
+        final CountDownLatch readsComplete = new CountDownLatch(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            parkRead(i, results, readsComplete);
+        }
+        Thread.sleep(500);
+        assertTrue(results.isEmpty());
+
+        Map<CacheName, Set<Object>> cacheKeyMap = new HashMap<CacheName, Set<Object>>();
+        cacheKeyMap.put(cache.getMVCCCacheName(), txkeys);
+        long start = System.currentTimeMillis();
+        transactionCache.commitTransaction(ts1, cacheKeyMap, Collections.EMPTY_MAP);
+        assertTrue(System.currentTimeMillis() - start < WAIT / 2);
+
+        assertTrue(readsComplete.await(WAIT, TimeUnit.MILLISECONDS));
+        for (int i = 0; i < KEYS; i++) {
+            ProcessorResult<Integer, SampleDomainObject> result =
+                    (ProcessorResult<Integer, SampleDomainObject>) results.get(i);
+            assertFalse(result.isUncommitted());
+            assertEquals(theValue, result.getResult());
+        }
+    }
+
+    /**
+     * Spawn a thread that reads a key on the member that owns it through the wait service,
+     * waiting there for any uncommitted version.
+     * @param key the key
+     * @param results map to put the result in
+     * @param readsComplete latch to count down when the read returns
+     */
+    private void parkRead(final Integer key, final ConcurrentMap<Integer, Object> results,
+            final CountDownLatch readsComplete) {
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                NamedCache keyCache = CacheFactory.getCache(cache.getMVCCCacheName().getKeyCacheName());
+                Member owner = ((DistributedCacheService) keyCache.getCacheService()).getKeyOwner(key);
+                EntryProcessor ep = new MVCCReadOnlyEntryProcessorWrapper<Integer, SampleDomainObject>(
+                        ts2, new ExtractorProcessor(new IdentityExtractor()), readCommitted,
+                        cache.getMVCCCacheName());
+                InvocationService service = (InvocationService) CacheFactory.getService(
+                        ConfigurationFactory.getConfiguraration().getWaitServiceName());
+                Map<Member, Object> memberResults = service.query(
+                        new KeyProcessorInvoker<Integer, SampleDomainObject>(
+                                cache.getMVCCCacheName(), key, ts2, ep, WAIT),
+                        Collections.singleton(owner));
+                results.put(key, memberResults.get(owner));
+                readsComplete.countDown();
+            }
+        }).start();
+    }
+
+}
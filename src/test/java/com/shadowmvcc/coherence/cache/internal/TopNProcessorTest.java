@@ -0,0 +1,90 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.cache.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test the selection and ordering of entries by {@link TopNProcessor}.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class TopNProcessorTest {
+
+    /**
+     * The first entries are selected in order of value, then key.
+     */
+    @Test
+    public void testFirst() {
+        Map<Integer, String> values = new HashMap<Integer, String>();
+        for (int key = 0; key < 100; key++) {
+            values.put(key, "v" + (key % 10));
+        }
+
+        List<Integer> keys = keys(TopNProcessor.first(values.entrySet(), null, 12));
+        assertEquals(Arrays.asList(0, 10, 20, 30, 40, 50, 60, 70, 80, 90, 1, 11), keys);
+
+        keys = keys(TopNProcessor.first(values.entrySet(), Collections.<String>reverseOrder(), 3));
+        assertEquals(Arrays.asList(9, 19, 29), keys);
+
+        assertEquals(100, TopNProcessor.first(values.entrySet(), null, Integer.MAX_VALUE).size());
+        assertEquals(0, TopNProcessor.first(values.entrySet(), null, 0).size());
+    }
+
+    /**
+     * A member's results are reduced to its first entries.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testReduce() {
+        Map<Integer, String> values = new HashMap<Integer, String>();
+        values.put(1, "c");
+        values.put(2, "a");
+        values.put(3, "b");
+
+        Map<Integer, String> reduced = new TopNProcessor<Integer, String>(null, 2).reduce(values);
+        assertEquals(Arrays.asList(2, 3), new ArrayList<Integer>(reduced.keySet()));
+    }
+
+    /**
+     * @param entries entries
+     * @return the keys of the entries in order
+     */
+    private static List<Integer> keys(final List<Map.Entry<Integer, String>> entries) {
+        List<Integer> keys = new ArrayList<Integer>();
+        for (Map.Entry<Integer, String> entry : entries) {
+            keys.add(entry.getKey());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.cache.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.VersionCacheKey;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.tangosol.net.NamedCache;
+import com.tangosol.util.MapEvent;
+
+/**
+ * Test the key listeners registered by a client {@link VersionCommitHub} and the
+ * distribution of commit events to waiters.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class VersionCommitHubTest {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+    private static final CacheName CACHENAME = new CacheName("testcache");
+    private static final long RUN_MILLIS = 500L;
+
+    private NamedCache cache;
+    private Set<Object> registeredKeys;
+    private VersionCommitHub hub;
+
+    /**
+     * Create a hub on a version cache that records key listener registrations.
+     */
+    @Before
+    public void setUp() {
+        registeredKeys = Collections.synchronizedSet(new HashSet<Object>());
+        cache = (NamedCache) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { NamedCache.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (method.getName().equals("addMapListener") && args.length == 3
+                                && args[1] instanceof VersionedKey) {
+                            assertTrue(registeredKeys.add(args[1]));
+                            return null;
+                        }
+                        if (method.getName().equals("removeMapListener") && args.length == 2
+                                && args[1] instanceof VersionedKey) {
+                            assertTrue(registeredKeys.remove(args[1]));
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        hub = new VersionCommitHub(CACHENAME, cache);
+    }
+
+    /**
+     * Only the keys waited for are listened to, each once however many waiters there are,
+     * and only until the last waiter for the key is removed.
+     */
+    @Test
+    public void testListenOnlyToAwaitedKeys() {
+        VersionedKey<Integer> key1 = key(1);
+        VersionedKey<Integer> key2 = key(2);
+        VersionCommitListener waiterA = new VersionCommitListener();
+        VersionCommitListener waiterB = new VersionCommitListener();
+
+        hub.addWaiter(keys(key1, key2), waiterA);
+        hub.addWaiter(keys(key1), waiterB);
+        assertEquals(keys(key1, key2), registeredKeys);
+
+        hub.removeWaiter(keys(key1, key2), waiterA);
+        assertEquals(keys(key1), registeredKeys);
+
+        hub.removeWaiter(keys(key1), waiterB);
+        assertTrue(registeredKeys.isEmpty());
+    }
+
+    /**
+     * An update or delete of an awaited key resolves it for every waiter on the key, and only those.
+     */
+    @Test
+    public void testEventsResolveWaiters() {
+        VersionedKey<Integer> key1 = key(1);
+        VersionedKey<Integer> key2 = key(2);
+        VersionCommitListener waiterA = new VersionCommitListener();
+        VersionCommitListener waiterB = new VersionCommitListener();
+        hub.addWaiter(keys(key1), waiterA);
+        hub.addWaiter(keys(key2), waiterB);
+
+        hub.entryUpdated(new MapEvent(cache, MapEvent.ENTRY_UPDATED, key1, null, null));
+        assertEquals(Collections.singleton(new VersionCacheKey<Integer>(CACHENAME, key1)), waiterA.waitForAny(0));
+        assertTrue(waiterB.waitForAny(0).isEmpty());
+
+        hub.entryDeleted(new MapEvent(cache, MapEvent.ENTRY_DELETED, key2, null, null));
+        assertEquals(Collections.singleton(new VersionCacheKey<Integer>(CACHENAME, key2)), waiterB.waitForAny(0));
+    }
+
+    /**
+     * Waiters repeatedly added and removed for the same key from several threads. While any
+     * thread is waiting the key must be listened to, and none is left listened to afterwards.
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testListenerRacingLastWaiter() throws InterruptedException {
+        final Set<VersionedKey<Integer>> awaited = keys(key(1));
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (!stop.get()) {
+                            VersionCommitListener waiter = new VersionCommitListener();
+                            hub.addWaiter(awaited, waiter);
+                            assertEquals(awaited, registeredKeys);
+                            hub.removeWaiter(awaited, waiter);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(RUN_MILLIS);
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertTrue(registeredKeys.isEmpty());
+    }
+
+    /**
+     * @param keys the keys
+     * @return a set of the keys
+     */
+    private static Set<VersionedKey<Integer>> keys(final VersionedKey<Integer>... keys) {
+        Set<VersionedKey<Integer>> result = new HashSet<VersionedKey<Integer>>();
+        Collections.addAll(result, keys);
+        return result;
+    }
+
+    /**
+     * @param logicalKey the logical key
+     * @return an uncommitted version key
+     */
+    private static VersionedKey<Integer> key(final int logicalKey) {
+        return new VersionedKey<Integer>(logicalKey, new TransactionId(BASETIME, 0, 0));
+    }
+}
@@ -43,6 +43,21 @@ public class PropertyConfigurationTest {
         assertConfiguration(ConfigurationFactory.getConfiguraration());
     }
     
+    /**
+     * A page of no partitions is rejected when the configuration is loaded.
+     */
+    @Test(expected = RuntimeException.class)
+    public void testRejectEmptyIteratorPage() {
+        String property = PropertyConfiguration.SYSTEM_PROPERTY_PREFIX
+                + PropertyConfiguration.PROP_ITERATORPAGEPARTITIONS;
+        System.setProperty(property, "0");
+        try {
+            new PropertyConfiguration();
+        } finally {
+            System.clearProperty(property);
+        }
+    }
+    
     /**
      * Check the configuration is as expected.
      * 
@@ -57,6 +72,24 @@ public class PropertyConfigurationTest {
         assertEquals(configuration.getMinimumSnapshotAge(), PropertyConfiguration.DEFAULT_MINIMUMSNAPSHOTAGE);
         assertEquals(configuration.getInvocationServiceName(),
                 PropertyConfiguration.DEFAULT_INVOCATIONSERVICENAME);
+        assertEquals(configuration.getCompletionServiceName(),
+                PropertyConfiguration.DEFAULT_COMPLETIONSERVICENAME);
+        assertEquals(configuration.getWaitServiceName(), PropertyConfiguration.DEFAULT_WAITSERVICENAME);
+        assertEquals(configuration.isBinaryVersionKeys(), PropertyConfiguration.DEFAULT_BINARYVERSIONKEYS);
+        assertEquals(configuration.getSnapshotPurgeBatchSize(), PropertyConfiguration.DEFAULT_SNAPSHOTPURGEBATCHSIZE);
+        assertEquals(configuration.getSnapshotPurgeInterval(), PropertyConfiguration.DEFAULT_SNAPSHOTPURGEINTERVAL);
+        assertEquals(configuration.getVacuumInterval(), PropertyConfiguration.DEFAULT_VACUUMINTERVAL);
+        assertEquals(configuration.getTemporalViewTimeout(), PropertyConfiguration.DEFAULT_TEMPORALVIEWTIMEOUT);
+        assertEquals(configuration.getServerWaitTimeout(), PropertyConfiguration.DEFAULT_SERVERWAITTIMEOUT);
+        assertEquals(configuration.getMaxReadTimestamps(), PropertyConfiguration.DEFAULT_MAXREADTIMESTAMPS);
+        assertEquals(configuration.getGroupCommitBatchSize(), PropertyConfiguration.DEFAULT_GROUPCOMMITBATCHSIZE);
+        assertEquals(configuration.getGroupCommitLatency(), PropertyConfiguration.DEFAULT_GROUPCOMMITLATENCY);
+        assertEquals(configuration.getCommitCompleterThreads(), PropertyConfiguration.DEFAULT_COMMITCOMPLETERTHREADS);
+        assertEquals(configuration.getManagerIdBlockSize(), PropertyConfiguration.DEFAULT_MANAGERIDBLOCKSIZE);
+        assertEquals(configuration.getTransactionExpiryTick(), PropertyConfiguration.DEFAULT_TRANSACTIONEXPIRYTICK);
+        assertEquals(configuration.getPutAllBatchSize(), PropertyConfiguration.DEFAULT_PUTALLBATCHSIZE);
+        assertEquals(configuration.getIteratorPagePartitions(),
+                PropertyConfiguration.DEFAULT_ITERATORPAGEPARTITIONS);
         
         // from properties file
         assertEquals(configuration.getOpenTransactionTimeout(), 60000);
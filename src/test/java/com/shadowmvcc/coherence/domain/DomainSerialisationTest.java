@@ -101,6 +101,22 @@ public class DomainSerialisationTest {
         assertPofFidelityByReflection(tsw);
     }
 
+    /**
+     * TransactionSetWrapper with a high-water mark.
+     */
+    @Test
+    public void testTransactionSetWrapperHighWaterMark() {
+        TransactionSetWrapper tsw = new TransactionSetWrapper();
+        for (int i = 0; i < 10; i++) {
+            tsw.addRead(new TransactionId(BASETIME + i * 1000, -i, i));
+        }
+        tsw.prune(4, new TransactionId(BASETIME, 0, 0), null);
+        Binary binary = ExternalizableHelper.toBinary(tsw, pofContext);
+        TransactionSetWrapper result = (TransactionSetWrapper) ExternalizableHelper.fromBinary(binary, pofContext);
+        assertEquals(tsw.getHighWaterMark(), result.getHighWaterMark());
+        assertEquals(tsw.getTransactionIdSet(), result.getTransactionIdSet());
+    }
+
     /**
      * Processor result with retry key.
      */
@@ -124,6 +140,25 @@ public class DomainSerialisationTest {
         assertPofFidelityByReflection(pr);
     }
 
+    /**
+     * Version cache key.
+     */
+    @Test
+    public void testVersionCacheKey() {
+        VersionCacheKey<String> vo = new VersionCacheKey<String>(new CacheName("humpty-dumpty"),
+                new VersionedKey<String>("ABC", new TransactionId(BASETIME + 17, 124, 457)));
+        assertPofFidelity(vo);
+    }
+
+    /**
+     * Event value.
+     */
+    @Test
+    public void testEventValue() {
+        EventValue<String> vo = new EventValue<String>(true, false, "a value");
+        assertPofFidelityByReflection(vo);
+    }
+
 
     /**
      * Check using equals.
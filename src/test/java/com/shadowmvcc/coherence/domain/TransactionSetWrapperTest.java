@@ -0,0 +1,111 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test recording, pruning and collapsing of read timestamps.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class TransactionSetWrapperTest {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+
+    /**
+     * Reads are held individually until pruned.
+     */
+    @Test
+    public void testAddRead() {
+        TransactionSetWrapper tsw = new TransactionSetWrapper();
+        assertTrue(tsw.addRead(tid(10)));
+        assertTrue(tsw.addRead(tid(20)));
+        assertFalse(tsw.addRead(tid(10)));
+        assertEquals(2, tsw.size());
+        assertNull(tsw.getHighWaterMark());
+        assertEquals(tid(10), tsw.ceiling(tid(5)));
+        assertEquals(tid(20), tsw.ceiling(tid(11)));
+        assertNull(tsw.ceiling(tid(21)));
+    }
+
+    /**
+     * Reads before the low bound are discarded, reads before the latest committed
+     * write are collapsed into the high-water mark.
+     */
+    @Test
+    public void testPrune() {
+        TransactionSetWrapper tsw = new TransactionSetWrapper();
+        for (int i = 1; i <= 10; i++) {
+            tsw.addRead(tid(i * 10));
+        }
+        tsw.prune(100, tid(25), tid(55));
+        assertEquals(tid(50), tsw.getHighWaterMark());
+        assertEquals(5, tsw.size());
+        assertEquals(tid(60), tsw.ceiling(tid(51)));
+
+        // a write at or before the high-water mark conflicts with a read at the same time
+        assertEquals(tid(30), tsw.ceiling(tid(30)));
+        assertEquals(tid(42), tsw.ceiling(tid(42)));
+
+        // reads covered by the high-water mark are not recorded
+        assertFalse(tsw.addRead(tid(45)));
+        assertTrue(tsw.addRead(tid(55)));
+
+        // a low bound after the high-water mark discards it
+        tsw.prune(100, tid(58), null);
+        assertNull(tsw.getHighWaterMark());
+        assertEquals(5, tsw.size());
+        assertNull(tsw.ceiling(tid(101)));
+    }
+
+    /**
+     * The oldest reads are collapsed to hold no more than the maximum.
+     */
+    @Test
+    public void testBound() {
+        TransactionSetWrapper tsw = new TransactionSetWrapper();
+        for (int i = 1; i <= 100; i++) {
+            tsw.addRead(tid(i));
+        }
+        tsw.prune(8, tid(0), null);
+        assertEquals(8, tsw.size());
+        assertEquals(tid(92), tsw.getHighWaterMark());
+        assertEquals(9, tsw.getTransactionIdSet().size());
+        assertEquals(tid(93), tsw.ceiling(tid(93)));
+    }
+
+    /**
+     * @param offset offset from base time
+     * @return a transaction id
+     */
+    private static TransactionId tid(final long offset) {
+        return new TransactionId(BASETIME + offset, 0, 0);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute
+it and/or modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation, either version 3 of the
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it
+will be useful, but WITHOUT ANY WARRANTY; without even the implied
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See
+the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tangosol.io.pof.ConfigurablePofContext;
+import com.tangosol.util.Binary;
+import com.tangosol.util.ExternalizableHelper;
+
+/**
+ * Test the version cache status flag decorations.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class UtilsTest {
+
+    private ConfigurablePofContext pofContext;
+    private Binary binValue;
+
+    /**
+     * initialise POF context and an undecorated value.
+     */
+    @Before
+    public void setUp() {
+        pofContext = new ConfigurablePofContext("mvcc-pof-config-test.xml");
+        binValue = ExternalizableHelper.toBinary("a value", pofContext);
+    }
+
+    /**
+     * An undecorated value is committed and not deleted.
+     */
+    @Test
+    public void testUndecorated() {
+        assertEquals(Constants.FLAG_COMMITTED, Utils.getFlags(binValue, pofContext));
+    }
+
+    /**
+     * Flags written are read back.
+     */
+    @Test
+    public void testDecorateValue() {
+        assertEquals(0, Utils.getFlags(Utils.decorateValue(binValue, false, false), pofContext));
+        assertEquals(Constants.FLAG_COMMITTED,
+                Utils.getFlags(Utils.decorateValue(binValue, true, false), pofContext));
+        assertEquals(Constants.FLAG_DELETED,
+                Utils.getFlags(Utils.decorateValue(binValue, false, true), pofContext));
+        assertEquals(Constants.FLAG_COMMITTED | Constants.FLAG_DELETED,
+                Utils.getFlags(Utils.decorateValue(binValue, true, true), pofContext));
+    }
+
+    /**
+     * Values decorated in the old format are read, and converted when decorated again.
+     */
+    @Test
+    public void testLegacyDecorations() {
+        Binary legacy = ExternalizableHelper.decorate(binValue, Constants.DECO_COMMIT,
+                ExternalizableHelper.toBinary(Boolean.FALSE, pofContext));
+        legacy = ExternalizableHelper.decorate(legacy, Constants.DECO_DELETED,
+                ExternalizableHelper.toBinary(Boolean.TRUE, pofContext));
+        assertEquals(Constants.FLAG_DELETED, Utils.getFlags(legacy, pofContext));
+
+        Binary converted = Utils.decorateValue(legacy, true, true);
+        assertFalse(ExternalizableHelper.isDecorated(converted, Constants.DECO_COMMIT));
+        assertFalse(ExternalizableHelper.isDecorated(converted, Constants.DECO_DELETED));
+        assertEquals(Constants.FLAG_COMMITTED | Constants.FLAG_DELETED, Utils.getFlags(converted, pofContext));
+        assertEquals(binValue, ExternalizableHelper.getUndecorated(converted));
+    }
+}
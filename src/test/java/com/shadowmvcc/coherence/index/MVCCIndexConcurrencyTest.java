@@ -0,0 +1,332 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute
+it and/or modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation, either version 3 of the
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it
+will be useful, but WITHOUT ANY WARRANTY; without even the implied
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See
+the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.shadowmvcc.coherence.index.MVCCIndex.IndexEntry;
+import com.tangosol.util.Binary;
+import com.tangosol.util.Converter;
+
+/**
+ * Exercise {@link MVCCIndex} with concurrent readers and writers, as it
+ * would be used by the worker threads of a cache service.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class MVCCIndexConcurrencyTest {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+    private static final int PARTITIONS = 7;
+    private static final Integer HOTKEY = 0;
+    private static final long RUN_MILLIS = 500L;
+    private static final int MAX_READERS = 4;
+    private static final double MIN_SCALING = 0.5;
+
+    /**
+     * A writer repeatedly adds, commits and purges versions of a hot key. Readers
+     * must always see at least one version, and each version they see must be
+     * internally consistent.
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testReadersSeeConsistentVersions() throws InterruptedException {
+        final MVCCIndex<Integer> index = new MVCCIndex<Integer>(StubBackingMapContext.create(PARTITIONS));
+        index.addToIndex(HOTKEY, tid(0), binaryKey(0), true, false);
+
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                // grow the chain past the tree threshold, then shrink it, never removing the newest
+                long oldest = 0;
+                for (long i = 1; !stop.get(); i++) {
+                    index.addToIndex(HOTKEY, tid(i), binaryKey(i), false, false);
+                    index.updateIndex(HOTKEY, tid(i), true);
+                    if (i % (VersionLine.TREE_THRESHOLD * 2) >= VersionLine.TREE_THRESHOLD + 8) {
+                        for (int j = 0; j < 2 && oldest < i; j++) {
+                            index.removeFromIndex(HOTKEY, tid(oldest++));
+                        }
+                    }
+                }
+            }
+        };
+
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int r = 0; r < 4; r++) {
+            readers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (!stop.get()) {
+                            Entry<TransactionId, IndexEntry> latest =
+                                    index.floorEntry(HOTKEY, TransactionId.END_OF_TIME);
+                            assertNotNull(latest);
+                            assertConsistent(latest);
+                            Entry<TransactionId, IndexEntry> lower = index.lowerEntry(HOTKEY, latest.getKey());
+                            if (lower != null) {
+                                assertConsistent(lower);
+                                assertTrue(lower.getKey().compareTo(latest.getKey()) < 0);
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+        }
+
+        writer.start();
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        Thread.sleep(RUN_MILLIS * 2);
+        stop.set(true);
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+    }
+
+    /**
+     * A writer repeatedly adds an uncommitted version of a key, commits it and purges the
+     * previous version. A surface query racing the commit must still find a version of the key.
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testSurfaceQueryRacingCommit() throws InterruptedException {
+        final MVCCIndex<Integer> index = new MVCCIndex<Integer>(
+                StubBackingMapContext.create(PARTITIONS, new Converter() {
+                    @Override
+                    public Object convert(final Object binaryKey) {
+                        byte[] bytes = ((Binary) binaryKey).toByteArray();
+                        long version = ((bytes[0] & 0xFFL) << 24) | ((bytes[1] & 0xFFL) << 16)
+                                | ((bytes[2] & 0xFFL) << 8) | (bytes[3] & 0xFFL);
+                        return new VersionedKey<Integer>(HOTKEY, tid(version));
+                    }
+                }));
+        final int versions = 200000;
+        final Set<Binary> candidates = new HashSet<Binary>();
+        for (long i = 0; i < versions; i++) {
+            candidates.add(binaryKey(i));
+        }
+        index.addToIndex(HOTKEY, tid(0), binaryKey(0), true, false);
+
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                for (long i = 1; i < versions && !stop.get(); i++) {
+                    index.addToIndex(HOTKEY, tid(i), binaryKey(i), false, false);
+                    index.updateIndex(HOTKEY, tid(i), true);
+                    index.removeFromIndex(HOTKEY, tid(i - 1));
+                }
+            }
+        };
+
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (!stop.get()) {
+                        assertTrue(!index.floorSet(candidates, TransactionId.END_OF_TIME).isEmpty());
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        };
+
+        writer.start();
+        reader.start();
+        Thread.sleep(RUN_MILLIS);
+        stop.set(true);
+        writer.join();
+        reader.join();
+        assertNull(failure.get());
+    }
+
+    /**
+     * Two threads add and remove different versions of the same key, so the line
+     * is repeatedly emptied and discarded. No add may be lost.
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testAddRacingLineRemoval() throws InterruptedException {
+        final MVCCIndex<Integer> index = new MVCCIndex<Integer>(StubBackingMapContext.create(PARTITIONS));
+        final int iterations = 100000;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 2; t++) {
+            final long version = t;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < iterations; i++) {
+                        index.addToIndex(HOTKEY, tid(version), binaryKey(version), true, false);
+                        index.removeFromIndex(HOTKEY, tid(version));
+                    }
+                    index.addToIndex(HOTKEY, tid(version), binaryKey(version), true, false);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(tid(0), index.floorEntry(HOTKEY, tid(0)).getKey());
+        assertEquals(tid(1), index.floorEntry(HOTKEY, tid(1)).getKey());
+    }
+
+    /**
+     * Readers of a hot key do not block each other or the writer, so read throughput with
+     * N reader threads must be at least half of N times the throughput of one reader. N is
+     * limited to the processors left over by the writer, and the test is skipped if that
+     * leaves fewer than two.
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testReadThroughputScaling() throws InterruptedException {
+        int readers = Math.min(MAX_READERS, Runtime.getRuntime().availableProcessors() - 1);
+        assumeTrue(readers >= 2);
+        final MVCCIndex<Integer> index = new MVCCIndex<Integer>(StubBackingMapContext.create(PARTITIONS));
+        for (long i = 0; i < 3; i++) {
+            index.addToIndex(HOTKEY, tid(i), binaryKey(i), true, false);
+        }
+        measureReads(index, readers);
+        long single = measureReads(index, 1);
+        long multiple = measureReads(index, readers);
+        assertTrue(readers + " readers completed " + multiple + " reads against " + single + " for one reader",
+                multiple >= MIN_SCALING * readers * single);
+    }
+
+    /**
+     * Run reader threads against the hot key for a fixed period while a writer
+     * adds, commits and purges newer versions of it.
+     * @param index the index
+     * @param threadCount number of reader threads
+     * @return total number of reads completed
+     * @throws InterruptedException if interrupted
+     */
+    private static long measureReads(final MVCCIndex<Integer> index, final int threadCount)
+            throws InterruptedException {
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final AtomicLong total = new AtomicLong();
+        final TransactionId readTs = tid(1);
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                for (long i = 3; !stop.get(); i++) {
+                    index.addToIndex(HOTKEY, tid(i), binaryKey(i), false, false);
+                    index.updateIndex(HOTKEY, tid(i), true);
+                    index.removeFromIndex(HOTKEY, tid(i));
+                    Thread.yield();
+                }
+            }
+        };
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int r = 0; r < threadCount; r++) {
+            readers.add(new Thread() {
+                @Override
+                public void run() {
+                    long count = 0;
+                    while (!stop.get()) {
+                        index.floorEntry(HOTKEY, readTs);
+                        index.ceilingTid(HOTKEY, readTs);
+                        count++;
+                    }
+                    total.addAndGet(count);
+                }
+            });
+        }
+        writer.start();
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        Thread.sleep(RUN_MILLIS);
+        stop.set(true);
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        return total.get();
+    }
+
+    /**
+     * The binary key of each version is derived from its transaction id, so a
+     * torn read would show as a mismatch.
+     * @param entry index entry
+     */
+    private static void assertConsistent(final Entry<TransactionId, IndexEntry> entry) {
+        assertEquals(binaryKey(entry.getKey().getTimeStampMillis() - BASETIME), entry.getValue().getBinaryKey());
+    }
+
+    /**
+     * @param version version number
+     * @return transaction id for the version
+     */
+    private static TransactionId tid(final long version) {
+        return new TransactionId(BASETIME + version, 0, 0);
+    }
+
+    /**
+     * @param version version number
+     * @return binary key for the version
+     */
+    private static Binary binaryKey(final long version) {
+        return new Binary(new byte[] { (byte) (version >>> 24), (byte) (version >>> 16),
+                (byte) (version >>> 8), (byte) version });
+    }
+}
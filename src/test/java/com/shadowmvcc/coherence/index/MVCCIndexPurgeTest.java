@@ -0,0 +1,138 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute
+it and/or modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation, either version 3 of the
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it
+will be useful, but WITHOUT ANY WARRANTY; without even the implied
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See
+the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.tangosol.net.partition.PartitionSet;
+import com.tangosol.util.Binary;
+
+/**
+ * Test batched purge of superseded versions from {@link MVCCIndex}.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class MVCCIndexPurgeTest {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+    private static final int PARTITIONS = 7;
+
+    /**
+     * Purging in batches finds the same versions as a single pass, and
+     * keys reduced to a single version are no longer visited.
+     */
+    @Test
+    public void testBatchedPurge() {
+        MVCCIndex<Integer> index = new MVCCIndex<Integer>(StubBackingMapContext.create(PARTITIONS));
+        for (int key = 0; key < 100; key++) {
+            int versions = key % 4 + 1;
+            for (long v = 1; v <= versions; v++) {
+                index.addToIndex(key, tid(v), binaryKey(key, v), true, false);
+            }
+        }
+        Set<Binary> expected = index.snapshotPurgeSet(TransactionId.BIG_BANG, tid(10));
+        assertEquals(25 * (1 + 2 + 3), expected.size());
+
+        Set<Binary> purged = new HashSet<Binary>();
+        while (true) {
+            Set<Binary> batch = index.snapshotPurgeSet(TransactionId.BIG_BANG, tid(10), null, 20);
+            if (batch.isEmpty()) {
+                break;
+            }
+            assertTrue(batch.size() < 20 + 4);
+            for (Binary binaryKey : batch) {
+                assertTrue(purged.add(binaryKey));
+                int key = binaryKey.byteAt(0);
+                index.removeFromIndex(key, tid(binaryKey.byteAt(4)));
+            }
+        }
+        assertEquals(expected, purged);
+        for (int key = 0; key < 100; key++) {
+            assertEquals(binaryKey(key, key % 4 + 1), index.floor(key, TransactionId.END_OF_TIME));
+        }
+    }
+
+    /**
+     * Batches that resume after the largest logical key hash of the previous batch
+     * visit every purgeable version exactly once without the versions being removed.
+     */
+    @Test
+    public void testResumedPurge() {
+        MVCCIndex<Integer> index = new MVCCIndex<Integer>(StubBackingMapContext.create(1));
+        for (int key = 0; key < 100; key++) {
+            int versions = key % 4 + 1;
+            for (long v = 1; v <= versions; v++) {
+                index.addToIndex(key, tid(v), binaryKey(key, v), true, false);
+            }
+        }
+        PartitionSet partitions = new PartitionSet(1);
+        partitions.add(0);
+        Set<Binary> expected = index.snapshotPurgeSet(TransactionId.BIG_BANG, tid(10));
+
+        Set<Binary> purged = new HashSet<Binary>();
+        Integer resumeAfter = null;
+        int batches = 0;
+        while (true) {
+            Set<Binary> batch = index.snapshotPurgeSet(TransactionId.BIG_BANG, tid(10), partitions, 20, resumeAfter);
+            batches++;
+            for (Binary binaryKey : batch) {
+                assertTrue(purged.add(binaryKey));
+                int key = binaryKey.byteAt(0);
+                if (resumeAfter == null || key > resumeAfter) {
+                    resumeAfter = key;
+                }
+            }
+            if (batch.size() < 20) {
+                break;
+            }
+        }
+        assertEquals(expected, purged);
+        assertTrue(batches > 1);
+    }
+
+    /**
+     * @param version version number
+     * @return transaction id for the version
+     */
+    private static TransactionId tid(final long version) {
+        return new TransactionId(BASETIME + version, 0, 0);
+    }
+
+    /**
+     * @param key logical key
+     * @param version version number
+     * @return binary key for the version
+     */
+    private static Binary binaryKey(final int key, final long version) {
+        return new Binary(new byte[] { (byte) key, (byte) (version >>> 24), (byte) (version >>> 16),
+                (byte) (version >>> 8), (byte) version });
+    }
+}
@@ -0,0 +1,165 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute
+it and/or modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation, either version 3 of the
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it
+will be useful, but WITHOUT ANY WARRANTY; without even the implied
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See
+the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.index.MVCCIndex.IndexEntry;
+import com.tangosol.util.Binary;
+
+/**
+ * Check that surface queries on {@link MVCCIndex} give the same result
+ * as walking the version line of each key.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class MVCCIndexSurfaceTest {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+    private static final int PARTITIONS = 7;
+    private static final int KEYS = 20;
+
+    /**
+     * Committed, uncommitted and deleted heads.
+     */
+    @Test
+    public void testSurface() {
+        MVCCIndex<Integer> index = new MVCCIndex<Integer>(StubBackingMapContext.create(PARTITIONS));
+        index.addToIndex(1, tid(1), binaryKey(1, 1), true, false);
+        index.addToIndex(2, tid(1), binaryKey(2, 1), true, false);
+        index.addToIndex(2, tid(2), binaryKey(2, 2), true, true);
+        index.addToIndex(3, tid(1), binaryKey(3, 1), true, false);
+        index.addToIndex(3, tid(2), binaryKey(3, 2), false, false);
+        index.addToIndex(3, tid(3), binaryKey(3, 3), false, false);
+
+        Set<Binary> candidates = new HashSet<Binary>();
+        candidates.add(binaryKey(1, 1));
+        candidates.add(binaryKey(2, 1));
+        candidates.add(binaryKey(3, 1));
+        candidates.add(binaryKey(3, 3));
+
+        Set<Binary> expected = new HashSet<Binary>();
+        expected.add(binaryKey(1, 1));
+        expected.add(binaryKey(3, 1));
+        expected.add(binaryKey(3, 3));
+        assertEquals(expected, index.floorSet(candidates, TransactionId.END_OF_TIME));
+
+        index.updateIndex(3, tid(2), true);
+        index.updateIndex(3, tid(3), true);
+        expected.remove(binaryKey(3, 1));
+        assertEquals(expected, index.floorSet(candidates, TransactionId.END_OF_TIME));
+
+        index.removeFromIndex(3, tid(3));
+        expected.remove(binaryKey(3, 3));
+        assertEquals(expected, index.floorSet(candidates, TransactionId.END_OF_TIME));
+        candidates.add(binaryKey(3, 2));
+        expected.add(binaryKey(3, 2));
+        assertEquals(expected, index.floorSet(candidates, TransactionId.END_OF_TIME));
+    }
+
+    /**
+     * Random inserts, commits and removes compared with a walk of each version line.
+     */
+    @Test
+    public void testRandomOperations() {
+        Random random = new Random(42);
+        MVCCIndex<Integer> index = new MVCCIndex<Integer>(StubBackingMapContext.create(PARTITIONS));
+        List<List<Long>> versions = new ArrayList<List<Long>>();
+        for (int k = 0; k < KEYS; k++) {
+            versions.add(new ArrayList<Long>());
+        }
+        Set<Binary> candidates = new HashSet<Binary>();
+        for (long v = 1; v < 5000; v++) {
+            int key = random.nextInt(KEYS);
+            List<Long> keyVersions = versions.get(key);
+            int op = random.nextInt(4);
+            if (op < 2 || keyVersions.isEmpty()) {
+                index.addToIndex(key, tid(v), binaryKey(key, v), random.nextBoolean(), random.nextInt(5) == 0);
+                keyVersions.add(v);
+                candidates.add(binaryKey(key, v));
+            } else if (op == 2) {
+                index.updateIndex(key, tid(keyVersions.get(random.nextInt(keyVersions.size()))), true);
+            } else {
+                Long removed = keyVersions.remove(random.nextInt(keyVersions.size()));
+                index.removeFromIndex(key, tid(removed));
+                if (random.nextBoolean()) {
+                    candidates.remove(binaryKey(key, removed));
+                }
+            }
+            assertEquals(walk(index, candidates), index.floorSet(candidates, TransactionId.END_OF_TIME));
+        }
+        assertTrue(!candidates.isEmpty());
+    }
+
+    /**
+     * @param index the index
+     * @param candidates candidate version keys
+     * @return the current versions of all keys found by walking each line, restricted to the candidates
+     */
+    private static Set<Binary> walk(final MVCCIndex<Integer> index, final Set<Binary> candidates) {
+        Set<Binary> result = new HashSet<Binary>();
+        for (int key = 0; key < KEYS; key++) {
+            Entry<TransactionId, IndexEntry> entry = index.floorEntry(key, TransactionId.END_OF_TIME);
+            while (entry != null) {
+                if (!entry.getValue().isDeleted() && candidates.contains(entry.getValue().getBinaryKey())) {
+                    result.add(entry.getValue().getBinaryKey());
+                }
+                if (entry.getValue().isCommitted()) {
+                    break;
+                }
+                entry = index.lowerEntry(key, entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param version version number
+     * @return transaction id for the version
+     */
+    private static TransactionId tid(final long version) {
+        return new TransactionId(BASETIME + version, 0, 0);
+    }
+
+    /**
+     * @param key logical key
+     * @param version version number
+     * @return binary key for the version
+     */
+    private static Binary binaryKey(final int key, final long version) {
+        return new Binary(new byte[] { (byte) key, (byte) (version >>> 24), (byte) (version >>> 16),
+                (byte) (version >>> 8), (byte) version });
+    }
+}
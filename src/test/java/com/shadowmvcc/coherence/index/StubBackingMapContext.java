@@ -0,0 +1,104 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.index;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import com.tangosol.net.BackingMapContext;
+import com.tangosol.net.BackingMapManagerContext;
+import com.tangosol.util.Converter;
+
+/**
+ * Minimal {@link BackingMapContext} for testing {@link MVCCIndex} outside a cluster. Keys are
+ * assigned to partitions by hash code and may be converted by a supplied converter; all other
+ * methods return null, false or zero.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public final class StubBackingMapContext {
+
+    /**
+     * Private constructor for utility class.
+     */
+    private StubBackingMapContext() {
+    }
+
+    /**
+     * @param partitionCount number of partitions
+     * @return a backing map context
+     */
+    public static BackingMapContext create(final int partitionCount) {
+        return create(partitionCount, null);
+    }
+
+    /**
+     * @param partitionCount number of partitions
+     * @param keyFromInternalConverter converter from binary to object keys, or null
+     * @return a backing map context
+     */
+    public static BackingMapContext create(final int partitionCount, final Converter keyFromInternalConverter) {
+        final BackingMapManagerContext managerContext = (BackingMapManagerContext) Proxy.newProxyInstance(
+                StubBackingMapContext.class.getClassLoader(), new Class<?>[] { BackingMapManagerContext.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (method.getName().equals("getKeyPartition")) {
+                            return (args[0].hashCode() & Integer.MAX_VALUE) % partitionCount;
+                        }
+                        if (method.getName().equals("getKeyFromInternalConverter")) {
+                            return keyFromInternalConverter;
+                        }
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+        return (BackingMapContext) Proxy.newProxyInstance(
+                StubBackingMapContext.class.getClassLoader(), new Class<?>[] { BackingMapContext.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (method.getName().equals("getManagerContext")) {
+                            return managerContext;
+                        }
+                        return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    /**
+     * @param type a method return type
+     * @return the default value of the type
+     */
+    private static Object defaultValue(final Class<?> type) {
+        if (type == boolean.class) {
+            return Boolean.FALSE;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
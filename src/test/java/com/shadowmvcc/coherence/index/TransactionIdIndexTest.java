@@ -0,0 +1,184 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.domain.Constants;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.tangosol.util.Binary;
+import com.tangosol.util.MapIndex;
+import com.tangosol.util.filter.EqualsFilter;
+import com.tangosol.util.filter.InFilter;
+
+/**
+ * Test {@link TransactionIdIndex}, and its use in resolving the filters
+ * used to find the versions written by a transaction.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class TransactionIdIndexTest {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+
+    private TransactionIdIndex index;
+    private Map<Object, MapIndex> indexes;
+    private Set<Binary> allKeys;
+
+    /**
+     * Create an index of three transactions with two, one and three versions.
+     */
+    @Before
+    public void setUp() {
+        index = new TransactionIdIndex(null);
+        indexes = new HashMap<Object, MapIndex>();
+        indexes.put(Constants.TRANSACTIONIDEXTRACTOR, index);
+        allKeys = new HashSet<Binary>();
+        add(1, 1);
+        add(1, 2);
+        add(2, 3);
+        add(3, 4);
+        add(3, 5);
+        add(3, 6);
+    }
+
+    /**
+     * Versions are removed, and a transaction with no remaining versions is dropped from the index.
+     */
+    @Test
+    public void testRemove() {
+        index.removeFromIndex(tid(2), binaryKey(3));
+        index.removeFromIndex(tid(1), binaryKey(1));
+        index.removeFromIndex(tid(4), binaryKey(1));
+
+        assertNull(index.getIndexContents().get(tid(2)));
+        assertEquals(Collections.singleton(binaryKey(2)), index.getIndexContents().get(tid(1)));
+        assertEquals(2, index.getIndexContents().size());
+    }
+
+    /**
+     * An {@code EqualsFilter} on the transaction id resolves to the keys of that transaction.
+     */
+    @Test
+    public void testEqualsFilter() {
+        Set<Binary> candidates = new HashSet<Binary>(allKeys);
+        assertNull(new EqualsFilter(Constants.TRANSACTIONIDEXTRACTOR, tid(1)).applyIndex(indexes, candidates));
+        assertEquals(new HashSet<Binary>(Arrays.asList(binaryKey(1), binaryKey(2))), candidates);
+
+        candidates = new HashSet<Binary>(allKeys);
+        assertNull(new EqualsFilter(Constants.TRANSACTIONIDEXTRACTOR, tid(4)).applyIndex(indexes, candidates));
+        assertEquals(0, candidates.size());
+    }
+
+    /**
+     * An {@code InFilter} on the transaction id resolves to the keys of all the transactions.
+     */
+    @Test
+    public void testInFilter() {
+        Set<Binary> candidates = new HashSet<Binary>(allKeys);
+        Set<TransactionId> tids = new HashSet<TransactionId>(Arrays.asList(tid(2), tid(3), tid(4)));
+        assertNull(new InFilter(Constants.TRANSACTIONIDEXTRACTOR, tids).applyIndex(indexes, candidates));
+        assertEquals(new HashSet<Binary>(Arrays.asList(binaryKey(3), binaryKey(4), binaryKey(5), binaryKey(6))),
+                candidates);
+    }
+
+    /**
+     * Two threads add and remove versions of the same transaction, so its key set
+     * is repeatedly emptied and discarded. No add may be lost.
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testAddRacingRemoval() throws InterruptedException {
+        final TransactionIdIndex raceIndex = new TransactionIdIndex(null);
+        final int iterations = 100000;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 2; t++) {
+            final Binary key = binaryKey(t);
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < iterations; i++) {
+                        raceIndex.addToIndex(tid(1), key);
+                        raceIndex.removeFromIndex(tid(1), key);
+                    }
+                    raceIndex.addToIndex(tid(1), key);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(new HashSet<Binary>(Arrays.asList(binaryKey(0), binaryKey(1))),
+                raceIndex.getIndexContents().get(tid(1)));
+    }
+
+    /**
+     * @param version transaction number
+     * @param key key number
+     */
+    private void add(final long version, final int key) {
+        index.addToIndex(tid(version), binaryKey(key));
+        allKeys.add(binaryKey(key));
+    }
+
+    /**
+     * @param version transaction number
+     * @return transaction id for the version
+     */
+    private static TransactionId tid(final long version) {
+        return new TransactionId(BASETIME + version, 0, 0);
+    }
+
+    /**
+     * @param key key number
+     * @return binary key
+     */
+    private static Binary binaryKey(final int key) {
+        return new Binary(new byte[] { (byte) (key >>> 8), (byte) key });
+    }
+}
@@ -0,0 +1,244 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute
+it and/or modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation, either version 3 of the
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it
+will be useful, but WITHOUT ANY WARRANTY; without even the implied
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See
+the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.index.MVCCIndex.IndexEntry;
+import com.tangosol.util.Binary;
+
+/**
+ * Test the packed version line against a reference {@link TreeMap}.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class VersionLineTest {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+
+    /**
+     * Navigation on an empty line.
+     */
+    @Test
+    public void testEmpty() {
+        VersionLine line = new VersionLine();
+        TransactionId ts = new TransactionId(BASETIME, 0, 0);
+        assertTrue(line.isEmpty());
+        assertNull(line.firstEntry());
+        assertNull(line.lastEntry());
+        assertNull(line.floorEntry(ts));
+        assertNull(line.lowerEntry(ts));
+        assertNull(line.higherEntry(ts));
+        assertNull(line.ceilingKey(ts));
+        assertNull(line.lastKey());
+    }
+
+    /**
+     * Flags and keys follow their versions as others are inserted and removed around them.
+     */
+    @Test
+    public void testFlagsFollowVersions() {
+        VersionLine line = new VersionLine();
+        TransactionId ts1 = new TransactionId(BASETIME, 0, 0);
+        TransactionId ts2 = new TransactionId(BASETIME, 0, 1);
+        TransactionId ts3 = new TransactionId(BASETIME, 1, 0);
+        line.put(ts3, false, true, binaryKey(3));
+        line.put(ts1, true, false, binaryKey(1));
+        line.put(ts2, false, false, binaryKey(2));
+
+        Entry<TransactionId, IndexEntry> entry = line.floorEntry(ts3);
+        assertEquals(ts3, entry.getKey());
+        assertFalse(entry.getValue().isCommitted());
+        assertTrue(entry.getValue().isDeleted());
+        assertEquals(binaryKey(3), entry.getValue().getBinaryKey());
+
+        line.commit(ts3);
+        line.remove(ts2);
+
+        entry = line.lowerEntry(ts3);
+        assertEquals(ts1, entry.getKey());
+        assertTrue(entry.getValue().isCommitted());
+        assertFalse(entry.getValue().isDeleted());
+
+        entry = line.higherEntry(ts1);
+        assertEquals(ts3, entry.getKey());
+        assertTrue(entry.getValue().isCommitted());
+        assertTrue(entry.getValue().isDeleted());
+        assertEquals(binaryKey(3), entry.getValue().getBinaryKey());
+    }
+
+    /**
+     * Random operations either side of the tree threshold give the same results
+     * as a {@link TreeMap}.
+     */
+    @Test
+    public void testAgainstTreeMap() {
+        Random random = new Random(42);
+        for (int run = 0; run < 50; run++) {
+            VersionLine line = new VersionLine();
+            NavigableMap<TransactionId, IndexEntry> reference = new TreeMap<TransactionId, IndexEntry>();
+            int maxVersions = run % 2 == 0 ? VersionLine.TREE_THRESHOLD : VersionLine.TREE_THRESHOLD * 3;
+            for (int op = 0; op < 500; op++) {
+                TransactionId ts = randomTid(random, maxVersions);
+                switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    boolean committed = random.nextBoolean();
+                    boolean deleted = random.nextBoolean();
+                    Binary binaryKey = binaryKey(random.nextInt());
+                    line.put(ts, committed, deleted, binaryKey);
+                    reference.put(ts, new IndexEntry(committed, deleted, binaryKey));
+                    break;
+                case 2:
+                    line.commit(ts);
+                    IndexEntry current = reference.get(ts);
+                    if (current != null) {
+                        reference.put(ts, new IndexEntry(true, current.isDeleted(), current.getBinaryKey()));
+                    }
+                    break;
+                default:
+                    line.remove(ts);
+                    reference.remove(ts);
+                }
+                assertSameNavigation(reference, line, randomTid(random, maxVersions));
+            }
+        }
+    }
+
+    /**
+     * A line converted to a tree is packed again once purged to the pack threshold,
+     * and its versions are unchanged.
+     */
+    @Test
+    public void testPackedAfterPurge() {
+        VersionLine line = new VersionLine();
+        NavigableMap<TransactionId, IndexEntry> reference = new TreeMap<TransactionId, IndexEntry>();
+        for (int i = 0; i <= VersionLine.TREE_THRESHOLD; i++) {
+            TransactionId ts = new TransactionId(BASETIME + i, 0, 0);
+            line.put(ts, i % 2 == 0, i % 3 == 0, binaryKey(i));
+            reference.put(ts, new IndexEntry(i % 2 == 0, i % 3 == 0, binaryKey(i)));
+        }
+        assertTrue(line.isTree());
+
+        int i = 0;
+        while (reference.size() > VersionLine.PACK_THRESHOLD + 1) {
+            TransactionId ts = new TransactionId(BASETIME + i++, 0, 0);
+            line.remove(ts);
+            reference.remove(ts);
+            assertTrue(line.isTree());
+        }
+        TransactionId ts = new TransactionId(BASETIME + i, 0, 0);
+        line.remove(ts);
+        reference.remove(ts);
+        assertFalse(line.isTree());
+        for (TransactionId navigate : reference.keySet()) {
+            assertSameNavigation(reference, line, navigate);
+        }
+    }
+
+    /**
+     * Snapshot purge returns all but the most recent version in the range.
+     */
+    @Test
+    public void testSnapshotPurge() {
+        for (int versions : new int[] { 5, VersionLine.TREE_THRESHOLD + 5 }) {
+            VersionLine line = new VersionLine();
+            for (int i = 0; i < versions; i++) {
+                line.put(new TransactionId(BASETIME + i, 0, 0), true, false, binaryKey(i));
+            }
+            Set<Binary> result = new HashSet<Binary>();
+            line.collectSnapshotPurge(new TransactionId(BASETIME + 1, 0, 0),
+                    new TransactionId(BASETIME + 4, 0, 0), result);
+            Set<Binary> expected = new HashSet<Binary>();
+            expected.add(binaryKey(2));
+            expected.add(binaryKey(3));
+            assertEquals(expected, result);
+        }
+    }
+
+    /**
+     * Check all the navigation methods agree with the reference map.
+     * @param reference the reference map
+     * @param line the line under test
+     * @param ts the transaction id to navigate from
+     */
+    private static void assertSameNavigation(final NavigableMap<TransactionId, IndexEntry> reference,
+            final VersionLine line, final TransactionId ts) {
+        assertEquals(reference.isEmpty(), line.isEmpty());
+        assertSameEntry(reference.firstEntry(), line.firstEntry());
+        assertSameEntry(reference.lastEntry(), line.lastEntry());
+        assertSameEntry(reference.floorEntry(ts), line.floorEntry(ts));
+        assertSameEntry(reference.lowerEntry(ts), line.lowerEntry(ts));
+        assertSameEntry(reference.higherEntry(ts), line.higherEntry(ts));
+        assertEquals(reference.ceilingKey(ts), line.ceilingKey(ts));
+        assertEquals(reference.isEmpty() ? null : reference.lastKey(), line.lastKey());
+    }
+
+    /**
+     * @param expected expected entry
+     * @param actual actual entry
+     */
+    private static void assertSameEntry(final Entry<TransactionId, IndexEntry> expected,
+            final Entry<TransactionId, IndexEntry> actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertEquals(expected.getKey(), actual.getKey());
+        assertEquals(expected.getValue().isCommitted(), actual.getValue().isCommitted());
+        assertEquals(expected.getValue().isDeleted(), actual.getValue().isDeleted());
+        assertEquals(expected.getValue().getBinaryKey(), actual.getValue().getBinaryKey());
+    }
+
+    /**
+     * @param random random source
+     * @param range number of distinct ids to choose from
+     * @return a transaction id
+     */
+    private static TransactionId randomTid(final Random random, final int range) {
+        int n = random.nextInt(range);
+        return new TransactionId(BASETIME + n / 4, n % 2, n / 2 % 2);
+    }
+
+    /**
+     * @param i seed value
+     * @return a distinct binary for the value
+     */
+    private static Binary binaryKey(final int i) {
+        return new Binary(new byte[] { (byte) (i >>> 24), (byte) (i >>> 16), (byte) (i >>> 8), (byte) i });
+    }
+}
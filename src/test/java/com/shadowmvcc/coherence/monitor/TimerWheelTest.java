@@ -0,0 +1,139 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.monitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link TimerWheel} used to schedule transaction timeouts.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class TimerWheelTest {
+
+    private static final long TICK = 100L;
+    private static final int SLOTS = 8;
+    private static final long START = 1000000L;
+
+    /**
+     * A key expires at the first call to expire at or after its deadline, and only once.
+     */
+    @Test
+    public void testExpireAtDeadline() {
+        TimerWheel<String, String> wheel = new TimerWheel<String, String>(TICK, SLOTS, START);
+        wheel.schedule("a", "open", START + 250);
+
+        assertTrue(wheel.expire(START + 200).isEmpty());
+        assertTrue(wheel.expire(START + 249).isEmpty());
+        assertEquals(Collections.singletonMap("a", "open"), wheel.expire(START + 305));
+        assertTrue(wheel.expire(START + 400).isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Scheduling a key again replaces the previous schedule, and a cancelled key does not expire.
+     */
+    @Test
+    public void testRescheduleAndCancel() {
+        TimerWheel<String, String> wheel = new TimerWheel<String, String>(TICK, SLOTS, START);
+        wheel.schedule("a", "open", START + 100);
+        wheel.schedule("b", "open", START + 100);
+        wheel.schedule("a", "committing", START + 500);
+        wheel.cancel("b");
+        assertEquals(1, wheel.size());
+
+        assertTrue(wheel.expire(START + 300).isEmpty());
+        assertEquals(Collections.singletonMap("a", "committing"), wheel.expire(START + 500));
+    }
+
+    /**
+     * A key scheduled with a deadline that has passed expires at the next tick.
+     */
+    @Test
+    public void testPastDeadline() {
+        TimerWheel<String, String> wheel = new TimerWheel<String, String>(TICK, SLOTS, START);
+        wheel.expire(START + 1000);
+        wheel.schedule("a", "rollingback", START);
+
+        assertTrue(wheel.expire(START + 1050).isEmpty());
+        assertEquals(Collections.singletonMap("a", "rollingback"), wheel.expire(START + 1100));
+    }
+
+    /**
+     * Deadlines more than one revolution of the wheel ahead are not expired early, and
+     * a gap of more than one revolution between calls expires everything due.
+     */
+    @Test
+    public void testBeyondOneRevolution() {
+        TimerWheel<String, String> wheel = new TimerWheel<String, String>(TICK, SLOTS, START);
+        long far = START + TICK * SLOTS * 3 + 50;
+        wheel.schedule("far", "open", far);
+        wheel.schedule("near", "open", START + 50);
+
+        for (long now = START + TICK; now < far; now += TICK) {
+            Map<String, String> expired = wheel.expire(now);
+            assertTrue(expired.isEmpty() || expired.keySet().equals(Collections.singleton("near")));
+        }
+        assertEquals(Collections.singletonMap("far", "open"), wheel.expire(far + TICK));
+
+        wheel.schedule("a", "open", far + 2 * TICK);
+        wheel.schedule("b", "open", far + 5 * TICK);
+        assertEquals(2, wheel.expire(far + TICK * SLOTS * 10).size());
+    }
+
+    /**
+     * A waiting thread is released when a key is scheduled on an empty wheel, and
+     * when woken explicitly. A wake up with no thread waiting is not lost.
+     * @throws InterruptedException if interrupted
+     */
+    @Test(timeout = 5000)
+    public void testAwait() throws InterruptedException {
+        final TimerWheel<String, String> wheel = new TimerWheel<String, String>(
+                TICK, SLOTS, System.currentTimeMillis());
+
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    wheel.await();
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+        waiter.start();
+        Thread.sleep(100);
+        wheel.schedule("a", "open", System.currentTimeMillis() + 60000);
+        waiter.join();
+
+        wheel.clear();
+        wheel.wakeUp();
+        wheel.await();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.pof;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.domain.EventValue;
+import com.shadowmvcc.coherence.domain.IsolationLevel;
+import com.shadowmvcc.coherence.domain.ProcessorResult;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.VersionCacheKey;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.shadowmvcc.coherence.index.MVCCSurfaceFilter;
+import com.shadowmvcc.coherence.invocable.MVCCEntryProcessorWrapper;
+import com.shadowmvcc.coherence.invocable.MVCCReadOnlyEntryProcessorWrapper;
+import com.shadowmvcc.coherence.transaction.internal.ExistenceCheckProcessor;
+import com.shadowmvcc.coherence.transaction.internal.ReadMarkingProcessor;
+
+/**
+ * A typical instance of each of the classes sent with every cache operation, shared by
+ * {@link HotPathSerialisationTest} and the serialisation benchmark. Wrapped entry processors
+ * delegate to one of our own processors, so the serialised sizes do not depend on the
+ * type ids Coherence assigns to its own classes.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public final class HotPathSamples {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+    private static final TransactionId TRANSACTIONID = new TransactionId(BASETIME + 17, 124, 457);
+    private static final CacheName CACHENAME = new CacheName("acachename");
+    private static final Map<String, Object> SAMPLES = createSamples();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private HotPathSamples() {
+    }
+
+    /**
+     * @return the samples, by name, in a fixed order
+     */
+    public static Map<String, Object> getSamples() {
+        return SAMPLES;
+    }
+
+    /**
+     * @param name the sample name
+     * @return the sample
+     */
+    public static Object getSample(final String name) {
+        Object sample = SAMPLES.get(name);
+        if (sample == null) {
+            throw new IllegalArgumentException("no sample " + name);
+        }
+        return sample;
+    }
+
+    /**
+     * @return the samples by name
+     */
+    private static Map<String, Object> createSamples() {
+        Map<String, Object> samples = new LinkedHashMap<String, Object>();
+        samples.put("TransactionId", TRANSACTIONID);
+        samples.put("VersionedKey", new VersionedKey<String>("ABC", TRANSACTIONID));
+        samples.put("CacheName", CACHENAME);
+        samples.put("VersionCacheKey",
+                new VersionCacheKey<String>(CACHENAME, new VersionedKey<String>("ABC", TRANSACTIONID)));
+        samples.put("ProcessorResultWait",
+                new ProcessorResult<String, Integer>(CACHENAME, new VersionedKey<String>("ABC", TRANSACTIONID)));
+        Map<CacheName, Set<Object>> keysChanged = new HashMap<CacheName, Set<Object>>();
+        keysChanged.put(CACHENAME, new HashSet<Object>(Arrays.asList(1, 2, 3)));
+        samples.put("ProcessorResultChanged", new ProcessorResult<String, Integer>(99, keysChanged, true));
+        samples.put("EventValue", new EventValue<String>(true, false, "a value"));
+        samples.put("MVCCEntryProcessorWrapper", new MVCCEntryProcessorWrapper<String, Object>(
+                TRANSACTIONID, new ExistenceCheckProcessor(), IsolationLevel.serializable, false, CACHENAME));
+        samples.put("MVCCReadOnlyEntryProcessorWrapper", new MVCCReadOnlyEntryProcessorWrapper<String, Object>(
+                TRANSACTIONID, new ExistenceCheckProcessor(), IsolationLevel.serializable, CACHENAME));
+        samples.put("ReadMarkingProcessor",
+                new ReadMarkingProcessor<String>(TRANSACTIONID, IsolationLevel.serializable, CACHENAME, true));
+        samples.put("MVCCSurfaceFilter",
+                new MVCCSurfaceFilter<Integer>(TRANSACTIONID, new HashSet<Integer>(Arrays.asList(1, 2, 3))));
+        return Collections.unmodifiableMap(samples);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.pof;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.domain.IsolationLevel;
+import com.tangosol.io.pof.ConfigurablePofContext;
+import com.tangosol.util.Binary;
+import com.tangosol.util.ExternalizableHelper;
+
+/**
+ * Test the hand-written serializers of the classes sent with every cache operation. Each
+ * deserialised object must serialise to exactly the bytes it was read from, so no state is
+ * lost or defaulted in the round trip, and to the number of bytes recorded in the
+ * committed baseline, so that a change in size is noticed.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class HotPathSerialisationTest {
+
+    private static final String BASELINE = "hot-path-serialised-sizes.properties";
+
+    private ConfigurablePofContext pofContext;
+
+    /**
+     * Initialise POF context.
+     */
+    @Before
+    public void setUp() {
+        pofContext = new ConfigurablePofContext("mvcc-pof-config.xml");
+    }
+
+    /**
+     * TransactionId.
+     */
+    @Test
+    public void testTransactionId() {
+        assertRoundTrip("TransactionId");
+    }
+
+    /**
+     * VersionedKey.
+     */
+    @Test
+    public void testVersionedKey() {
+        assertRoundTrip("VersionedKey");
+    }
+
+    /**
+     * CacheName.
+     */
+    @Test
+    public void testCacheName() {
+        assertRoundTrip("CacheName");
+    }
+
+    /**
+     * VersionCacheKey.
+     */
+    @Test
+    public void testVersionCacheKey() {
+        assertRoundTrip("VersionCacheKey");
+    }
+
+    /**
+     * ProcessorResult for an uncommitted entry.
+     */
+    @Test
+    public void testProcessorResultWait() {
+        assertRoundTrip("ProcessorResultWait");
+    }
+
+    /**
+     * ProcessorResult for a change.
+     */
+    @Test
+    public void testProcessorResultChanged() {
+        assertRoundTrip("ProcessorResultChanged");
+    }
+
+    /**
+     * EventValue.
+     */
+    @Test
+    public void testEventValue() {
+        assertRoundTrip("EventValue");
+    }
+
+    /**
+     * MVCCEntryProcessorWrapper.
+     */
+    @Test
+    public void testMVCCEntryProcessorWrapper() {
+        assertRoundTrip("MVCCEntryProcessorWrapper");
+    }
+
+    /**
+     * MVCCReadOnlyEntryProcessorWrapper.
+     */
+    @Test
+    public void testMVCCReadOnlyEntryProcessorWrapper() {
+        assertRoundTrip("MVCCReadOnlyEntryProcessorWrapper");
+    }
+
+    /**
+     * ReadMarkingProcessor.
+     */
+    @Test
+    public void testReadMarkingProcessor() {
+        assertRoundTrip("ReadMarkingProcessor");
+    }
+
+    /**
+     * MVCCSurfaceFilter.
+     */
+    @Test
+    public void testMVCCSurfaceFilter() {
+        assertRoundTrip("MVCCSurfaceFilter");
+    }
+
+    /**
+     * Each sample serialises to the size recorded in the baseline, and every sample has a baseline.
+     * @throws IOException if the baseline cannot be read
+     */
+    @Test
+    public void testSerialisedSizes() throws IOException {
+        Properties baseline = new Properties();
+        InputStream baselineStream = getClass().getClassLoader().getResourceAsStream(BASELINE);
+        assertNotNull(BASELINE, baselineStream);
+        try {
+            baseline.load(baselineStream);
+        } finally {
+            baselineStream.close();
+        }
+        Map<String, Object> samples = HotPathSamples.getSamples();
+        assertEquals(samples.keySet(), baseline.stringPropertyNames());
+        for (Map.Entry<String, Object> sample : samples.entrySet()) {
+            int size = ExternalizableHelper.toBinary(sample.getValue(), pofContext).length();
+            assertEquals(sample.getKey() + " serialised size differs from " + BASELINE,
+                    Integer.parseInt(baseline.getProperty(sample.getKey())), size);
+        }
+    }
+
+    /**
+     * The isolation level is written as its ordinal, so the order of the constants is
+     * part of the wire format and must not change.
+     */
+    @Test
+    public void testIsolationLevelOrdinals() {
+        assertEquals(Arrays.asList(IsolationLevel.readUncommitted, IsolationLevel.readCommitted,
+                IsolationLevel.repeatableRead, IsolationLevel.serializable, IsolationLevel.readProhibited),
+                Arrays.asList(IsolationLevel.values()));
+    }
+
+    /**
+     * Check that a sample deserialises to an object with the same serialised form.
+     * @param name the sample name
+     */
+    private void assertRoundTrip(final String name) {
+        Binary binary = ExternalizableHelper.toBinary(HotPathSamples.getSample(name), pofContext);
+        assertEquals(name, binary, ExternalizableHelper.toBinary(
+                ExternalizableHelper.fromBinary(binary, pofContext), pofContext));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.pof;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.tangosol.io.pof.SimplePofContext;
+import com.tangosol.util.ExternalizableHelper;
+
+/**
+ * Test {@link TransactionIdSerializer}.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class TransactionIdSerializerTest {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+
+    private SimplePofContext pofContext;
+
+    /**
+     * Create the POF context.
+     */
+    @Before
+    public void setUp() {
+        pofContext = new SimplePofContext();
+        pofContext.registerUserType(1002, TransactionId.class, new TransactionIdSerializer());
+    }
+
+    /**
+     * Transaction ids round trip.
+     */
+    @Test
+    public void testRoundTrip() {
+        TransactionId tid = new TransactionId(BASETIME, 12, 34);
+        assertEquals(tid, ExternalizableHelper.fromBinary(ExternalizableHelper.toBinary(tid, pofContext), pofContext));
+    }
+
+    /**
+     * The sentinel ids deserialise to the shared instances.
+     */
+    @Test
+    public void testSentinels() {
+        assertSame(TransactionId.BIG_BANG, ExternalizableHelper.fromBinary(
+                ExternalizableHelper.toBinary(new TransactionId(0L, 0, 0), pofContext), pofContext));
+        assertSame(TransactionId.END_OF_TIME, ExternalizableHelper.fromBinary(
+                ExternalizableHelper.toBinary(TransactionId.END_OF_TIME, pofContext), pofContext));
+    }
+}
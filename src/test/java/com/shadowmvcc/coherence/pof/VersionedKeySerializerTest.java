@@ -0,0 +1,168 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute
+it and/or modify it under the terms of the GNU General Public License
+as published by the Free Software Foundation, either version 3 of the
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it
+will be useful, but WITHOUT ANY WARRANTY; without even the implied
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See
+the GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.pof;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.tangosol.io.pof.SimplePofContext;
+import com.tangosol.util.Binary;
+import com.tangosol.util.ExternalizableHelper;
+
+/**
+ * Test both formats of {@link VersionedKey} serialisation, and reading the transaction id
+ * and logical key from the binary format.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class VersionedKeySerializerTest {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+
+    private SimplePofContext pofPofContext;
+    private SimplePofContext binaryPofContext;
+
+    /**
+     * Create a POF context for each format.
+     */
+    @Before
+    public void setUp() {
+        pofPofContext = createContext(false);
+        binaryPofContext = createContext(true);
+    }
+
+    /**
+     * @param binary true for the binary transaction id format
+     * @return a POF context using the given format
+     */
+    private static SimplePofContext createContext(final boolean binary) {
+        SimplePofContext context = new SimplePofContext();
+        context.registerUserType(1001, TransactionId.class, new TransactionIdSerializer());
+        context.registerUserType(1003, VersionedKey.class, new VersionedKeySerializer(binary));
+        return context;
+    }
+
+    /**
+     * Both formats round trip, and either can be read by a serializer configured for the other.
+     */
+    @Test
+    public void testRoundTrip() {
+        VersionedKey<String> key = new VersionedKey<String>("a key", new TransactionId(BASETIME, 12, 34));
+        Binary pofKey = ExternalizableHelper.toBinary(key, pofPofContext);
+        Binary binaryKey = ExternalizableHelper.toBinary(key, binaryPofContext);
+        assertEquals(key, ExternalizableHelper.fromBinary(pofKey, pofPofContext));
+        assertEquals(key, ExternalizableHelper.fromBinary(binaryKey, binaryPofContext));
+        assertEquals(key, ExternalizableHelper.fromBinary(pofKey, binaryPofContext));
+        assertEquals(key, ExternalizableHelper.fromBinary(binaryKey, pofPofContext));
+    }
+
+    /**
+     * The transaction id and logical key are read from a binary format key, and not from a POF format key.
+     */
+    @Test
+    public void testSlicing() {
+        TransactionId ts1 = new TransactionId(BASETIME, 12, 34);
+        TransactionId ts2 = new TransactionId(BASETIME + 1, 0, 0);
+        Binary key1v1 = ExternalizableHelper.toBinary(new VersionedKey<String>("key1", ts1), binaryPofContext);
+        Binary key1v2 = ExternalizableHelper.toBinary(new VersionedKey<String>("key1", ts2), binaryPofContext);
+        Binary key2v1 = ExternalizableHelper.toBinary(new VersionedKey<String>("key2", ts1), binaryPofContext);
+
+        assertEquals(ts1, VersionedKeySerializer.getTransactionId(key1v1));
+        assertEquals(ts2, VersionedKeySerializer.getTransactionId(key1v2));
+        assertEquals(VersionedKeySerializer.getLogicalKeyPrefix(key1v1),
+                VersionedKeySerializer.getLogicalKeyPrefix(key1v2));
+        assertFalse(VersionedKeySerializer.getLogicalKeyPrefix(key1v1).equals(
+                VersionedKeySerializer.getLogicalKeyPrefix(key2v1)));
+
+        Binary pofKey = ExternalizableHelper.toBinary(new VersionedKey<String>("key1", ts1), pofPofContext);
+        assertNull(VersionedKeySerializer.getTransactionId(pofKey));
+        assertNull(VersionedKeySerializer.getLogicalKeyPrefix(pofKey));
+    }
+
+    /**
+     * Unsigned byte-wise comparison of encoded transaction ids is the same as
+     * comparison of the transaction ids, and they decode to the original.
+     */
+    @Test
+    public void testEncodingOrder() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            TransactionId ts1 = randomTid(random);
+            TransactionId ts2 = randomTid(random);
+            byte[] enc1 = VersionedKeySerializer.encode(ts1);
+            byte[] enc2 = VersionedKeySerializer.encode(ts2);
+            assertEquals(ts1, VersionedKeySerializer.decode(enc1, 0));
+            assertEquals(Integer.signum(ts1.compareTo(ts2)), Integer.signum(compareUnsigned(enc1, enc2)));
+        }
+    }
+
+    /**
+     * The logical key sliced from a binary format key deserialises to the logical key,
+     * for simple and user type logical keys, and is not available from a POF format key.
+     */
+    @Test
+    public void testLogicalKeySlicing() {
+        TransactionId ts = new TransactionId(BASETIME, 12, 34);
+        Object[] logicalKeys = { "a logical key", 42, new VersionedKey<String>("nested", ts) };
+        for (Object logicalKey : logicalKeys) {
+            Binary binaryKey = ExternalizableHelper.toBinary(
+                    new VersionedKey<Object>(logicalKey, ts), binaryPofContext);
+            Binary sliced = VersionedKeySerializer.getLogicalKeyBinary(binaryKey);
+            assertEquals(logicalKey, ExternalizableHelper.fromBinary(sliced, binaryPofContext));
+        }
+        assertNull(VersionedKeySerializer.getLogicalKeyBinary(
+                ExternalizableHelper.toBinary(new VersionedKey<String>("key1", ts), pofPofContext)));
+    }
+
+    /**
+     * @param random random source
+     * @return a transaction id, including negative components
+     */
+    private static TransactionId randomTid(final Random random) {
+        return new TransactionId(random.nextLong() >> random.nextInt(64), random.nextInt(5) - 2, random.nextInt());
+    }
+
+    /**
+     * @param a first array
+     * @param b second array
+     * @return unsigned lexicographic comparison
+     */
+    private static int compareUnsigned(final byte[] a, final byte[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return 0;
+    }
+}
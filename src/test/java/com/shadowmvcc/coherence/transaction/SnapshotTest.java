@@ -18,7 +18,9 @@ import com.shadowmvcc.coherence.config.ClusterTimeProviderFactory;
 import com.shadowmvcc.coherence.config.OffsettableClusterTimeProvider;
 import com.shadowmvcc.coherence.domain.TransactionId;
 import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.shadowmvcc.coherence.exception.SnapshotCreationException;
 import com.shadowmvcc.coherence.testsupport.AbstractLittlegridTest;
+import com.shadowmvcc.coherence.transaction.internal.ManagerCacheImpl;
 import com.shadowmvcc.coherence.transaction.internal.SnapshotManagerImpl;
 import com.tangosol.net.CacheFactory;
 import com.tangosol.net.NamedCache;
@@ -176,6 +178,112 @@ public class SnapshotTest extends AbstractLittlegridTest {
         
     }
     
+    /**
+     * Populate a cache over a set of transactions, then vacuum it so that only the
+     * latest version of each key remains. A snapshot or temporal view earlier than the vacuum
+     * low watermark is then rejected.
+     * @throws InvocationTargetException 
+     * @throws IllegalAccessException 
+     * @throws NoSuchMethodException 
+     * @throws ClassNotFoundException 
+     */
+    @Test
+    public void testVacuum() throws NoSuchMethodException,
+            IllegalAccessException, InvocationTargetException, ClassNotFoundException {
+        
+        setTimeOffset(0);
+        
+        NamedCache testCache = transactionManager.getCache(TESTCACHENAME.getLogicalName());
+        List<TransactionId> ids = new ArrayList<TransactionId>(COUNTI);
+        
+        for (int i = 0; i < COUNTI; i++) {
+            for (int j = i; j < i + COUNTJ; j++) {
+                testCache.put(j, "testValue");
+            }
+            Transaction transaction = transactionManager.getTransaction();
+            ids.add(transaction.getTransactionId());
+            transaction.commit();
+        }
+        
+        setTimeOffset(500000);
+        
+        ManagerCache managerCache = new ManagerCacheImpl();
+        TransactionId lowWatermark = managerCache.getLowWatermark();
+        Assert.assertTrue(lowWatermark.compareTo(ids.get(COUNTI - 1)) > 0);
+        
+        managerCache.vacuum(TESTCACHENAME, lowWatermark, null);
+        
+        Set<VersionedKey<Integer>> expected = new HashSet<VersionedKey<Integer>>();
+        
+        for (int i = 0; i < COUNTI + COUNTJ - 1; i++) {
+            expected.add(new VersionedKey<Integer>(i, ids.get(i < COUNTI ? i : COUNTI - 1)));
+        }
+        
+        NamedCache versionCache = CacheFactory.getCache(TESTCACHENAME.getVersionCacheName());
+        
+        @SuppressWarnings("unchecked")
+        Set<VersionedKey<Integer>> result = versionCache.keySet();
+        
+        Assert.assertEquals(expected, result);
+        
+        try {
+            snapshotManager.createSnapshot(TESTCACHENAME, ids.get(4).getTimeStampMillis());
+            Assert.fail("snapshot older than vacuum low watermark created");
+        } catch (SnapshotCreationException ex) {
+            // expected
+        }
+        
+        try {
+            transactionManager.getTemporalCacheView(TESTCACHENAME.getLogicalName(), ids.get(4).getTimeStampMillis());
+            Assert.fail("temporal view older than vacuum low watermark created");
+        } catch (TransactionException ex) {
+            // expected
+        }
+    }
+    
+    /**
+     * A read-only transaction does not hold back the vacuum. Once the cache has been vacuumed
+     * past its transaction id, its reads fail rather than return versions that may be missing.
+     * @throws InvocationTargetException 
+     * @throws IllegalAccessException 
+     * @throws NoSuchMethodException 
+     * @throws ClassNotFoundException 
+     */
+    @Test
+    public void testReadAfterVacuum() throws NoSuchMethodException,
+            IllegalAccessException, InvocationTargetException, ClassNotFoundException {
+        
+        setTimeOffset(0);
+        
+        NamedCache testCache = transactionManager.getCache(TESTCACHENAME.getLogicalName());
+        testCache.put(0, "testValue");
+        transactionManager.getTransaction().commit();
+        
+        TransactionManager readOnlyManager = new ThreadTransactionManager(
+                new SystemTimestampSource(), true, false, readCommitted);
+        NamedCache readOnlyCache = readOnlyManager.getCache(TESTCACHENAME.getLogicalName());
+        Assert.assertEquals("testValue", readOnlyCache.get(0));
+        
+        setTimeOffset(500000);
+        
+        ManagerCache managerCache = new ManagerCacheImpl();
+        managerCache.vacuum(TESTCACHENAME, managerCache.getLowWatermark(), null);
+        
+        try {
+            readOnlyCache.get(0);
+            Assert.fail("read older than vacuum watermark succeeded");
+        } catch (TransactionException ex) {
+            // expected
+        }
+        
+        try {
+            readOnlyCache.containsKey(0);
+            Assert.fail("read older than vacuum watermark succeeded");
+        } catch (TransactionException ex) {
+            // expected
+        }
+    }
+    
     /**
      * Set a time offset in all the members.
      * @param offset the offset
@@ -25,8 +25,12 @@ package com.shadowmvcc.coherence.transaction.internal;
 import static com.shadowmvcc.coherence.domain.IsolationLevel.readCommitted;
 import static junit.framework.Assert.assertNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Collections;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -52,6 +56,7 @@ public class EmptyTransactionCacheImplTest extends AbstractLittlegridTest implem
     private TransactionCache transactionCache;
     private static final TransactionId TX = new TransactionId(BASETIME, 0, 0);
     private TransactionExpiryListener expiryListener = new TransactionExpiryListener(this);
+    private final Semaphore expired = new Semaphore(0);
     
     /**
      * Set up the caches.
@@ -141,8 +146,31 @@ public class EmptyTransactionCacheImplTest extends AbstractLittlegridTest implem
 
     }
 
+    /**
+     * The expiry listener is notified when the transaction is set to rolling back
+     * in the grid, and not after it has been unregistered.
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testExpiryNotification() throws InterruptedException {
+
+        TransactionId other = new TransactionId(BASETIME, 1, 0);
+        TransactionExpiryListener otherListener = new TransactionExpiryListener(this);
+        transactionCache.beginTransaction(TX, readCommitted, expiryListener);
+        transactionCache.beginTransaction(other, readCommitted, otherListener);
+
+        basetxcache.invoke(TX, TransactionStateUpdater.ROLLBACK);
+        assertTrue(expired.tryAcquire(10, TimeUnit.SECONDS));
+
+        transactionCache.unregisterExpiryListener(other, otherListener);
+        basetxcache.invoke(other, TransactionStateUpdater.ROLLBACK);
+        assertFalse(expired.tryAcquire(1, TimeUnit.SECONDS));
+
+    }
+
     @Override
     public void setTransactionExpired() {
+        expired.release();
     }
 
 }
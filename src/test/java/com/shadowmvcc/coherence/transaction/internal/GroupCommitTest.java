@@ -0,0 +1,208 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.transaction.internal;
+
+import static com.shadowmvcc.coherence.domain.IsolationLevel.readCommitted;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.cache.internal.UnconditionalPutProcessor;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.VersionedKey;
+import com.shadowmvcc.coherence.index.MVCCExtractor;
+import com.shadowmvcc.coherence.invocable.DecorationExtractorProcessor;
+import com.shadowmvcc.coherence.invocable.MVCCEntryProcessorWrapper;
+import com.shadowmvcc.coherence.testsupport.AbstractLittlegridTest;
+import com.shadowmvcc.coherence.transaction.TransactionException;
+import com.tangosol.net.CacheFactory;
+import com.tangosol.net.NamedCache;
+import com.tangosol.net.partition.PartitionSet;
+import com.tangosol.util.InvocableMap.EntryProcessor;
+
+/**
+ * Test completion of concurrent transactions through a {@link GroupCommitter}.
+ * 
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class GroupCommitTest extends AbstractLittlegridTest implements TransactionExpiryMonitor {
+
+    private static final int TRANSACTIONS = 8;
+    private static final int KEYS = 5;
+    private static final String TESTVALUE = "a test value";
+    private CacheName testCacheName = new CacheName("testcache");
+    private NamedCache testCache;
+    private TransactionCache transactionCache;
+    private TransactionExpiryListener expiryListener = new TransactionExpiryListener(this);
+    
+    /**
+     * Set up the caches and a committer that waits long enough to batch all the test transactions.
+     */
+    @Before
+    public void setup() {
+        GroupCommitter committer = new GroupCommitter(INVOCATIONSERVICENAME, TRANSACTIONS, 1000, 60000);
+        committer.start();
+        transactionCache = new TransactionCacheImpl(INVOCATIONSERVICENAME, committer);
+        testCache = CacheFactory.getCache(testCacheName.getVersionCacheName());
+        testCache.addIndex(MVCCExtractor.INSTANCE, false, null);
+    }
+    
+    /**
+     * Concurrently commit half the transactions and roll back the other half.
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testConcurrentCommitAndRollback() throws InterruptedException {
+        
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        
+        for (int t = 0; t < TRANSACTIONS; t++) {
+            final TransactionId tid = new TransactionId(BASETIME, 0, t);
+            final boolean commit = t % 2 == 0;
+            transactionCache.beginTransaction(tid, readCommitted, expiryListener);
+            final Set<Object> txkeys = new HashSet<Object>();
+            for (int i = 0; i < KEYS; i++) {
+                int key = t * KEYS + i;
+                put(testCacheName, tid, key, TESTVALUE);
+                txkeys.add(key);
+            }
+            threads.add(new Thread() {
+                @SuppressWarnings("unchecked")
+                @Override
+                public void run() {
+                    try {
+                        Map<CacheName, Set<Object>> cacheKeyMap = Collections.singletonMap(testCacheName, txkeys);
+                        if (commit) {
+                            transactionCache.commitTransaction(tid, cacheKeyMap, Collections.EMPTY_MAP);
+                        } else {
+                            transactionCache.rollbackTransaction(tid, cacheKeyMap, Collections.EMPTY_MAP);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+        
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertNull(failure.get());
+        assertEquals(TRANSACTIONS / 2 * KEYS, testCache.size());
+        assertTrue(CacheFactory.getCache(TransactionCache.CACHENAME).isEmpty());
+        
+        for (int t = 0; t < TRANSACTIONS; t += 2) {
+            TransactionId tid = new TransactionId(BASETIME, 0, t);
+            for (int i = 0; i < KEYS; i++) {
+                assertTrue((Boolean) testCache.invoke(new VersionedKey<Integer>(t * KEYS + i, tid),
+                        DecorationExtractorProcessor.COMMITTED_INSTANCE));
+            }
+        }
+    }
+    
+    /**
+     * Committing a transaction that was never begun fails without affecting
+     * a transaction committed in the same batch.
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testFailureIsolatedToTransaction() throws InterruptedException {
+        
+        final TransactionId good = new TransactionId(BASETIME, 0, 1);
+        final TransactionId bad = new TransactionId(BASETIME, 0, 2);
+        transactionCache.beginTransaction(good, readCommitted, expiryListener);
+        put(testCacheName, good, 1, TESTVALUE);
+        
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread goodThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Map<CacheName, Set<Object>> cacheKeyMap = new HashMap<CacheName, Set<Object>>();
+                    cacheKeyMap.put(testCacheName, Collections.<Object>singleton(1));
+                    transactionCache.commitTransaction(good, cacheKeyMap,
+                            Collections.<CacheName, PartitionSet>emptyMap());
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        };
+        goodThread.start();
+        
+        try {
+            transactionCache.commitTransaction(bad, Collections.<CacheName, Set<Object>>emptyMap(),
+                    Collections.<CacheName, PartitionSet>emptyMap());
+            fail("expected TransactionException");
+        } catch (TransactionException e) {
+            // expected
+        }
+        
+        goodThread.join();
+        assertNull(failure.get());
+        assertTrue((Boolean) testCache.invoke(new VersionedKey<Integer>(1, good),
+                DecorationExtractorProcessor.COMMITTED_INSTANCE));
+        assertFalse(CacheFactory.getCache(TransactionCache.CACHENAME).containsKey(good));
+    }
+    
+    /**
+     * Utility function to put a value in uncommitted.
+     * @param cacheName cache name
+     * @param tid transaction id
+     * @param key logical key
+     * @param value value
+     * @param <K> key type
+     * @param <V> value type
+     */
+    private <K, V> void put(final CacheName cacheName, final TransactionId tid, final K key, final V value) {
+        EntryProcessor ep = new MVCCEntryProcessorWrapper<K, V>(
+                tid, new UnconditionalPutProcessor(value, true), readCommitted, false, cacheName);
+        NamedCache keyCache = CacheFactory.getCache(cacheName.getKeyCacheName());
+        keyCache.invoke(key, ep);
+    }
+
+    @Override
+    public void setTransactionExpired() {
+    }
+
+}
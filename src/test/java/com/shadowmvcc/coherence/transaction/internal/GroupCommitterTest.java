@@ -0,0 +1,107 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.transaction.internal;
+
+import static com.shadowmvcc.coherence.domain.TransactionProcStatus.committing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.transaction.TransactionException;
+import com.tangosol.net.partition.PartitionSet;
+
+/**
+ * Test that {@link GroupCommitter} survives failed batches and that callers
+ * do not wait indefinitely. Batch processing is replaced so no cluster is needed.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class GroupCommitterTest {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+    private static final long TIMEOUT = 5000L;
+
+    /**
+     * An error processing a batch fails its transactions and the next batch is still processed.
+     */
+    @Test
+    public void testFailedBatchDoesNotStopCommitter() {
+        final AtomicInteger batches = new AtomicInteger();
+        GroupCommitter committer = new GroupCommitter("unused", 1, 0, TIMEOUT) {
+            @Override
+            void processBatch(final List<GroupCommitter.PendingCompletion> batch) {
+                batches.incrementAndGet();
+                throw new Error("simulated failure");
+            }
+        };
+        committer.start();
+        for (int i = 0; i < 2; i++) {
+            try {
+                complete(committer, i);
+                fail("expected TransactionException");
+            } catch (TransactionException e) {
+                assertEquals(i + 1, batches.get());
+            }
+        }
+    }
+
+    /**
+     * A caller waits no longer than the completion timeout for a batch that does not complete.
+     */
+    @Test(timeout = TIMEOUT)
+    public void testCompletionTimeout() {
+        GroupCommitter committer = new GroupCommitter("unused", 1, 0, 100L) {
+            @Override
+            void processBatch(final List<GroupCommitter.PendingCompletion> batch) {
+            }
+        };
+        committer.start();
+        try {
+            complete(committer, 0);
+            fail("expected TransactionException");
+        } catch (TransactionException e) {
+            return;
+        }
+    }
+
+    /**
+     * Commit a transaction with no affected keys or partitions.
+     * @param committer the committer
+     * @param counter distinguishes the transaction
+     */
+    private static void complete(final GroupCommitter committer, final int counter) {
+        committer.complete(new TransactionId(BASETIME, 0, counter),
+                Collections.<CacheName, Set<Object>>emptyMap(),
+                Collections.<CacheName, PartitionSet>emptyMap(), committing);
+    }
+}
@@ -0,0 +1,273 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.transaction.internal;
+
+import static com.shadowmvcc.coherence.domain.TransactionProcStatus.committing;
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.domain.TransactionProcStatus;
+import com.tangosol.net.CacheFactory;
+import com.tangosol.net.ConfigurableCacheFactory;
+import com.tangosol.net.DistributedCacheService;
+import com.tangosol.net.Invocable;
+import com.tangosol.net.InvocationService;
+import com.tangosol.net.Member;
+import com.tangosol.net.NamedCache;
+import com.tangosol.net.Service;
+import com.tangosol.net.partition.PartitionSet;
+
+/**
+ * Count the requests made by {@link TransactionCacheImpl} to complete a transaction whose keys
+ * are all owned by one member, with and without group commit, and those made by the owning member
+ * in {@link OnePhaseTransactionInvocable}. The caches and services are replaced so no cluster is needed.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class OnePhaseCompletionTest {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+    private static final TransactionId TX = new TransactionId(BASETIME, 0, 0);
+    private static final CacheName CACHENAME = new CacheName("testcache");
+
+    private final AtomicInteger invocations = new AtomicInteger();
+    private final AtomicInteger cacheRequests = new AtomicInteger();
+    private final AtomicInteger groupCompletions = new AtomicInteger();
+    private final Map<String, AtomicInteger> ownerRequests = new HashMap<String, AtomicInteger>();
+    private ConfigurableCacheFactory clientCacheFactory;
+    private Map<CacheName, Set<Object>> cacheKeyMap;
+    private NamedCache cache;
+    private InvocationService invocationService;
+
+    /**
+     * Create the caches and services, with every key owned by the same member.
+     */
+    @Before
+    public void setUp() {
+        final Member owner = (Member) proxy(Member.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                }
+                if (method.getName().equals("hashCode")) {
+                    return 1;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        final DistributedCacheService cacheService = (DistributedCacheService) proxy(DistributedCacheService.class,
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (method.getName().equals("getKeyOwner")) {
+                            return owner;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        cache = (NamedCache) proxy(NamedCache.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if (method.getName().equals("getCacheService")) {
+                    return cacheService;
+                }
+                cacheRequests.incrementAndGet();
+                return null;
+            }
+        });
+        invocationService = (InvocationService) proxy(InvocationService.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if (method.getName().equals("query")) {
+                    invocations.incrementAndGet();
+                    return Collections.singletonMap(owner, Boolean.TRUE);
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        Set<Object> keys = new HashSet<Object>();
+        keys.add(1);
+        keys.add(2);
+        cacheKeyMap = new HashMap<CacheName, Set<Object>>();
+        cacheKeyMap.put(CACHENAME, keys);
+    }
+
+    /**
+     * Restore the cache factory if it was replaced.
+     */
+    @After
+    public void tearDown() {
+        if (clientCacheFactory != null) {
+            CacheFactory.setConfigurableCacheFactory(clientCacheFactory);
+        }
+    }
+
+    /**
+     * Without group commit the client makes the one request to the owning member.
+     */
+    @Test
+    public void testOnePhase() {
+        new StubbedTransactionCache(null).commitTransaction(
+                TX, cacheKeyMap, new HashMap<CacheName, PartitionSet>());
+        assertEquals(1, invocations.get());
+        assertEquals(0, cacheRequests.get());
+    }
+
+    /**
+     * Run the invocable as the owning member would, counting every cache request. The transaction
+     * cache is keyed by transaction id alone, so is not co-located with the changed keys, and the owner
+     * makes two requests to it as well as the one to the version cache, which is local to it.
+     */
+    @Test
+    public void testOnePhaseAllRequests() {
+        clientCacheFactory = CacheFactory.getConfigurableCacheFactory();
+        CacheFactory.setConfigurableCacheFactory((ConfigurableCacheFactory) proxy(ConfigurableCacheFactory.class,
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (method.getName().equals("ensureCache")) {
+                            return ownerCache((String) args[0]);
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                }));
+        invocationService = (InvocationService) proxy(InvocationService.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if (method.getName().equals("query")) {
+                    invocations.incrementAndGet();
+                    Invocable invocable = (Invocable) args[0];
+                    invocable.run();
+                    Member owner = (Member) ((Set<?>) args[1]).iterator().next();
+                    return Collections.singletonMap(owner, invocable.getResult());
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+
+        new StubbedTransactionCache(null).commitTransaction(
+                TX, cacheKeyMap, new HashMap<CacheName, PartitionSet>());
+
+        assertEquals(1, invocations.get());
+        assertEquals(0, cacheRequests.get());
+        assertEquals(2, ownerRequests.get(TransactionCache.CACHENAME).get());
+        assertEquals(1, ownerRequests.get(CACHENAME.getVersionCacheName()).get());
+        assertEquals(2, ownerRequests.size());
+    }
+
+    /**
+     * With group commit the transaction is completed by the group committer, not one phase.
+     */
+    @Test
+    public void testGroupCommitNotBypassed() {
+        GroupCommitter groupCommitter = new GroupCommitter("unused", 2, 0, 0) {
+            @Override
+            public void complete(final TransactionId transactionId,
+                    final Map<CacheName, Set<Object>> keyMap,
+                    final Map<CacheName, PartitionSet> partitionMap,
+                    final TransactionProcStatus transactionStatus) {
+                assertEquals(committing, transactionStatus);
+                groupCompletions.incrementAndGet();
+            }
+
+            @Override
+            void processBatch(final List<GroupCommitter.PendingCompletion> batch) {
+            }
+        };
+        new StubbedTransactionCache(groupCommitter).commitTransaction(
+                TX, cacheKeyMap, new HashMap<CacheName, PartitionSet>());
+        assertEquals(0, invocations.get());
+        assertEquals(0, cacheRequests.get());
+        assertEquals(1, groupCompletions.get());
+    }
+
+    /**
+     * Get a cache for use by the owning member that counts the requests made to it.
+     * @param cacheName name of the cache
+     * @return the cache
+     */
+    private NamedCache ownerCache(final String cacheName) {
+        if (!ownerRequests.containsKey(cacheName)) {
+            ownerRequests.put(cacheName, new AtomicInteger());
+        }
+        final AtomicInteger requests = ownerRequests.get(cacheName);
+        return (NamedCache) proxy(NamedCache.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                requests.incrementAndGet();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * @param type interface to implement
+     * @param handler invocation handler
+     * @return the proxy
+     */
+    private Object proxy(final Class<?> type, final InvocationHandler handler) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    /**
+     * Transaction cache using the stub caches and services.
+     */
+    private class StubbedTransactionCache extends TransactionCacheImpl {
+
+        /**
+         * @param groupCommitter the group committer, or null
+         */
+        public StubbedTransactionCache(final GroupCommitter groupCommitter) {
+            super("unused", groupCommitter);
+        }
+
+        @Override
+        protected NamedCache getCache(final String cacheName) {
+            return cache;
+        }
+
+        @Override
+        protected Service getService(final String serviceName) {
+            return invocationService;
+        }
+    }
+}
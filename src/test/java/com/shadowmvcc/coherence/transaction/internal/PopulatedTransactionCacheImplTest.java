@@ -32,6 +32,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -104,6 +106,60 @@ public class PopulatedTransactionCacheImplTest extends AbstractLittlegridTest im
         
     }
     
+    /**
+     * Commit a transaction whose keys are all owned by one member, which is
+     * completed with a single request to that member.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSingleMemberCommit() {
+        
+        transactionCache.beginTransaction(TX, readCommitted, expiryListener);
+        
+        put(testCacheName, TX, 1, TESTVALUE);
+        Map<CacheName, Set<Object>> cacheKeyMap = new HashMap<CacheName, Set<Object>>();
+        cacheKeyMap.put(testCacheName, Collections.<Object>singleton(1));
+        
+        transactionCache.commitTransaction(TX, cacheKeyMap, Collections.EMPTY_MAP);
+        
+        assertTrue((Boolean) testCache.invoke(
+                new VersionedKey<Integer>(1, TX), DecorationExtractorProcessor.COMMITTED_INSTANCE));
+        assertTrue(CacheFactory.getCache(TransactionCache.CACHENAME).isEmpty());
+    }
+    
+    /**
+     * Commit transaction asynchronously. The transaction is committing when the call
+     * returns and the entries are committed when the future completes.
+     * @throws ExecutionException if the commit completion fails
+     * @throws InterruptedException if interrupted
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testKeyCommitAsync() throws InterruptedException, ExecutionException {
+        
+        transactionCache.beginTransaction(TX, readCommitted, expiryListener);
+        
+        Set<Object> txkeys = new HashSet<Object>();
+        for (int i = 0; i < 10; i++) {
+            put(testCacheName, TX, i, TESTVALUE);
+            txkeys.add(i);
+        }
+        Map<CacheName, Set<Object>> cacheKeyMap = new HashMap<CacheName, Set<Object>>();
+        cacheKeyMap.put(testCacheName, txkeys);
+        
+        Future<Void> completion = transactionCache.commitTransactionAsync(TX, cacheKeyMap, Collections.EMPTY_MAP);
+        completion.get();
+        
+        assertEquals(10, testCache.size());
+        assertTrue(CacheFactory.getCache(TransactionCache.CACHENAME).isEmpty());
+        
+        for (int i = 0; i < 10; i++) {
+            assertTrue((Boolean) testCache.invoke(
+                    new VersionedKey<Integer>(i, TX), DecorationExtractorProcessor.COMMITTED_INSTANCE));
+        }
+        
+    }
+    
     /**
      * Commit transaction with filter, no baggage.
      */
@@ -24,7 +24,11 @@ package com.shadowmvcc.coherence.transaction.internal;
 
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.junit.Before;
@@ -34,6 +38,7 @@ import com.shadowmvcc.coherence.cache.CacheName;
 import com.shadowmvcc.coherence.domain.IsolationLevel;
 import com.shadowmvcc.coherence.domain.TransactionId;
 import com.shadowmvcc.coherence.domain.TransactionProcStatus;
+import com.shadowmvcc.coherence.domain.VersionedKey;
 import com.tangosol.io.pof.ConfigurablePofContext;
 import com.tangosol.net.partition.PartitionSet;
 import com.tangosol.util.Binary;
@@ -71,6 +76,18 @@ public class SerialisationTest {
         assertPofFidelity(obj);
     }
 
+    /**
+     * ReadMarkingProcessor returning matching keys.
+     */
+    @Test
+    public void testReadMarkingProcessorReturningKeys() {
+        ReadMarkingProcessor<Integer> obj = new ReadMarkingProcessor<Integer>(
+                TRANSACTIONID, 
+                IsolationLevel.repeatableRead, new CacheName("acachename"), true);
+
+        assertPofFidelity(obj);
+    }
+
     /**
      * EntryCommitProcessor.
      */
@@ -117,12 +134,45 @@ public class SerialisationTest {
         assertPofFidelity(obj);
     }
     
+    /**
+     * GroupTransactionInvocable for keys.
+     */
+    @Test
+    public void testKeyGroupTransactionInvocable() {
+        Object obj = new GroupTransactionInvocable(new CacheName("test-cache"),
+                Collections.singleton(new VersionedKey<Object>("key", TRANSACTIONID)),
+                TransactionProcStatus.committing);
+        assertPofFidelity(obj);
+    }
+    
+    /**
+     * GroupTransactionInvocable for partitions.
+     */
+    @Test
+    public void testPartitionGroupTransactionInvocable() {
+        Object obj = new GroupTransactionInvocable(new CacheName("test-cache"),
+                Collections.singleton(TRANSACTIONID), new PartitionSet(13), TransactionProcStatus.rollingback);
+        assertPofFidelity(obj);
+    }
+    
+    /**
+     * OnePhaseTransactionInvocable.
+     */
+    @Test
+    public void testOnePhaseTransactionInvocable() {
+        Map<CacheName, Set<Object>> cacheKeyMap = new HashMap<CacheName, Set<Object>>();
+        cacheKeyMap.put(new CacheName("test-cache"), Collections.<Object>singleton("key"));
+        Object obj = new OnePhaseTransactionInvocable(TRANSACTIONID, cacheKeyMap, TransactionProcStatus.committing);
+        assertPofFidelity(obj);
+    }
+    
     /**
      * TransactionStateUpdater.
      */
     @Test
     public void testTransactionStateUpdate() {
         assertPofFidelity(TransactionStateUpdater.COMMIT);
+        assertPofFidelity(TransactionStateUpdater.COMMIT_BATCH);
     }
 
     /**
@@ -0,0 +1,168 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+
+package com.shadowmvcc.coherence.transaction.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.tangosol.net.NamedCache;
+import com.tangosol.util.MapEvent;
+
+/**
+ * Test the subscriptions made by {@link TransactionExpiryHub} and the distribution of events.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class TransactionExpiryHubTest {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+
+    private TransactionExpiryHub hub;
+    private NamedCache cache;
+    private List<Object> registrations;
+    private AtomicInteger registrationCount;
+
+    /**
+     * Create the hub and a transaction cache that records listener registrations.
+     */
+    @Before
+    public void setUp() {
+        hub = new TransactionExpiryHub();
+        registrations = new ArrayList<Object>();
+        registrationCount = new AtomicInteger();
+        cache = (NamedCache) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { NamedCache.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (method.getName().equals("isActive")) {
+                            return true;
+                        }
+                        if (method.getName().equals("addMapListener")) {
+                            registrations.add(args[1]);
+                            registrationCount.incrementAndGet();
+                            return null;
+                        }
+                        if (method.getName().equals("removeMapListener")) {
+                            assertTrue(registrations.remove(args[1]));
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Further transactions of a subscribed manager do not register the listener again.
+     */
+    @Test
+    public void testSubscribeOncePerManager() {
+        hub.addListener(cache, tid(1, 1), listener(new AtomicInteger()));
+        hub.addListener(cache, tid(1, 2), listener(new AtomicInteger()));
+        hub.addListener(cache, tid(2, 1), listener(new AtomicInteger()));
+        hub.addListener(cache, tid(2, 2), listener(new AtomicInteger()));
+        assertEquals(2, registrationCount.get());
+        assertEquals(1, registrations.size());
+        assertEquals(2, hub.getSubscribedManagerIds().size());
+    }
+
+    /**
+     * Manager ids used for a single transaction each, as when waiting on transactions
+     * of other clients, are pruned from the subscription, so it stays bounded.
+     */
+    @Test
+    public void testIdleManagersPruned() {
+        TransactionExpiryListener local = listener(new AtomicInteger());
+        hub.addListener(cache, tid(1, 1), local);
+        for (int managerId = 2; managerId < 200; managerId++) {
+            TransactionExpiryListener foreign = listener(new AtomicInteger());
+            hub.addListener(cache, tid(managerId, 1), foreign);
+            hub.removeListener(tid(managerId, 1), foreign);
+            assertTrue(hub.getSubscribedManagerIds().size() <= TransactionExpiryHub.MAX_IDLE_MANAGERS + 2);
+            assertTrue(hub.getSubscribedManagerIds().contains(1));
+            assertEquals(1, registrations.size());
+        }
+        assertTrue(registrationCount.get() < 200);
+
+        hub.removeListener(tid(1, 1), local);
+        hub.addListener(cache, tid(1, 2), local);
+        assertTrue(hub.getSubscribedManagerIds().contains(1));
+        assertEquals(1, registrations.size());
+    }
+
+    /**
+     * Events are passed only to the listeners of their transaction, and not after removal.
+     */
+    @Test
+    public void testDistribution() {
+        AtomicInteger expired1 = new AtomicInteger();
+        AtomicInteger expired2 = new AtomicInteger();
+        TransactionExpiryListener listener1 = listener(expired1);
+        hub.addListener(cache, tid(1, 1), listener1);
+        hub.addListener(cache, tid(1, 2), listener(expired2));
+
+        hub.entryUpdated(new MapEvent(cache, MapEvent.ENTRY_UPDATED, tid(1, 1), null, null));
+        assertEquals(1, expired1.get());
+        assertEquals(0, expired2.get());
+
+        hub.removeListener(tid(1, 1), listener1);
+        hub.entryUpdated(new MapEvent(cache, MapEvent.ENTRY_UPDATED, tid(1, 1), null, null));
+        assertEquals(1, expired1.get());
+        assertFalse(hub.getSubscribedManagerIds().isEmpty());
+    }
+
+    /**
+     * @param expiries counter of expiry notifications
+     * @return a listener that counts notifications
+     */
+    private static TransactionExpiryListener listener(final AtomicInteger expiries) {
+        return new TransactionExpiryListener(new TransactionExpiryMonitor() {
+            @Override
+            public void setTransactionExpired() {
+                expiries.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * @param managerId manager id
+     * @param sequence transaction sequence within the manager
+     * @return the transaction id
+     */
+    private static TransactionId tid(final int managerId, final int sequence) {
+        return new TransactionId(BASETIME + sequence, managerId, 0);
+    }
+}
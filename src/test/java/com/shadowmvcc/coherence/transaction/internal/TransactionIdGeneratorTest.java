@@ -0,0 +1,138 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.transaction.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.transaction.TimestampSource;
+
+/**
+ * Test the hybrid logical clock of {@link TransactionIdGenerator}.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class TransactionIdGeneratorTest {
+
+    private static final long BASETIME = 40L * 365L * 24L * 60L * 60L * 1000L;
+    private static final int CONTEXTID = 17;
+
+    /**
+     * A timestamp source that returns a settable time.
+     */
+    private static class FixedTimestampSource implements TimestampSource {
+        private volatile long timestamp = BASETIME;
+        @Override
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+
+    /**
+     * Ids with the same source timestamp are distinguished by sub-sequence, and
+     * a new timestamp restarts the sub-sequence.
+     */
+    @Test
+    public void testSequence() {
+        FixedTimestampSource source = new FixedTimestampSource();
+        TransactionIdGenerator generator = new TransactionIdGenerator(source, CONTEXTID);
+        assertEquals(new TransactionId(BASETIME, CONTEXTID, 0), generator.nextId());
+        assertEquals(new TransactionId(BASETIME, CONTEXTID, 1), generator.nextId());
+        source.timestamp = BASETIME + 5;
+        assertEquals(new TransactionId(BASETIME + 5, CONTEXTID, 0), generator.nextId());
+    }
+
+    /**
+     * Ids do not go backwards if the source does.
+     */
+    @Test
+    public void testSourceGoesBackwards() {
+        FixedTimestampSource source = new FixedTimestampSource();
+        TransactionIdGenerator generator = new TransactionIdGenerator(source, CONTEXTID);
+        generator.nextId();
+        source.timestamp = BASETIME - 1000;
+        assertEquals(new TransactionId(BASETIME, CONTEXTID, 1), generator.nextId());
+    }
+
+    /**
+     * When the sub-sequence is exhausted the timestamp advances.
+     */
+    @Test
+    public void testSubSequenceOverflow() {
+        TransactionIdGenerator generator = new TransactionIdGenerator(new FixedTimestampSource(), CONTEXTID);
+        TransactionId last = null;
+        for (int i = 0; i < 1 << TransactionIdGenerator.LOGICAL_BITS; i++) {
+            last = generator.nextId();
+        }
+        assertEquals(new TransactionId(BASETIME, CONTEXTID, (1 << TransactionIdGenerator.LOGICAL_BITS) - 1), last);
+        assertEquals(new TransactionId(BASETIME + 1, CONTEXTID, 0), generator.nextId());
+    }
+
+    /**
+     * Many threads obtaining ids concurrently never get the same id.
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testConcurrentIdsUnique() throws InterruptedException {
+        final TransactionIdGenerator generator = new TransactionIdGenerator(new FixedTimestampSource(), CONTEXTID);
+        final Set<TransactionId> ids = Collections.newSetFromMap(
+                new ConcurrentHashMap<TransactionId, Boolean>());
+        final AtomicReference<TransactionId> duplicate = new AtomicReference<TransactionId>();
+        final int perThread = 10000;
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    TransactionId previous = null;
+                    for (int i = 0; i < perThread; i++) {
+                        TransactionId id = generator.nextId();
+                        if (!ids.add(id) || (previous != null && id.compareTo(previous) <= 0)) {
+                            duplicate.compareAndSet(null, id);
+                        }
+                        previous = id;
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(duplicate.get());
+        assertEquals(8 * perThread, ids.size());
+    }
+}
@@ -0,0 +1,196 @@
+/*
+
+Copyright 2012 Shadowmist Ltd.
+
+This file is part of Shadow MVCC for Oracle Coherence.
+
+Shadow MVCC for Oracle Coherence is free software: you can redistribute 
+it and/or modify it under the terms of the GNU General Public License 
+as published by the Free Software Foundation, either version 3 of the 
+License, or (at your option) any later version.
+
+Shadow MVCC for Oracle Coherence is distributed in the hope that it 
+will be useful, but WITHOUT ANY WARRANTY; without even the implied 
+warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See 
+the GNU General Public License for more details.
+                        
+You should have received a copy of the GNU General Public License
+along with Shadow MVCC for Oracle Coherence.  If not, see 
+<http://www.gnu.org/licenses/>.
+
+*/
+
+package com.shadowmvcc.coherence.transaction.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shadowmvcc.coherence.cache.CacheName;
+import com.shadowmvcc.coherence.domain.IsolationLevel;
+import com.shadowmvcc.coherence.domain.TransactionId;
+import com.shadowmvcc.coherence.transaction.Transaction;
+import com.shadowmvcc.coherence.transaction.TransactionException;
+import com.shadowmvcc.coherence.transaction.TransactionNotificationListener;
+import com.tangosol.net.partition.PartitionSet;
+
+/**
+ * Test that {@link TransactionImpl} registers in the transaction cache
+ * only when it makes changes.
+ *
+ * @author David Whitmarsh <david.whitmarsh@sixwhits.com>
+ *
+ */
+public class TransactionImplTest {
+
+    private static final TransactionId TX = new TransactionId(40L * 365L * 24L * 60L * 60L * 1000L, 0, 0);
+    private static final CacheName CACHENAME = new CacheName("testcache");
+    private static final TransactionNotificationListener LISTENER = new TransactionNotificationListener() {
+        @Override
+        public void transactionComplete(final Transaction transaction) {
+        }
+    };
+
+    private final List<String> calls = new ArrayList<String>();
+    private TransactionCache transactionCache;
+    private boolean timestampValid = true;
+    private final TimestampValidator timestampValidator = new TimestampValidator() {
+        @Override
+        public boolean isSnapshotAgeValid(final long timestamp) {
+            return true;
+        }
+        @Override
+        public boolean isTransactionTimestampValid(final long timestamp) {
+            return timestampValid;
+        }
+    };
+
+    /**
+     * Create a transaction cache that records the calls made to it.
+     */
+    @Before
+    public void setUp() {
+        transactionCache = new TransactionCache() {
+            @Override
+            public void beginTransaction(final TransactionId transactionId,
+                    final IsolationLevel isolationLevel, final TransactionExpiryListener expiryListener) {
+                calls.add("begin");
+            }
+            @Override
+            public void commitTransaction(final TransactionId transactionId,
+                    final Map<CacheName, Set<Object>> cacheKeyMap,
+                    final Map<CacheName, PartitionSet> cachePartitionMap) {
+                calls.add("commit");
+            }
+            @Override
+            public Future<Void> commitTransactionAsync(final TransactionId transactionId,
+                    final Map<CacheName, Set<Object>> cacheKeyMap,
+                    final Map<CacheName, PartitionSet> cachePartitionMap) {
+                calls.add("commitAsync");
+                return CompletedFuture.INSTANCE;
+            }
+            @Override
+            public void rollbackTransaction(final TransactionId transactionId,
+                    final Map<CacheName, Set<Object>> cacheKeyMap,
+                    final Map<CacheName, PartitionSet> cachePartitionMap) {
+                calls.add("rollback");
+            }
+            @Override
+            public void unregisterExpiryListener(final TransactionId transactionId,
+                    final TransactionExpiryListener expiryListener) {
+                calls.add("unregister");
+            }
+            @Override
+            public void registerExpiryListener(final TransactionId transactionId,
+                    final TransactionExpiryListener expiryListener) {
+                calls.add("register");
+            }
+        };
+    }
+
+    /**
+     * A transaction that makes no changes never calls the transaction cache.
+     */
+    @Test
+    public void testReadOnlyCommit() {
+        new TransactionImpl(TX, IsolationLevel.readCommitted, LISTENER, transactionCache, timestampValidator).commit();
+        assertEquals(Collections.emptyList(), calls);
+    }
+
+    /**
+     * A transaction that makes no changes never calls the transaction cache.
+     */
+    @Test
+    public void testReadOnlyRollback() {
+        new TransactionImpl(TX, IsolationLevel.readCommitted, LISTENER, transactionCache, timestampValidator).rollback();
+        assertEquals(Collections.emptyList(), calls);
+    }
+
+    /**
+     * The transaction is registered once, when the first change is made.
+     */
+    @Test
+    public void testRegisteredOnFirstChange() {
+        TransactionImpl transaction = new TransactionImpl(
+                TX, IsolationLevel.readCommitted, LISTENER, transactionCache, timestampValidator);
+        assertEquals(Collections.emptyList(), calls);
+        transaction.addKeyAffected(CACHENAME, 1);
+        transaction.addKeySetAffected(CACHENAME, Collections.<Object>singleton(2));
+        transaction.commit();
+        assertEquals(Arrays.asList("begin", "unregister", "commit"), calls);
+    }
+
+    /**
+     * A transaction that has grown too old before its first change is not registered.
+     */
+    @Test
+    public void testTooOldToRegister() {
+        TransactionImpl transaction = new TransactionImpl(
+                TX, IsolationLevel.readCommitted, LISTENER, transactionCache, timestampValidator);
+        timestampValid = false;
+        try {
+            transaction.addKeyAffected(CACHENAME, 1);
+            fail("expected TransactionException");
+        } catch (TransactionException e) {
+            assertEquals(Collections.emptyList(), calls);
+        }
+    }
+
+    /**
+     * A transaction that has not registered expires once it is older than the maximum
+     * transaction age, and stays expired.
+     */
+    @Test
+    public void testUnregisteredExpiresWithAge() {
+        TransactionImpl transaction = new TransactionImpl(
+                TX, IsolationLevel.readCommitted, LISTENER, transactionCache, timestampValidator);
+        assertEquals(false, transaction.isExpired());
+        timestampValid = false;
+        assertEquals(true, transaction.isExpired());
+        timestampValid = true;
+        assertEquals(true, transaction.isExpired());
+        assertEquals(Collections.emptyList(), calls);
+    }
+
+    /**
+     * Once registered, expiry is decided by the transaction monitor rather than by age.
+     */
+    @Test
+    public void testRegisteredDoesNotExpireWithAge() {
+        TransactionImpl transaction = new TransactionImpl(
+                TX, IsolationLevel.readCommitted, LISTENER, transactionCache, timestampValidator);
+        transaction.addKeyAffected(CACHENAME, 1);
+        timestampValid = false;
+        assertEquals(false, transaction.isExpired());
+    }
+}